@@ -0,0 +1,56 @@
+package com.bluestaq.challenge.notesvault.bench;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.bluestaq.challenge.notesvault.notes.api.dto.NoteResponse;
+
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+// Jackson serialization of NoteResponse lists: what GET /v1/notes spends once the page
+// has been loaded. listSize covers a single note, a default page and a maximum page.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NoteJsonBenchmark {
+
+  @Param({"1", "100", "1000"})
+  int listSize;
+
+  private final ObjectMapper mapper = JsonMapper.builder().build();
+  private List<NoteResponse> notes;
+
+  @Setup
+  public void buildNotes() {
+    Instant now = Instant.now();
+    notes = new ArrayList<>(listSize);
+    for (int i = 0; i < listSize; i++) {
+      notes.add(new NoteResponse(UUID.randomUUID().toString(), now.minusSeconds(i),
+          "Note " + i + ": remember to rotate the backup keys and update the on-call runbook.", 1));
+    }
+  }
+
+  @Benchmark
+  public byte[] serializeList() {
+    return mapper.writeValueAsBytes(notes);
+  }
+}
@@ -0,0 +1,161 @@
+package com.bluestaq.challenge.notesvault.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import com.bluestaq.challenge.notesvault.NotesVaultApplication;
+import com.bluestaq.challenge.notesvault.notes.api.dto.NoteResponse;
+import com.bluestaq.challenge.notesvault.notes.entity.NoteEntity;
+import com.bluestaq.challenge.notesvault.notes.entity.NoteIds;
+import com.bluestaq.challenge.notesvault.notes.service.NotePage;
+import com.bluestaq.challenge.notesvault.notes.service.NoteService;
+import com.bluestaq.challenge.notesvault.notes.store.NoteStore;
+
+// NoteService hot paths against a real SQLite file, at several vault sizes.
+//
+// Each trial boots the application without the web server on a fresh database in a
+// temp directory, seeds datasetSize notes, then measures. The note cache is off so
+// reads reach SQLite; everything else (WAL, pools, FTS triggers) runs as configured.
+// createNote grows the vault while it is measured, so its larger sizes drift upwards
+// a little over a run.
+//
+// getNoteByIdEntity and listNotesEntity read the way getNoteById/listNotes did before
+// the projection read path: managed entities, then a NoteResponse copy of each. Run
+// with -prof gc and compare gc.alloc.rate.norm (bytes allocated per call) between
+// the pairs.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NoteServiceBenchmark {
+
+  // notes inserted per transaction while seeding
+  private static final int SEED_CHUNK = 1000;
+
+  // the open bounds NoteService fills in for an unfiltered first page
+  private static final Instant OLDEST = Instant.parse("1000-01-01T00:00:00Z");
+  private static final Instant NEWEST = Instant.parse("9999-12-31T23:59:59Z");
+
+  private static final String CONTENT =
+      "Standup notes: migrate the export job, review the cache eviction metrics, "
+          + "and follow up with ops about the SQLite checkpoint schedule before Friday.";
+
+  @Param({"1000", "10000", "100000"})
+  int datasetSize;
+
+  private Path dataDir;
+  private ConfigurableApplicationContext context;
+  private NoteService noteService;
+  private NoteStore noteStore;
+  private String[] ids;
+
+  @Setup(Level.Trial)
+  public void start() throws IOException {
+    dataDir = Files.createTempDirectory("notesvault-bench");
+    context = new SpringApplicationBuilder(NotesVaultApplication.class)
+        .web(WebApplicationType.NONE)
+        .logStartupInfo(false)
+        .properties(
+            "spring.datasource.url=jdbc:sqlite:" + dataDir.resolve("notes.db"),
+            "notesvault.store.engine=jpa",
+            "notesvault.cache.enabled=false",
+            "logging.level.root=WARN")
+        .run();
+    noteService = context.getBean(NoteService.class);
+    noteStore = context.getBean(NoteStore.class);
+    ids = seed(noteStore, datasetSize);
+  }
+
+  @TearDown(Level.Trial)
+  public void stop() throws IOException {
+    context.close();
+    FileSystemUtils.deleteRecursively(dataDir);
+  }
+
+  @Benchmark
+  public NoteEntity createNote() {
+    return noteService.createNote(CONTENT);
+  }
+
+  @Benchmark
+  public NoteResponse getNoteById() {
+    return noteService.getNoteById(randomId());
+  }
+
+  @Benchmark
+  public NoteResponse getNoteByIdEntity() {
+    return noteStore.findById(randomId()).map(NoteResponse::of).orElseThrow();
+  }
+
+  // first page, as a client polling the vault would ask for it
+  @Benchmark
+  public NotePage listNotes() {
+    return noteService.listNotes(NoteService.DEFAULT_PAGE_SIZE, null, null, null);
+  }
+
+  @Benchmark
+  public List<NoteResponse> listNotesEntity() {
+    return noteStore.findPageBefore(OLDEST, NEWEST, "", NoteService.DEFAULT_PAGE_SIZE).stream()
+        .map(NoteResponse::of)
+        .toList();
+  }
+
+  @Benchmark
+  public NoteEntity updateNoteById() {
+    return noteService.updateNoteById(randomId(), CONTENT);
+  }
+
+  private String randomId() {
+    return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+  }
+
+  // Written straight through the store, one transaction per chunk, so even the
+  // largest vault is seeded in seconds.
+  private static String[] seed(NoteStore store, int count) {
+    String[] ids = new String[count];
+    Instant oldest = Instant.now().minus(Duration.ofSeconds(count));
+    for (int start = 0; start < count; start += SEED_CHUNK) {
+      int from = start;
+      int to = Math.min(count, start + SEED_CHUNK);
+      store.inTransaction(() -> {
+        for (int i = from; i < to; i++) {
+          NoteEntity note = new NoteEntity();
+          note.setId(NoteIds.newId());
+          note.setCreatedAt(oldest.plusSeconds(i));
+          note.setContent("#" + i + " " + CONTENT);
+          note.setVersion(1);
+          store.insert(note);
+          ids[i] = note.getId();
+        }
+        return null;
+      });
+    }
+    return ids;
+  }
+}
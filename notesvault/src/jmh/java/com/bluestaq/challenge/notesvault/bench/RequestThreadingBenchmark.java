@@ -0,0 +1,138 @@
+package com.bluestaq.challenge.notesvault.bench;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import com.bluestaq.challenge.notesvault.NotesVaultApplication;
+import com.bluestaq.challenge.notesvault.notes.entity.NoteEntity;
+import com.bluestaq.challenge.notesvault.notes.entity.NoteIds;
+import com.bluestaq.challenge.notesvault.notes.store.NoteStore;
+
+// Platform-thread Tomcat versus virtual threads + AdmissionGate, over real HTTP.
+//
+// Each trial boots the whole application on a random port and a fresh SQLite file,
+// seeds it, and then many more JMH client threads than Tomcat's default 200 request
+// threads send GET (read) and PUT (write) requests. On platform threads the extra
+// clients queue for a request thread; on virtual threads every request is accepted and
+// waits at the admission gate instead. Throughput mode gives requests/s and SampleTime
+// gives the p99/p99.9 per request; change the client count with -t.
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(400)
+@State(Scope.Benchmark)
+public class RequestThreadingBenchmark {
+
+  private static final int DATASET_SIZE = 10_000;
+  private static final String CONTENT =
+      "Standup notes: migrate the export job, review the cache eviction metrics, "
+          + "and follow up with ops about the SQLite checkpoint schedule before Friday.";
+
+  @Param({"platform", "virtual"})
+  String threads;
+
+  private Path dataDir;
+  private ConfigurableApplicationContext context;
+  private ExecutorService clientExecutor;
+  private HttpClient client;
+  private URI base;
+  private String[] ids;
+
+  @Setup(Level.Trial)
+  public void start() throws IOException {
+    dataDir = Files.createTempDirectory("notesvault-bench");
+    context = new SpringApplicationBuilder(NotesVaultApplication.class)
+        .logStartupInfo(false)
+        .properties(
+            "server.port=0",
+            "spring.datasource.url=jdbc:sqlite:" + dataDir.resolve("notes.db"),
+            "spring.threads.virtual.enabled=" + threads.equals("virtual"),
+            "notesvault.store.engine=jpa",
+            "notesvault.cache.enabled=false",
+            "logging.level.root=WARN")
+        .run();
+    base = URI.create("http://localhost:" + context.getEnvironment().getProperty("local.server.port"));
+    ids = seed(context.getBean(NoteStore.class));
+
+    clientExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    client = HttpClient.newBuilder().executor(clientExecutor).build();
+  }
+
+  @TearDown(Level.Trial)
+  public void stop() throws IOException {
+    client.close();
+    clientExecutor.close();
+    context.close();
+    FileSystemUtils.deleteRecursively(dataDir);
+  }
+
+  @Benchmark
+  public int getNote() throws IOException, InterruptedException {
+    return send(HttpRequest.newBuilder(noteUri()).GET().build());
+  }
+
+  @Benchmark
+  public int updateNote() throws IOException, InterruptedException {
+    return send(HttpRequest.newBuilder(noteUri())
+        .header("Content-Type", "application/json")
+        .PUT(HttpRequest.BodyPublishers.ofString("{\"content\":\"" + CONTENT + "\"}"))
+        .build());
+  }
+
+  private int send(HttpRequest request) throws IOException, InterruptedException {
+    return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+  }
+
+  private URI noteUri() {
+    return base.resolve("/v1/notes/" + ids[ThreadLocalRandom.current().nextInt(ids.length)]);
+  }
+
+  private static String[] seed(NoteStore store) {
+    String[] ids = new String[DATASET_SIZE];
+    Instant oldest = Instant.now().minus(Duration.ofSeconds(DATASET_SIZE));
+    store.inTransaction(() -> {
+      for (int i = 0; i < DATASET_SIZE; i++) {
+        NoteEntity note = new NoteEntity();
+        note.setId(NoteIds.newId());
+        note.setCreatedAt(oldest.plusSeconds(i));
+        note.setContent("#" + i + " " + CONTENT);
+        note.setVersion(1);
+        store.insert(note);
+        ids[i] = note.getId();
+      }
+      return null;
+    });
+    return ids;
+  }
+}
@@ -0,0 +1,154 @@
+package com.bluestaq.challenge.notesvault.bench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import com.bluestaq.challenge.notesvault.NotesVaultApplication;
+import com.bluestaq.challenge.notesvault.notes.entity.NoteEntity;
+import com.bluestaq.challenge.notesvault.notes.entity.NoteIds;
+import com.bluestaq.challenge.notesvault.notes.store.NoteStore;
+
+// A full page of GET /v1/notes (1000 notes) and the whole export over real HTTP, with
+// and without gzip (ResponseCompressionFilter) and over HTTP/1.1 and h2c.
+//
+// The client asks for gzip and does not decompress, so what it reads is what went over
+// the wire; the average per response, next to the uncompressed size, is printed at the
+// end of each trial. firstByte returns as soon as the first body byte arrives and
+// abandons the rest (time to first byte); the other benchmarks read to the end.
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResponseCompressionBenchmark {
+
+  private static final int DATASET_SIZE = 5_000;
+  private static final String CONTENT =
+      "Standup notes: migrate the export job, review the cache eviction metrics, "
+          + "and follow up with ops about the SQLite checkpoint schedule before Friday. ";
+
+  @Param({"off", "gzip"})
+  String compression;
+
+  @Param({"HTTP_1_1", "HTTP_2"})
+  HttpClient.Version http;
+
+  private Path dataDir;
+  private ConfigurableApplicationContext context;
+  private HttpClient client;
+  private URI page;
+  private URI export;
+
+  private final AtomicLong responses = new AtomicLong();
+  private final AtomicLong wireBytes = new AtomicLong();
+  private long plainPageBytes;
+
+  @Setup(Level.Trial)
+  public void start() throws IOException, InterruptedException {
+    dataDir = Files.createTempDirectory("notesvault-bench");
+    context = new SpringApplicationBuilder(NotesVaultApplication.class)
+        .logStartupInfo(false)
+        .properties(
+            "server.port=0",
+            "spring.datasource.url=jdbc:sqlite:" + dataDir.resolve("notes.db"),
+            "notesvault.store.engine=jpa",
+            "notesvault.http.compression.mode=" + compression,
+            "logging.level.root=WARN")
+        .run();
+    seed(context.getBean(NoteStore.class));
+
+    URI base = URI.create("http://localhost:" + context.getEnvironment().getProperty("local.server.port"));
+    page = base.resolve("/v1/notes?limit=1000");
+    export = base.resolve("/v1/notes/export");
+    client = HttpClient.newBuilder().version(http).build();
+    plainPageBytes = client.send(HttpRequest.newBuilder(page).build(), HttpResponse.BodyHandlers.ofByteArray())
+        .body().length;
+  }
+
+  @TearDown(Level.Trial)
+  public void stop() throws IOException {
+    long count = responses.get();
+    if (count > 0) {
+      System.out.printf("%n%s over %s: %d wire bytes per full page (%d uncompressed)%n",
+          compression, http, wireBytes.get() / count, plainPageBytes);
+    }
+    client.close();
+    context.close();
+    FileSystemUtils.deleteRecursively(dataDir);
+  }
+
+  @Benchmark
+  public long listPage() throws IOException, InterruptedException {
+    long bytes = drain(open(page));
+    responses.incrementAndGet();
+    wireBytes.addAndGet(bytes);
+    return bytes;
+  }
+
+  @Benchmark
+  public int firstByte() throws IOException, InterruptedException {
+    try (InputStream body = open(page)) {
+      return body.read();
+    }
+  }
+
+  @Benchmark
+  public long exportAll() throws IOException, InterruptedException {
+    return drain(open(export));
+  }
+
+  private InputStream open(URI uri) throws IOException, InterruptedException {
+    HttpRequest request = HttpRequest.newBuilder(uri).header("Accept-Encoding", "gzip").build();
+    return client.send(request, HttpResponse.BodyHandlers.ofInputStream()).body();
+  }
+
+  private static long drain(InputStream body) throws IOException {
+    try (body) {
+      return body.transferTo(OutputStream.nullOutputStream());
+    }
+  }
+
+  private static void seed(NoteStore store) {
+    Instant oldest = Instant.now().minus(Duration.ofSeconds(DATASET_SIZE));
+    store.inTransaction(() -> {
+      for (int i = 0; i < DATASET_SIZE; i++) {
+        NoteEntity note = new NoteEntity();
+        note.setId(NoteIds.newId());
+        note.setCreatedAt(oldest.plusSeconds(i));
+        note.setContent("#" + i + " " + CONTENT.repeat(1 + i % 4));
+        note.setVersion(1);
+        store.insert(note);
+      }
+      return null;
+    });
+  }
+}
@@ -0,0 +1,111 @@
+package com.bluestaq.challenge.notesvault.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sqlite.SQLiteConfig.JournalMode;
+import org.sqlite.SQLiteConfig.SynchronousMode;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+
+import com.bluestaq.challenge.notesvault.config.NoteStoreProperties;
+import com.bluestaq.challenge.notesvault.config.SqliteProperties;
+import com.bluestaq.challenge.notesvault.notes.entity.NoteContentConverter;
+import com.bluestaq.challenge.notesvault.notes.entity.NoteEntity;
+import com.bluestaq.challenge.notesvault.notes.entity.NoteIds;
+import com.bluestaq.challenge.notesvault.notes.store.shard.ShardedNoteStore;
+
+// Write throughput of the sharded engine by shard count, from 8 concurrent writers.
+//
+// The store is used directly, without the application around it, on fresh shard files
+// in a temp directory with the default pragmas (WAL, synchronous=NORMAL). One shard is
+// the single-writer baseline; with more shards, writes to different files commit in
+// parallel. Change the writer count with -t.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class ShardedWriteBenchmark {
+
+  // notes in the store before measuring, for updates to pick from
+  private static final int SEED = 10_000;
+
+  private static final String CONTENT =
+      "Standup notes: migrate the export job, review the cache eviction metrics, "
+          + "and follow up with ops about the SQLite checkpoint schedule before Friday.";
+
+  @Param({"1", "2", "4", "8"})
+  int shardCount;
+
+  private Path dataDir;
+  private ShardedNoteStore store;
+  private String[] ids;
+
+  @Setup(Level.Trial)
+  public void start() throws IOException, SQLException {
+    dataDir = Files.createTempDirectory("notesvault-shards");
+    NoteStoreProperties props = new NoteStoreProperties(NoteStoreProperties.Engine.SHARDED,
+        new NoteStoreProperties.Log(dataDir.resolve("log"), DataSize.ofMegabytes(64), true, Duration.ofMinutes(1), 0.5),
+        new NoteStoreProperties.Sharded(dataDir, shardCount, 2));
+    SqliteProperties sqlite = new SqliteProperties(
+        JournalMode.WAL, SynchronousMode.NORMAL, 5000, -16384, 268435456L, 4, 30000);
+    store = new ShardedNoteStore(props, sqlite, new NoteContentConverter());
+
+    ids = new String[SEED];
+    store.inTransaction(() -> {
+      for (int i = 0; i < SEED; i++) {
+        ids[i] = store.insert(newNote()).getId();
+      }
+      return null;
+    });
+  }
+
+  @TearDown(Level.Trial)
+  public void stop() throws IOException {
+    store.destroy();
+    FileSystemUtils.deleteRecursively(dataDir);
+  }
+
+  @Benchmark
+  public NoteEntity insert() {
+    return store.insert(newNote());
+  }
+
+  @Benchmark
+  public Optional<NoteEntity> updateContent() {
+    return store.updateContent(ids[ThreadLocalRandom.current().nextInt(ids.length)], CONTENT);
+  }
+
+  private static NoteEntity newNote() {
+    NoteEntity note = new NoteEntity();
+    note.setId(NoteIds.newId());
+    note.setCreatedAt(Instant.now());
+    note.setContent(CONTENT);
+    note.setVersion(1);
+    return note;
+  }
+}
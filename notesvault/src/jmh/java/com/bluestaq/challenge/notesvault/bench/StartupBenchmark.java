@@ -0,0 +1,150 @@
+package com.bluestaq.challenge.notesvault.bench;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+
+// Cold start: from launching a new JVM to the first 200 from GET /v1/notes.
+//
+// Every invocation starts the application in a child process on a free port and polls
+// the list endpoint until it answers; the process is killed afterwards, outside the
+// measurement. All invocations of a trial share one SQLite file, so only the first
+// (a warmup) creates the schema.
+//  - default:   the test classpath, no profile (ddl-auto=update, every bean created eagerly)
+//  - prod:      the test classpath with the prod profile (migrations + validate, lazy beans)
+//  - faststart: the prod profile from target/faststart, with Spring AOT and the AppCDS
+//               archive; build it first with ./mvnw -P faststart -DskipTests package
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+
+  private static final String MAIN_CLASS = "com.bluestaq.challenge.notesvault.NotesVaultApplication";
+  private static final Path FASTSTART_DIR = Path.of("target", "faststart");
+  private static final Duration STARTUP_TIMEOUT = Duration.ofSeconds(60);
+
+  @Param({"default", "prod", "faststart"})
+  String mode;
+
+  private Path dataDir;
+  private HttpClient client;
+  private Process app;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    if (mode.equals("faststart") && !Files.exists(FASTSTART_DIR.resolve("application.jsa"))) {
+      throw new IllegalStateException(FASTSTART_DIR.toAbsolutePath()
+          + " has no application.jsa; run ./mvnw -P faststart -DskipTests package first");
+    }
+    dataDir = Files.createTempDirectory("notesvault-startup");
+    client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+  }
+
+  @TearDown(Level.Invocation)
+  public void stopApp() throws InterruptedException {
+    if (app != null) {
+      app.destroy();
+      if (!app.waitFor(30, TimeUnit.SECONDS)) {
+        app.destroyForcibly().waitFor();
+      }
+      app = null;
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    client.close();
+    FileSystemUtils.deleteRecursively(dataDir);
+  }
+
+  @Benchmark
+  public int timeToFirstList() throws IOException, InterruptedException {
+    int port = freePort();
+    app = launch(port).start();
+    URI list = URI.create("http://localhost:" + port + "/v1/notes");
+    long deadline = System.nanoTime() + STARTUP_TIMEOUT.toNanos();
+    while (System.nanoTime() < deadline) {
+      if (!app.isAlive()) {
+        throw new IllegalStateException("application exited with " + app.exitValue()
+            + "; see " + dataDir.resolve("app.log"));
+      }
+      try {
+        HttpResponse<Void> response = client.send(HttpRequest.newBuilder(list).build(),
+            HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() == 200) {
+          return response.statusCode();
+        }
+      } catch (ConnectException e) {
+        // not listening yet
+      }
+      Thread.sleep(5);
+    }
+    throw new IllegalStateException("no answer from " + list + " within " + STARTUP_TIMEOUT);
+  }
+
+  private ProcessBuilder launch(int port) throws IOException {
+    List<String> command = new ArrayList<>();
+    command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+    Path workDir = Path.of("");
+    switch (mode) {
+      case "default" -> command.addAll(List.of("-cp", System.getProperty("java.class.path"), MAIN_CLASS));
+      case "prod" -> command.addAll(List.of("-cp", System.getProperty("java.class.path"),
+          "-Dspring.profiles.active=prod", MAIN_CLASS));
+      case "faststart" -> {
+        workDir = FASTSTART_DIR;
+        command.addAll(List.of("-XX:SharedArchiveFile=application.jsa", "-Dspring.aot.enabled=true",
+            "-Dspring.profiles.active=prod", "-jar", applicationJar().getFileName().toString()));
+      }
+      default -> throw new IllegalArgumentException("unknown mode " + mode);
+    }
+    command.add("--server.port=" + port);
+    command.add("--spring.datasource.url=jdbc:sqlite:" + dataDir.resolve("notes.db").toAbsolutePath());
+    command.add("--logging.level.root=WARN");
+    return new ProcessBuilder(command)
+        .directory(workDir.toAbsolutePath().toFile())
+        .redirectErrorStream(true)
+        .redirectOutput(dataDir.resolve("app.log").toFile());
+  }
+
+  private static Path applicationJar() throws IOException {
+    try (Stream<Path> files = Files.list(FASTSTART_DIR)) {
+      return files.filter(f -> f.getFileName().toString().endsWith(".jar")).findFirst()
+          .orElseThrow(() -> new IllegalStateException("no application jar in " + FASTSTART_DIR.toAbsolutePath()));
+    }
+  }
+
+  private static int freePort() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+}
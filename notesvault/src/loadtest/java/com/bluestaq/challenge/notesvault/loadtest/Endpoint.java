@@ -0,0 +1,33 @@
+package com.bluestaq.challenge.notesvault.loadtest;
+
+// The NoteControllerV1 endpoints the load test drives; results are reported per endpoint.
+enum Endpoint {
+
+  GET("get", "GET /v1/notes/{id}", false),
+  LIST("list", "GET /v1/notes", false),
+  SEARCH("search", "GET /v1/notes/search", false),
+  EXPORT("export", "GET /v1/notes/export", false),
+  CREATE("create", "POST /v1/notes", true),
+  BATCH("batch", "POST /v1/notes/batch", true),
+  UPDATE("update", "PUT /v1/notes/{id}", true),
+  DELETE("delete", "DELETE /v1/notes/{id}", true);
+
+  final String key;
+  final String route;
+  final boolean write;
+
+  Endpoint(String key, String route, boolean write) {
+    this.key = key;
+    this.route = route;
+    this.write = write;
+  }
+
+  static Endpoint byKey(String key) {
+    for (Endpoint e : values()) {
+      if (e.key.equals(key)) {
+        return e;
+      }
+    }
+    throw new IllegalArgumentException("unknown endpoint in mix: " + key);
+  }
+}
@@ -0,0 +1,298 @@
+package com.bluestaq.challenge.notesvault.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import com.bluestaq.challenge.notesvault.NotesVaultApplication;
+import com.bluestaq.challenge.notesvault.notes.api.dto.BatchNoteOperation;
+import com.bluestaq.challenge.notesvault.notes.api.dto.BatchNoteRequest;
+import com.bluestaq.challenge.notesvault.notes.api.dto.BatchNoteResult;
+import com.bluestaq.challenge.notesvault.notes.api.dto.CreateNoteRequest;
+import com.bluestaq.challenge.notesvault.notes.api.dto.UpdateNoteRequest;
+import com.bluestaq.challenge.notesvault.notes.service.NoteBatchService;
+
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+// Open-loop HTTP load test of the notes API, reporting latency percentiles per endpoint.
+//
+// Unless --target is given, the whole application is started in this JVM on a random
+// port against a throwaway SQLite file (or log directory). --dataset notes are seeded
+// through the batch endpoint, then each rate in --rates is run for --warmup + --duration.
+//
+// Requests go out on a fixed schedule whatever the server does, each on its own virtual
+// thread, and latency is measured from the scheduled start rather than the actual send.
+// A stalled server therefore shows up in the percentiles instead of quietly slowing the
+// load down (coordinated omission). See LoadTestOptions for every option and
+// LoadTestReport for what is written.
+public final class LoadTest {
+
+  // how long the end of a step waits for requests still in flight
+  private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(30);
+  private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+  private static final int BATCH_CREATES = 10;
+
+  private static final String[] WORDS = {
+      "meeting", "invoice", "deploy", "backup", "roadmap", "kitchen", "garden", "travel",
+      "budget", "review", "release", "groceries", "dentist", "birthday", "migration", "oncall"
+  };
+
+  private final LoadTestOptions options;
+  private final HttpClient client;
+  private final ExecutorService requests;
+  private final URI notes;
+  private final ObjectMapper mapper = JsonMapper.builder().build();
+  private final NotePool pool;
+  // endpoints repeated by weight; a uniform pick from here follows the mix
+  private final Endpoint[] schedule;
+
+  private LoadTest(LoadTestOptions options, HttpClient client, ExecutorService requests, URI base) {
+    this.options = options;
+    this.client = client;
+    this.requests = requests;
+    this.notes = base.resolve("/v1/notes");
+    this.pool = new NotePool(options.dataset());
+
+    List<Endpoint> weighted = new ArrayList<>();
+    options.mix().forEach((endpoint, weight) -> {
+      for (int i = 0; i < weight; i++) {
+        weighted.add(endpoint);
+      }
+    });
+    this.schedule = weighted.toArray(Endpoint[]::new);
+  }
+
+  public static void main(String[] args) throws Exception {
+    LoadTestOptions options = LoadTestOptions.parse(args);
+
+    Path dataDir = null;
+    ConfigurableApplicationContext app = null;
+    URI base = options.target();
+    int exitStatus;
+    try {
+      if (base == null) {
+        dataDir = Files.createTempDirectory("notesvault-loadtest");
+        app = startApplication(options, dataDir);
+        base = URI.create("http://localhost:" + app.getEnvironment().getProperty("local.server.port"));
+      }
+
+      try (ExecutorService requests = Executors.newVirtualThreadPerTaskExecutor();
+          HttpClient client = HttpClient.newBuilder()
+              .executor(requests)
+              .connectTimeout(Duration.ofSeconds(5))
+              .build()) {
+        LoadTest test = new LoadTest(options, client, requests, base);
+        System.out.printf("seeding %d notes at %s%n", options.dataset(), base);
+        test.seed();
+
+        List<LoadTestReport.Step> steps = new ArrayList<>();
+        for (int rate : options.rates()) {
+          System.out.printf("running %d req/s for %s (+%s warmup)%n", rate, options.duration(), options.warmup());
+          steps.add(test.runStep(rate));
+        }
+
+        LoadTestReport report = new LoadTestReport(options, steps);
+        report.write(options.reportDir());
+        report.print(System.out);
+        exitStatus = (report.maxSustainableRate() >= options.minSustainableRate()) ? 0 : 1;
+      }
+    } finally {
+      if (app != null) {
+        app.close();
+      }
+      if (dataDir != null) {
+        FileSystemUtils.deleteRecursively(dataDir);
+      }
+    }
+    System.exit(exitStatus);
+  }
+
+  private static ConfigurableApplicationContext startApplication(LoadTestOptions options, Path dataDir) {
+    return new SpringApplicationBuilder(NotesVaultApplication.class)
+        .logStartupInfo(false)
+        .properties(
+            "server.port=0",
+            "spring.datasource.url=jdbc:sqlite:" + dataDir.resolve("notes.db"),
+            "notesvault.store.log.directory=" + dataDir.resolve("log"),
+            "logging.level.root=WARN")
+        .run(options.appArgs().toArray(String[]::new));
+  }
+
+  // --- seeding ---
+
+  private void seed() throws IOException, InterruptedException {
+    int remaining = options.dataset();
+    while (remaining > 0) {
+      int size = Math.min(remaining, NoteBatchService.MAX_BATCH_SIZE);
+      for (String id : createInBatch(size)) {
+        pool.add(id);
+      }
+      remaining -= size;
+    }
+  }
+
+  private List<String> createInBatch(int count) throws IOException, InterruptedException {
+    List<BatchNoteOperation> ops = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      ops.add(new BatchNoteOperation(BatchNoteOperation.Op.CREATE, null, content()));
+    }
+    HttpResponse<String> response = client.send(
+        json(notes.resolve("/v1/notes/batch"), "POST", new BatchNoteRequest(ops)),
+        HttpResponse.BodyHandlers.ofString());
+    if (response.statusCode() != 200) {
+      throw new IOException("batch create failed with " + response.statusCode() + ": " + response.body());
+    }
+    List<String> ids = new ArrayList<>(count);
+    for (BatchNoteResult result : mapper.readValue(response.body(), BatchNoteResult[].class)) {
+      if (result.status() == 201) {
+        ids.add(result.id());
+      }
+    }
+    return ids;
+  }
+
+  // --- one step ---
+
+  private LoadTestReport.Step runStep(int rate) throws InterruptedException {
+    Map<Endpoint, LoadTestReport.Recorder> recorders = new EnumMap<>(Endpoint.class);
+    for (Endpoint endpoint : schedule) {
+      recorders.computeIfAbsent(endpoint, e -> new LoadTestReport.Recorder());
+    }
+    Semaphore inFlight = new Semaphore(options.maxInFlight());
+    AtomicLong shed = new AtomicLong();
+
+    long start = System.nanoTime();
+    long measureFrom = start + options.warmup().toNanos();
+    long end = measureFrom + options.duration().toNanos();
+
+    for (long i = 0; ; i++) {
+      // computed from i rather than accumulated so rounding never drifts the rate
+      long scheduled = start + (i * 1_000_000_000L) / rate;
+      if (scheduled >= end) {
+        break;
+      }
+      long wait;
+      while ((wait = scheduled - System.nanoTime()) > 0) {
+        LockSupport.parkNanos(wait);
+      }
+
+      boolean measured = scheduled >= measureFrom;
+      Endpoint endpoint = schedule[ThreadLocalRandom.current().nextInt(schedule.length)];
+      if (!inFlight.tryAcquire()) {
+        if (measured) {
+          shed.incrementAndGet();
+        }
+        continue;
+      }
+      requests.execute(() -> {
+        try {
+          int status = send(endpoint);
+          if (measured) {
+            recorders.get(endpoint).record(status, System.nanoTime() - scheduled);
+          }
+        } catch (IOException | RuntimeException e) {
+          if (measured) {
+            recorders.get(endpoint).recordFailure(System.nanoTime() - scheduled);
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } finally {
+          inFlight.release();
+        }
+      });
+    }
+
+    // stragglers still belong to this step; whatever outlives the drain is counted
+    int unfinished = 0;
+    if (inFlight.tryAcquire(options.maxInFlight(), DRAIN_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+      inFlight.release(options.maxInFlight());
+    } else {
+      unfinished = options.maxInFlight() - inFlight.availablePermits();
+    }
+    return LoadTestReport.Step.of(rate, options, recorders, shed.get(), unfinished);
+  }
+
+  // --- requests ---
+
+  private int send(Endpoint endpoint) throws IOException, InterruptedException {
+    return switch (endpoint) {
+      case GET -> discard(request(noteUri(pool.pick())).GET().build());
+      case LIST -> discard(request(notes).GET().build());
+      case SEARCH -> discard(request(notes.resolve(
+          "/v1/notes/search?q=" + URLEncoder.encode(word(), StandardCharsets.UTF_8))).GET().build());
+      case EXPORT -> discard(request(notes.resolve("/v1/notes/export")).GET().build());
+      case CREATE -> create();
+      case BATCH -> {
+        createInBatch(BATCH_CREATES).forEach(pool::add);
+        yield 200;
+      }
+      case UPDATE -> discard(json(noteUri(pool.pick()), "PUT", new UpdateNoteRequest(content())));
+      case DELETE -> discard(request(noteUri(pool.take())).DELETE().build());
+    };
+  }
+
+  private int create() throws IOException, InterruptedException {
+    HttpResponse<Void> response = client.send(
+        json(notes, "POST", new CreateNoteRequest(content())),
+        HttpResponse.BodyHandlers.discarding());
+    response.headers().firstValue("Location")
+        .ifPresent(location -> pool.add(location.substring(location.lastIndexOf('/') + 1)));
+    return response.statusCode();
+  }
+
+  private int discard(HttpRequest request) throws IOException, InterruptedException {
+    return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+  }
+
+  private static HttpRequest.Builder request(URI uri) {
+    return HttpRequest.newBuilder(uri).timeout(REQUEST_TIMEOUT);
+  }
+
+  private HttpRequest json(URI uri, String method, Object body) {
+    return request(uri)
+        .header("Content-Type", "application/json")
+        .method(method, HttpRequest.BodyPublishers.ofByteArray(mapper.writeValueAsBytes(body)))
+        .build();
+  }
+
+  // an empty pool slot turns into a request for a note that does not exist (a 404)
+  private URI noteUri(String id) {
+    return notes.resolve("/v1/notes/" + (id == null ? "missing" : id));
+  }
+
+  private static String word() {
+    return WORDS[ThreadLocalRandom.current().nextInt(WORDS.length)];
+  }
+
+  private static String content() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    StringBuilder content = new StringBuilder(160);
+    for (int i = 0; i < 20; i++) {
+      content.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+    }
+    return content.toString().trim();
+  }
+}
@@ -0,0 +1,120 @@
+package com.bluestaq.challenge.notesvault.loadtest;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Command line of the load test. Every option is --name=value; anything else is handed
+// to the Spring Boot application it starts (e.g. --notesvault.store.engine=log).
+//
+//   --target=URL               test a running instance instead of starting one
+//   --rates=200,400,800        open-loop arrival rates to step through, requests/second
+//   --duration=30s             measured time per rate
+//   --warmup=10s               unmeasured lead-in per rate
+//   --dataset=10000            notes created before the first step
+//   --mix=get=45,list=15,...   relative weight of each endpoint (see Endpoint)
+//   --slo-p99=100ms            a rate is sustainable if every endpoint's p99 stays under this...
+//   --error-budget=0.01        ...no more than this fraction of requests fail...
+//   --max-in-flight=2000       ...and no request had to be shed at this concurrency cap
+//   --min-sustainable-rate=0   exit with status 1 when the best sustainable rate is lower
+//   --report-dir=target/loadtest
+record LoadTestOptions(
+    URI target,
+    List<Integer> rates,
+    Duration duration,
+    Duration warmup,
+    int dataset,
+    Map<Endpoint, Integer> mix,
+    Duration sloP99,
+    double errorBudget,
+    int maxInFlight,
+    int minSustainableRate,
+    Path reportDir,
+    List<String> appArgs
+) {
+
+  static final String DEFAULT_MIX = "get=45,list=15,search=5,export=0,create=15,batch=2,update=13,delete=5";
+
+  private static final List<String> KNOWN = List.of("target", "rates", "duration", "warmup", "dataset", "mix",
+      "slo-p99", "error-budget", "max-in-flight", "min-sustainable-rate", "report-dir");
+
+  static LoadTestOptions parse(String[] args) {
+    Map<String, String> values = new HashMap<>();
+    List<String> appArgs = new ArrayList<>();
+    for (String arg : args) {
+      int eq = arg.indexOf('=');
+      String name = (arg.startsWith("--") && eq > 2) ? arg.substring(2, eq) : null;
+      if (name != null && KNOWN.contains(name)) {
+        values.put(name, arg.substring(eq + 1));
+      } else {
+        appArgs.add(arg);
+      }
+    }
+
+    String target = values.get("target");
+    return new LoadTestOptions(
+        (target == null || target.isBlank()) ? null : URI.create(target),
+        parseRates(values.getOrDefault("rates", "200,400,800,1600")),
+        parseDuration(values.getOrDefault("duration", "30s")),
+        parseDuration(values.getOrDefault("warmup", "10s")),
+        Integer.parseInt(values.getOrDefault("dataset", "10000")),
+        parseMix(values.getOrDefault("mix", DEFAULT_MIX)),
+        parseDuration(values.getOrDefault("slo-p99", "100ms")),
+        Double.parseDouble(values.getOrDefault("error-budget", "0.01")),
+        Integer.parseInt(values.getOrDefault("max-in-flight", "2000")),
+        Integer.parseInt(values.getOrDefault("min-sustainable-rate", "0")),
+        Path.of(values.getOrDefault("report-dir", "target/loadtest")),
+        List.copyOf(appArgs));
+  }
+
+  private static List<Integer> parseRates(String value) {
+    List<Integer> rates = new ArrayList<>();
+    for (String rate : value.split(",")) {
+      int r = Integer.parseInt(rate.trim());
+      if (r <= 0) {
+        throw new IllegalArgumentException("rates must be positive: " + value);
+      }
+      rates.add(r);
+    }
+    return List.copyOf(rates);
+  }
+
+  // 30s, 250ms, 2m
+  private static Duration parseDuration(String value) {
+    String v = value.trim();
+    if (v.endsWith("ms")) {
+      return Duration.ofMillis(Long.parseLong(v.substring(0, v.length() - 2)));
+    }
+    if (v.endsWith("s")) {
+      return Duration.ofSeconds(Long.parseLong(v.substring(0, v.length() - 1)));
+    }
+    if (v.endsWith("m")) {
+      return Duration.ofMinutes(Long.parseLong(v.substring(0, v.length() - 1)));
+    }
+    throw new IllegalArgumentException("duration needs a unit (ms, s or m): " + value);
+  }
+
+  private static Map<Endpoint, Integer> parseMix(String value) {
+    Map<Endpoint, Integer> mix = new EnumMap<>(Endpoint.class);
+    for (String part : value.split(",")) {
+      String[] kv = part.trim().split("=");
+      if (kv.length != 2) {
+        throw new IllegalArgumentException("mix entries look like get=50: " + part);
+      }
+      int weight = Integer.parseInt(kv[1].trim());
+      if (weight < 0) {
+        throw new IllegalArgumentException("mix weights must not be negative: " + part);
+      }
+      mix.put(Endpoint.byKey(kv[0].trim()), weight);
+    }
+    if (mix.values().stream().mapToInt(Integer::intValue).sum() == 0) {
+      throw new IllegalArgumentException("mix must give at least one endpoint a weight");
+    }
+    return mix;
+  }
+}
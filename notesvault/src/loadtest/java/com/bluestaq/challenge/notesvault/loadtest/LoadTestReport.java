@@ -0,0 +1,158 @@
+package com.bluestaq.challenge.notesvault.loadtest;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import tools.jackson.databind.json.JsonMapper;
+
+// Results of a load test run.
+//
+// Written to the report directory:
+//  - summary.json: options, every step with per-endpoint counts and percentiles (ms),
+//    and the maximum sustainable rate
+//  - <rate>-<endpoint>.hgrm: HdrHistogram percentile distribution per step and endpoint,
+//    in milliseconds, for plotting or diffing between releases
+final class LoadTestReport {
+
+  private static final double MICROS_PER_MILLI = 1000.0;
+
+  // Latencies of one endpoint during one step, in microseconds.
+  static final class Recorder {
+
+    // auto-resizing, 3 significant digits
+    private final ConcurrentHistogram latencies = new ConcurrentHistogram(3);
+    private final LongAdder notFound = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    // 404s are expected (a note deleted by a concurrent request), so they are counted
+    // apart from errors; any other 4xx/5xx is an error
+    void record(int status, long nanos) {
+      latencies.recordValue(nanos / 1000);
+      if (status == 404) {
+        notFound.increment();
+      } else if (status >= 400) {
+        errors.increment();
+      }
+    }
+
+    void recordFailure(long nanos) {
+      latencies.recordValue(nanos / 1000);
+      errors.increment();
+    }
+  }
+
+  record EndpointResult(
+      long count, long notFound, long errors,
+      double meanMs, double p50Ms, double p90Ms, double p99Ms, double p999Ms, double maxMs) {
+
+    static EndpointResult of(Recorder recorder) {
+      Histogram h = recorder.latencies;
+      return new EndpointResult(h.getTotalCount(), recorder.notFound.sum(), recorder.errors.sum(),
+          h.getMean() / MICROS_PER_MILLI,
+          h.getValueAtPercentile(50) / MICROS_PER_MILLI,
+          h.getValueAtPercentile(90) / MICROS_PER_MILLI,
+          h.getValueAtPercentile(99) / MICROS_PER_MILLI,
+          h.getValueAtPercentile(99.9) / MICROS_PER_MILLI,
+          h.getMaxValue() / MICROS_PER_MILLI);
+    }
+  }
+
+  record Step(
+      int targetRate, double achievedRate, long shed, int unfinished, boolean sustainable,
+      Map<String, EndpointResult> endpoints,
+      // kept for the .hgrm files, not part of summary.json
+      @JsonIgnore Map<Endpoint, Recorder> recorders) {
+
+    static Step of(int rate, LoadTestOptions options, Map<Endpoint, Recorder> recorders, long shed, int unfinished) {
+      Map<String, EndpointResult> endpoints = new LinkedHashMap<>();
+      long total = 0;
+      long errors = 0;
+      boolean withinSlo = true;
+      for (Map.Entry<Endpoint, Recorder> e : recorders.entrySet()) {
+        EndpointResult result = EndpointResult.of(e.getValue());
+        endpoints.put(e.getKey().route, result);
+        total += result.count();
+        errors += result.errors();
+        withinSlo &= result.count() == 0 || result.p99Ms() <= options.sloP99().toNanos() / 1e6;
+      }
+      double errorRate = (total == 0) ? 0 : (double) errors / total;
+      boolean sustainable = shed == 0 && unfinished == 0 && withinSlo && errorRate <= options.errorBudget();
+      double achieved = total / (options.duration().toNanos() / 1e9);
+      return new Step(rate, achieved, shed, unfinished, sustainable, endpoints, recorders);
+    }
+  }
+
+  private final LoadTestOptions options;
+  private final List<Step> steps;
+
+  LoadTestReport(LoadTestOptions options, List<Step> steps) {
+    this.options = options;
+    this.steps = steps;
+  }
+
+  // Highest target rate whose step was sustainable, 0 if none was.
+  int maxSustainableRate() {
+    int best = 0;
+    for (Step step : steps) {
+      if (step.sustainable()) {
+        best = Math.max(best, step.targetRate());
+      }
+    }
+    return best;
+  }
+
+  void write(Path dir) throws IOException {
+    Files.createDirectories(dir);
+
+    Map<String, Object> summary = new LinkedHashMap<>();
+    summary.put("rates", options.rates());
+    summary.put("durationSeconds", options.duration().toSeconds());
+    summary.put("warmupSeconds", options.warmup().toSeconds());
+    summary.put("dataset", options.dataset());
+    Map<String, Integer> mix = new LinkedHashMap<>();
+    options.mix().forEach((endpoint, weight) -> mix.put(endpoint.key, weight));
+    summary.put("mix", mix);
+    summary.put("sloP99Ms", options.sloP99().toMillis());
+    summary.put("errorBudget", options.errorBudget());
+    summary.put("steps", steps);
+    summary.put("maxSustainableRate", maxSustainableRate());
+    JsonMapper.builder().build().writerWithDefaultPrettyPrinter().writeValue(dir.resolve("summary.json"), summary);
+
+    for (Step step : steps) {
+      for (Map.Entry<Endpoint, Recorder> e : step.recorders().entrySet()) {
+        Path file = dir.resolve(step.targetRate() + "-" + e.getKey().key + ".hgrm");
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file))) {
+          e.getValue().latencies.outputPercentileDistribution(out, MICROS_PER_MILLI);
+        }
+      }
+    }
+  }
+
+  void print(PrintStream out) {
+    for (Step step : steps) {
+      out.printf("%n%d req/s target, %.1f req/s achieved, %s%n", step.targetRate(), step.achievedRate(),
+          step.sustainable() ? "sustainable" : "NOT sustainable");
+      if (step.shed() > 0 || step.unfinished() > 0) {
+        out.printf("  shed %d, unfinished %d%n", step.shed(), step.unfinished());
+      }
+      out.printf("  %-24s %8s %8s %8s %8s %9s %8s %6s %6s%n",
+          "endpoint", "count", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "404", "errors");
+      step.endpoints().forEach((route, r) -> out.printf("  %-24s %8d %8.2f %8.2f %8.2f %9.2f %8.2f %6d %6d%n",
+          route, r.count(), r.p50Ms(), r.p90Ms(), r.p99Ms(), r.p999Ms(), r.maxMs(), r.notFound(), r.errors()));
+    }
+    out.printf("%nmax sustainable rate: %d req/s (p99 <= %d ms, errors <= %.1f%%)%n",
+        maxSustainableRate(), options.sloP99().toMillis(), options.errorBudget() * 100);
+    out.printf("report written to %s%n", options.reportDir().toAbsolutePath());
+  }
+}
@@ -0,0 +1,43 @@
+package com.bluestaq.challenge.notesvault.loadtest;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Ids the workload can target, kept in fixed slots so picking one at random is O(1)
+// under concurrency. Creates overwrite a random slot; deletes empty the slot they take,
+// so two requests never delete the same note.
+final class NotePool {
+
+  private final AtomicReferenceArray<String> slots;
+
+  NotePool(int size) {
+    this.slots = new AtomicReferenceArray<>(Math.max(1, size));
+  }
+
+  void add(String id) {
+    slots.set(ThreadLocalRandom.current().nextInt(slots.length()), id);
+  }
+
+  // null only if several random probes all hit empty slots
+  String pick() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    for (int attempt = 0; attempt < 8; attempt++) {
+      String id = slots.get(random.nextInt(slots.length()));
+      if (id != null) {
+        return id;
+      }
+    }
+    return null;
+  }
+
+  String take() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    for (int attempt = 0; attempt < 8; attempt++) {
+      String id = slots.getAndSet(random.nextInt(slots.length()), null);
+      if (id != null) {
+        return id;
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,17 @@
+package com.bluestaq.challenge.notesvault.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+// Settings for the database admission gate (notesvault.admission.* properties).
+// At most maxConcurrentReads / maxConcurrentWrites callers use SQLite at once; the
+// rest queue in arrival order and give up with a 503 after acquireTimeout.
+@ConfigurationProperties(prefix = "notesvault.admission")
+public record AdmissionProperties(
+    @DefaultValue("false") boolean enabled,
+    @DefaultValue("4") int maxConcurrentReads,
+    @DefaultValue("1") int maxConcurrentWrites,
+    @DefaultValue("5s") Duration acquireTimeout
+) {}
@@ -0,0 +1,18 @@
+package com.bluestaq.challenge.notesvault.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+// Content compression at rest (notesvault.compression.* properties), JPA engine only.
+// Notes whose UTF-8 content is at least threshold long are stored DEFLATE-compressed
+// at level (1 = fastest, 9 = smallest). Stored rows are readable either way, so the
+// setting can be switched at any time; recompress brings old rows in line.
+@ConfigurationProperties(prefix = "notesvault.compression")
+public record CompressionProperties(
+    @DefaultValue("false") boolean enabled,
+    @DefaultValue("4KB") DataSize threshold,
+    @DefaultValue("1") int level,
+    // start the background recompression of existing rows once the app is ready
+    @DefaultValue("false") boolean recompressOnStartup
+) {}
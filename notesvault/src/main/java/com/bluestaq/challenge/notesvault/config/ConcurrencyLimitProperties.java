@@ -0,0 +1,29 @@
+package com.bluestaq.challenge.notesvault.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+// Settings for the adaptive concurrency limit on the notes API (notesvault.limit.*).
+// Reads and writes each start at their initial limit and move between min and max as
+// latency changes; see AdaptiveLimit.
+@ConfigurationProperties(prefix = "notesvault.limit")
+public record ConcurrencyLimitProperties(
+    // off unless asked for: a request over the limit is refused at once with a 503
+    @DefaultValue("false") boolean enabled,
+    @DefaultValue("32") int initialReadLimit,
+    @DefaultValue("4") int minReadLimit,
+    @DefaultValue("256") int maxReadLimit,
+    @DefaultValue("8") int initialWriteLimit,
+    @DefaultValue("1") int minWriteLimit,
+    @DefaultValue("64") int maxWriteLimit,
+    // how far recent latency may rise above the long-term average before the limit drops
+    @DefaultValue("1.5") double tolerance,
+    // completed requests per adjustment
+    @DefaultValue("50") int window,
+    // weight of each adjustment; lower is steadier, higher reacts faster
+    @DefaultValue("0.2") double smoothing,
+    // sent as Retry-After on a 503
+    @DefaultValue("1s") Duration retryAfter
+) {}
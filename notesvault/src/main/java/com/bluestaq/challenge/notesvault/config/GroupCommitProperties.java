@@ -0,0 +1,16 @@
+package com.bluestaq.challenge.notesvault.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+// Settings for the group-commit writer (notesvault.group-commit.* properties).
+// A batch is committed as soon as it holds maxBatchSize writes or the first write
+// in it has waited maxLinger, whichever comes first.
+@ConfigurationProperties(prefix = "notesvault.group-commit")
+public record GroupCommitProperties(
+    @DefaultValue("false") boolean enabled,
+    @DefaultValue("64") int maxBatchSize,
+    @DefaultValue("2ms") Duration maxLinger
+) {}
@@ -0,0 +1,26 @@
+package com.bluestaq.challenge.notesvault.config;
+
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+// Response compression (notesvault.http.compression.* properties), see
+// ResponseCompressionFilter. Only responses of one of mimeTypes that reach
+// minResponseSize are compressed, and only for clients that accept the encoding.
+@ConfigurationProperties(prefix = "notesvault.http.compression")
+public record HttpCompressionProperties(
+    @DefaultValue("gzip") Mode mode,
+    @DefaultValue("2KB") DataSize minResponseSize,
+    @DefaultValue({"application/json", "application/x-ndjson"}) List<String> mimeTypes,
+    // 1 = fastest, 9 = smallest
+    @DefaultValue("1") int level
+) {
+
+  // Brotli and zstd need native codecs the JDK does not ship; gzip is what is available.
+  public enum Mode {
+    OFF,
+    GZIP
+  }
+}
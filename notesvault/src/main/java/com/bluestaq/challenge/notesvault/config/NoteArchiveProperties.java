@@ -0,0 +1,24 @@
+package com.bluestaq.challenge.notesvault.config;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+// Hot/cold tiering (notesvault.archive.* properties), JPA engine only. When enabled,
+// notes older than age are moved out of the notes table into compressed, immutable
+// segment files in directory, notesPerSegment at a time, every interval.
+@ConfigurationProperties(prefix = "notesvault.archive")
+public record NoteArchiveProperties(
+    @DefaultValue("false") boolean enabled,
+    @DefaultValue("./data/archive") Path directory,
+    @DefaultValue("30d") Duration age,
+    // 0 = no schedule; a pass can still be started over JMX
+    @DefaultValue("1h") Duration interval,
+    // notes per segment file; fewer old notes than this stay in the table until there are enough
+    @DefaultValue("10000") int notesPerSegment,
+    // uncompressed size of a compression block; reading one archived note inflates its block
+    @DefaultValue("32KB") DataSize blockSize
+) {}
@@ -0,0 +1,18 @@
+package com.bluestaq.challenge.notesvault.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+// Settings for the in-process note cache (notesvault.cache.* properties).
+// The cache evicts least-recently-used notes once either bound is exceeded.
+@ConfigurationProperties(prefix = "notesvault.cache")
+public record NoteCacheProperties(
+    @DefaultValue("true") boolean enabled,
+    @DefaultValue("10000") int maxEntries,
+    // upper bound on cached content, counted as 2 bytes per char
+    @DefaultValue("67108864") long maxContentBytes,
+    // 0 keeps entries until they are evicted or invalidated
+    @DefaultValue("0s") Duration ttl
+) {}
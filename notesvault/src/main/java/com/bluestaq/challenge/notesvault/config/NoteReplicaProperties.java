@@ -0,0 +1,15 @@
+package com.bluestaq.challenge.notesvault.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+// Settings for the in-memory read replica (notesvault.replica.* properties).
+// When enabled every note is held in the heap and GET /v1/notes and /v1/notes/{id}
+// are answered from there; maxSize bounds the replica's estimated footprint.
+@ConfigurationProperties(prefix = "notesvault.replica")
+public record NoteReplicaProperties(
+    @DefaultValue("false") boolean enabled,
+    // past this the replica is dropped and reads go back to the store
+    @DefaultValue("512MB") DataSize maxSize
+) {}
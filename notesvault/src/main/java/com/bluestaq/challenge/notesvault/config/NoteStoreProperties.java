@@ -0,0 +1,41 @@
+package com.bluestaq.challenge.notesvault.config;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+// Storage engine selection (notesvault.store.* properties).
+@ConfigurationProperties(prefix = "notesvault.store")
+public record NoteStoreProperties(
+    @DefaultValue("jpa") Engine engine,
+    @DefaultValue Log log,
+    @DefaultValue Sharded sharded
+) {
+
+  public enum Engine { JPA, LOG, SHARDED }
+
+  // Settings for the append-only log engine (notesvault.store.log.*).
+  public record Log(
+      @DefaultValue("./data/log") Path directory,
+      // size of each memory-mapped segment file; a larger note gets a segment of its own
+      @DefaultValue("64MB") DataSize segmentSize,
+      // force written pages to disk at the end of every write (off trades durability for speed)
+      @DefaultValue("true") boolean fsync,
+      @DefaultValue("1m") Duration compactionInterval,
+      // a sealed segment is rewritten once this fraction of its bytes is dead
+      @DefaultValue("0.5") double compactionGarbageRatio
+  ) {}
+
+  // Settings for the hash-sharded SQLite engine (notesvault.store.sharded.*).
+  public record Sharded(
+      // holds notes-0.db .. notes-<count-1>.db
+      @DefaultValue("./data/shards") Path directory,
+      // fixed once notes are stored; change it with ReshardTool, not here
+      @DefaultValue("4") int count,
+      // read-only connections per shard file
+      @DefaultValue("2") int readerPoolSize
+  ) {}
+}
@@ -0,0 +1,20 @@
+package com.bluestaq.challenge.notesvault.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+// Settings for the change stream, GET /v1/notes/stream (notesvault.stream.* properties).
+// bufferSize is how many recent events a reconnecting client can resume from, and how
+// far a slow client may fall behind before it is disconnected.
+@ConfigurationProperties(prefix = "notesvault.stream")
+public record NoteStreamProperties(
+    @DefaultValue("true") boolean enabled,
+    @DefaultValue("4096") int bufferSize,
+    @DefaultValue("10000") int maxSubscribers,
+    // comment line sent to every subscriber so idle connections stay open through proxies
+    @DefaultValue("30s") Duration heartbeat,
+    // connections are closed after this long; clients reconnect with Last-Event-ID
+    @DefaultValue("30m") Duration timeout
+) {}
@@ -0,0 +1,17 @@
+package com.bluestaq.challenge.notesvault.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+// Settings for delta sync, GET /v1/notes/changes (notesvault.sync.* properties).
+// Tombstones of deleted notes are kept for tombstoneRetention; a client that has not
+// synced for longer gets 410 Gone and starts over with a full sync.
+@ConfigurationProperties(prefix = "notesvault.sync")
+public record NoteSyncProperties(
+    @DefaultValue("30d") Duration tombstoneRetention,
+    @DefaultValue("1h") Duration compactionInterval,
+    // tombstones removed per write transaction, so compaction never holds the writer long
+    @DefaultValue("1000") int compactionChunkSize
+) {}
@@ -0,0 +1,310 @@
+package com.bluestaq.challenge.notesvault.config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+
+// Gzip for large JSON responses (the list and export endpoints), written as it is produced.
+//
+// The body is held back only until it reaches min-response-size. A response that ends
+// before that goes out plain, with a Content-Length; one that gets there is compressed
+// from then on and streamed, so a multi-megabyte page or export never sits in memory.
+// Tomcat's own compression (server.compression.*) cannot apply a size threshold to
+// streamed responses, which have no Content-Length, and weakens strong ETags on
+// everything it compresses - which would break If-Match on single notes.
+//
+// ETags are left as they are: they name a note version, which If-Match compares
+// strongly whatever the transfer encoding. Vary: Accept-Encoding keeps shared caches
+// from mixing the two forms. A flush() before the threshold (a client waiting on a
+// stream, such as server-sent events) sends what there is plain, and the rest follows
+// plain too; so does any body of another media type, from its first byte.
+@Component
+@EnableConfigurationProperties(HttpCompressionProperties.class)
+public class ResponseCompressionFilter extends OncePerRequestFilter {
+
+  private static final String WRAPPER_ATTRIBUTE = ResponseCompressionFilter.class.getName() + ".response";
+
+  private final boolean enabled;
+  private final int threshold;
+  private final List<String> mimeTypes;
+  private final int level;
+
+  public ResponseCompressionFilter(HttpCompressionProperties props) {
+    this.enabled = props.mode() != HttpCompressionProperties.Mode.OFF;
+    this.threshold = (int) Math.min(Integer.MAX_VALUE - 8, props.minResponseSize().toBytes());
+    this.mimeTypes = props.mimeTypes().stream().map(t -> t.toLowerCase(Locale.ROOT)).toList();
+    this.level = props.level();
+  }
+
+  @Override
+  protected boolean shouldNotFilter(HttpServletRequest request) {
+    return !enabled;
+  }
+
+  // The export endpoint writes its body asynchronously; the stream is finished when
+  // the async dispatch that ends the request comes back through here.
+  @Override
+  protected boolean shouldNotFilterAsyncDispatch() {
+    return false;
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+      throws ServletException, IOException {
+    CompressingResponse wrapper = (CompressingResponse) request.getAttribute(WRAPPER_ATTRIBUTE);
+    if (wrapper == null) {
+      if (!acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING))) {
+        chain.doFilter(request, response);
+        return;
+      }
+      wrapper = new CompressingResponse(response);
+      request.setAttribute(WRAPPER_ATTRIBUTE, wrapper);
+    }
+    chain.doFilter(request, wrapper);
+    if (!request.isAsyncStarted()) {
+      wrapper.finish();
+    }
+  }
+
+  // "gzip" listed without q=0 (a bare "*" is not taken as consent)
+  static boolean acceptsGzip(String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return false;
+    }
+    for (String part : acceptEncoding.split(",")) {
+      String[] params = part.split(";");
+      if (params[0].trim().equalsIgnoreCase("gzip")) {
+        return hasPositiveWeight(params);
+      }
+    }
+    return false;
+  }
+
+  // A q value that does not parse ("q=", "q=abc") makes the entry unacceptable rather
+  // than failing the request: RFC 9110 lets a recipient ignore what it cannot parse.
+  private static boolean hasPositiveWeight(String[] params) {
+    for (int i = 1; i < params.length; i++) {
+      String param = params[i].trim();
+      if (param.regionMatches(true, 0, "q=", 0, 2)) {
+        try {
+          // false for NaN too
+          return Double.parseDouble(param.substring(2).trim()) > 0;
+        } catch (NumberFormatException e) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private boolean isCompressible(String contentType) {
+    if (contentType == null) {
+      return false;
+    }
+    int params = contentType.indexOf(';');
+    String mime = (params < 0 ? contentType : contentType.substring(0, params)).trim().toLowerCase(Locale.ROOT);
+    return mimeTypes.contains(mime);
+  }
+
+  private final class CompressingResponse extends HttpServletResponseWrapper {
+
+    private final HttpServletResponse target;
+    // the body so far, until it is clear whether to compress
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    // where the body goes once decided: the servlet stream, or gzip around it
+    private OutputStream body;
+    private ServletOutputStream stream;
+    private PrintWriter writer;
+    private boolean finished;
+
+    CompressingResponse(HttpServletResponse target) {
+      super(target);
+      this.target = target;
+    }
+
+    // the length of the plain body; sent only when it goes out plain
+    @Override
+    public void setContentLength(int len) {
+      setContentLengthLong(len);
+    }
+
+    @Override
+    public void setContentLengthLong(long len) {
+      if (body == null && len >= 0 && len < threshold) {
+        try {
+          decide(false);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+      if (body != null && !isCompressing()) {
+        target.setContentLengthLong(len);
+      }
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() {
+      if (writer != null) {
+        throw new IllegalStateException("getWriter() has already been called");
+      }
+      if (stream == null) {
+        stream = new Stream();
+      }
+      return stream;
+    }
+
+    @Override
+    public PrintWriter getWriter() {
+      if (writer == null) {
+        if (stream != null) {
+          throw new IllegalStateException("getOutputStream() has already been called");
+        }
+        Charset charset = Charset.forName(getCharacterEncoding());
+        writer = new PrintWriter(new OutputStreamWriter(new Stream(), charset));
+      }
+      return writer;
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+      if (writer != null) {
+        writer.flush();
+      }
+      flushBody();
+      target.flushBuffer();
+    }
+
+    @Override
+    public void resetBuffer() {
+      target.resetBuffer();
+      if (body == null) {
+        pending.reset();
+      }
+    }
+
+    @Override
+    public void reset() {
+      target.reset();
+      if (body == null) {
+        pending.reset();
+      }
+    }
+
+    private boolean isCompressing() {
+      return body instanceof GZIPOutputStream;
+    }
+
+    private void write(byte[] b, int off, int len) throws IOException {
+      if (body == null) {
+        boolean compressible = isCompressible(getContentType()) && target.getHeader(HttpHeaders.CONTENT_ENCODING) == null;
+        if (compressible && pending.size() + len < threshold) {
+          pending.write(b, off, len);
+          return;
+        }
+        decide(compressible);
+      }
+      body.write(b, off, len);
+    }
+
+    private void flushBody() throws IOException {
+      if (body == null && pending.size() > 0) {
+        decide(false);
+      }
+      if (body != null) {
+        body.flush();
+      }
+    }
+
+    private void decide(boolean compress) throws IOException {
+      if (isCompressible(getContentType())) {
+        target.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+      }
+      OutputStream out = target.getOutputStream();
+      if (compress) {
+        target.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        // syncFlush: a flush() pushes out everything compressed so far
+        out = new GZIPOutputStream(out, 8192, true) {
+          {
+            def.setLevel(level);
+          }
+        };
+      }
+      body = out;
+      pending.writeTo(body);
+      pending = null;
+    }
+
+    // Ends the body: a short response is sent plain with its length, a compressed
+    // one gets its gzip trailer. The container closes the stream afterwards.
+    void finish() throws IOException {
+      if (finished) {
+        return;
+      }
+      finished = true;
+      if (writer != null) {
+        writer.flush();
+      }
+      if (body == null) {
+        if (pending.size() == 0) {
+          return;
+        }
+        if (!target.isCommitted()) {
+          target.setContentLength(pending.size());
+        }
+        decide(false);
+      }
+      if (isCompressing()) {
+        ((GZIPOutputStream) body).finish();
+      }
+      body.flush();
+    }
+
+    private final class Stream extends ServletOutputStream {
+
+      @Override
+      public void write(int b) throws IOException {
+        CompressingResponse.this.write(new byte[] {(byte) b}, 0, 1);
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException {
+        CompressingResponse.this.write(b, off, len);
+      }
+
+      @Override
+      public void flush() throws IOException {
+        flushBody();
+      }
+
+      @Override
+      public boolean isReady() {
+        return true;
+      }
+
+      @Override
+      public void setWriteListener(WriteListener listener) {
+        throw new UnsupportedOperationException("non-blocking writes are not supported with response compression");
+      }
+    }
+  }
+}
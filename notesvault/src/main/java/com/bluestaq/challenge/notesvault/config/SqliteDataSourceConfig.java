@@ -0,0 +1,121 @@
+package com.bluestaq.challenge.notesvault.config;
+
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.sqlite.Function;
+import org.sqlite.SQLiteConfig;
+import org.sqlite.SQLiteConnection;
+import org.sqlite.SQLiteDataSource;
+import org.sqlite.core.Codes;
+
+import com.bluestaq.challenge.notesvault.notes.entity.NoteContentCodec;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+// SQLite only allows one writer at a time, so instead of one general pool we keep:
+//  - a writer pool with exactly one connection; concurrent writes queue in the pool
+//    rather than colliding inside SQLite and failing with SQLITE_BUSY
+//  - a reader pool of read-only connections; in WAL mode these never block on the writer
+//
+// The DataSource that JPA sees routes on the transaction's read-only flag. The physical
+// connection is only fetched on first use (LazyConnectionDataSourceProxy), after Spring
+// has marked the transaction read-only, so @Transactional(readOnly = true) work - including
+// Spring Data's find* methods - goes to the readers and everything else to the writer.
+@Configuration
+@EnableConfigurationProperties(SqliteProperties.class)
+public class SqliteDataSourceConfig {
+
+  @Bean(destroyMethod = "close", defaultCandidate = false)
+  public HikariDataSource sqliteWriterDataSource(@Value("${spring.datasource.url}") String url, SqliteProperties props) {
+    SQLiteConfig sqlite = baseConfig(props);
+    sqlite.setJournalMode(props.journalMode());
+
+    HikariConfig pool = poolConfig("sqlite-writer", url, sqlite, props);
+    pool.setMaximumPoolSize(1);
+    // keep the writer open so the WAL and shared-memory files exist before readers connect
+    pool.setMinimumIdle(1);
+    return new HikariDataSource(pool);
+  }
+
+  @Bean(destroyMethod = "close", defaultCandidate = false)
+  public HikariDataSource sqliteReaderDataSource(@Value("${spring.datasource.url}") String url, SqliteProperties props) {
+    SQLiteConfig sqlite = baseConfig(props);
+    sqlite.setReadOnly(true);
+
+    HikariConfig pool = poolConfig("sqlite-reader", url, sqlite, props);
+    pool.setMaximumPoolSize(props.readerPoolSize());
+    pool.setReadOnly(true);
+    // readers are opened on demand, after the writer has created/migrated the file
+    pool.setMinimumIdle(0);
+    pool.setInitializationFailTimeout(-1);
+    return new HikariDataSource(pool);
+  }
+
+  @Bean
+  @Primary
+  public DataSource dataSource(
+      @Qualifier("sqliteWriterDataSource") DataSource writer,
+      @Qualifier("sqliteReaderDataSource") DataSource reader) {
+    LazyConnectionDataSourceProxy routing = new LazyConnectionDataSourceProxy(writer);
+    routing.setReadOnlyDataSource(reader);
+    return routing;
+  }
+
+  // Pragmas shared by every SQLite connection; also used for the shard files (ShardedNoteStore).
+  public static SQLiteConfig baseConfig(SqliteProperties props) {
+    SQLiteConfig sqlite = new SQLiteConfig();
+    sqlite.setSynchronous(props.synchronous());
+    sqlite.setBusyTimeout(props.busyTimeoutMs());
+    sqlite.setCacheSize(props.cacheSize());
+    sqlite.setPragma(SQLiteConfig.Pragma.MMAP_SIZE, Long.toString(props.mmapSize()));
+    return sqlite;
+  }
+
+  private static HikariConfig poolConfig(String name, String url, SQLiteConfig sqlite, SqliteProperties props) {
+    SQLiteDataSource target = new NotesSqliteDataSource(sqlite);
+    target.setUrl(url);
+
+    HikariConfig pool = new HikariConfig();
+    pool.setPoolName(name);
+    pool.setDataSource(target);
+    pool.setConnectionTimeout(props.connectionTimeoutMs());
+    return pool;
+  }
+
+  // Every connection gets note_text(content): the stored form of notes.content (plain,
+  // or compressed - see NoteContentCodec) as text. The full-text triggers index through
+  // it, so they see words rather than compressed bytes.
+  static final class NotesSqliteDataSource extends SQLiteDataSource {
+
+    NotesSqliteDataSource(SQLiteConfig config) {
+      super(config);
+    }
+
+    @Override
+    public SQLiteConnection getConnection(String username, String password) throws SQLException {
+      SQLiteConnection conn = super.getConnection(username, password);
+      Function.create(conn, "note_text", new NoteTextFunction(), 1, Function.FLAG_DETERMINISTIC);
+      return conn;
+    }
+  }
+
+  private static final class NoteTextFunction extends Function {
+    @Override
+    protected void xFunc() throws SQLException {
+      switch (value_type(0)) {
+        case Codes.SQLITE_NULL -> result();
+        case Codes.SQLITE_BLOB -> result(NoteContentCodec.decode(value_blob(0)));
+        default -> result(value_text(0));
+      }
+    }
+  }
+}
@@ -0,0 +1,26 @@
+package com.bluestaq.challenge.notesvault.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.sqlite.SQLiteConfig.JournalMode;
+import org.sqlite.SQLiteConfig.SynchronousMode;
+
+// Connection settings for the SQLite datasource (notesvault.sqlite.* properties).
+// Pragmas are applied to every connection when it is opened.
+@ConfigurationProperties(prefix = "notesvault.sqlite")
+public record SqliteProperties(
+    // WAL lets readers keep going while the single writer commits
+    @DefaultValue("WAL") JournalMode journalMode,
+    // NORMAL is durable across application crashes in WAL mode; FULL also survives power loss
+    @DefaultValue("NORMAL") SynchronousMode synchronous,
+    // how long a connection waits on a SQLite lock before failing with SQLITE_BUSY
+    @DefaultValue("5000") int busyTimeoutMs,
+    // page cache per connection; negative values are KiB, positive values are pages
+    @DefaultValue("-16384") int cacheSize,
+    // bytes of the database file to memory-map per connection (0 disables)
+    @DefaultValue("268435456") long mmapSize,
+    // read-only connections kept for GETs; writes always use one dedicated connection
+    @DefaultValue("4") int readerPoolSize,
+    // how long a request waits for a pooled connection before failing
+    @DefaultValue("30000") long connectionTimeoutMs
+) {}
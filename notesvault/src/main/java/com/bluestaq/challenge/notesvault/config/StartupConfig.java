@@ -0,0 +1,30 @@
+package com.bluestaq.challenge.notesvault.config;
+
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.bluestaq.challenge.notesvault.notes.archive.NoteArchive;
+import com.bluestaq.challenge.notesvault.notes.replica.NoteReplica;
+import com.bluestaq.challenge.notesvault.notes.service.NoteSearchService;
+import com.bluestaq.challenge.notesvault.notes.service.NoteSyncService;
+import com.bluestaq.challenge.notesvault.notes.store.NoteStore;
+
+// With spring.main.lazy-initialization=true (the prod profile) beans are created on first
+// use, except these:
+//  - the note store, and with it the data sources, SchemaMigrations and Hibernate's
+//    schema validation: a database that does not match fails startup, not the first request
+//  - NoteSearchService and NoteSyncService, whose startup trigger checks only run for
+//    eagerly created beans
+//  - NoteReplica, which loads every note at startup for the same reason
+//  - NoteArchive, which checks its segment files against the database and schedules
+//    the tiering job
+@Configuration
+public class StartupConfig {
+
+  @Bean
+  static LazyInitializationExcludeFilter eagerNoteStorage() {
+    return LazyInitializationExcludeFilter.forBeanTypes(NoteStore.class, NoteSearchService.class,
+        NoteSyncService.class, NoteReplica.class, NoteArchive.class);
+  }
+}
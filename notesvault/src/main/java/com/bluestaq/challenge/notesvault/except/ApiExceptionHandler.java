@@ -2,6 +2,7 @@ package com.bluestaq.challenge.notesvault.except;
 
 import java.util.Map;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -43,4 +44,50 @@ public class ApiExceptionHandler {
       return ResponseEntity.badRequest().body(Map.of("error", ex.getMessage()));
   }
 
-}
\ No newline at end of file
+  // This method handles InvalidPageRequestException, which is thrown when list paging
+  // parameters are out of range or the cursor cannot be decoded.
+  // It returns a 400 Bad Request response with a JSON body containing the error message.
+  @ExceptionHandler(InvalidPageRequestException.class)
+  public ResponseEntity<Map<String, String>> handleInvalidPageRequest(InvalidPageRequestException ex) {
+    return ResponseEntity.badRequest().body(Map.of("error", ex.getMessage()));
+  }
+
+  // This method handles FeatureUnavailableException, which is thrown when an endpoint
+  // depends on something the configured storage engine does not provide (e.g. search).
+  // It returns a 501 Not Implemented response with a JSON body containing the error message.
+  @ExceptionHandler(FeatureUnavailableException.class)
+  public ResponseEntity<Map<String, String>> handleFeatureUnavailable(FeatureUnavailableException ex) {
+    return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED)
+        .body(Map.of("error", ex.getMessage()));
+  }
+
+  // This method handles PreconditionFailedException, which is thrown when an If-Match
+  // header names a version the note no longer has (someone else changed it first).
+  // It returns a 412 Precondition Failed response with a JSON body containing the error message.
+  @ExceptionHandler(PreconditionFailedException.class)
+  public ResponseEntity<Map<String, String>> handlePreconditionFailed(PreconditionFailedException ex) {
+    return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+        .body(Map.of("error", ex.getMessage()));
+  }
+
+  // This method handles SyncTokenExpiredException, which is thrown when a delta-sync
+  // token is older than the retained tombstones (or from another database).
+  // It returns a 410 Gone response; the client starts over with a full sync.
+  @ExceptionHandler(SyncTokenExpiredException.class)
+  public ResponseEntity<Map<String, String>> handleSyncTokenExpired(SyncTokenExpiredException ex) {
+    return ResponseEntity.status(HttpStatus.GONE)
+        .body(Map.of("error", ex.getMessage()));
+  }
+
+  // This method handles ServiceBusyException, which is thrown when a request waited too
+  // long for a database slot at the admission gate.
+  // It returns a 503 Service Unavailable response with a JSON body containing the error message,
+  // and Retry-After like the 503s from ConcurrencyLimitFilter.
+  @ExceptionHandler(ServiceBusyException.class)
+  public ResponseEntity<Map<String, String>> handleServiceBusy(ServiceBusyException ex) {
+    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+        .header(HttpHeaders.RETRY_AFTER, "1")
+        .body(Map.of("error", ex.getMessage()));
+  }
+
+}
@@ -0,0 +1,7 @@
+package com.bluestaq.challenge.notesvault.except;
+
+public class FeatureUnavailableException extends RuntimeException {
+  public FeatureUnavailableException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,7 @@
+package com.bluestaq.challenge.notesvault.except;
+
+public class InvalidPageRequestException extends RuntimeException {
+  public InvalidPageRequestException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,7 @@
+package com.bluestaq.challenge.notesvault.except;
+
+public class PreconditionFailedException extends RuntimeException {
+  public PreconditionFailedException(String message) {
+    super(message);
+  }
+}
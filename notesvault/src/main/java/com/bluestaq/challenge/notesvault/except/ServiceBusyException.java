@@ -0,0 +1,7 @@
+package com.bluestaq.challenge.notesvault.except;
+
+public class ServiceBusyException extends RuntimeException {
+  public ServiceBusyException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,7 @@
+package com.bluestaq.challenge.notesvault.except;
+
+public class SyncTokenExpiredException extends RuntimeException {
+  public SyncTokenExpiredException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,27 @@
+package com.bluestaq.challenge.notesvault.notes.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import jakarta.validation.constraints.NotNull;
+
+// One entry of a batch request.
+// - create: content required, id ignored
+// - update: id and content required
+// - delete: id required
+// Per-item problems (missing id, blank content, unknown note) are reported in that
+// item's result rather than failing the whole batch.
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record BatchNoteOperation(
+    @NotNull(message = "op must be one of create, update, delete")
+    Op op,
+    String id,
+    String content
+) {
+
+  public enum Op {
+    @JsonProperty("create") CREATE,
+    @JsonProperty("update") UPDATE,
+    @JsonProperty("delete") DELETE
+  }
+}
@@ -0,0 +1,18 @@
+package com.bluestaq.challenge.notesvault.notes.api.dto;
+
+import java.util.List;
+
+import com.bluestaq.challenge.notesvault.notes.service.NoteBatchService;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+// Request body for POST /v1/notes/batch. Operations are applied in order.
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record BatchNoteRequest(
+    @NotEmpty(message = "operations must not be empty")
+    @Size(max = NoteBatchService.MAX_BATCH_SIZE, message = "operations must contain at most " + NoteBatchService.MAX_BATCH_SIZE + " items")
+    List<@Valid BatchNoteOperation> operations
+) {}
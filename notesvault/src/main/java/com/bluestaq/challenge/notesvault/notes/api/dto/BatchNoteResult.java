@@ -0,0 +1,16 @@
+package com.bluestaq.challenge.notesvault.notes.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+// Outcome of one batch operation. status mirrors the HTTP status the equivalent
+// single-note call would have returned (201, 200, 204, 400 or 404).
+// note is present for successful creates and updates, error for failures.
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BatchNoteResult(
+    int index,
+    BatchNoteOperation.Op op,
+    int status,
+    String id,
+    NoteResponse note,
+    String error
+) {}
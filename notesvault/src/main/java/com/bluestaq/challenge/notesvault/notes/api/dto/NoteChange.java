@@ -0,0 +1,25 @@
+package com.bluestaq.challenge.notesvault.notes.api.dto;
+
+import java.time.Instant;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+// One entry of GET /v1/notes/changes: a note created or updated since the sync token,
+// in full with its version (the ETag value), or a deleted note, with only its id.
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record NoteChange(
+    String id,
+    boolean deleted,
+    Long version,
+    Instant createdAt,
+    String content
+) {
+
+  public static NoteChange upserted(String id, long version, Instant createdAt, String content) {
+    return new NoteChange(id, false, version, createdAt, content);
+  }
+
+  public static NoteChange deleted(String id) {
+    return new NoteChange(id, true, null, null, null);
+  }
+}
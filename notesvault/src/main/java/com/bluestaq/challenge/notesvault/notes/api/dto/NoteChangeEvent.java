@@ -0,0 +1,25 @@
+package com.bluestaq.challenge.notesvault.notes.api.dto;
+
+import java.time.Instant;
+
+import com.bluestaq.challenge.notesvault.notes.entity.NoteEntity;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+// The data of one GET /v1/notes/stream event. Created and updated notes are sent in
+// full, with the version their ETag carries; a deleted note only has its id.
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record NoteChangeEvent(
+    String id,
+    Long version,
+    Instant createdAt,
+    String content
+) {
+
+  public static NoteChangeEvent of(NoteEntity note) {
+    return new NoteChangeEvent(note.getId(), note.getVersion(), note.getCreatedAt(), note.getContent());
+  }
+
+  public static NoteChangeEvent deleted(String id) {
+    return new NoteChangeEvent(id, null, null, null);
+  }
+}
@@ -0,0 +1,8 @@
+package com.bluestaq.challenge.notesvault.notes.api.dto;
+
+import java.util.List;
+
+// Body of GET /v1/notes/changes: changes in the order they were made, and the token to
+// pass as since next time. When hasMore is true there are further changes already;
+// ask again with syncToken straight away.
+public record NoteChangeSet(List<NoteChange> changes, String syncToken, boolean hasMore) {}
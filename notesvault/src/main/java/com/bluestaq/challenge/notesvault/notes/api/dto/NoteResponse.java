@@ -2,10 +2,21 @@ package com.bluestaq.challenge.notesvault.notes.api.dto;
 
 import java.time.Instant;
 
+import com.bluestaq.challenge.notesvault.notes.entity.NoteEntity;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 // DTO class to represent the response for a note. 
 // This is used to send note data back to the client in a structured format.
+// The read endpoints get it straight from the database as a projection (see
+// NoteRepository); version travels along for the ETag header but is not in the body.
 public record NoteResponse(
     String id,
     Instant createdAt,
-    String content
-) {}
+    String content,
+    @JsonIgnore long version
+) {
+
+  public static NoteResponse of(NoteEntity note) {
+    return new NoteResponse(note.getId(), note.getCreatedAt(), note.getContent(), note.getVersion());
+  }
+}
@@ -0,0 +1,12 @@
+package com.bluestaq.challenge.notesvault.notes.api.dto;
+
+import java.time.Instant;
+
+// One full-text search match. snippet is an excerpt of the content around the
+// matched terms, with matches wrapped in [brackets]. Lower score is a better match.
+public record NoteSearchHit(
+    String id,
+    Instant createdAt,
+    String snippet,
+    double score
+) {}
@@ -0,0 +1,412 @@
+package com.bluestaq.challenge.notesvault.notes.archive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32C;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import com.bluestaq.challenge.notesvault.notes.api.dto.NoteResponse;
+import com.bluestaq.challenge.notesvault.notes.entity.NoteIds;
+
+// One immutable archive segment file. Layout (big-endian):
+//
+//   header       magic, format, note count, block count, section offsets, file length,
+//                crc32c of everything after the blocks
+//   blocks       DEFLATE-compressed runs of content records (int UTF-8 length, bytes)
+//   block index  per block: long file offset, int compressed length, int raw length,
+//                int crc32c of the raw bytes
+//   entries      per note, newest first by (createdAt, id): long createdAt seconds,
+//                int nanos, long version, int key offset, int block, int offset in block
+//   id index     per note: its entry number, sorted by id
+//   keys         per note: short length, then the id as SQLite stores it (NoteIds.toBytes)
+//
+// Ids compare as unsigned bytes, the way SQLite compares the BLOB column, so entries
+// sort exactly like the table's (created_at, id) index.
+//
+// Written once into a temporary file, forced and renamed into place, then only read
+// through a read-only mapping, which readers share without locks. A note is found by a
+// binary search of the id index, a page by a binary search of the entries. Only
+// content is compressed, so both searches run on the mapping as it is.
+final class ArchiveSegment {
+
+  private static final int MAGIC = 0x4E564152; // "NVAR"
+  private static final int FORMAT = 1;
+  private static final int HEADER_BYTES = 64;
+  private static final int BLOCK_INDEX_BYTES = 20;
+  private static final int ENTRY_BYTES = 32;
+
+  // written once and rarely read, so the smallest output is worth the extra CPU
+  private static final int LEVEL = Deflater.BEST_COMPRESSION;
+
+  private static final Pattern NAME = Pattern.compile("archive-(\\d{10})\\.seg");
+
+  final int number;
+  final Path path;
+  private final ByteBuffer buffer;
+  private final int count;
+  private final int blockIndexOffset;
+  private final int entriesOffset;
+  private final int idIndexOffset;
+  private final int keysOffset;
+  // bounds, for skipping segments a lookup or page cannot touch
+  private final byte[] minKey;
+  private final byte[] maxKey;
+
+  private ArchiveSegment(int number, Path path, ByteBuffer buffer) throws IOException {
+    this.number = number;
+    this.path = path;
+    this.buffer = buffer;
+    if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+      throw new IOException("not an archive segment: " + path);
+    }
+    if (buffer.getInt(4) != FORMAT) {
+      throw new IOException("archive segment " + path + " has unknown format " + buffer.getInt(4));
+    }
+    this.count = buffer.getInt(8);
+    this.blockIndexOffset = (int) buffer.getLong(16);
+    this.entriesOffset = (int) buffer.getLong(24);
+    this.idIndexOffset = (int) buffer.getLong(32);
+    this.keysOffset = (int) buffer.getLong(40);
+    long length = buffer.getLong(48);
+    if (length != buffer.capacity() || count < 1) {
+      throw new IOException("archive segment " + path + " is truncated");
+    }
+    CRC32C crc = new CRC32C();
+    crc.update(buffer.slice(blockIndexOffset, (int) length - blockIndexOffset));
+    if ((int) crc.getValue() != buffer.getInt(56)) {
+      throw new IOException("archive segment " + path + " has a corrupt index");
+    }
+    this.minKey = key(idIndex(0));
+    this.maxKey = key(idIndex(count - 1));
+  }
+
+  static Path fileName(Path directory, int number) {
+    return directory.resolve(String.format("archive-%010d.seg", number));
+  }
+
+  static boolean isSegmentFile(Path file) {
+    return NAME.matcher(file.getFileName().toString()).matches();
+  }
+
+  // left behind by a write that did not finish
+  static boolean isTempFile(Path file) {
+    String name = file.getFileName().toString();
+    return name.startsWith("archive-") && name.endsWith(".seg.tmp");
+  }
+
+  static int numberOf(Path file) {
+    Matcher name = NAME.matcher(file.getFileName().toString());
+    if (!name.matches()) {
+      throw new IllegalArgumentException("not an archive segment file: " + file);
+    }
+    return Integer.parseInt(name.group(1));
+  }
+
+  static ArchiveSegment open(Path path, int number) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException("archive segment larger than 2 GiB: " + path);
+      }
+      // the mapping stays valid once the channel is closed
+      MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      return new ArchiveSegment(number, path, mapping);
+    }
+  }
+
+  // Writes notes, newest first, as segment number in directory and opens it.
+  static ArchiveSegment write(Path directory, int number, List<NoteResponse> newestFirst, int blockSize)
+      throws IOException {
+    ByteArrayOutputStream blocks = new ByteArrayOutputStream();
+    ByteArrayOutputStream index = new ByteArrayOutputStream();
+    DataOutputStream blockIndex = new DataOutputStream(index);
+    ByteArrayOutputStream entryBytes = new ByteArrayOutputStream(newestFirst.size() * ENTRY_BYTES);
+    DataOutputStream entries = new DataOutputStream(entryBytes);
+    ByteArrayOutputStream keyBytes = new ByteArrayOutputStream(newestFirst.size() * 18);
+    DataOutputStream keys = new DataOutputStream(keyBytes);
+    ByteArrayOutputStream raw = new ByteArrayOutputStream(blockSize + 1024);
+    DataOutputStream records = new DataOutputStream(raw);
+
+    List<byte[]> ids = new ArrayList<>(newestFirst.size());
+    int block = 0;
+    for (NoteResponse note : newestFirst) {
+      byte[] key = NoteIds.toBytes(note.id());
+      byte[] content = note.content().getBytes(StandardCharsets.UTF_8);
+      ids.add(key);
+      entries.writeLong(note.createdAt().getEpochSecond());
+      entries.writeInt(note.createdAt().getNano());
+      entries.writeLong(note.version());
+      entries.writeInt(keyBytes.size());
+      entries.writeInt(block);
+      entries.writeInt(raw.size());
+      keys.writeShort(key.length);
+      keys.write(key);
+      records.writeInt(content.length);
+      records.write(content);
+      if (raw.size() >= blockSize) {
+        writeBlock(raw, blocks, blockIndex);
+        block++;
+      }
+    }
+    if (raw.size() > 0) {
+      writeBlock(raw, blocks, blockIndex);
+      block++;
+    }
+
+    ByteArrayOutputStream idIndexBytes = new ByteArrayOutputStream(ids.size() * 4);
+    DataOutputStream idIndex = new DataOutputStream(idIndexBytes);
+    int[] byId = IntStream.range(0, ids.size()).boxed()
+        .sorted(Comparator.comparing(ids::get, Arrays::compareUnsigned))
+        .mapToInt(Integer::intValue)
+        .toArray();
+    for (int entry : byId) {
+      idIndex.writeInt(entry);
+    }
+
+    long blockIndexOffset = HEADER_BYTES + (long) blocks.size();
+    long entriesOffset = blockIndexOffset + index.size();
+    long idIndexOffset = entriesOffset + entryBytes.size();
+    long keysOffset = idIndexOffset + idIndexBytes.size();
+    long length = keysOffset + keyBytes.size();
+    if (length > Integer.MAX_VALUE) {
+      throw new IOException("archive segment would be larger than 2 GiB; lower notesvault.archive.notes-per-segment");
+    }
+    CRC32C crc = new CRC32C();
+    crc.update(index.toByteArray());
+    crc.update(entryBytes.toByteArray());
+    crc.update(idIndexBytes.toByteArray());
+    crc.update(keyBytes.toByteArray());
+
+    ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+        .putInt(MAGIC)
+        .putInt(FORMAT)
+        .putInt(newestFirst.size())
+        .putInt(block)
+        .putLong(blockIndexOffset)
+        .putLong(entriesOffset)
+        .putLong(idIndexOffset)
+        .putLong(keysOffset)
+        .putLong(length)
+        .putInt((int) crc.getValue())
+        // the whole header, padding included
+        .rewind();
+
+    Path target = fileName(directory, number);
+    Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+    try (FileChannel channel = FileChannel.open(temp,
+        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      for (ByteBuffer section : List.of(header, ByteBuffer.wrap(blocks.toByteArray()), ByteBuffer.wrap(index.toByteArray()),
+          ByteBuffer.wrap(entryBytes.toByteArray()), ByteBuffer.wrap(idIndexBytes.toByteArray()),
+          ByteBuffer.wrap(keyBytes.toByteArray()))) {
+        while (section.hasRemaining()) {
+          channel.write(section);
+        }
+      }
+      channel.force(true);
+    }
+    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+    return open(target, number);
+  }
+
+  private static void writeBlock(ByteArrayOutputStream raw, ByteArrayOutputStream blocks, DataOutputStream blockIndex)
+      throws IOException {
+    byte[] bytes = raw.toByteArray();
+    byte[] packed = deflate(bytes);
+    CRC32C crc = new CRC32C();
+    crc.update(bytes);
+    blockIndex.writeLong(HEADER_BYTES + (long) blocks.size());
+    blockIndex.writeInt(packed.length);
+    blockIndex.writeInt(bytes.length);
+    blockIndex.writeInt((int) crc.getValue());
+    blocks.write(packed);
+    raw.reset();
+  }
+
+  int count() {
+    return count;
+  }
+
+  long bytes() {
+    return buffer.capacity();
+  }
+
+  Instant newest() {
+    return createdAt(0);
+  }
+
+  Instant oldest() {
+    return createdAt(count - 1);
+  }
+
+  Instant createdAt(int entry) {
+    int at = entriesOffset + entry * ENTRY_BYTES;
+    return Instant.ofEpochSecond(buffer.getLong(at), buffer.getInt(at + 8));
+  }
+
+  long version(int entry) {
+    return buffer.getLong(entriesOffset + entry * ENTRY_BYTES + 12);
+  }
+
+  byte[] key(int entry) {
+    int at = keysOffset + buffer.getInt(entriesOffset + entry * ENTRY_BYTES + 20);
+    byte[] key = new byte[buffer.getShort(at) & 0xFFFF];
+    buffer.get(at + 2, key);
+    return key;
+  }
+
+  String id(int entry) {
+    return NoteIds.fromBytes(key(entry));
+  }
+
+  private int idIndex(int position) {
+    return buffer.getInt(idIndexOffset + position * 4);
+  }
+
+  // The entry holding the note with this id (in NoteIds.toBytes form), or -1.
+  int find(byte[] key) {
+    if (Arrays.compareUnsigned(key, minKey) < 0 || Arrays.compareUnsigned(key, maxKey) > 0) {
+      return -1;
+    }
+    int low = 0;
+    int high = count - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int entry = idIndex(mid);
+      int cmp = Arrays.compareUnsigned(key(entry), key);
+      if (cmp < 0) {
+        low = mid + 1;
+      } else if (cmp > 0) {
+        high = mid - 1;
+      } else {
+        return entry;
+      }
+    }
+    return -1;
+  }
+
+  // Whether the segment may hold notes with lower < createdAt <= upper.
+  boolean overlaps(Instant lower, Instant upper) {
+    return newest().isAfter(lower) && !oldest().isAfter(upper);
+  }
+
+  // The first entry below (createdAt, key), i.e. where a page with that upper bound
+  // starts; count when there is none.
+  int firstBefore(Instant createdAt, byte[] key) {
+    int low = 0;
+    int high = count;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (compare(mid, createdAt, key) < 0) {
+        high = mid;
+      } else {
+        low = mid + 1;
+      }
+    }
+    return low;
+  }
+
+  // Orders entry against (createdAt, key) oldest first, like the table's index.
+  int compare(int entry, Instant createdAt, byte[] key) {
+    int cmp = createdAt(entry).compareTo(createdAt);
+    return (cmp != 0) ? cmp : Arrays.compareUnsigned(key(entry), key);
+  }
+
+  static int compare(ArchiveSegment a, int entryA, ArchiveSegment b, int entryB) {
+    return a.compare(entryA, b.createdAt(entryB), b.key(entryB));
+  }
+
+  Reader reader() {
+    return new Reader();
+  }
+
+  // Reads notes out of the segment, inflating each block once for a run of neighbours.
+  // One per call; not shared between threads.
+  final class Reader {
+
+    private int block = -1;
+    private byte[] raw;
+
+    NoteResponse read(int entry) {
+      int at = entriesOffset + entry * ENTRY_BYTES;
+      int entryBlock = buffer.getInt(at + 24);
+      int offset = buffer.getInt(at + 28);
+      if (entryBlock != block) {
+        raw = inflate(entryBlock);
+        block = entryBlock;
+      }
+      int length = ByteBuffer.wrap(raw, offset, 4).getInt();
+      String content = new String(raw, offset + 4, length, StandardCharsets.UTF_8);
+      return new NoteResponse(id(entry), createdAt(entry), content, version(entry));
+    }
+  }
+
+  private byte[] inflate(int block) {
+    int at = blockIndexOffset + block * BLOCK_INDEX_BYTES;
+    int offset = (int) buffer.getLong(at);
+    int packedLength = buffer.getInt(at + 8);
+    byte[] packed = new byte[packedLength];
+    buffer.get(offset, packed);
+    byte[] raw = new byte[buffer.getInt(at + 12)];
+    Inflater inflater = new Inflater(true);
+    try {
+      inflater.setInput(packed);
+      int n = 0;
+      while (n < raw.length) {
+        int read = inflater.inflate(raw, n, raw.length - n);
+        if (read == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+          throw new IllegalStateException("archive segment " + path + " has a truncated block " + block);
+        }
+        n += read;
+      }
+    } catch (DataFormatException e) {
+      throw new IllegalStateException("archive segment " + path + " has a corrupt block " + block, e);
+    } finally {
+      inflater.end();
+    }
+    CRC32C crc = new CRC32C();
+    crc.update(raw);
+    if ((int) crc.getValue() != buffer.getInt(at + 16)) {
+      throw new IllegalStateException("archive segment " + path + " has a corrupt block " + block);
+    }
+    return raw;
+  }
+
+  private static byte[] deflate(byte[] input) {
+    Deflater deflater = new Deflater(LEVEL, true);
+    try {
+      deflater.setInput(input);
+      deflater.finish();
+      ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 4 + 64);
+      byte[] chunk = new byte[8192];
+      while (!deflater.finished()) {
+        out.write(chunk, 0, deflater.deflate(chunk));
+      }
+      return out.toByteArray();
+    } finally {
+      deflater.end();
+    }
+  }
+
+  void delete() throws IOException {
+    Files.deleteIfExists(path);
+  }
+}
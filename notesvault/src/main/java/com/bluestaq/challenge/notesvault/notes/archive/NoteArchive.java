@@ -0,0 +1,580 @@
+package com.bluestaq.challenge.notesvault.notes.archive;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.bluestaq.challenge.notesvault.config.NoteArchiveProperties;
+import com.bluestaq.challenge.notesvault.notes.api.dto.NoteResponse;
+import com.bluestaq.challenge.notesvault.notes.entity.NoteEntity;
+import com.bluestaq.challenge.notesvault.notes.entity.NoteIds;
+import com.bluestaq.challenge.notesvault.notes.repo.NoteArchiveRepository;
+import com.bluestaq.challenge.notesvault.notes.store.AdmissionGate;
+import com.bluestaq.challenge.notesvault.notes.store.NoteStore;
+
+// Cold tier of the vault. Notes older than notesvault.archive.age are moved out of the
+// notes table into immutable, compressed segment files (see ArchiveSegment), so the
+// table and its indexes keep only the notes still in use and stay small enough to live
+// in SQLite's page cache. JPA engine only.
+//
+// Reads fall through: NoteService looks in the table first and here on a miss, list
+// pages merge both tiers in (createdAt, id) order, and export and the replica's load
+// stream both. A note in both tiers (only while a move commits) counts once, from the
+// table. An archived note that is written again is restored first: copied back into
+// the table unchanged, in the same transaction as the write, with its archived copy
+// hidden (note_archive_hidden). Deletes go the same way, so they leave a tombstone for
+// delta sync like any other.
+//
+// A pass (every interval, or over JMX) takes the oldest notes older than age,
+// notesPerSegment at a time, and writes them to a new segment file. One write
+// transaction then deletes them from the table where their version is unchanged, hides
+// the copies of notes changed or deleted since they were read, records the segment and
+// makes it visible. A segment file without its row, left by a crash before that
+// commit, is deleted at startup.
+//
+// Search and delta sync only see the table. A full sync (NoteSyncService) reads the
+// archive after the table, segment by segment in readVisible. Stats over JMX as
+// notesvault:type=NoteArchive.
+@Component
+@EnableConfigurationProperties(NoteArchiveProperties.class)
+@ManagedResource(objectName = "notesvault:type=NoteArchive", description = "Cold note archive")
+public class NoteArchive implements InitializingBean, SmartInitializingSingleton, DisposableBean {
+
+  private static final Logger log = LoggerFactory.getLogger(NoteArchive.class);
+
+  // the first page of a pass starts here, as NoteService's open lower bound
+  private static final Instant OLDEST = Instant.parse("1000-01-01T00:00:00Z");
+
+  private final boolean enabled;
+  private final Path directory;
+  private final Duration age;
+  private final Duration interval;
+  private final int notesPerSegment;
+  private final int blockSize;
+  private final NoteStore noteStore;
+  private final AdmissionGate admission;
+  private final NoteArchiveRepository repository;
+  private final ScheduledExecutorService mover = Executors.newSingleThreadScheduledExecutor(
+      Thread.ofPlatform().name("note-archive").daemon(true).factory());
+
+  // newest segment first; replaced as a whole when a segment is added
+  private volatile List<ArchiveSegment> segments = List.of();
+  // note id -> highest segment whose copy of the note no longer counts
+  private final Map<String, Integer> hidden = new ConcurrentHashMap<>();
+  // guarded by the pass monitor
+  private int nextSegment = 1;
+
+  private final AtomicLong notesRestored = new AtomicLong();
+  private volatile long notesArchived;
+  private volatile long lastPassMillis;
+
+  public NoteArchive(NoteArchiveProperties props, NoteStore noteStore, AdmissionGate admission,
+      ObjectProvider<NoteArchiveRepository> repository) {
+    this.enabled = props.enabled();
+    this.directory = props.directory();
+    this.age = props.age();
+    this.interval = props.interval();
+    this.notesPerSegment = props.notesPerSegment();
+    this.blockSize = (int) props.blockSize().toBytes();
+    this.noteStore = noteStore;
+    this.admission = admission;
+    this.repository = repository.getIfAvailable();
+    if (enabled && this.repository == null) {
+      throw new IllegalStateException("notesvault.archive.enabled needs the jpa storage engine");
+    }
+  }
+
+  // Opens the segments at bean creation, so they are in place before anything streams
+  // the vault (the replica loads in afterSingletonsInstantiated).
+  @Override
+  public void afterPropertiesSet() throws IOException {
+    if (!enabled) {
+      return;
+    }
+    Files.createDirectories(directory);
+    Map<Integer, Long> recorded = repository.segments();
+    List<Path> files;
+    try (Stream<Path> listing = Files.list(directory)) {
+      files = listing.filter(f -> ArchiveSegment.isSegmentFile(f) || ArchiveSegment.isTempFile(f)).toList();
+    }
+    int highest = 0;
+    for (Path file : files) {
+      if (ArchiveSegment.isTempFile(file) || !recorded.containsKey(ArchiveSegment.numberOf(file))) {
+        log.warn("deleting {}, left by an archive pass that did not finish", file);
+        Files.delete(file);
+      } else {
+        highest = Math.max(highest, ArchiveSegment.numberOf(file));
+      }
+    }
+
+    List<ArchiveSegment> opened = new ArrayList<>(recorded.size());
+    for (Map.Entry<Integer, Long> segment : recorded.entrySet()) {
+      Path file = ArchiveSegment.fileName(directory, segment.getKey());
+      if (!Files.exists(file)) {
+        throw new IllegalStateException("archive segment " + file + " is missing; its notes are not in the table");
+      }
+      ArchiveSegment opening = ArchiveSegment.open(file, segment.getKey());
+      if (opening.count() != segment.getValue()) {
+        throw new IllegalStateException("archive segment " + file + " holds " + opening.count()
+            + " notes; " + segment.getValue() + " were archived into it");
+      }
+      opened.add(opening);
+      highest = Math.max(highest, segment.getKey());
+    }
+    opened.sort(Comparator.comparingInt((ArchiveSegment s) -> s.number).reversed());
+    segments = List.copyOf(opened);
+    hidden.putAll(repository.hidden());
+    nextSegment = highest + 1;
+    log.info("note archive: {} segments, {} notes", opened.size(), getSegmentNotes());
+  }
+
+  @Override
+  public void afterSingletonsInstantiated() {
+    long intervalMs = interval.toMillis();
+    if (enabled && intervalMs > 0) {
+      mover.scheduleWithFixedDelay(this::archiveQuietly, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  // --- reads ---
+
+  // The note's archived copy, unless it has since been restored or deleted. Callers
+  // look in the table first; a copy hidden in the meantime sends them back there.
+  public Optional<NoteResponse> findResponseById(String id) {
+    if (!enabled) {
+      return Optional.empty();
+    }
+    for (ArchiveSegment segment : segments) {
+      int entry = segment.find(NoteIds.toBytes(id));
+      if (entry >= 0) {
+        return isVisible(id, segment)
+            ? Optional.of(segment.reader().read(entry))
+            : noteStore.findResponseById(id);
+      }
+    }
+    return Optional.empty();
+  }
+
+  // Merges a page read from the table with the archive. tablePage must be
+  // NoteStore.findResponsePageBefore for the same bounds and limit; the result is what
+  // that call would return if the archived notes were still in the table.
+  public List<NoteResponse> mergePageBefore(List<NoteResponse> tablePage, Instant lowerCreatedAt,
+      Instant upperCreatedAt, String upperId, int limit) {
+    List<ArchiveSegment> current = segments;
+    if (!enabled || current.isEmpty()) {
+      return tablePage;
+    }
+    byte[] upperKey = NoteIds.toBytes(upperId);
+    PriorityQueue<Cursor> archived = new PriorityQueue<>();
+    for (ArchiveSegment segment : current) {
+      if (segment.overlaps(lowerCreatedAt, upperCreatedAt)) {
+        Cursor cursor = new Cursor(segment, segment.firstBefore(upperCreatedAt, upperKey), lowerCreatedAt);
+        if (cursor.seekVisible()) {
+          archived.add(cursor);
+        }
+      }
+    }
+    if (archived.isEmpty()) {
+      return tablePage;
+    }
+
+    List<NoteResponse> page = new ArrayList<>(limit);
+    int next = 0;
+    while (page.size() < limit && (next < tablePage.size() || !archived.isEmpty())) {
+      NoteResponse fromTable = (next < tablePage.size()) ? tablePage.get(next) : null;
+      int cmp = archived.isEmpty() ? -1 : (fromTable == null) ? 1 : compareToCursor(archived.peek(), fromTable);
+      if (cmp <= 0) {
+        page.add(fromTable);
+        next++;
+      }
+      if (cmp >= 0) {
+        // newer than the table's next note, or the same note (the table's copy wins)
+        Cursor cursor = archived.poll();
+        if (cmp > 0) {
+          page.add(cursor.read());
+        }
+        cursor.entry++;
+        if (cursor.seekVisible()) {
+          archived.add(cursor);
+        }
+      }
+    }
+    return page;
+  }
+
+  // Every note in both tiers, newest first: NoteStore.streamNewestFirst with the
+  // archive merged in.
+  public void streamNewestFirst(Consumer<NoteEntity> sink) {
+    List<ArchiveSegment> current = segments;
+    if (!enabled || current.isEmpty()) {
+      noteStore.streamNewestFirst(sink);
+      return;
+    }
+    PriorityQueue<Cursor> archived = new PriorityQueue<>();
+    for (ArchiveSegment segment : current) {
+      Cursor cursor = new Cursor(segment, 0, null);
+      if (cursor.seekVisible()) {
+        archived.add(cursor);
+      }
+    }
+    noteStore.streamNewestFirst(note -> {
+      NoteResponse fromTable = NoteResponse.of(note);
+      int cmp;
+      while (!archived.isEmpty() && (cmp = compareToCursor(archived.peek(), fromTable)) >= 0) {
+        Cursor cursor = archived.poll();
+        if (cmp > 0) {
+          sink.accept(toEntity(cursor.read()));
+        }
+        cursor.entry++;
+        if (cursor.seekVisible()) {
+          archived.add(cursor);
+        }
+      }
+      sink.accept(note);
+    });
+    while (!archived.isEmpty()) {
+      Cursor cursor = archived.poll();
+      sink.accept(toEntity(cursor.read()));
+      cursor.entry++;
+      if (cursor.seekVisible()) {
+        archived.add(cursor);
+      }
+    }
+  }
+
+  // Where a readVisible pass stands: the next entry to look at, in segment number order.
+  public record Position(int segment, int entry) {
+  }
+
+  // Reads up to limit current archived copies from position from on, oldest segment
+  // first and in entry order within a segment. Returns where the next call carries on,
+  // or null when nothing is left. Segments never change once written and new ones get
+  // higher numbers, so a position stays good between calls; a note archived in the
+  // meantime is reached in its new segment.
+  public Position readVisible(Position from, int limit, Consumer<NoteResponse> sink) {
+    if (!enabled) {
+      return null;
+    }
+    int taken = 0;
+    for (ArchiveSegment segment : segments.reversed()) {
+      if (segment.number < from.segment()) {
+        continue;
+      }
+      ArchiveSegment.Reader reader = segment.reader();
+      for (int entry = (segment.number == from.segment()) ? from.entry() : 0; entry < segment.count(); entry++) {
+        if (!hidden.isEmpty() && !isVisible(segment.id(entry), segment)) {
+          continue;
+        }
+        if (taken == limit) {
+          return new Position(segment.number, entry);
+        }
+        sink.accept(reader.read(entry));
+        taken++;
+      }
+    }
+    return null;
+  }
+
+  // --- restore ---
+
+  public enum Copy {
+    // never archived
+    NONE,
+    // archived, but restored or deleted since
+    HIDDEN,
+    // archived and current
+    VISIBLE
+  }
+
+  // What the archive holds for the note, from the in-memory index alone: lets a write
+  // that missed the table skip the restore transaction for notes never archived. Only
+  // a hint; restore decides for certain.
+  public Copy copyOf(String id) {
+    if (!enabled) {
+      return Copy.NONE;
+    }
+    for (ArchiveSegment segment : segments) {
+      if (segment.find(NoteIds.toBytes(id)) >= 0) {
+        return isVisible(id, segment) ? Copy.VISIBLE : Copy.HIDDEN;
+      }
+    }
+    return Copy.NONE;
+  }
+
+  public boolean restore(String id) {
+    return restore(id, null);
+  }
+
+  // Copies an archived note back into the table as it was and hides the archived copy,
+  // so that a write to the note can go ahead. Returns false, changing nothing, when the
+  // archive has no current copy, or its version is not one of expectedVersions (null
+  // for any), so a conditional write that will fail never moves the note. Must run
+  // inside NoteStore.inTransaction: the copy commits, or rolls back, with the write
+  // that needed it.
+  public boolean restore(String id, Collection<Long> expectedVersions) {
+    if (!enabled) {
+      return false;
+    }
+    for (ArchiveSegment segment : segments) {
+      int entry = segment.find(NoteIds.toBytes(id));
+      if (entry < 0) {
+        continue;
+      }
+      if (!isVisible(id, segment)
+          || (expectedVersions != null && !expectedVersions.contains(segment.version(entry)))) {
+        return false;
+      }
+      // The in-memory hidden map only changes after commit, so a concurrent restore or
+      // delete of this note may not show there yet; the database, read in this writer
+      // transaction, does.
+      if (!repository.isRestorable(id, segment.number)) {
+        return false;
+      }
+      noteStore.insert(toEntity(segment.reader().read(entry)));
+      repository.hide(List.of(id), segment.number);
+      int number = segment.number;
+      afterCommit(() -> {
+        hidden.merge(id, number, Math::max);
+        notesRestored.incrementAndGet();
+      });
+      return true;
+    }
+    return false;
+  }
+
+  // --- archiving ---
+
+  // Moves notes older than age out of the table, a full segment at a time. Fewer than
+  // notesPerSegment stay where they are until more notes are old enough. Returns the
+  // number of notes archived.
+  @ManagedOperation(description = "Archive notes older than the configured age now")
+  public synchronized long archiveOldNotes() {
+    if (!enabled) {
+      return 0;
+    }
+    long start = System.nanoTime();
+    Instant cutoff = Instant.now().minus(age);
+    Instant afterCreatedAt = OLDEST;
+    String afterId = "";
+    long archived = 0;
+    while (true) {
+      Instant after = afterCreatedAt;
+      String afterKey = afterId;
+      List<NoteResponse> oldest = admission.read(() ->
+          repository.oldestBefore(cutoff, after, afterKey, notesPerSegment));
+      if (oldest.size() < notesPerSegment) {
+        break;
+      }
+      archived += move(oldest);
+      NoteResponse last = oldest.get(oldest.size() - 1);
+      afterCreatedAt = last.createdAt();
+      afterId = last.id();
+    }
+    notesArchived += archived;
+    lastPassMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    return archived;
+  }
+
+  // Writes one segment and moves its notes out of the table. Returns how many moved.
+  private int move(List<NoteResponse> oldestFirst) {
+    int number = nextSegment++;
+    ArchiveSegment segment;
+    try {
+      segment = ArchiveSegment.write(directory, number, oldestFirst.reversed(), blockSize);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    try {
+      List<String> stale = noteStore.inTransaction(() -> {
+        List<String> changed = repository.moveOut(oldestFirst, number);
+        // hidden before the segment is visible, so the old copies never show
+        for (String id : changed) {
+          hidden.merge(id, number, Math::max);
+        }
+        // Visible before the commit, while this transaction still holds the writer: a
+        // reader sees the moved notes in both tiers for a moment, never in neither.
+        publish(segment);
+        return changed;
+      });
+      log.info("archived {} notes into {}", oldestFirst.size() - stale.size(), segment.path);
+      return oldestFirst.size() - stale.size();
+    } catch (RuntimeException e) {
+      unpublish(segment);
+      try {
+        segment.delete();
+      } catch (IOException suppressed) {
+        e.addSuppressed(suppressed);
+      }
+      throw e;
+    }
+  }
+
+  private void archiveQuietly() {
+    try {
+      archiveOldNotes();
+    } catch (RuntimeException e) {
+      log.warn("note archive pass failed", e);
+    }
+  }
+
+  private synchronized void publish(ArchiveSegment segment) {
+    List<ArchiveSegment> next = new ArrayList<>(segments.size() + 1);
+    next.add(segment);
+    next.addAll(segments);
+    segments = List.copyOf(next);
+  }
+
+  private synchronized void unpublish(ArchiveSegment segment) {
+    segments = segments.stream().filter(s -> s != segment).toList();
+  }
+
+  // --- helpers ---
+
+  private boolean isVisible(String id, ArchiveSegment segment) {
+    Integer hiddenUpTo = hidden.get(id);
+    return hiddenUpTo == null || hiddenUpTo < segment.number;
+  }
+
+  // > 0 when the cursor's note comes before (is newer than) note, 0 when it is the same
+  private static int compareToCursor(Cursor cursor, NoteResponse note) {
+    return cursor.segment.compare(cursor.entry, note.createdAt(), NoteIds.toBytes(note.id()));
+  }
+
+  private static NoteEntity toEntity(NoteResponse note) {
+    NoteEntity entity = new NoteEntity();
+    entity.setId(note.id());
+    entity.setCreatedAt(note.createdAt());
+    entity.setContent(note.content());
+    entity.setVersion(note.version());
+    return entity;
+  }
+
+  private static void afterCommit(Runnable change) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      change.run();
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        change.run();
+      }
+    });
+  }
+
+  // Position in one segment, newest first, for merging; ordered newest note first.
+  private final class Cursor implements Comparable<Cursor> {
+
+    final ArchiveSegment segment;
+    final ArchiveSegment.Reader reader;
+    // stop at notes created at or before this; null for none
+    final Instant lowerCreatedAt;
+    int entry;
+
+    Cursor(ArchiveSegment segment, int entry, Instant lowerCreatedAt) {
+      this.segment = segment;
+      this.reader = segment.reader();
+      this.entry = entry;
+      this.lowerCreatedAt = lowerCreatedAt;
+    }
+
+    // Moves to the first visible note from here on; false when there is none in range.
+    boolean seekVisible() {
+      for (; entry < segment.count(); entry++) {
+        if (lowerCreatedAt != null && !segment.createdAt(entry).isAfter(lowerCreatedAt)) {
+          return false;
+        }
+        if (hidden.isEmpty() || isVisible(segment.id(entry), segment)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    NoteResponse read() {
+      return reader.read(entry);
+    }
+
+    @Override
+    public int compareTo(Cursor other) {
+      return ArchiveSegment.compare(other.segment, other.entry, segment, entry);
+    }
+  }
+
+  // --- stats ---
+
+  @ManagedAttribute(description = "Archive segment files")
+  public int getSegments() {
+    return segments.size();
+  }
+
+  @ManagedAttribute(description = "Notes in the segment files, including hidden copies")
+  public long getSegmentNotes() {
+    return segments.stream().mapToLong(ArchiveSegment::count).sum();
+  }
+
+  @ManagedAttribute(description = "Size of the segment files in bytes")
+  public long getSegmentBytes() {
+    return segments.stream().mapToLong(ArchiveSegment::bytes).sum();
+  }
+
+  @ManagedAttribute(description = "Archived copies hidden because the note was restored or deleted")
+  public int getHiddenNotes() {
+    return hidden.size();
+  }
+
+  @ManagedAttribute(description = "Notes moved into the archive since startup")
+  public long getNotesArchived() {
+    return notesArchived;
+  }
+
+  @ManagedAttribute(description = "Notes restored to the table since startup")
+  public long getNotesRestored() {
+    return notesRestored.get();
+  }
+
+  @ManagedAttribute(description = "Duration of the last archive pass, in milliseconds")
+  public long getLastPassMillis() {
+    return lastPassMillis;
+  }
+
+  @Override
+  public void destroy() {
+    mover.shutdownNow();
+  }
+}
@@ -0,0 +1,187 @@
+package com.bluestaq.challenge.notesvault.notes.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.bluestaq.challenge.notesvault.config.NoteCacheProperties;
+import com.bluestaq.challenge.notesvault.notes.api.dto.NoteResponse;
+
+// Read-through cache in front of the repository for single-note lookups.
+//
+// Bounded by entry count and by total content size, evicting least-recently-used
+// notes first, with an optional TTL. Entries are the immutable NoteResponse the read
+// path produces, so a hit is handed out as is, without a copy.
+//
+// Staleness: writers invalidate after their transaction commits. A reader that loaded
+// a note before an invalidation must not put that (possibly old) copy back, so loads
+// are stamped with stamp() beforehand and put() drops them if any invalidation has
+// happened since.
+@Component
+@EnableConfigurationProperties(NoteCacheProperties.class)
+@ManagedResource(objectName = "notesvault:type=NoteCache", description = "Note read-through cache")
+public class NoteCache {
+
+  private record Entry(NoteResponse note, long bytes, long expiresAtNanos) {}
+
+  private final boolean enabled;
+  private final int maxEntries;
+  private final long maxContentBytes;
+  private final long ttlNanos;
+
+  // access-ordered: iteration starts at the least recently used entry
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long contentBytes;
+  private long invalidations;
+
+  private long hits;
+  private long misses;
+  private long evictions;
+  private long expirations;
+
+  public NoteCache(NoteCacheProperties props) {
+    this.enabled = props.enabled();
+    this.maxEntries = props.maxEntries();
+    this.maxContentBytes = props.maxContentBytes();
+    this.ttlNanos = props.ttl().toNanos();
+  }
+
+  // Returns the cached note, or null on a miss.
+  public NoteResponse get(String id) {
+    if (!enabled) {
+      return null;
+    }
+    synchronized (this) {
+      Entry e = entries.get(id);
+      if (e == null) {
+        misses++;
+        return null;
+      }
+      if (ttlNanos > 0 && System.nanoTime() - e.expiresAtNanos() > 0) {
+        remove(id);
+        expirations++;
+        misses++;
+        return null;
+      }
+      hits++;
+      return e.note();
+    }
+  }
+
+  // Take before loading from the database; pass the result to put().
+  public synchronized long stamp() {
+    return invalidations;
+  }
+
+  public void put(NoteResponse note, long stamp) {
+    if (!enabled) {
+      return;
+    }
+    long bytes = (long) note.content().length() * Character.BYTES;
+    if (bytes > maxContentBytes) {
+      return;
+    }
+    Entry e = new Entry(note, bytes, System.nanoTime() + ttlNanos);
+
+    synchronized (this) {
+      if (stamp != invalidations) {
+        // something was written since this copy was loaded; it may be stale
+        return;
+      }
+      remove(note.id());
+      entries.put(note.id(), e);
+      contentBytes += bytes;
+      evictIfNeeded();
+    }
+  }
+
+  public synchronized void invalidate(String id) {
+    invalidations++;
+    remove(id);
+  }
+
+  // Invalidates once the surrounding transaction has finished (or right away if there
+  // is none), so no reader can re-cache the old value between invalidation and commit.
+  public void invalidateAfterCommit(String id) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      invalidate(id);
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCompletion(int status) {
+        invalidate(id);
+      }
+    });
+  }
+
+  @ManagedOperation(description = "Drop every cached note")
+  public synchronized void clear() {
+    invalidations++;
+    entries.clear();
+    contentBytes = 0;
+  }
+
+  private void remove(String id) {
+    Entry old = entries.remove(id);
+    if (old != null) {
+      contentBytes -= old.bytes();
+    }
+  }
+
+  private void evictIfNeeded() {
+    Iterator<Map.Entry<String, Entry>> lru = entries.entrySet().iterator();
+    while ((entries.size() > maxEntries || contentBytes > maxContentBytes) && lru.hasNext()) {
+      Entry victim = lru.next().getValue();
+      lru.remove();
+      contentBytes -= victim.bytes();
+      evictions++;
+    }
+  }
+
+  // --- stats ---
+
+  @ManagedAttribute(description = "Lookups answered from the cache")
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  @ManagedAttribute(description = "Lookups that went to the database")
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  @ManagedAttribute(description = "Entries dropped to stay within the size bounds")
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+
+  @ManagedAttribute(description = "Entries dropped because their TTL passed")
+  public synchronized long getExpirations() {
+    return expirations;
+  }
+
+  @ManagedAttribute(description = "Notes currently cached")
+  public synchronized int getSize() {
+    return entries.size();
+  }
+
+  @ManagedAttribute(description = "Cached content size in bytes (2 per char)")
+  public synchronized long getContentBytes() {
+    return contentBytes;
+  }
+
+  @ManagedAttribute(description = "Fraction of lookups answered from the cache")
+  public synchronized double getHitRatio() {
+    long total = hits + misses;
+    return (total == 0) ? 0.0 : (double) hits / total;
+  }
+}
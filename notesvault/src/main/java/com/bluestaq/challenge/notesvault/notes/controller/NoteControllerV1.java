@@ -1,19 +1,41 @@
 package com.bluestaq.challenge.notesvault.notes.controller;
 
+import java.io.IOException;
 import java.net.URI;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 import jakarta.validation.Valid;
 
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.bluestaq.challenge.notesvault.except.FeatureUnavailableException;
 import com.bluestaq.challenge.notesvault.except.NoteNotFoundException;
+import com.bluestaq.challenge.notesvault.notes.api.dto.BatchNoteRequest;
+import com.bluestaq.challenge.notesvault.notes.api.dto.BatchNoteResult;
+import com.bluestaq.challenge.notesvault.notes.api.dto.NoteChangeSet;
 import com.bluestaq.challenge.notesvault.notes.api.dto.CreateNoteRequest;
 import com.bluestaq.challenge.notesvault.notes.api.dto.NoteResponse;
+import com.bluestaq.challenge.notesvault.notes.api.dto.NoteSearchHit;
 import com.bluestaq.challenge.notesvault.notes.api.dto.UpdateNoteRequest;
 import com.bluestaq.challenge.notesvault.notes.entity.NoteEntity;
+import com.bluestaq.challenge.notesvault.notes.service.NoteBatchService;
+import com.bluestaq.challenge.notesvault.notes.service.NoteExportService;
+import com.bluestaq.challenge.notesvault.notes.service.NotePage;
+import com.bluestaq.challenge.notesvault.notes.service.NoteSearchPage;
+import com.bluestaq.challenge.notesvault.notes.service.NoteSearchService;
 import com.bluestaq.challenge.notesvault.notes.service.NoteService;
+import com.bluestaq.challenge.notesvault.notes.service.NoteSyncService;
+import com.bluestaq.challenge.notesvault.notes.stream.NoteChangeFeed;
 
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -25,13 +47,29 @@ import org.springframework.web.bind.annotation.PathVariable;
 @RestController
 @RequestMapping("/v1/notes")
 public class NoteControllerV1 {
+
+  static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
   
   // this should be final since we are using constructor injection and it
   // should not change after construction
   private final NoteService noteService;
+  private final NoteExportService noteExportService;
+  private final NoteBatchService noteBatchService;
+  // absent when the storage engine has no full-text index
+  private final Optional<NoteSearchService> noteSearchService;
+  private final NoteChangeFeed noteChangeFeed;
+  // absent when the storage engine keeps no change sequence
+  private final Optional<NoteSyncService> noteSyncService;
 
-  public NoteControllerV1(NoteService noteService) {
+  public NoteControllerV1(NoteService noteService, NoteExportService noteExportService,
+      NoteBatchService noteBatchService, Optional<NoteSearchService> noteSearchService,
+      NoteChangeFeed noteChangeFeed, Optional<NoteSyncService> noteSyncService) {
     this.noteService = noteService;
+    this.noteExportService = noteExportService;
+    this.noteBatchService = noteBatchService;
+    this.noteSearchService = noteSearchService;
+    this.noteChangeFeed = noteChangeFeed;
+    this.noteSyncService = noteSyncService;
   }
 
   // HTTP POST endpoint to create a new note. 
@@ -41,63 +79,187 @@ public class NoteControllerV1 {
 
     NoteEntity savedNote = noteService.createNote(req.content());
 
-    NoteResponse body = new NoteResponse(
-      savedNote.getId(),
-      savedNote.getCreatedAt(),
-      savedNote.getContent()
-    );
+    NoteResponse body = NoteResponse.of(savedNote);
 
     return ResponseEntity
         .created(URI.create("/v1/notes/" + savedNote.getId()))
+        .eTag(etag(body))
         .body(body);
   }
 
+  // HTTP POST endpoint to apply many create/update/delete operations at once.
+  // All operations share one transaction; the response lists one result per
+  // operation, in request order, with the status each would have had on its own.
+  @PostMapping("/batch")
+  public List<BatchNoteResult> batch(@Valid @RequestBody BatchNoteRequest req) {
+    return noteBatchService.apply(req.operations());
+  }
+
   // HTTP GET endpoint to retrieve a note by its ID.
   // It returns a NoteResponse if the note is found, 
   // or a 404 Not Found response if the note does not exist.
+  // The note's version is sent as a strong ETag; when If-None-Match still matches it,
+  // Spring answers 304 Not Modified without serializing the body.
+  // The service hands back the response body itself (a read-only projection), so
+  // there is no entity to copy from.
   @GetMapping("/{id}")
-  public NoteResponse getById(@PathVariable String id) {
-    NoteEntity note = noteService.getNoteById(id);
-    return new NoteResponse(
-      note.getId(),
-      note.getCreatedAt(),
-      note.getContent()
-    );
+  public ResponseEntity<NoteResponse> getById(@PathVariable String id) {
+    NoteResponse note = noteService.getNoteById(id);
+    return ResponseEntity.ok()
+        .eTag(etag(note))
+        .body(note);
   }
 
-  // HTTP GET endpoint to list all notes.
-  // It returns a list of NoteResponse objects, ordered by creation time (newest first).
+  // HTTP GET endpoint to list notes, one page at a time.
+  // Notes are ordered by creation time (newest first). When more notes are available
+  // the opaque cursor for the next page is returned in the X-Next-Cursor header;
+  // pass it back as ?cursor= to continue. createdAfter/createdBefore are exclusive bounds.
+  // The ETag changes whenever any note does, so an unchanged vault is re-polled with
+  // If-None-Match for a 304 that never touches the store.
   @GetMapping
-  public List<NoteResponse> listNotes() {
-    return noteService.listNotes().stream()
-      .map(note -> new NoteResponse(
-        note.getId(),
-        note.getCreatedAt(),
-        note.getContent()
-      ))
-      .toList();
+  public ResponseEntity<List<NoteResponse>> listNotes(
+      @RequestParam(defaultValue = "" + NoteService.DEFAULT_PAGE_SIZE) int limit,
+      @RequestParam(required = false) String cursor,
+      @RequestParam(required = false) Instant createdAfter,
+      @RequestParam(required = false) Instant createdBefore,
+      WebRequest request) {
+
+    String etag = "\"" + noteService.collectionGeneration() + "\"";
+    if (request.checkNotModified(etag)) {
+      // the 304 (with its ETag) is already on the response
+      return null;
+    }
+
+    NotePage page = noteService.listNotes(limit, cursor, createdAfter, createdBefore);
+
+    ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(etag);
+    if (page.nextCursor() != null) {
+      response.header(NEXT_CURSOR_HEADER, page.nextCursor());
+    }
+    return response.body(page.notes());
+  }
+
+  // HTTP GET endpoint for full-text search over note content.
+  // Every word in q must match; a trailing * makes a word a prefix. Hits are ranked
+  // best first and carry a snippet around the match. Paged like the list endpoint:
+  // follow X-Next-Cursor for more results.
+  @GetMapping("/search")
+  public ResponseEntity<List<NoteSearchHit>> search(
+      @RequestParam String q,
+      @RequestParam(defaultValue = "" + NoteSearchService.DEFAULT_PAGE_SIZE) int limit,
+      @RequestParam(required = false) String cursor) {
+
+    NoteSearchPage page = noteSearchService
+        .orElseThrow(() -> new FeatureUnavailableException("search requires notesvault.store.engine=jpa"))
+        .search(q, limit, cursor);
+    ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+    if (page.nextCursor() != null) {
+      response.header(NEXT_CURSOR_HEADER, page.nextCursor());
+    }
+    return response.body(page.hits());
   }
 
+  // HTTP GET endpoint to export every note as newline-delimited JSON.
+  // The body is written on an async thread as the notes are read, a page at a time,
+  // so the response never holds more than one page of notes in memory.
+  @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+  public ResponseEntity<StreamingResponseBody> exportNotes() {
+    StreamingResponseBody body = noteExportService::exportNdjson;
+    return ResponseEntity.ok()
+        .contentType(MediaType.APPLICATION_NDJSON)
+        .body(body);
+  }
+
+  // HTTP GET endpoint for a live feed of note changes, as server-sent events.
+  // Every committed create, update and delete is sent as a "created", "updated" or
+  // "deleted" event whose id is an increasing sequence number. A client that reconnects
+  // with Last-Event-ID (EventSource does this itself) resumes after that event; if it
+  // is too old to resume from, a "reset" event tells the client to reload the list.
+  @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public ResponseEntity<ResponseBodyEmitter> stream(
+      @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) throws IOException {
+    return ResponseEntity.ok()
+        .contentType(MediaType.TEXT_EVENT_STREAM)
+        .cacheControl(CacheControl.noStore())
+        .body(noteChangeFeed.subscribe(lastEventId));
+  }
+
+  // HTTP GET endpoint for delta sync: the notes created, updated or deleted since the
+  // sync token in since, oldest change first. Without since it is a full sync of every
+  // note. Keep the syncToken of each response for the next call; while hasMore is true,
+  // call again at once. A token too old to serve (deleted notes are only remembered for
+  // a while) gets 410 Gone: drop it and sync again without since.
+  @GetMapping("/changes")
+  public ResponseEntity<NoteChangeSet> changes(
+      @RequestParam(required = false) String since,
+      @RequestParam(defaultValue = "" + NoteSyncService.DEFAULT_PAGE_SIZE) int limit) {
+    NoteChangeSet changes = noteSyncService
+        .orElseThrow(() -> new FeatureUnavailableException("delta sync requires notesvault.store.engine=jpa"))
+        .changes(since, limit);
+    return ResponseEntity.ok()
+        .cacheControl(CacheControl.noStore())
+        .body(changes);
+  }
+
+  // With If-Match the update only applies while the note still has that version;
+  // otherwise it fails with 412 Precondition Failed.
   @PutMapping("/{id}")
-  public ResponseEntity<NoteResponse> updateNoteById(@PathVariable String id, @Valid @RequestBody UpdateNoteRequest req) {
-      NoteEntity updated = noteService.updateNoteById(id, req.content());
-      return ResponseEntity.ok(new NoteResponse(
-        updated.getId(),
-        updated.getCreatedAt(),
-        updated.getContent()
-      ));
+  public ResponseEntity<NoteResponse> updateNoteById(@PathVariable String id, @Valid @RequestBody UpdateNoteRequest req,
+      @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+      List<Long> expectedVersions = ifMatchVersions(ifMatch);
+      NoteEntity updated = (expectedVersions == null)
+          ? noteService.updateNoteById(id, req.content())
+          : noteService.updateNoteById(id, req.content(), expectedVersions);
+      NoteResponse body = NoteResponse.of(updated);
+      return ResponseEntity.ok()
+          .eTag(etag(body))
+          .body(body);
   }
   
+  // If-Match works as for PUT.
   @DeleteMapping("/{id}")
-  public ResponseEntity<Void> deleteById(@PathVariable String id) {
+  public ResponseEntity<Void> deleteById(@PathVariable String id,
+      @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+    List<Long> expectedVersions = ifMatchVersions(ifMatch);
     try {
-      noteService.deleteNoteById(id); // service decides if it exists
+      // service decides if it exists
+      if (expectedVersions == null) {
+        noteService.deleteNoteById(id);
+      } else {
+        noteService.deleteNoteById(id, expectedVersions);
+      }
       return ResponseEntity.noContent().build();
     } catch (NoteNotFoundException e) {
       return ResponseEntity.notFound().build();
     }
   }
 
+  // A note's strong ETag is its version.
+  private static String etag(NoteResponse note) {
+    return "\"" + note.version() + "\"";
+  }
+
+  // Versions listed in an If-Match header, or null when the write is unconditional:
+  // no header, or "*" (which any existing note satisfies). Weak tags and tags we did
+  // not issue can never match, so they are dropped; an empty result always fails.
+  static List<Long> ifMatchVersions(String ifMatch) {
+    if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+      return null;
+    }
+    List<Long> versions = new ArrayList<>();
+    for (String tag : ifMatch.split(",")) {
+      tag = tag.trim();
+      if (tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+        try {
+          versions.add(Long.parseLong(tag.substring(1, tag.length() - 1)));
+        } catch (NumberFormatException e) {
+          // not one of ours
+        }
+      }
+    }
+    return versions;
+  }
+
 }
 
 
@@ -0,0 +1,122 @@
+package com.bluestaq.challenge.notesvault.notes.entity;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Storage format of notes.content.
+//
+// Plain notes are stored as their UTF-8 text, exactly as before compression existed
+// (bound as TEXT, see columnValue); only encoded values are BLOBs.
+// Compressed notes start with a codec header byte, followed by the UTF-8 length (4 bytes,
+// big-endian) and the compressed bytes. Content is trimmed before it is stored, so plain
+// content never starts with a byte below 0x20: those values are free to mark a codec,
+// and old rows need no conversion to stay readable. Should untrimmed content ever get
+// here, it is stored behind a RAW header byte rather than mistaken for a codec.
+public final class NoteContentCodec {
+
+  static final byte RAW = 0x00;
+  // raw DEFLATE stream (no zlib wrapper)
+  static final byte DEFLATE = 0x01;
+  private static final int HEADER_SIZE = 5;
+
+  private NoteContentCodec() {
+  }
+
+  // Compresses content of at least threshold UTF-8 bytes; threshold < 0 never does.
+  // Content that would not get smaller is stored plain.
+  public static byte[] encode(String content, long threshold, int level) {
+    byte[] utf8 = content.getBytes(StandardCharsets.UTF_8);
+    if (threshold < 0 || utf8.length < threshold) {
+      return plain(utf8);
+    }
+    byte[] packed = deflate(utf8, level);
+    if (HEADER_SIZE + packed.length >= utf8.length) {
+      return plain(utf8);
+    }
+    return ByteBuffer.allocate(HEADER_SIZE + packed.length)
+        .put(DEFLATE)
+        .putInt(utf8.length)
+        .put(packed)
+        .array();
+  }
+
+  public static String decode(byte[] stored) {
+    if (!hasHeader(stored)) {
+      return new String(stored, StandardCharsets.UTF_8);
+    }
+    if (stored[0] == RAW) {
+      return new String(stored, 1, stored.length - 1, StandardCharsets.UTF_8);
+    }
+    if (stored[0] != DEFLATE) {
+      throw new IllegalStateException("unknown note content codec " + stored[0]);
+    }
+    int length = ByteBuffer.wrap(stored, 1, 4).getInt();
+    return new String(inflate(stored, HEADER_SIZE, length), StandardCharsets.UTF_8);
+  }
+
+  // The value to bind for a stored form: a String for plain content, so the column keeps
+  // TEXT values, and the bytes for anything behind a header byte. Reading either back as
+  // bytes gives stored again.
+  public static Object columnValue(byte[] stored) {
+    return hasHeader(stored) ? stored : new String(stored, StandardCharsets.UTF_8);
+  }
+
+  public static boolean isCompressed(byte[] stored) {
+    return stored.length > 0 && stored[0] > RAW && stored[0] < 0x20;
+  }
+
+  private static boolean hasHeader(byte[] stored) {
+    return stored.length > 0 && stored[0] >= RAW && stored[0] < 0x20;
+  }
+
+  private static byte[] plain(byte[] utf8) {
+    if (!hasHeader(utf8)) {
+      return utf8;
+    }
+    byte[] stored = new byte[utf8.length + 1];
+    stored[0] = RAW;
+    System.arraycopy(utf8, 0, stored, 1, utf8.length);
+    return stored;
+  }
+
+  private static byte[] deflate(byte[] input, int level) {
+    Deflater deflater = new Deflater(level, true);
+    try {
+      deflater.setInput(input);
+      deflater.finish();
+      ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 4 + 64);
+      byte[] buffer = new byte[8192];
+      while (!deflater.finished()) {
+        out.write(buffer, 0, deflater.deflate(buffer));
+      }
+      return out.toByteArray();
+    } finally {
+      deflater.end();
+    }
+  }
+
+  private static byte[] inflate(byte[] stored, int offset, int length) {
+    Inflater inflater = new Inflater(true);
+    try {
+      inflater.setInput(stored, offset, stored.length - offset);
+      byte[] out = new byte[length];
+      int n = 0;
+      while (n < length) {
+        int read = inflater.inflate(out, n, length - n);
+        if (read == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+          throw new IllegalStateException("compressed note content is truncated");
+        }
+        n += read;
+      }
+      return out;
+    } catch (DataFormatException e) {
+      throw new IllegalStateException("compressed note content is corrupt", e);
+    } finally {
+      inflater.end();
+    }
+  }
+}
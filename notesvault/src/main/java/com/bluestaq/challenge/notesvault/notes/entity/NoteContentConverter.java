@@ -0,0 +1,49 @@
+package com.bluestaq.challenge.notesvault.notes.entity;
+
+import java.util.zip.Deflater;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import com.bluestaq.challenge.notesvault.config.CompressionProperties;
+
+import jakarta.persistence.AttributeConverter;
+
+// Compresses NoteEntity.content on the way into SQLite and back (see NoteContentCodec).
+// A Spring bean, so Hibernate picks it up with the configured threshold. Reads decode
+// whatever is stored, whether or not compression is currently enabled.
+@Component
+@EnableConfigurationProperties(CompressionProperties.class)
+public class NoteContentConverter implements AttributeConverter<String, byte[]> {
+
+  private final long threshold;
+  private final int level;
+
+  // used by Hibernate when it creates the converter itself (no Spring bean, e.g. slice
+  // tests): stored content still decodes, new content is written plain
+  public NoteContentConverter() {
+    this.threshold = -1;
+    this.level = Deflater.BEST_SPEED;
+  }
+
+  @Autowired
+  public NoteContentConverter(CompressionProperties props) {
+    this.threshold = props.enabled() ? props.threshold().toBytes() : -1;
+    this.level = props.level();
+  }
+
+  @Override
+  public byte[] convertToDatabaseColumn(String content) {
+    return (content == null) ? null : NoteContentCodec.encode(content, threshold, level);
+  }
+
+  @Override
+  public String convertToEntityAttribute(byte[] stored) {
+    return (stored == null) ? null : NoteContentCodec.decode(stored);
+  }
+
+  public boolean isCompressing() {
+    return threshold >= 0;
+  }
+}
@@ -0,0 +1,50 @@
+package com.bluestaq.challenge.notesvault.notes.entity;
+
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import org.hibernate.type.descriptor.ValueBinder;
+import org.hibernate.type.descriptor.WrapperOptions;
+import org.hibernate.type.descriptor.java.JavaType;
+import org.hibernate.type.descriptor.jdbc.BasicBinder;
+import org.hibernate.type.descriptor.jdbc.JdbcType;
+import org.hibernate.type.descriptor.jdbc.JdbcTypeIndicators;
+import org.hibernate.type.descriptor.jdbc.VarbinaryJdbcType;
+
+// Binds what NoteContentConverter produces through NoteContentCodec.columnValue: plain
+// content as TEXT, as it was stored before compression existed, and only encoded
+// content as a BLOB. Reads are unchanged; the driver returns TEXT as its UTF-8 bytes.
+public class NoteContentJdbcType extends VarbinaryJdbcType {
+
+  // never swapped for a LOB type; the binder below is the point
+  @Override
+  public JdbcType resolveIndicatedType(JdbcTypeIndicators indicators, JavaType<?> domainJtd) {
+    return this;
+  }
+
+  @Override
+  public <X> ValueBinder<X> getBinder(JavaType<X> javaType) {
+    return new BasicBinder<>(javaType, this) {
+      @Override
+      protected void doBind(PreparedStatement st, X value, int index, WrapperOptions options) throws SQLException {
+        Object column = NoteContentCodec.columnValue(javaType.unwrap(value, byte[].class, options));
+        if (column instanceof String text) {
+          st.setString(index, text);
+        } else {
+          st.setBytes(index, (byte[]) column);
+        }
+      }
+
+      @Override
+      protected void doBind(CallableStatement st, X value, String name, WrapperOptions options) throws SQLException {
+        Object column = NoteContentCodec.columnValue(javaType.unwrap(value, byte[].class, options));
+        if (column instanceof String text) {
+          st.setString(name, text);
+        } else {
+          st.setBytes(name, (byte[]) column);
+        }
+      }
+    };
+  }
+}
@@ -5,28 +5,64 @@ import jakarta.persistence.Entity;
 import java.time.Instant;
 
 import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.Table;
 import jakarta.validation.constraints.NotBlank;
 
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.JavaType;
+import org.hibernate.annotations.JdbcType;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
 
 // This class needs to be implemented as a JPA entity to represent a note in the database
 
+// The composite (created_at, id) index backs keyset pagination on the list endpoint:
+// every page is a bounded range scan, no matter how deep the client has scrolled.
+// The change_seq index does the same for delta sync (GET /v1/notes/changes).
 @Entity
-@Table(name = "notes")
+@Table(
+    name = "notes",
+    indexes = {
+        @Index(name = "idx_notes_created_at_id", columnList = "created_at, id"),
+        @Index(name = "idx_notes_change_seq", columnList = "change_seq")
+    })
 public class NoteEntity {
 
+  // UUIDv7 string on the Java side, stored as a 16-byte BLOB (see NoteIds)
   @Id
-  @Column(name = "id", nullable = false, updatable = false, length = 36) // UUIDs are typically 36 characters long
+  @JavaType(NoteIdJavaType.class)
+  @JdbcTypeCode(SqlTypes.VARBINARY)
+  @Column(name = "id", nullable = false, updatable = false, length = 16)
   private String id;
 
   @Column(name = "created_at", nullable = false, updatable = false)
   private Instant createdAt;
 
+  // stored through NoteContentConverter: plain TEXT, or a compressed BLOB above the
+  // threshold (bound by NoteContentJdbcType)
   @NotBlank
+  @Convert(converter = NoteContentConverter.class)
+  @JdbcType(NoteContentJdbcType.class)
   @Column(name = "content", nullable = false, columnDefinition = "TEXT")
   private String content;
 
+  // Bumped on every change to the note; served as its ETag and checked by If-Match.
+  // The column default gives rows written before versioning existed version 1.
+  @Column(name = "version", nullable = false)
+  @ColumnDefault("1")
+  private long version;
+
+  // Sequence number of the note's latest change, for delta sync. Set by triggers in the
+  // same transaction as every insert and update (see NoteSyncRepository), never by
+  // Hibernate, so the field is not refreshed after a write.
+  @Column(name = "change_seq", nullable = false, insertable = false, updatable = false)
+  @ColumnDefault("0")
+  private long changeSeq;
+
   public NoteEntity() {
     // Default constructor for JPA
     // this is used by JPA to create instances of the entity 
@@ -47,6 +83,14 @@ public class NoteEntity {
     return content;
   }
 
+  public long getVersion() {
+    return version;
+  }
+
+  public long getChangeSeq() {
+    return changeSeq;
+  }
+
   //setters
   public void setContent(String content) {
     this.content = content;
@@ -60,4 +104,8 @@ public class NoteEntity {
     this.id = id;
   }
 
+  public void setVersion(long version) {
+    this.version = version;
+  }
+
 }
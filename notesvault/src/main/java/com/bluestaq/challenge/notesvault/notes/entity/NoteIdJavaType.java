@@ -0,0 +1,56 @@
+package com.bluestaq.challenge.notesvault.notes.entity;
+
+import org.hibernate.type.SqlTypes;
+import org.hibernate.type.descriptor.WrapperOptions;
+import org.hibernate.type.descriptor.java.AbstractClassJavaType;
+import org.hibernate.type.descriptor.jdbc.JdbcType;
+import org.hibernate.type.descriptor.jdbc.JdbcTypeIndicators;
+
+// Lets NoteEntity keep its id as a String while the column holds NoteIds.toBytes(id).
+// Hibernate applies it to every use of the id - lookups, JPQL parameters, ORDER BY -
+// so queries compare and sort the 16-byte keys directly.
+public class NoteIdJavaType extends AbstractClassJavaType<String> {
+
+  public NoteIdJavaType() {
+    super(String.class);
+  }
+
+  @Override
+  public JdbcType getRecommendedJdbcType(JdbcTypeIndicators indicators) {
+    return indicators.getTypeConfiguration().getJdbcTypeRegistry().getDescriptor(SqlTypes.VARBINARY);
+  }
+
+  @Override
+  public String fromString(CharSequence string) {
+    return string.toString();
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <X> X unwrap(String value, Class<X> type, WrapperOptions options) {
+    if (value == null) {
+      return null;
+    }
+    if (type.isAssignableFrom(byte[].class)) {
+      return (X) NoteIds.toBytes(value);
+    }
+    if (type.isAssignableFrom(String.class)) {
+      return (X) value;
+    }
+    throw unknownUnwrap(type);
+  }
+
+  @Override
+  public <X> String wrap(X value, WrapperOptions options) {
+    if (value == null) {
+      return null;
+    }
+    if (value instanceof byte[] bytes) {
+      return NoteIds.fromBytes(bytes);
+    }
+    if (value instanceof String string) {
+      return string;
+    }
+    throw unknownWrap(value.getClass());
+  }
+}
@@ -0,0 +1,76 @@
+package com.bluestaq.challenge.notesvault.notes.entity;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Note ids: UUIDv7 (RFC 9562) in their usual 36-char form on the API, 16 bytes in SQLite.
+//
+// A v7 id starts with its creation time in milliseconds, so new notes land at the right
+// edge of the primary-key B-tree instead of splitting pages all over it. The 12 bits
+// after the timestamp are a counter (RFC 9562 method 1), so ids made in the same
+// millisecond still sort in creation order; the remaining 62 bits are random.
+//
+// toBytes/fromBytes are the column encoding. Any string that is not a UUID (hand-written
+// ids, e.g. in tests) is stored as its UTF-8 bytes instead. Only UUIDs are exactly 16
+// bytes long: a UTF-8 form that would be gets a zero byte appended, which fromBytes
+// strips again.
+public final class NoteIds {
+
+  private static final SecureRandom RANDOM = new SecureRandom();
+
+  // unix millis << 12 | counter of the last id handed out
+  private static final AtomicLong LAST = new AtomicLong();
+
+  private NoteIds() {
+  }
+
+  public static String newId() {
+    long now = System.currentTimeMillis() << 12;
+    // a counter overflow borrows from the next millisecond, which keeps ids increasing
+    long stamp = LAST.updateAndGet(last -> Math.max(now, last + 1));
+    long msb = ((stamp >>> 12) << 16) | 0x7000L | (stamp & 0xFFFL);
+    long lsb = (RANDOM.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+    return new UUID(msb, lsb).toString();
+  }
+
+  public static byte[] toBytes(String id) {
+    UUID uuid = parseUuid(id);
+    if (uuid != null) {
+      return ByteBuffer.allocate(16)
+          .putLong(uuid.getMostSignificantBits())
+          .putLong(uuid.getLeastSignificantBits())
+          .array();
+    }
+    byte[] utf8 = id.getBytes(StandardCharsets.UTF_8);
+    if (utf8.length == 16) {
+      return Arrays.copyOf(utf8, utf8.length + 1);
+    }
+    return utf8;
+  }
+
+  public static String fromBytes(byte[] bytes) {
+    if (bytes.length == 16) {
+      ByteBuffer buffer = ByteBuffer.wrap(bytes);
+      return new UUID(buffer.getLong(), buffer.getLong()).toString();
+    }
+    int length = (bytes.length == 17 && bytes[16] == 0) ? 16 : bytes.length;
+    return new String(bytes, 0, length, StandardCharsets.UTF_8);
+  }
+
+  // Only the canonical lowercase form counts, so fromBytes(toBytes(id)) is always id.
+  private static UUID parseUuid(String id) {
+    if (id.length() != 36) {
+      return null;
+    }
+    try {
+      UUID uuid = UUID.fromString(id);
+      return uuid.toString().equals(id) ? uuid : null;
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,132 @@
+package com.bluestaq.challenge.notesvault.notes.limit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// A concurrency limit that follows latency, in the style of a gradient limiter.
+//
+// Every window completed requests the limit is recomputed from two latencies: the
+// window's average (short-term) and a slow moving average over past windows
+// (long-term, the latency the service has when it is not overloaded). While the
+// short-term latency stays within tolerance of the long-term one the limit grows by
+// its square root, probing for more room; once requests start queueing - in SQLite's
+// busy handler, the writer pool, the admission gate - latency rises and the limit
+// shrinks in proportion, at most by half per window. A window in which the database
+// itself turned requests away shrinks the limit by a tenth whatever the latency.
+// Windows in which the limit was never approached do not grow it, so an idle service
+// does not drift up to max.
+//
+// Admission never waits: a caller over the limit is refused at once, which keeps
+// threads (and memory) from piling up behind a slow database.
+public final class AdaptiveLimit {
+
+  private static final double MAX_SHRINK = 0.5;
+  private static final double OVERLOAD_BACKOFF = 0.9;
+  // windows averaged into the long-term latency
+  private static final int LONG_WINDOWS = 20;
+
+  private final int min;
+  private final int max;
+  private final double tolerance;
+  private final int window;
+  private final double smoothing;
+
+  private volatile int limit;
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicLong rejected = new AtomicLong();
+
+  // guarded by this
+  private double estimate;
+  private double longLatency;
+  private int samples;
+  private long latencySum;
+  private int peakInFlight;
+  private boolean overloaded;
+
+  public AdaptiveLimit(int initial, int min, int max, double tolerance, int window, double smoothing) {
+    if (min < 1 || max < min) {
+      throw new IllegalArgumentException("limits must satisfy 1 <= min <= max");
+    }
+    this.min = min;
+    this.max = max;
+    this.tolerance = tolerance;
+    this.window = Math.max(1, window);
+    this.smoothing = smoothing;
+    this.estimate = Math.clamp(initial, min, max);
+    this.limit = (int) estimate;
+  }
+
+  // Takes a slot, or returns false (and counts a rejection) when all are in use.
+  public boolean tryAcquire() {
+    while (true) {
+      int current = inFlight.get();
+      if (current >= limit) {
+        rejected.incrementAndGet();
+        return false;
+      }
+      if (inFlight.compareAndSet(current, current + 1)) {
+        return true;
+      }
+    }
+  }
+
+  // Gives the slot back. overloaded: the request was turned away further in (a 503).
+  public void release(long latencyNanos, boolean overloaded) {
+    int was = inFlight.getAndDecrement();
+    record(latencyNanos, was, overloaded);
+  }
+
+  private synchronized void record(long latencyNanos, int inFlightAtEnd, boolean wasOverloaded) {
+    samples++;
+    latencySum += latencyNanos;
+    peakInFlight = Math.max(peakInFlight, inFlightAtEnd);
+    overloaded |= wasOverloaded;
+    if (samples < window) {
+      return;
+    }
+
+    double shortLatency = Math.max(1, (double) latencySum / samples);
+    if (overloaded) {
+      // not smoothed: the database is already refusing work
+      estimate = Math.clamp(estimate * OVERLOAD_BACKOFF, min, max);
+    } else {
+      if (longLatency == 0) {
+        longLatency = shortLatency;
+      } else {
+        longLatency += (shortLatency - longLatency) / LONG_WINDOWS;
+        // load has dropped well below what the average remembers: forget faster
+        if (longLatency > 2 * shortLatency) {
+          longLatency *= 0.9;
+        }
+      }
+      double gradient = Math.clamp(tolerance * longLatency / shortLatency, MAX_SHRINK, 1.0);
+      double target;
+      if (gradient < 1.0) {
+        target = estimate * gradient;
+      } else if (peakInFlight >= estimate / 2) {
+        target = estimate + Math.sqrt(estimate);
+      } else {
+        target = estimate;
+      }
+      estimate = Math.clamp(estimate + (target - estimate) * smoothing, min, max);
+    }
+    limit = (int) estimate;
+
+    samples = 0;
+    latencySum = 0;
+    peakInFlight = 0;
+    overloaded = false;
+  }
+
+  public int getLimit() {
+    return limit;
+  }
+
+  public int getInFlight() {
+    return inFlight.get();
+  }
+
+  public long getRejected() {
+    return rejected.get();
+  }
+}
@@ -0,0 +1,88 @@
+package com.bluestaq.challenge.notesvault.notes.limit;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import tools.jackson.databind.ObjectMapper;
+
+// Load shedding for /v1/notes: every request takes a read or write slot from
+// ConcurrencyLimiter for as long as it runs, and its latency feeds the limit back.
+// Over the limit the request is answered at once with 503 and Retry-After, in the
+// ApiExceptionHandler error shape, without reaching the controller.
+//
+// GET and HEAD are reads; everything else (including the batch endpoint) is a write.
+// The export and the change stream are left out: they last as long as the vault takes
+// to send or the client stays connected, which says nothing about contention, and the
+// stream has its own subscriber cap.
+//
+// Runs before the other filters, so a refused request costs as little as possible.
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+  private static final String PREFIX = "/v1/notes";
+
+  private final ConcurrencyLimiter limiter;
+  private final ObjectMapper objectMapper;
+
+  public ConcurrencyLimitFilter(ConcurrencyLimiter limiter, ObjectMapper objectMapper) {
+    this.limiter = limiter;
+    this.objectMapper = objectMapper;
+  }
+
+  @Override
+  protected boolean shouldNotFilter(HttpServletRequest request) {
+    if (!limiter.isEnabled()) {
+      return true;
+    }
+    String path = request.getRequestURI().substring(request.getContextPath().length());
+    return !(path.equals(PREFIX) || path.startsWith(PREFIX + "/"))
+        || path.equals(PREFIX + "/export")
+        || path.equals(PREFIX + "/stream");
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+      throws ServletException, IOException {
+    boolean read = HttpMethod.GET.matches(request.getMethod()) || HttpMethod.HEAD.matches(request.getMethod());
+    AdaptiveLimit limit = read ? limiter.reads() : limiter.writes();
+    if (!limit.tryAcquire()) {
+      reject(response, read ? "read" : "write");
+      return;
+    }
+    long start = System.nanoTime();
+    boolean overloaded = false;
+    try {
+      chain.doFilter(request, response);
+      overloaded = response.getStatus() == HttpStatus.SERVICE_UNAVAILABLE.value();
+    } finally {
+      limit.release(System.nanoTime() - start, overloaded);
+    }
+  }
+
+  private void reject(HttpServletResponse response, String kind) throws IOException {
+    response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+    response.setHeader(HttpHeaders.RETRY_AFTER, retryAfterSeconds());
+    response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+    objectMapper.writeValue(response.getOutputStream(),
+        Map.of("error", "too many concurrent " + kind + "s; retry later"));
+  }
+
+  private String retryAfterSeconds() {
+    return String.valueOf(Math.max(1, limiter.retryAfter().toSeconds()));
+  }
+}
@@ -0,0 +1,84 @@
+package com.bluestaq.challenge.notesvault.notes.limit;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import com.bluestaq.challenge.notesvault.config.ConcurrencyLimitProperties;
+
+// The adaptive limits in front of the notes API (see ConcurrencyLimitFilter): one for
+// reads, one for writes, so a write burst that backs up on SQLite's single writer does
+// not also shut out reads, which have their own connections.
+//
+// Unlike AdmissionGate, which caps database access at a fixed size and lets callers
+// queue, these limits move with observed latency and never queue: over the limit, a
+// request is answered 503 with Retry-After before it does any work.
+@Component
+@EnableConfigurationProperties(ConcurrencyLimitProperties.class)
+@ManagedResource(objectName = "notesvault:type=ConcurrencyLimit", description = "Adaptive API concurrency limit")
+public class ConcurrencyLimiter {
+
+  private final boolean enabled;
+  private final AdaptiveLimit reads;
+  private final AdaptiveLimit writes;
+  private final Duration retryAfter;
+
+  public ConcurrencyLimiter(ConcurrencyLimitProperties props) {
+    this.enabled = props.enabled();
+    this.reads = new AdaptiveLimit(props.initialReadLimit(), props.minReadLimit(), props.maxReadLimit(),
+        props.tolerance(), props.window(), props.smoothing());
+    this.writes = new AdaptiveLimit(props.initialWriteLimit(), props.minWriteLimit(), props.maxWriteLimit(),
+        props.tolerance(), props.window(), props.smoothing());
+    this.retryAfter = props.retryAfter();
+  }
+
+  public AdaptiveLimit reads() {
+    return reads;
+  }
+
+  public AdaptiveLimit writes() {
+    return writes;
+  }
+
+  public Duration retryAfter() {
+    return retryAfter;
+  }
+
+  @ManagedAttribute(description = "Whether the limit is enforced")
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  @ManagedAttribute(description = "Current limit on concurrent reads")
+  public int getReadLimit() {
+    return reads.getLimit();
+  }
+
+  @ManagedAttribute(description = "Reads in progress")
+  public int getReadsInFlight() {
+    return reads.getInFlight();
+  }
+
+  @ManagedAttribute(description = "Reads refused with 503")
+  public long getReadsRejected() {
+    return reads.getRejected();
+  }
+
+  @ManagedAttribute(description = "Current limit on concurrent writes")
+  public int getWriteLimit() {
+    return writes.getLimit();
+  }
+
+  @ManagedAttribute(description = "Writes in progress")
+  public int getWritesInFlight() {
+    return writes.getInFlight();
+  }
+
+  @ManagedAttribute(description = "Writes refused with 503")
+  public long getWritesRejected() {
+    return writes.getRejected();
+  }
+}
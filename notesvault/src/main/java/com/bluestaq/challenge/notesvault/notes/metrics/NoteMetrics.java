@@ -0,0 +1,126 @@
+package com.bluestaq.challenge.notesvault.notes.metrics;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+import com.bluestaq.challenge.notesvault.except.InvalidNoteContentException;
+import com.bluestaq.challenge.notesvault.except.InvalidPageRequestException;
+import com.bluestaq.challenge.notesvault.except.NoteNotFoundException;
+import com.bluestaq.challenge.notesvault.except.PreconditionFailedException;
+import com.bluestaq.challenge.notesvault.except.ServiceBusyException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+// Meters for note operations, recorded by NoteService and NoteBatchService:
+//  - notesvault.note.operations (timer): every call, tagged operation and outcome
+//    (success, not_found, invalid_content, invalid_request, precondition_failed, busy, error)
+//  - notesvault.note.exceptions (counter): failed calls, tagged operation and exception class
+//  - notesvault.note.content.size (summary, bytes): UTF-8 size of content written,
+//    tagged operation
+@Component
+public class NoteMetrics {
+
+  public static final String OPERATIONS = "notesvault.note.operations";
+  public static final String EXCEPTIONS = "notesvault.note.exceptions";
+  public static final String CONTENT_SIZE = "notesvault.note.content.size";
+
+  private final MeterRegistry registry;
+
+  // Meters are built once per tag combination and reused: Micrometer's builders look
+  // the meter up again on every register() call, which is wasted on the request path.
+  private record Tags(String operation, String value) {}
+
+  private final ConcurrentMap<Tags, Timer> timers = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Tags, Counter> exceptions = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, DistributionSummary> contentSizes = new ConcurrentHashMap<>();
+
+  public NoteMetrics(MeterRegistry registry) {
+    this.registry = registry;
+  }
+
+  // Runs call and times it under operation, tagging the outcome from the exception
+  // it throws, if any. Exceptions are rethrown unchanged.
+  public <T> T record(String operation, Supplier<T> call) {
+    long start = System.nanoTime();
+    String outcome = "success";
+    try {
+      return call.get();
+    } catch (RuntimeException e) {
+      outcome = outcome(e);
+      exceptions.computeIfAbsent(new Tags(operation, e.getClass().getSimpleName()), tags ->
+          Counter.builder(EXCEPTIONS)
+              .tag("operation", tags.operation())
+              .tag("exception", tags.value())
+              .register(registry))
+          .increment();
+      throw e;
+    } finally {
+      timers.computeIfAbsent(new Tags(operation, outcome), tags ->
+          Timer.builder(OPERATIONS)
+              .tag("operation", tags.operation())
+              .tag("outcome", tags.value())
+              .publishPercentileHistogram()
+              .minimumExpectedValue(Duration.ofMillis(1))
+              .maximumExpectedValue(Duration.ofSeconds(10))
+              .register(registry))
+          .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  public void recordContentSize(String operation, String content) {
+    contentSizes.computeIfAbsent(operation, op ->
+        DistributionSummary.builder(CONTENT_SIZE)
+            .baseUnit("bytes")
+            .tag("operation", op)
+            .publishPercentileHistogram()
+            .register(registry))
+        .record(utf8Length(content));
+  }
+
+  private static String outcome(RuntimeException e) {
+    if (e instanceof NoteNotFoundException) {
+      return "not_found";
+    }
+    if (e instanceof InvalidNoteContentException) {
+      return "invalid_content";
+    }
+    if (e instanceof InvalidPageRequestException) {
+      return "invalid_request";
+    }
+    if (e instanceof PreconditionFailedException) {
+      return "precondition_failed";
+    }
+    if (e instanceof ServiceBusyException) {
+      return "busy";
+    }
+    return "error";
+  }
+
+  // Encoded size without encoding: content is already in memory as chars, and a
+  // copy per write just to measure it would be wasted.
+  static int utf8Length(String s) {
+    int bytes = 0;
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c < 0x80) {
+        bytes += 1;
+      } else if (c < 0x800) {
+        bytes += 2;
+      } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+        bytes += 4;
+        i++;
+      } else {
+        bytes += 3;
+      }
+    }
+    return bytes;
+  }
+}
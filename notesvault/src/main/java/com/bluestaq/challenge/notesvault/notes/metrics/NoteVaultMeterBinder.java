@@ -0,0 +1,145 @@
+package com.bluestaq.challenge.notesvault.notes.metrics;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import com.bluestaq.challenge.notesvault.notes.archive.NoteArchive;
+import com.bluestaq.challenge.notesvault.notes.cache.NoteCache;
+import com.bluestaq.challenge.notesvault.notes.limit.AdaptiveLimit;
+import com.bluestaq.challenge.notesvault.notes.limit.ConcurrencyLimiter;
+import com.bluestaq.challenge.notesvault.notes.replica.NoteReplica;
+import com.bluestaq.challenge.notesvault.notes.service.GroupCommitNoteWriteExecutor;
+import com.bluestaq.challenge.notesvault.notes.service.NoteSearchService;
+import com.bluestaq.challenge.notesvault.notes.store.AdmissionGate;
+import com.bluestaq.challenge.notesvault.notes.store.log.LogNoteStore;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+// Publishes the statistics our components already keep for JMX as meters, so they
+// reach /actuator/prometheus too. Components that are switched off by configuration
+// (group commit, search, the log engine) simply contribute nothing.
+@Component
+public class NoteVaultMeterBinder implements MeterBinder {
+
+  private final ObjectProvider<NoteCache> noteCache;
+  private final ObjectProvider<GroupCommitNoteWriteExecutor> groupCommit;
+  private final ObjectProvider<NoteSearchService> noteSearch;
+  private final ObjectProvider<LogNoteStore> logNoteStore;
+  private final ObjectProvider<AdmissionGate> admission;
+  private final ObjectProvider<ConcurrencyLimiter> concurrencyLimiter;
+  private final ObjectProvider<NoteReplica> noteReplica;
+  private final ObjectProvider<NoteArchive> noteArchive;
+
+  public NoteVaultMeterBinder(ObjectProvider<NoteCache> noteCache,
+      ObjectProvider<GroupCommitNoteWriteExecutor> groupCommit, ObjectProvider<NoteSearchService> noteSearch,
+      ObjectProvider<LogNoteStore> logNoteStore, ObjectProvider<AdmissionGate> admission,
+      ObjectProvider<ConcurrencyLimiter> concurrencyLimiter, ObjectProvider<NoteReplica> noteReplica,
+      ObjectProvider<NoteArchive> noteArchive) {
+    this.noteCache = noteCache;
+    this.groupCommit = groupCommit;
+    this.noteSearch = noteSearch;
+    this.logNoteStore = logNoteStore;
+    this.admission = admission;
+    this.concurrencyLimiter = concurrencyLimiter;
+    this.noteReplica = noteReplica;
+    this.noteArchive = noteArchive;
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    noteCache.ifAvailable(cache -> {
+      FunctionCounter.builder("notesvault.cache.requests", cache, NoteCache::getHits)
+          .tag("result", "hit").register(registry);
+      FunctionCounter.builder("notesvault.cache.requests", cache, NoteCache::getMisses)
+          .tag("result", "miss").register(registry);
+      FunctionCounter.builder("notesvault.cache.removals", cache, NoteCache::getEvictions)
+          .tag("cause", "eviction").register(registry);
+      FunctionCounter.builder("notesvault.cache.removals", cache, NoteCache::getExpirations)
+          .tag("cause", "expiration").register(registry);
+      Gauge.builder("notesvault.cache.size", cache, NoteCache::getSize).register(registry);
+      Gauge.builder("notesvault.cache.content", cache, NoteCache::getContentBytes)
+          .baseUnit("bytes").register(registry);
+    });
+
+    groupCommit.ifAvailable(executor -> {
+      Gauge.builder("notesvault.group.commit.queue.depth", executor, GroupCommitNoteWriteExecutor::getQueueDepth)
+          .register(registry);
+      FunctionCounter.builder("notesvault.group.commit.batches", executor, GroupCommitNoteWriteExecutor::getBatchesCommitted)
+          .register(registry);
+      FunctionCounter.builder("notesvault.group.commit.writes", executor, GroupCommitNoteWriteExecutor::getWritesCommitted)
+          .register(registry);
+      FunctionCounter.builder("notesvault.group.commit.replays", executor, GroupCommitNoteWriteExecutor::getBatchesReplayed)
+          .register(registry);
+    });
+
+    noteSearch.ifAvailable(search ->
+        Gauge.builder("notesvault.search.rebuilding", search, s -> s.isRebuilding() ? 1 : 0).register(registry));
+
+    logNoteStore.ifAvailable(store -> {
+      Gauge.builder("notesvault.log.notes", store, LogNoteStore::getNoteCount).register(registry);
+      Gauge.builder("notesvault.log.segments", store, LogNoteStore::getSegmentCount).register(registry);
+      Gauge.builder("notesvault.log.garbage", store, LogNoteStore::getGarbageBytes)
+          .baseUnit("bytes").register(registry);
+    });
+
+    admission.ifAvailable(gate -> {
+      if (!gate.isEnabled()) {
+        return;
+      }
+      Gauge.builder("notesvault.admission.active", gate, AdmissionGate::getActiveReads)
+          .tag("kind", "read").register(registry);
+      Gauge.builder("notesvault.admission.active", gate, AdmissionGate::getActiveWrites)
+          .tag("kind", "write").register(registry);
+      Gauge.builder("notesvault.admission.queued", gate, AdmissionGate::getQueuedReads)
+          .tag("kind", "read").register(registry);
+      Gauge.builder("notesvault.admission.queued", gate, AdmissionGate::getQueuedWrites)
+          .tag("kind", "write").register(registry);
+      FunctionCounter.builder("notesvault.admission.rejected", gate, AdmissionGate::getRejected)
+          .register(registry);
+    });
+
+    concurrencyLimiter.ifAvailable(limiter -> {
+      if (!limiter.isEnabled()) {
+        return;
+      }
+      bindLimit(registry, "read", limiter.reads());
+      bindLimit(registry, "write", limiter.writes());
+    });
+
+    noteReplica.ifAvailable(replica -> {
+      if (!replica.isEnabled()) {
+        return;
+      }
+      Gauge.builder("notesvault.replica.notes", replica, NoteReplica::getNotes).register(registry);
+      Gauge.builder("notesvault.replica.heap", replica, NoteReplica::getHeapBytes)
+          .baseUnit("bytes").register(registry);
+      Gauge.builder("notesvault.replica.serving", replica, r -> r.isServing() ? 1 : 0).register(registry);
+    });
+
+    noteArchive.ifAvailable(archive -> {
+      if (!archive.isEnabled()) {
+        return;
+      }
+      Gauge.builder("notesvault.archive.segments", archive, NoteArchive::getSegments).register(registry);
+      Gauge.builder("notesvault.archive.notes", archive, NoteArchive::getSegmentNotes).register(registry);
+      Gauge.builder("notesvault.archive.size", archive, NoteArchive::getSegmentBytes)
+          .baseUnit("bytes").register(registry);
+      FunctionCounter.builder("notesvault.archive.archived", archive, NoteArchive::getNotesArchived)
+          .register(registry);
+      FunctionCounter.builder("notesvault.archive.restored", archive, NoteArchive::getNotesRestored)
+          .register(registry);
+    });
+  }
+
+  private static void bindLimit(MeterRegistry registry, String kind, AdaptiveLimit limit) {
+    Gauge.builder("notesvault.limit.limit", limit, AdaptiveLimit::getLimit)
+        .tag("kind", kind).register(registry);
+    Gauge.builder("notesvault.limit.inflight", limit, AdaptiveLimit::getInFlight)
+        .tag("kind", kind).register(registry);
+    FunctionCounter.builder("notesvault.limit.rejected", limit, AdaptiveLimit::getRejected)
+        .tag("kind", kind).register(registry);
+  }
+}
@@ -0,0 +1,330 @@
+package com.bluestaq.challenge.notesvault.notes.replica;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import com.bluestaq.challenge.notesvault.config.NoteReplicaProperties;
+import com.bluestaq.challenge.notesvault.notes.api.dto.NoteResponse;
+import com.bluestaq.challenge.notesvault.notes.archive.NoteArchive;
+import com.bluestaq.challenge.notesvault.notes.entity.NoteEntity;
+import com.bluestaq.challenge.notesvault.notes.store.ChangeCounter;
+import com.bluestaq.challenge.notesvault.notes.store.NoteStore;
+
+// Optional in-heap copy of every note, for a read-mostly vault: once loaded, NoteService
+// answers getNoteById and listNotes from it without touching the store.
+//
+// Two structures, as in LogNoteStore: a hash map from id to the note, and a sorted set
+// of (createdAt, id) keys for ordered listing and keyset pages. Entries are immutable
+// and compact (createdAt as epoch nanoseconds, content as UTF-8 bytes); a change puts a
+// new entry in place of the old one. Reads take no locks and never wait for a writer.
+// Changes are applied one at a time, so the two structures never disagree for long;
+// a page read during a write may show the vault just before or just after it.
+//
+// Write-through: every write path tells the replica what it wrote, and the change is
+// applied once the transaction commits (NoteStore.afterCommit, as for the change stream),
+// and never for one that rolls back. Commits can be reported out of order, so a change older than the note's
+// current version is ignored, and a deleted note leaves a short-lived tombstone that
+// keeps a late update from bringing it back.
+//
+// If its estimated footprint passes maxSize the replica empties itself and reads go back
+// to the store until the next restart. Size and footprint over JMX as
+// notesvault:type=NoteReplica.
+@Component
+@EnableConfigurationProperties(NoteReplicaProperties.class)
+@ManagedResource(objectName = "notesvault:type=NoteReplica", description = "In-memory note replica")
+public class NoteReplica implements SmartInitializingSingleton {
+
+  private static final Logger log = LoggerFactory.getLogger(NoteReplica.class);
+
+  // how long a deleted id is remembered; far longer than a commit takes to be reported
+  private static final long TOMBSTONE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+  // Estimated heap per note besides its content and id: the entry, the content array
+  // header, a hash map node and table slot, the order key and its skip-list nodes.
+  static final long NOTE_OVERHEAD_BYTES = 160;
+
+  private record Note(String id, long createdAt, byte[] content, long version) {
+    boolean deleted() {
+      return content == null;
+    }
+  }
+
+  private record OrderKey(long createdAt, String id) {}
+
+  private record Tombstone(Note note, long expiresAtNanos) {}
+
+  // stops the startup load once the replica has been dropped
+  private static final class LoadAbandoned extends RuntimeException {
+    LoadAbandoned() {
+      super(null, null, false, false);
+    }
+  }
+
+  private static final Comparator<OrderKey> NEWEST_FIRST =
+      Comparator.comparingLong(OrderKey::createdAt).thenComparing(OrderKey::id).reversed();
+
+  private final boolean enabled;
+  private final long maxBytes;
+  // loads from here: the store's notes and the archived ones
+  private final NoteArchive noteArchive;
+  private final NoteStore noteStore;
+
+  private final ConcurrentHashMap<String, Note> byId = new ConcurrentHashMap<>();
+  private final ConcurrentSkipListSet<OrderKey> order = new ConcurrentSkipListSet<>(NEWEST_FIRST);
+  private final ConcurrentLinkedQueue<Tombstone> tombstones = new ConcurrentLinkedQueue<>();
+  private final ChangeCounter changes = new ChangeCounter();
+
+  // written under the monitor, read without it
+  private volatile boolean serving;
+  // set once the size limit is passed; the replica then stays empty until a restart
+  private volatile boolean dropped;
+  private volatile boolean loading;
+  private volatile long notes;
+  private volatile long heapBytes;
+  private volatile long loadMillis;
+
+  public NoteReplica(NoteReplicaProperties props, NoteArchive noteArchive, NoteStore noteStore) {
+    this.enabled = props.enabled();
+    this.maxBytes = props.maxSize().toBytes();
+    this.noteArchive = noteArchive;
+    this.noteStore = noteStore;
+  }
+
+  // Runs before the web server opens. Writes made while loading are applied as they
+  // come; the version check keeps whichever copy of a note is newer.
+  @Override
+  public void afterSingletonsInstantiated() {
+    if (!enabled) {
+      return;
+    }
+    long start = System.nanoTime();
+    loading = true;
+    try {
+      noteArchive.streamNewestFirst(note -> {
+        if (dropped) {
+          throw new LoadAbandoned();
+        }
+        upsert(entryOf(note));
+      });
+    } catch (LoadAbandoned e) {
+      return;
+    } finally {
+      loading = false;
+    }
+    synchronized (this) {
+      if (dropped) {
+        return;
+      }
+      serving = true;
+    }
+    loadMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    log.info("note replica loaded: {} notes, about {} MB, in {} ms", notes, heapBytes >> 20, loadMillis);
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  // True once loaded, while within maxSize; otherwise ask the store.
+  public boolean isServing() {
+    return serving;
+  }
+
+  // --- reads (lock-free) ---
+
+  public Optional<NoteResponse> findResponseById(String id) {
+    Note note = byId.get(id);
+    return (note == null || note.deleted()) ? Optional.empty() : Optional.of(toResponse(note));
+  }
+
+  // Same contract as NoteStore.findResponsePageBefore.
+  public List<NoteResponse> findResponsePageBefore(Instant lowerCreatedAt, Instant upperCreatedAt, String upperId,
+      int limit) {
+    long lower = nanos(lowerCreatedAt);
+    List<NoteResponse> page = new ArrayList<>(Math.min(limit, 256));
+    Iterator<OrderKey> older = order.tailSet(new OrderKey(nanos(upperCreatedAt), upperId), false).iterator();
+    while (older.hasNext() && page.size() < limit) {
+      OrderKey key = older.next();
+      if (key.createdAt() <= lower) {
+        break;
+      }
+      Note note = byId.get(key.id());
+      // deleted since the key was read
+      if (note != null && !note.deleted()) {
+        page.add(toResponse(note));
+      }
+    }
+    return page;
+  }
+
+  // Moves after every change the replica applies; see NoteStore.generation().
+  public long generation() {
+    return changes.get();
+  }
+
+  // --- write-through ---
+
+  public void created(NoteEntity note) {
+    updated(note);
+  }
+
+  public void updated(NoteEntity note) {
+    if (!enabled) {
+      return;
+    }
+    // copied now: the entity may change again before the commit
+    Note entry = entryOf(note);
+    noteStore.afterCommit(() -> upsert(entry));
+  }
+
+  public void deleted(String id) {
+    if (!enabled) {
+      return;
+    }
+    noteStore.afterCommit(() -> delete(id));
+  }
+
+  private synchronized void upsert(Note note) {
+    if (dropped) {
+      return;
+    }
+    Note current = byId.get(note.id());
+    if (current != null && (current.deleted() || current.version() >= note.version())) {
+      return;
+    }
+    byId.put(note.id(), note);
+    if (current == null) {
+      order.add(new OrderKey(note.createdAt(), note.id()));
+      notes++;
+      heapBytes += NOTE_OVERHEAD_BYTES + idBytes(note.id());
+    } else {
+      heapBytes -= contentBytes(current);
+    }
+    heapBytes += contentBytes(note);
+    changed();
+  }
+
+  private synchronized void delete(String id) {
+    if (dropped) {
+      return;
+    }
+    Note tombstone = new Note(id, 0, null, Long.MAX_VALUE);
+    Note current = byId.put(id, tombstone);
+    tombstones.add(new Tombstone(tombstone, System.nanoTime() + TOMBSTONE_NANOS));
+    if (current != null && !current.deleted()) {
+      order.remove(new OrderKey(current.createdAt(), id));
+      notes--;
+      heapBytes -= NOTE_OVERHEAD_BYTES + idBytes(id) + contentBytes(current);
+    }
+    changed();
+  }
+
+  // Called with the monitor held, after every change.
+  private void changed() {
+    changes.increment();
+    if (!loading) {
+      long now = System.nanoTime();
+      for (Tombstone t = tombstones.peek(); t != null && now - t.expiresAtNanos() > 0; t = tombstones.peek()) {
+        tombstones.poll();
+        // unless the id has been written again since
+        if (byId.get(t.note().id()) == t.note()) {
+          byId.remove(t.note().id());
+        }
+      }
+    }
+    if (heapBytes > maxBytes) {
+      log.warn("note replica passed its size limit ({} bytes, {} notes); reads go to the store", heapBytes, notes);
+      serving = false;
+      dropped = true;
+      byId.clear();
+      order.clear();
+      tombstones.clear();
+      notes = 0;
+      heapBytes = 0;
+    }
+  }
+
+  // --- representation ---
+
+  private static Note entryOf(NoteEntity note) {
+    return new Note(note.getId(), nanos(note.getCreatedAt()),
+        note.getContent().getBytes(StandardCharsets.UTF_8), note.getVersion());
+  }
+
+  private static NoteResponse toResponse(Note note) {
+    return new NoteResponse(note.id(), instant(note.createdAt()),
+        new String(note.content(), StandardCharsets.UTF_8), note.version());
+  }
+
+  // Epoch nanoseconds keep createdAt exact, so the replica's cursors match the store's.
+  // The open page bounds NoteService uses lie outside 1677-2262 and are clamped.
+  static long nanos(Instant instant) {
+    try {
+      return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000_000L), instant.getNano());
+    } catch (ArithmeticException e) {
+      return instant.getEpochSecond() < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+    }
+  }
+
+  private static Instant instant(long nanos) {
+    return Instant.ofEpochSecond(0, nanos);
+  }
+
+  // array header plus data, rounded up to the 8-byte object alignment
+  private static long contentBytes(Note note) {
+    return align(16 + note.content().length);
+  }
+
+  // the String and its Latin-1 or UTF-16 array; ids are ASCII in practice
+  private static long idBytes(String id) {
+    return 24 + align(16 + id.length());
+  }
+
+  private static long align(long bytes) {
+    return (bytes + 7) & ~7L;
+  }
+
+  // --- stats ---
+
+  @ManagedAttribute(description = "Whether reads are answered from the replica")
+  public boolean getServing() {
+    return serving;
+  }
+
+  @ManagedAttribute(description = "Notes held")
+  public long getNotes() {
+    return notes;
+  }
+
+  @ManagedAttribute(description = "Estimated heap used by the replica, in bytes")
+  public long getHeapBytes() {
+    return heapBytes;
+  }
+
+  @ManagedAttribute(description = "Size limit in bytes")
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  @ManagedAttribute(description = "Time the startup load took, in milliseconds")
+  public long getLoadMillis() {
+    return loadMillis;
+  }
+}
@@ -0,0 +1,133 @@
+package com.bluestaq.challenge.notesvault.notes.repo;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.bluestaq.challenge.notesvault.notes.api.dto.NoteResponse;
+import com.bluestaq.challenge.notesvault.notes.entity.NoteIds;
+
+import jakarta.persistence.EntityManager;
+
+// Data access for hot/cold tiering (see NoteArchive): picking the notes to archive,
+// removing them from the table, and the bookkeeping tables from V3 (which segment
+// files exist, and which archived copies no longer count).
+@Repository
+@ConditionalOnProperty(name = "notesvault.store.engine", havingValue = "jpa", matchIfMissing = true)
+@DependsOn("schemaMigrations")
+public class NoteArchiveRepository {
+
+  private final JdbcTemplate jdbc;
+  private final EntityManager entityManager;
+
+  public NoteArchiveRepository(JdbcTemplate jdbc, EntityManager entityManager) {
+    this.jdbc = jdbc;
+    this.entityManager = entityManager;
+  }
+
+  // Segment number -> notes it holds, for every segment whose move committed.
+  public Map<Integer, Long> segments() {
+    Map<Integer, Long> segments = new LinkedHashMap<>();
+    jdbc.query("SELECT segment, notes FROM note_archive_segments ORDER BY segment",
+        rs -> {
+          segments.put(rs.getInt(1), rs.getLong(2));
+        });
+    return segments;
+  }
+
+  // Note id -> highest segment whose copy of it is hidden.
+  public Map<String, Integer> hidden() {
+    Map<String, Integer> hidden = new HashMap<>();
+    jdbc.query("SELECT id, segment FROM note_archive_hidden",
+        rs -> {
+          hidden.put(NoteIds.fromBytes(rs.getBytes(1)), rs.getInt(2));
+        });
+    return hidden;
+  }
+
+  // Up to limit notes created before cutoff, oldest first, starting after
+  // (afterCreatedAt, afterId): a range scan on idx_notes_created_at_id. Read on a
+  // reader connection, as projections, so content comes back decoded.
+  @Transactional(readOnly = true)
+  public List<NoteResponse> oldestBefore(Instant cutoff, Instant afterCreatedAt, String afterId, int limit) {
+    return entityManager.createQuery("""
+            select new com.bluestaq.challenge.notesvault.notes.api.dto.NoteResponse(n.id, n.createdAt, n.content, n.version)
+            from NoteEntity n
+            where n.createdAt < :cutoff
+              and n.createdAt >= :afterCreatedAt
+              and (n.createdAt > :afterCreatedAt or n.id > :afterId)
+            order by n.createdAt, n.id
+            """, NoteResponse.class)
+        .setParameter("cutoff", cutoff)
+        .setParameter("afterCreatedAt", afterCreatedAt)
+        .setParameter("afterId", afterId)
+        .setMaxResults(limit)
+        .getResultList();
+  }
+
+  // Deletes the notes just written to segment from the table, each only while its
+  // version is the one archived, and records the segment. The delete trigger's
+  // tombstones are removed again: the notes still exist. Notes changed or deleted
+  // since they were read are hidden in the segment instead; their ids are returned.
+  // Runs in the caller's write transaction.
+  public List<String> moveOut(List<NoteResponse> notes, int segment) {
+    int[][] counts = jdbc.batchUpdate("DELETE FROM notes WHERE id = ? AND version = ?",
+        notes, notes.size(), (ps, note) -> {
+          ps.setBytes(1, NoteIds.toBytes(note.id()));
+          ps.setLong(2, note.version());
+        });
+    List<String> moved = new ArrayList<>(notes.size());
+    List<String> stale = new ArrayList<>();
+    int i = 0;
+    for (int[] batch : counts) {
+      for (int count : batch) {
+        (count > 0 ? moved : stale).add(notes.get(i++).id());
+      }
+    }
+    if (!moved.isEmpty()) {
+      jdbc.batchUpdate("DELETE FROM note_tombstones WHERE id = ?",
+          moved, moved.size(), (ps, id) -> ps.setBytes(1, NoteIds.toBytes(id)));
+    }
+    hide(stale, segment);
+    jdbc.update("INSERT INTO note_archive_segments (segment, notes, archived_at) VALUES (?, ?, ?)",
+        segment, notes.size(), System.currentTimeMillis());
+    return stale;
+  }
+
+  // Whether the note's copy in segment may be restored: the note is not in the table
+  // and the copy is not hidden. Runs in the caller's write transaction, after flushing
+  // Hibernate, so restores earlier in the same transaction count.
+  public boolean isRestorable(String id, int segment) {
+    entityManager.flush();
+    byte[] key = NoteIds.toBytes(id);
+    return Boolean.TRUE.equals(jdbc.queryForObject("""
+        SELECT NOT EXISTS (SELECT 1 FROM notes WHERE id = ?)
+           AND NOT EXISTS (SELECT 1 FROM note_archive_hidden WHERE id = ? AND segment >= ?)
+        """, Boolean.class, key, key, segment));
+  }
+
+  // Hides the notes' copies in segment and every older one. Runs in the caller's
+  // write transaction.
+  public void hide(Collection<String> ids, int segment) {
+    if (ids.isEmpty()) {
+      return;
+    }
+    jdbc.batchUpdate("""
+        INSERT INTO note_archive_hidden (id, segment) VALUES (?, ?)
+        ON CONFLICT (id) DO UPDATE SET segment = max(segment, excluded.segment)
+        """, ids, ids.size(), (ps, id) -> {
+          ps.setBytes(1, NoteIds.toBytes(id));
+          ps.setInt(2, segment);
+        });
+  }
+}
@@ -0,0 +1,54 @@
+package com.bluestaq.challenge.notesvault.notes.repo;
+
+import java.util.List;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.bluestaq.challenge.notesvault.notes.entity.NoteContentCodec;
+
+// Raw access to the stored form of notes.content, for rewriting existing rows when the
+// compression settings change (see NoteRecompressionService). Rows are walked in rowid
+// order so a pass can stop and resume anywhere.
+@Repository
+@ConditionalOnProperty(name = "notesvault.store.engine", havingValue = "jpa", matchIfMissing = true)
+public class NoteContentRepository {
+
+  public record StoredContent(long rowid, long version, byte[] content) {}
+
+  private final JdbcTemplate jdbc;
+
+  public NoteContentRepository(JdbcTemplate jdbc) {
+    this.jdbc = jdbc;
+  }
+
+  // Up to chunkSize rows with rowid > afterRowid, read on a reader connection.
+  @Transactional(readOnly = true)
+  public List<StoredContent> readChunk(long afterRowid, int chunkSize) {
+    return jdbc.query(
+        "SELECT rowid, version, content FROM notes WHERE rowid > ? ORDER BY rowid LIMIT ?",
+        (rs, i) -> new StoredContent(rs.getLong(1), rs.getLong(2), rs.getBytes(3)),
+        afterRowid, chunkSize);
+  }
+
+  // Replaces the stored content of each row in one write transaction. A row whose
+  // version moved on since it was read has been rewritten by a normal update (already
+  // in the current format) and is left alone. Returns the number of rows replaced.
+  @Transactional
+  public int rewrite(List<StoredContent> rows) {
+    int[][] counts = jdbc.batchUpdate(
+        "UPDATE notes SET content = ? WHERE rowid = ? AND version = ?",
+        rows, rows.size(), (ps, row) -> {
+          ps.setObject(1, NoteContentCodec.columnValue(row.content()));
+          ps.setLong(2, row.rowid());
+          ps.setLong(3, row.version());
+        });
+    int rewritten = 0;
+    for (int count : counts[0]) {
+      rewritten += count;
+    }
+    return rewritten;
+  }
+}
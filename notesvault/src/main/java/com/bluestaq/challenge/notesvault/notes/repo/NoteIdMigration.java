@@ -0,0 +1,162 @@
+package com.bluestaq.challenge.notesvault.notes.repo;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sqlite.Function;
+import org.sqlite.SQLiteConnection;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.jpa.autoconfigure.EntityManagerFactoryDependsOnPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.stereotype.Component;
+
+import com.bluestaq.challenge.notesvault.notes.entity.NoteIds;
+
+// One-off migration of databases created before ids became 16-byte keys: their notes.id
+// column is TEXT holding 36-char UUID strings.
+//
+// Runs before Hibernate starts (schema update included), on the writer connection, in a
+// single transaction. SQLite cannot change a column's type in place, so the table is
+// copied into one with a BLOB id - converting each id with NoteIds.toBytes through an
+// application-defined SQL function - and swapped in. Rowids are copied unchanged, so the
+// full-text index stays valid; its triggers and the table's indexes are recreated from
+// their original definitions. A database that is new or already migrated is left alone.
+//
+// The old pages are only returned to the free list; run VACUUM (then rebuild the search
+// index, see NoteSearchService) to shrink the file.
+@Component
+public class NoteIdMigration implements InitializingBean {
+
+  private static final Logger log = LoggerFactory.getLogger(NoteIdMigration.class);
+
+  private static final String CONVERT_FUNCTION = "note_id_bytes";
+
+  private final DataSource writer;
+
+  public NoteIdMigration(@Qualifier("sqliteWriterDataSource") DataSource writer) {
+    this.writer = writer;
+  }
+
+  // the entity manager factory (and with it ddl-auto) waits for this bean
+  @Bean
+  static EntityManagerFactoryDependsOnPostProcessor noteIdMigrationBeforeJpa() {
+    return new EntityManagerFactoryDependsOnPostProcessor(NoteIdMigration.class);
+  }
+
+  private record Column(String name, String type, boolean notNull, String defaultValue, boolean primaryKey) {}
+
+  @Override
+  public void afterPropertiesSet() throws SQLException {
+    try (Connection conn = writer.getConnection()) {
+      List<Column> columns = columns(conn);
+      Column id = columns.stream().filter(c -> c.name().equalsIgnoreCase("id")).findFirst().orElse(null);
+      if (id == null || !isText(id.type())) {
+        return;
+      }
+      log.info("migrating notes.id from {} to 16-byte keys", id.type());
+      int migrated = migrate(conn, columns);
+      log.info("migrated {} notes to 16-byte ids", migrated);
+    }
+  }
+
+  private static int migrate(Connection conn, List<Column> columns) throws SQLException {
+    SQLiteConnection sqlite = conn.unwrap(SQLiteConnection.class);
+    Function.create(sqlite, CONVERT_FUNCTION, new Function() {
+      @Override
+      protected void xFunc() throws SQLException {
+        result(NoteIds.toBytes(value_text(0)));
+      }
+    });
+
+    boolean autoCommit = conn.getAutoCommit();
+    conn.setAutoCommit(false);
+    try (Statement st = conn.createStatement()) {
+      List<String> dependents = dependentObjects(st);
+
+      List<String> names = new ArrayList<>();
+      List<String> values = new ArrayList<>();
+      List<String> definitions = new ArrayList<>();
+      for (Column c : columns) {
+        boolean isId = c.name().equalsIgnoreCase("id");
+        names.add(quote(c.name()));
+        values.add(isId ? CONVERT_FUNCTION + "(" + quote(c.name()) + ")" : quote(c.name()));
+        definitions.add(definition(c, isId ? "blob" : c.type()));
+      }
+
+      st.execute("CREATE TABLE notes_migrating (" + String.join(", ", definitions) + ")");
+      int rows = st.executeUpdate("INSERT INTO notes_migrating (rowid, " + String.join(", ", names) + ") "
+          + "SELECT rowid, " + String.join(", ", values) + " FROM notes");
+      st.execute("DROP TABLE notes");
+      st.execute("ALTER TABLE notes_migrating RENAME TO notes");
+      for (String ddl : dependents) {
+        st.execute(ddl);
+      }
+      conn.commit();
+      return rows;
+    } catch (SQLException | RuntimeException e) {
+      conn.rollback();
+      throw e;
+    } finally {
+      conn.setAutoCommit(autoCommit);
+      Function.destroy(sqlite, CONVERT_FUNCTION);
+    }
+  }
+
+  private static List<Column> columns(Connection conn) throws SQLException {
+    List<Column> columns = new ArrayList<>();
+    try (Statement st = conn.createStatement();
+        ResultSet rs = st.executeQuery("PRAGMA table_info(notes)")) {
+      while (rs.next()) {
+        columns.add(new Column(rs.getString("name"), rs.getString("type"), rs.getInt("notnull") == 1,
+            rs.getString("dflt_value"), rs.getInt("pk") > 0));
+      }
+    }
+    return columns;
+  }
+
+  // indexes and triggers on notes (the FTS sync triggers among them); they are dropped
+  // along with the old table. Automatic indexes (sql is null) come back with the table.
+  private static List<String> dependentObjects(Statement st) throws SQLException {
+    List<String> ddl = new ArrayList<>();
+    try (ResultSet rs = st.executeQuery(
+        "SELECT sql FROM sqlite_master WHERE tbl_name = 'notes' AND type IN ('index', 'trigger') AND sql IS NOT NULL")) {
+      while (rs.next()) {
+        ddl.add(rs.getString(1));
+      }
+    }
+    return ddl;
+  }
+
+  private static String definition(Column c, String type) {
+    StringBuilder sql = new StringBuilder(quote(c.name())).append(' ').append(type);
+    if (c.primaryKey()) {
+      sql.append(" PRIMARY KEY");
+    }
+    if (c.notNull()) {
+      sql.append(" NOT NULL");
+    }
+    if (c.defaultValue() != null) {
+      sql.append(" DEFAULT ").append(c.defaultValue());
+    }
+    return sql.toString();
+  }
+
+  // SQLite type affinity: a declared type mentioning CHAR, CLOB or TEXT stores text
+  private static boolean isText(String type) {
+    String upper = type.toUpperCase();
+    return upper.contains("CHAR") || upper.contains("CLOB") || upper.contains("TEXT");
+  }
+
+  private static String quote(String name) {
+    return '"' + name.replace("\"", "\"\"") + '"';
+  }
+}
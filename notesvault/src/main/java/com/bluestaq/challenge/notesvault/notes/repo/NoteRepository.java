@@ -1,15 +1,29 @@
 package com.bluestaq.challenge.notesvault.notes.repo;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import com.bluestaq.challenge.notesvault.notes.api.dto.NoteResponse;
 import com.bluestaq.challenge.notesvault.notes.entity.NoteEntity;
 
+import jakarta.persistence.QueryHint;
+
 // This interface will make it easier to perform CRUD operations on NoteEntity objects in the database
 // Through this interface, we can save, find, delete, and perform other operations on NoteEntity instances.
 // This is how we communicate with the database layer in a Spring application using JPA.
 public interface NoteRepository extends JpaRepository<NoteEntity, String> {
+
+  // notes per keyset page (and per read admission) when streaming the export
+  int EXPORT_PAGE_SIZE = 500;
   /*
   By extending JpaRepository, this repository inherits many useful methods:
     - save(NoteEntity entity)
@@ -20,4 +34,72 @@ public interface NoteRepository extends JpaRepository<NoteEntity, String> {
     - count()
   */
   List<NoteEntity> findAllByOrderByCreatedAtDesc();
+
+  // Keyset page, newest first. Every bound is always supplied (the service fills
+  // in open ends) so SQLite can turn the created_at predicates into a range scan
+  // on idx_notes_created_at_id instead of walking the index from the top.
+  // Rows sharing upperCreatedAt are only included when their id sorts below upperId,
+  // which is how a cursor resumes mid-timestamp.
+  @Query("""
+      select n from NoteEntity n
+      where n.createdAt > :lowerCreatedAt
+        and n.createdAt <= :upperCreatedAt
+        and (n.createdAt < :upperCreatedAt or n.id < :upperId)
+      order by n.createdAt desc, n.id desc
+      """)
+  List<NoteEntity> findPageBefore(
+      @Param("lowerCreatedAt") Instant lowerCreatedAt,
+      @Param("upperCreatedAt") Instant upperCreatedAt,
+      @Param("upperId") String upperId,
+      Pageable pageable);
+
+  // Read-only projections for GET /v1/notes/{id} and GET /v1/notes: the constructor
+  // expression builds the response body straight from the row, so Hibernate creates no
+  // managed entity, keeps no dirty-check snapshot and does not flush before the query.
+  // Same predicates as above; callers run them in a read-only transaction.
+  @QueryHints(@QueryHint(name = "org.hibernate.flushMode", value = "MANUAL"))
+  @Query("""
+      select new com.bluestaq.challenge.notesvault.notes.api.dto.NoteResponse(n.id, n.createdAt, n.content, n.version)
+      from NoteEntity n
+      where n.id = :id
+      """)
+  Optional<NoteResponse> findResponseById(@Param("id") String id);
+
+  @QueryHints(@QueryHint(name = "org.hibernate.flushMode", value = "MANUAL"))
+  @Query("""
+      select new com.bluestaq.challenge.notesvault.notes.api.dto.NoteResponse(n.id, n.createdAt, n.content, n.version)
+      from NoteEntity n
+      where n.createdAt > :lowerCreatedAt
+        and n.createdAt <= :upperCreatedAt
+        and (n.createdAt < :upperCreatedAt or n.id < :upperId)
+      order by n.createdAt desc, n.id desc
+      """)
+  List<NoteResponse> findResponsePageBefore(
+      @Param("lowerCreatedAt") Instant lowerCreatedAt,
+      @Param("upperCreatedAt") Instant upperCreatedAt,
+      @Param("upperId") String upperId,
+      Pageable pageable);
+
+  // If-Match writes: the version check and the change are one statement.
+  // The persistence context is flushed first and cleared afterwards, so pending
+  // changes are not lost and later reads in the same transaction see the new row.
+  @Modifying(flushAutomatically = true, clearAutomatically = true)
+  @Query("""
+      update NoteEntity n set n.content = :content, n.version = n.version + 1
+      where n.id = :id and n.version in :versions
+      """)
+  int updateContentIfVersion(
+      @Param("id") String id,
+      @Param("content") String content,
+      @Param("versions") Collection<Long> versions);
+
+  // Plain delete in one statement; the row count says whether the note existed.
+  // (CrudRepository.deleteById loads the entity first and then removes it.)
+  @Modifying(flushAutomatically = true, clearAutomatically = true)
+  @Query("delete from NoteEntity n where n.id = :id")
+  int deleteNoteById(@Param("id") String id);
+
+  @Modifying(flushAutomatically = true, clearAutomatically = true)
+  @Query("delete from NoteEntity n where n.id = :id and n.version in :versions")
+  int deleteByIdIfVersion(@Param("id") String id, @Param("versions") Collection<Long> versions);
 }
@@ -0,0 +1,133 @@
+package com.bluestaq.challenge.notesvault.notes.repo;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.hibernate.query.NativeQuery;
+import org.hibernate.type.StandardBasicTypes;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import com.bluestaq.challenge.notesvault.notes.api.dto.NoteSearchHit;
+import com.bluestaq.challenge.notesvault.notes.entity.NoteIds;
+
+import jakarta.persistence.EntityManager;
+
+// Data access for the SQLite FTS5 index over notes.content.
+//
+// notes_fts is keyed by the rowid of the matching notes row and kept in sync by
+// triggers, so every write path (JPA, batch, group commit) updates it in the same
+// transaction as the note itself. The triggers use INSERT OR REPLACE and delete by
+// rowid, which are harmless for rows the index has not seen yet - that is what lets
+// a backfill run in small chunks while writes keep flowing.
+//
+// The triggers index note_text(content) rather than the column itself: content may be
+// stored compressed (see NoteContentCodec), and note_text is registered on every
+// connection by SqliteDataSourceConfig to decode it.
+//
+// Note rowids are only stable until a VACUUM; rebuild the index after vacuuming.
+@Repository
+@ConditionalOnProperty(name = "notesvault.store.engine", havingValue = "jpa", matchIfMissing = true)
+public class NoteSearchRepository {
+
+  private static final String[] SCHEMA = {
+      """
+      CREATE VIRTUAL TABLE IF NOT EXISTS notes_fts
+      USING fts5(content, tokenize = 'unicode61 remove_diacritics 2')
+      """,
+      """
+      CREATE TRIGGER IF NOT EXISTS notes_fts_ai AFTER INSERT ON notes BEGIN
+        INSERT OR REPLACE INTO notes_fts(rowid, content) VALUES (new.rowid, note_text(new.content));
+      END
+      """,
+      """
+      CREATE TRIGGER IF NOT EXISTS notes_fts_au AFTER UPDATE OF content ON notes BEGIN
+        INSERT OR REPLACE INTO notes_fts(rowid, content) VALUES (new.rowid, note_text(new.content));
+      END
+      """,
+      """
+      CREATE TRIGGER IF NOT EXISTS notes_fts_ad AFTER DELETE ON notes BEGIN
+        DELETE FROM notes_fts WHERE rowid = old.rowid;
+      END
+      """
+  };
+
+  private final JdbcTemplate jdbc;
+  private final EntityManager entityManager;
+
+  public NoteSearchRepository(JdbcTemplate jdbc, EntityManager entityManager) {
+    this.jdbc = jdbc;
+    this.entityManager = entityManager;
+  }
+
+  // Creates the index and triggers if needed. Returns true when the triggers were
+  // missing, i.e. notes may have been written that the index never saw.
+  // Triggers from before content compression (indexing new.content directly) are
+  // replaced; everything they indexed was plain text, so no rebuild is needed.
+  public boolean ensureSchema() {
+    Integer triggers = jdbc.queryForObject(
+        "SELECT count(*) FROM sqlite_master WHERE type = 'trigger' AND name LIKE 'notes_fts_%'",
+        Integer.class);
+    List<String> outdated = jdbc.queryForList(
+        "SELECT name FROM sqlite_master WHERE type = 'trigger' AND name IN ('notes_fts_ai', 'notes_fts_au')"
+            + " AND sql NOT LIKE '%note_text(%'",
+        String.class);
+    for (String name : outdated) {
+      jdbc.execute("DROP TRIGGER " + name);
+    }
+    for (String ddl : SCHEMA) {
+      jdbc.execute(ddl);
+    }
+    return triggers == null || triggers < 3;
+  }
+
+  // Indexes up to chunkSize notes with rowid > afterRowid, in one short write
+  // transaction. Returns the last rowid indexed, or -1 when there was nothing left.
+  public long backfillChunk(long afterRowid, int chunkSize) {
+    Long upTo = jdbc.queryForObject(
+        "SELECT max(rowid) FROM (SELECT rowid FROM notes WHERE rowid > ? ORDER BY rowid LIMIT ?)",
+        Long.class, afterRowid, chunkSize);
+    if (upTo == null) {
+      return -1;
+    }
+    jdbc.update(
+        "INSERT OR REPLACE INTO notes_fts(rowid, content) SELECT rowid, note_text(content) FROM notes WHERE rowid > ? AND rowid <= ?",
+        afterRowid, upTo);
+    return upTo;
+  }
+
+  // Removes index entries whose note no longer exists.
+  public int purgeOrphans() {
+    return jdbc.update("DELETE FROM notes_fts WHERE rowid NOT IN (SELECT rowid FROM notes)");
+  }
+
+  // ftsQuery must already be a valid FTS5 expression. Best matches first.
+  @SuppressWarnings("unchecked")
+  public List<NoteSearchHit> search(String ftsQuery, int limit, int offset) {
+    List<Object[]> rows = entityManager.createNativeQuery("""
+        SELECT n.id AS id,
+               n.created_at AS created_at,
+               snippet(notes_fts, 0, '[', ']', '...', 16) AS snippet,
+               notes_fts.rank AS score
+        FROM notes_fts
+        JOIN notes n ON n.rowid = notes_fts.rowid
+        WHERE notes_fts MATCH :q
+        ORDER BY notes_fts.rank
+        LIMIT :limit OFFSET :offset
+        """)
+        .unwrap(NativeQuery.class)
+        .addScalar("id", StandardBasicTypes.BINARY)
+        .addScalar("created_at", StandardBasicTypes.INSTANT)
+        .addScalar("snippet", StandardBasicTypes.STRING)
+        .addScalar("score", StandardBasicTypes.DOUBLE)
+        .setParameter("q", ftsQuery)
+        .setParameter("limit", limit)
+        .setParameter("offset", offset)
+        .getResultList();
+
+    return rows.stream()
+        .map(r -> new NoteSearchHit(NoteIds.fromBytes((byte[]) r[0]), (Instant) r[1], (String) r[2], (Double) r[3]))
+        .toList();
+  }
+}
@@ -0,0 +1,175 @@
+package com.bluestaq.challenge.notesvault.notes.repo;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.hibernate.query.NativeQuery;
+import org.hibernate.type.StandardBasicTypes;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.bluestaq.challenge.notesvault.notes.entity.NoteIds;
+
+import jakarta.persistence.EntityManager;
+
+// Data access for delta sync (GET /v1/notes/changes).
+//
+// Every change to the notes table takes the next number from note_sync_clock: an insert
+// or update stamps it on the row (notes.change_seq), a delete stores it in a tombstone.
+// A note's row therefore only records its latest change, so any number of updates to one
+// note cost a client a single entry. Like the full-text index (NoteSearchRepository),
+// the numbers are kept by triggers, so every write path (JPA, batch, group commit)
+// stamps them in the same transaction as the write. An update counts only when it sets
+// version, which every edit bumps: recompression rewrites content without changing the
+// note, and must not send the whole vault to every client again. SQLite has one writer
+// at a time, so the numbers are handed out in commit order: a reader that sees change n
+// also sees every change before it.
+//
+// A note id that is written again after it was deleted loses its tombstone; the new
+// row's number is later, so a client still ends up with the right state.
+@Repository
+@ConditionalOnProperty(name = "notesvault.store.engine", havingValue = "jpa", matchIfMissing = true)
+public class NoteSyncRepository {
+
+  // Milliseconds since the epoch, in SQL
+  private static final String NOW_MILLIS = "CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER)";
+
+  private static final String[] SCHEMA = {
+      "INSERT OR IGNORE INTO note_sync_clock (id, last_seq, purged_seq) SELECT 1, coalesce(max(change_seq), 0), 0 FROM notes",
+      """
+      CREATE TRIGGER IF NOT EXISTS notes_sync_ai AFTER INSERT ON notes BEGIN
+        UPDATE note_sync_clock SET last_seq = last_seq + 1 WHERE id = 1;
+        UPDATE notes SET change_seq = (SELECT last_seq FROM note_sync_clock WHERE id = 1) WHERE rowid = new.rowid;
+        DELETE FROM note_tombstones WHERE id = new.id;
+      END
+      """,
+      // not on change_seq itself, so the trigger's own stamp does not fire it again
+      """
+      CREATE TRIGGER IF NOT EXISTS notes_sync_au AFTER UPDATE OF version ON notes BEGIN
+        UPDATE note_sync_clock SET last_seq = last_seq + 1 WHERE id = 1;
+        UPDATE notes SET change_seq = (SELECT last_seq FROM note_sync_clock WHERE id = 1) WHERE rowid = new.rowid;
+      END
+      """,
+      """
+      CREATE TRIGGER IF NOT EXISTS notes_sync_ad AFTER DELETE ON notes BEGIN
+        UPDATE note_sync_clock SET last_seq = last_seq + 1 WHERE id = 1;
+        INSERT OR REPLACE INTO note_tombstones (id, change_seq, deleted_at)
+          VALUES (old.id, (SELECT last_seq FROM note_sync_clock WHERE id = 1), %s);
+      END
+      """.formatted(NOW_MILLIS)
+  };
+
+  // The latest number handed out, and the highest one compaction has removed.
+  public record Clock(long lastSeq, long purgedSeq) {}
+
+  // A live note as delta sync returns it.
+  public record ChangedNote(long seq, String id, Instant createdAt, String content, long version) {}
+
+  public record Tombstone(long seq, String id) {}
+
+  private final JdbcTemplate jdbc;
+  private final EntityManager entityManager;
+
+  public NoteSyncRepository(JdbcTemplate jdbc, EntityManager entityManager) {
+    this.jdbc = jdbc;
+    this.entityManager = entityManager;
+  }
+
+  // Creates the triggers if needed; they are lost whenever the notes table is recreated
+  // (ddl-auto=create-drop). Notes written while they were missing still have change_seq
+  // 0 and are given fresh numbers; deletes from that time left no tombstone.
+  // Returns true when the triggers were missing.
+  // An update trigger from before recompression was left alone (firing on content too)
+  // is replaced.
+  public boolean ensureSchema() {
+    Integer triggers = jdbc.queryForObject(
+        "SELECT count(*) FROM sqlite_master WHERE type = 'trigger' AND name LIKE 'notes_sync_%'",
+        Integer.class);
+    List<String> outdated = jdbc.queryForList(
+        "SELECT name FROM sqlite_master WHERE type = 'trigger' AND name = 'notes_sync_au'"
+            + " AND sql LIKE '%UPDATE OF content%'",
+        String.class);
+    for (String name : outdated) {
+      jdbc.execute("DROP TRIGGER " + name);
+    }
+    for (String ddl : SCHEMA) {
+      jdbc.execute(ddl);
+    }
+    if (triggers != null && triggers >= 3) {
+      return false;
+    }
+    jdbc.update("UPDATE notes SET change_seq = (SELECT last_seq FROM note_sync_clock WHERE id = 1) + rowid"
+        + " WHERE change_seq = 0");
+    jdbc.update("UPDATE note_sync_clock SET last_seq = max(last_seq, (SELECT coalesce(max(change_seq), 0) FROM notes))"
+        + " WHERE id = 1");
+    return true;
+  }
+
+  public Clock clock() {
+    Object[] row = (Object[]) entityManager.createNativeQuery(
+            "SELECT last_seq, purged_seq FROM note_sync_clock WHERE id = 1")
+        .unwrap(NativeQuery.class)
+        .addScalar("last_seq", StandardBasicTypes.LONG)
+        .addScalar("purged_seq", StandardBasicTypes.LONG)
+        .getSingleResult();
+    return new Clock((Long) row[0], (Long) row[1]);
+  }
+
+  // The first limit live notes changed after seq, in change order: a range scan on
+  // idx_notes_change_seq. Selected as columns, so content still goes through its converter.
+  public List<ChangedNote> notesChangedAfter(long seq, int limit) {
+    return entityManager.createQuery("""
+            select n.changeSeq, n.id, n.createdAt, n.content, n.version
+            from NoteEntity n
+            where n.changeSeq > :seq
+            order by n.changeSeq
+            """, Object[].class)
+        .setParameter("seq", seq)
+        .setMaxResults(limit)
+        .getResultStream()
+        .map(r -> new ChangedNote((Long) r[0], (String) r[1], (Instant) r[2], (String) r[3], (Long) r[4]))
+        .toList();
+  }
+
+  // The first limit tombstones after seq, in change order.
+  @SuppressWarnings("unchecked")
+  public List<Tombstone> tombstonesAfter(long seq, int limit) {
+    List<Object[]> rows = entityManager.createNativeQuery("""
+            SELECT change_seq, id FROM note_tombstones
+            WHERE change_seq > :seq
+            ORDER BY change_seq
+            LIMIT :limit
+            """)
+        .unwrap(NativeQuery.class)
+        .addScalar("change_seq", StandardBasicTypes.LONG)
+        .addScalar("id", StandardBasicTypes.BINARY)
+        .setParameter("seq", seq)
+        .setParameter("limit", limit)
+        .getResultList();
+    return rows.stream()
+        .map(r -> new Tombstone((Long) r[0], NoteIds.fromBytes((byte[]) r[1])))
+        .toList();
+  }
+
+  // Removes up to chunkSize of the oldest tombstones written before cutoff, in one short
+  // write transaction, and raises purged_seq to cover them. Returns the number removed.
+  @Transactional
+  public int compactChunk(Instant cutoff, int chunkSize) {
+    Long upTo = jdbc.queryForObject("""
+        SELECT max(change_seq) FROM (
+          SELECT change_seq FROM note_tombstones WHERE deleted_at < ? ORDER BY change_seq LIMIT ?)
+        """, Long.class, cutoff.toEpochMilli(), chunkSize);
+    if (upTo == null) {
+      return 0;
+    }
+    jdbc.update("UPDATE note_sync_clock SET purged_seq = max(purged_seq, ?) WHERE id = 1", upTo);
+    return jdbc.update("DELETE FROM note_tombstones WHERE change_seq <= ?", upTo);
+  }
+
+  public long tombstoneCount() {
+    Long count = jdbc.queryForObject("SELECT count(*) FROM note_tombstones", Long.class);
+    return count == null ? 0 : count;
+  }
+}
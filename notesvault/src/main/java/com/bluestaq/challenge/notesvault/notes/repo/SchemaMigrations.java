@@ -0,0 +1,171 @@
+package com.bluestaq.challenge.notesvault.notes.repo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.jpa.autoconfigure.EntityManagerFactoryDependsOnPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.EncodedResource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.stereotype.Component;
+
+// Versioned schema migrations: classpath:db/migration/V<n>__<description>.sql, applied
+// in version order, each in its own transaction on the writer connection, and recorded
+// in schema_version with a checksum. A script that changed after it was applied stops
+// startup; add a new version instead of editing an old one.
+//
+// Runs before Hibernate starts (after NoteIdMigration), so spring.jpa.hibernate.ddl-auto
+// can be validate: Hibernate then only checks that the entities match what the scripts
+// built. V1 creates the notes table the way ddl-auto=update did, with IF NOT EXISTS, so
+// databases from before migrations existed are taken over as they are. Those from before
+// note versioning lack the version column, which a script cannot add only where it is
+// missing; addVersionColumnIfMissing does that after the scripts, on every start.
+//
+// Statements are split on ';' (ScriptUtils), so a script cannot contain a trigger body.
+@Component
+@DependsOn("noteIdMigration")
+public class SchemaMigrations implements InitializingBean {
+
+  private static final Logger log = LoggerFactory.getLogger(SchemaMigrations.class);
+
+  private static final String LOCATION = "classpath*:db/migration/V*__*.sql";
+  private static final Pattern NAME = Pattern.compile("V(\\d+)__(.+)\\.sql");
+
+  private final DataSource writer;
+
+  public SchemaMigrations(@Qualifier("sqliteWriterDataSource") DataSource writer) {
+    this.writer = writer;
+  }
+
+  // the entity manager factory (and with it ddl-auto) waits for this bean
+  @Bean
+  static EntityManagerFactoryDependsOnPostProcessor schemaMigrationsBeforeJpa() {
+    return new EntityManagerFactoryDependsOnPostProcessor(SchemaMigrations.class);
+  }
+
+  private record Migration(int version, String description, Resource script, long checksum) {}
+
+  @Override
+  public void afterPropertiesSet() throws SQLException, IOException {
+    List<Migration> migrations = migrations();
+    try (Connection conn = writer.getConnection()) {
+      try (Statement st = conn.createStatement()) {
+        st.execute("CREATE TABLE IF NOT EXISTS schema_version ("
+            + "version INTEGER PRIMARY KEY, description TEXT NOT NULL, checksum INTEGER NOT NULL, installed_at TEXT NOT NULL)");
+      }
+      Map<Integer, Long> applied = applied(conn);
+      for (Migration m : migrations) {
+        Long checksum = applied.get(m.version());
+        if (checksum == null) {
+          log.info("applying schema migration V{} ({})", m.version(), m.description());
+          apply(conn, m);
+        } else if (checksum != m.checksum()) {
+          throw new IllegalStateException("schema migration V" + m.version() + " (" + m.script().getFilename()
+              + ") has changed since it was applied; add a new version instead");
+        }
+      }
+      addVersionColumnIfMissing(conn);
+    }
+  }
+
+  // Same definition as in V1; existing notes start at version 1.
+  private static void addVersionColumnIfMissing(Connection conn) throws SQLException {
+    try (Statement st = conn.createStatement()) {
+      boolean missing;
+      try (ResultSet rs = st.executeQuery("SELECT EXISTS (SELECT 1 FROM pragma_table_info('notes'))"
+          + " AND NOT EXISTS (SELECT 1 FROM pragma_table_info('notes') WHERE name = 'version')")) {
+        missing = rs.next() && rs.getBoolean(1);
+      }
+      if (missing) {
+        log.info("adding the version column to notes");
+        st.execute("ALTER TABLE notes ADD COLUMN version bigint DEFAULT 1 NOT NULL");
+      }
+    }
+  }
+
+  private static List<Migration> migrations() throws IOException {
+    List<Migration> migrations = new ArrayList<>();
+    for (Resource script : new PathMatchingResourcePatternResolver().getResources(LOCATION)) {
+      Matcher name = NAME.matcher(script.getFilename());
+      if (!name.matches()) {
+        continue;
+      }
+      int version = Integer.parseInt(name.group(1));
+      if (migrations.stream().anyMatch(m -> m.version() == version)) {
+        throw new IllegalStateException("more than one schema migration for V" + version);
+      }
+      migrations.add(new Migration(version, name.group(2).replace('_', ' '), script, checksum(script)));
+    }
+    migrations.sort(Comparator.comparingInt(Migration::version));
+    return migrations;
+  }
+
+  private static Map<Integer, Long> applied(Connection conn) throws SQLException {
+    Map<Integer, Long> applied = new HashMap<>();
+    try (Statement st = conn.createStatement();
+        ResultSet rs = st.executeQuery("SELECT version, checksum FROM schema_version")) {
+      while (rs.next()) {
+        applied.put(rs.getInt(1), rs.getLong(2));
+      }
+    }
+    return applied;
+  }
+
+  private static void apply(Connection conn, Migration m) throws SQLException {
+    boolean autoCommit = conn.getAutoCommit();
+    conn.setAutoCommit(false);
+    try {
+      ScriptUtils.executeSqlScript(conn, new EncodedResource(m.script(), "UTF-8"));
+      try (PreparedStatement ps = conn.prepareStatement(
+          "INSERT INTO schema_version (version, description, checksum, installed_at) VALUES (?, ?, ?, ?)")) {
+        ps.setInt(1, m.version());
+        ps.setString(2, m.description());
+        ps.setLong(3, m.checksum());
+        ps.setString(4, Instant.now().toString());
+        ps.executeUpdate();
+      }
+      conn.commit();
+    } catch (SQLException | RuntimeException e) {
+      conn.rollback();
+      throw e;
+    } finally {
+      conn.setAutoCommit(autoCommit);
+    }
+  }
+
+  // line endings are left out, so a checkout with CRLF gives the same checksum
+  private static long checksum(Resource script) throws IOException {
+    CRC32 crc = new CRC32();
+    try (InputStream in = script.getInputStream()) {
+      for (byte b : in.readAllBytes()) {
+        if (b != '\r') {
+          crc.update(b);
+        }
+      }
+    }
+    return crc.getValue();
+  }
+}
@@ -0,0 +1,17 @@
+package com.bluestaq.challenge.notesvault.notes.service;
+
+import java.util.function.Supplier;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+// Default: every write commits on its own, on the request thread.
+@Component
+@ConditionalOnProperty(name = "notesvault.group-commit.enabled", havingValue = "false", matchIfMissing = true)
+public class DirectNoteWriteExecutor implements NoteWriteExecutor {
+
+  @Override
+  public <T> T execute(Supplier<T> write) {
+    return write.get();
+  }
+}
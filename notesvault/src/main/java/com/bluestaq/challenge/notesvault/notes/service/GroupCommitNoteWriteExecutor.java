@@ -0,0 +1,274 @@
+package com.bluestaq.challenge.notesvault.notes.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import com.bluestaq.challenge.notesvault.config.GroupCommitProperties;
+import com.bluestaq.challenge.notesvault.notes.store.NoteStore;
+
+// Group commit: request threads enqueue their write and block; one writer thread drains
+// the queue in micro-batches and runs each batch in a single NoteStore transaction, so N
+// concurrent writes cost one commit (one fsync) instead of N. Callers are released only after
+// their batch has committed.
+//
+// A write that fails on its own (unknown id, blank content) fails only its caller. If the
+// batch transaction itself cannot commit, every write in it is replayed in its own
+// transaction so one bad write cannot take its neighbours down with it.
+@Component
+@ConditionalOnProperty(name = "notesvault.group-commit.enabled", havingValue = "true")
+@EnableConfigurationProperties(GroupCommitProperties.class)
+@ManagedResource(objectName = "notesvault:type=GroupCommit", description = "Group-commit note writer")
+public class GroupCommitNoteWriteExecutor implements NoteWriteExecutor, SmartLifecycle {
+
+  private static final Logger log = LoggerFactory.getLogger(GroupCommitNoteWriteExecutor.class);
+
+  private final BlockingQueue<PendingWrite<?>> queue = new LinkedBlockingQueue<>();
+  private final NoteStore noteStore;
+  private final int maxBatchSize;
+  private final long maxLingerNanos;
+
+  private final AtomicLong batchesCommitted = new AtomicLong();
+  private final AtomicLong writesCommitted = new AtomicLong();
+  private final AtomicLong batchesReplayed = new AtomicLong();
+  private volatile int lastBatchSize;
+
+  private volatile Thread writerThread;
+  private volatile boolean running;
+
+  public GroupCommitNoteWriteExecutor(NoteStore noteStore, GroupCommitProperties props) {
+    if (props.maxBatchSize() < 1) {
+      throw new IllegalArgumentException("notesvault.group-commit.max-batch-size must be at least 1");
+    }
+    this.noteStore = noteStore;
+    this.maxBatchSize = props.maxBatchSize();
+    this.maxLingerNanos = props.maxLinger().toNanos();
+  }
+
+  @Override
+  public <T> T execute(Supplier<T> write) {
+    if (!running) {
+      throw new IllegalStateException("group-commit writer is not running");
+    }
+    PendingWrite<T> pending = new PendingWrite<>(write);
+    queue.add(pending);
+    try {
+      return pending.result.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("interrupted while waiting for group commit", e);
+    } catch (ExecutionException e) {
+      throw rethrow(e.getCause());
+    }
+  }
+
+  // --- writer thread ---
+
+  private void drainLoop() {
+    List<PendingWrite<?>> batch = new ArrayList<>(maxBatchSize);
+    while (running || !queue.isEmpty()) {
+      PendingWrite<?> first;
+      try {
+        first = queue.poll(100, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        // stop() interrupts to wake us up; the loop condition decides when to exit
+        continue;
+      }
+      if (first == null) {
+        continue;
+      }
+      batch.add(first);
+      long deadline = System.nanoTime() + maxLingerNanos;
+      while (batch.size() < maxBatchSize) {
+        long remaining = deadline - System.nanoTime();
+        PendingWrite<?> next;
+        try {
+          next = (remaining > 0) ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+        } catch (InterruptedException e) {
+          // shutting down: commit what we already have instead of lingering
+          next = null;
+        }
+        if (next == null) {
+          break;
+        }
+        batch.add(next);
+      }
+      commit(batch);
+      batch.clear();
+    }
+
+    // a caller may have slipped in between the running check and shutdown
+    PendingWrite<?> straggler;
+    while ((straggler = queue.poll()) != null) {
+      straggler.fail(new IllegalStateException("group-commit writer is not running"));
+      straggler.complete();
+    }
+  }
+
+  private void commit(List<PendingWrite<?>> batch) {
+    try {
+      noteStore.inTransaction(() -> {
+        batch.forEach(PendingWrite::run);
+        return null;
+      });
+    } catch (RuntimeException e) {
+      log.warn("group commit of {} writes failed, replaying them one by one", batch.size(), e);
+      batchesReplayed.incrementAndGet();
+      for (PendingWrite<?> pending : batch) {
+        pending.reset();
+        try {
+          noteStore.inTransaction(() -> {
+            pending.run();
+            return null;
+          });
+        } catch (RuntimeException single) {
+          pending.fail(single);
+        }
+      }
+    }
+    batchesCommitted.incrementAndGet();
+    writesCommitted.addAndGet(batch.size());
+    lastBatchSize = batch.size();
+    batch.forEach(PendingWrite::complete);
+  }
+
+  private static RuntimeException rethrow(Throwable cause) {
+    if (cause instanceof CompletionException && cause.getCause() != null) {
+      cause = cause.getCause();
+    }
+    if (cause instanceof RuntimeException re) {
+      return re;
+    }
+    if (cause instanceof Error err) {
+      throw err;
+    }
+    return new IllegalStateException(cause);
+  }
+
+  // One queued write. run() executes it inside the batch transaction and records the
+  // outcome; complete() publishes that outcome to the waiting caller after commit.
+  private static final class PendingWrite<T> {
+    private final Supplier<T> write;
+    private final CompletableFuture<T> result = new CompletableFuture<>();
+    private T value;
+    private RuntimeException failure;
+
+    PendingWrite(Supplier<T> write) {
+      this.write = write;
+    }
+
+    void run() {
+      try {
+        value = write.get();
+      } catch (RuntimeException e) {
+        failure = e;
+      }
+    }
+
+    void reset() {
+      value = null;
+      failure = null;
+    }
+
+    void fail(RuntimeException e) {
+      failure = e;
+    }
+
+    void complete() {
+      if (failure != null) {
+        result.completeExceptionally(failure);
+      } else {
+        result.complete(value);
+      }
+    }
+  }
+
+  // --- lifecycle ---
+
+  @Override
+  public void start() {
+    running = true;
+    writerThread = Thread.ofPlatform()
+        .name("note-group-commit")
+        .daemon(true)
+        .start(this::drainLoop);
+  }
+
+  @Override
+  public void stop() {
+    running = false;
+    Thread t = writerThread;
+    if (t != null) {
+      t.interrupt();
+      try {
+        t.join(TimeUnit.SECONDS.toMillis(10));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  @Override
+  public boolean isRunning() {
+    return running;
+  }
+
+  // --- metrics ---
+
+  @ManagedAttribute(description = "Maximum writes committed per transaction")
+  public int getMaxBatchSize() {
+    return maxBatchSize;
+  }
+
+  @ManagedAttribute(description = "Maximum time the first write in a batch waits for company, in microseconds")
+  public long getMaxLingerMicros() {
+    return TimeUnit.NANOSECONDS.toMicros(maxLingerNanos);
+  }
+
+  @ManagedAttribute(description = "Writes waiting for the writer thread")
+  public int getQueueDepth() {
+    return queue.size();
+  }
+
+  @ManagedAttribute(description = "Batches committed since startup")
+  public long getBatchesCommitted() {
+    return batchesCommitted.get();
+  }
+
+  @ManagedAttribute(description = "Writes committed since startup")
+  public long getWritesCommitted() {
+    return writesCommitted.get();
+  }
+
+  @ManagedAttribute(description = "Batches whose transaction failed and were replayed write by write")
+  public long getBatchesReplayed() {
+    return batchesReplayed.get();
+  }
+
+  @ManagedAttribute(description = "Size of the most recently committed batch")
+  public int getLastBatchSize() {
+    return lastBatchSize;
+  }
+
+  @ManagedAttribute(description = "Mean writes per committed batch")
+  public double getAverageBatchSize() {
+    long batches = batchesCommitted.get();
+    return (batches == 0) ? 0.0 : (double) writesCommitted.get() / batches;
+  }
+}
@@ -0,0 +1,170 @@
+package com.bluestaq.challenge.notesvault.notes.service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import com.bluestaq.challenge.notesvault.except.InvalidNoteContentException;
+import com.bluestaq.challenge.notesvault.notes.api.dto.BatchNoteOperation;
+import com.bluestaq.challenge.notesvault.notes.api.dto.BatchNoteResult;
+import com.bluestaq.challenge.notesvault.notes.api.dto.NoteResponse;
+import com.bluestaq.challenge.notesvault.notes.archive.NoteArchive;
+import com.bluestaq.challenge.notesvault.notes.cache.NoteCache;
+import com.bluestaq.challenge.notesvault.notes.entity.NoteEntity;
+import com.bluestaq.challenge.notesvault.notes.metrics.NoteMetrics;
+import com.bluestaq.challenge.notesvault.notes.replica.NoteReplica;
+import com.bluestaq.challenge.notesvault.notes.store.NoteStore;
+import com.bluestaq.challenge.notesvault.notes.stream.NoteChangeFeed;
+
+// Applies a list of create/update/delete operations as one NoteStore transaction,
+// so the whole batch costs one commit (one SQLite fsync, or one log force) instead
+// of one per note.
+//
+// Notes targeted by updates/deletes are loaded with a single findAllById up front.
+// On the JPA engine those are managed entities: updates are picked up by dirty
+// checking, and inserts go through persist(), so all INSERT/UPDATE/DELETE statements
+// are sent in JDBC batches (hibernate.jdbc.batch_size) when the transaction flushes.
+// Targets found only in the archive are restored to the store first (see NoteArchive).
+@Service
+public class NoteBatchService {
+
+  public static final int MAX_BATCH_SIZE = 500;
+
+  private final NoteStore noteStore;
+  private final NoteCache noteCache;
+  private final NoteMetrics noteMetrics;
+  private final NoteChangeFeed changeFeed;
+  private final NoteReplica noteReplica;
+  private final NoteArchive noteArchive;
+
+  public NoteBatchService(NoteStore noteStore, NoteCache noteCache, NoteMetrics noteMetrics,
+      NoteChangeFeed changeFeed, NoteReplica noteReplica, NoteArchive noteArchive) {
+    this.noteStore = noteStore;
+    this.noteCache = noteCache;
+    this.noteMetrics = noteMetrics;
+    this.changeFeed = changeFeed;
+    this.noteReplica = noteReplica;
+    this.noteArchive = noteArchive;
+  }
+
+  // Timed as one "batch" operation; per-item failures are results, not exceptions.
+  public List<BatchNoteResult> apply(List<BatchNoteOperation> operations) {
+    return noteMetrics.record("batch", () -> noteStore.inTransaction(() -> applyAll(operations)));
+  }
+
+  private List<BatchNoteResult> applyAll(List<BatchNoteOperation> operations) {
+    Map<String, NoteEntity> existing = loadTargets(operations);
+    List<BatchNoteResult> results = new ArrayList<>(operations.size());
+    Instant now = Instant.now();
+
+    for (int i = 0; i < operations.size(); i++) {
+      BatchNoteOperation op = operations.get(i);
+      try {
+        results.add(switch (op.op()) {
+          case CREATE -> create(i, op, now);
+          case UPDATE -> update(i, op, existing);
+          case DELETE -> delete(i, op, existing);
+        });
+      } catch (InvalidNoteContentException e) {
+        results.add(failure(i, op, HttpStatus.BAD_REQUEST, e.getMessage()));
+      }
+    }
+    return results;
+  }
+
+  private BatchNoteResult create(int index, BatchNoteOperation op, Instant now) {
+    NoteEntity note = new NoteEntity();
+    note.setContent(NoteService.normalizeContent(op.content()));
+    note.setId(NoteService.newNoteId());
+    note.setCreatedAt(now);
+    note.setVersion(1);
+    noteStore.insert(note);
+    changeFeed.created(note);
+    noteReplica.created(note);
+    noteMetrics.recordContentSize("create", note.getContent());
+    return success(index, op, HttpStatus.CREATED, note);
+  }
+
+  private BatchNoteResult update(int index, BatchNoteOperation op, Map<String, NoteEntity> existing) {
+    String content = NoteService.normalizeContent(op.content());
+    if (op.id() == null) {
+      return failure(index, op, HttpStatus.BAD_REQUEST, "id is required for update");
+    }
+    NoteEntity note = existing.get(op.id());
+    if (note == null) {
+      return notFound(index, op);
+    }
+    note.setContent(content);
+    note.setVersion(note.getVersion() + 1);
+    noteStore.save(note);
+    noteCache.invalidateAfterCommit(note.getId());
+    changeFeed.updated(note);
+    noteReplica.updated(note);
+    noteMetrics.recordContentSize("update", content);
+    return success(index, op, HttpStatus.OK, note);
+  }
+
+  private BatchNoteResult delete(int index, BatchNoteOperation op, Map<String, NoteEntity> existing) {
+    if (op.id() == null) {
+      return failure(index, op, HttpStatus.BAD_REQUEST, "id is required for delete");
+    }
+    NoteEntity note = existing.remove(op.id());
+    if (note == null) {
+      return notFound(index, op);
+    }
+    noteStore.deleteById(note.getId());
+    noteCache.invalidateAfterCommit(note.getId());
+    changeFeed.deleted(note.getId());
+    noteReplica.deleted(note.getId());
+    return new BatchNoteResult(index, op.op(), HttpStatus.NO_CONTENT.value(), op.id(), null, null);
+  }
+
+  private Map<String, NoteEntity> loadTargets(List<BatchNoteOperation> operations) {
+    Set<String> ids = new LinkedHashSet<>();
+    for (BatchNoteOperation op : operations) {
+      if (op.op() != BatchNoteOperation.Op.CREATE && op.id() != null) {
+        ids.add(op.id());
+      }
+    }
+    Map<String, NoteEntity> byId = new HashMap<>();
+    if (!ids.isEmpty()) {
+      for (NoteEntity note : noteStore.findAllById(ids)) {
+        byId.put(note.getId(), note);
+      }
+    }
+    if (noteArchive.isEnabled() && byId.size() < ids.size()) {
+      List<String> restored = new ArrayList<>();
+      for (String id : ids) {
+        if (!byId.containsKey(id) && noteArchive.restore(id)) {
+          restored.add(id);
+        }
+      }
+      if (!restored.isEmpty()) {
+        for (NoteEntity note : noteStore.findAllById(restored)) {
+          byId.put(note.getId(), note);
+        }
+      }
+    }
+    return byId;
+  }
+
+  private static BatchNoteResult success(int index, BatchNoteOperation op, HttpStatus status, NoteEntity note) {
+    NoteResponse body = NoteResponse.of(note);
+    return new BatchNoteResult(index, op.op(), status.value(), note.getId(), body, null);
+  }
+
+  private static BatchNoteResult notFound(int index, BatchNoteOperation op) {
+    return failure(index, op, HttpStatus.NOT_FOUND, "Note not found with id: " + op.id());
+  }
+
+  private static BatchNoteResult failure(int index, BatchNoteOperation op, HttpStatus status, String error) {
+    return new BatchNoteResult(index, op.op(), status.value(), op.id(), null, error);
+  }
+}
@@ -0,0 +1,36 @@
+package com.bluestaq.challenge.notesvault.notes.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+import com.bluestaq.challenge.notesvault.except.InvalidPageRequestException;
+
+// Position of the last note on a page, keyed on (createdAt, id).
+// Clients only ever see the encoded form, so the layout can change without
+// breaking anyone as long as old cursors keep decoding.
+public record NoteCursor(Instant createdAt, String id) {
+
+  private static final char SEPARATOR = '|';
+
+  public String encode() {
+    String raw = createdAt.toString() + SEPARATOR + id;
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+  }
+
+  public static NoteCursor decode(String token) {
+    try {
+      String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+      int sep = raw.indexOf(SEPARATOR);
+      if (sep <= 0 || sep == raw.length() - 1) {
+        throw new InvalidPageRequestException("cursor is invalid");
+      }
+      return new NoteCursor(Instant.parse(raw.substring(0, sep)), raw.substring(sep + 1));
+    } catch (IllegalArgumentException | DateTimeParseException e) {
+      throw new InvalidPageRequestException("cursor is invalid");
+    }
+  }
+}
@@ -0,0 +1,55 @@
+package com.bluestaq.challenge.notesvault.notes.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+import org.springframework.stereotype.Service;
+
+import com.bluestaq.challenge.notesvault.notes.api.dto.NoteResponse;
+import com.bluestaq.challenge.notesvault.notes.archive.NoteArchive;
+
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.ObjectWriter;
+
+// Streams the whole vault as newline-delimited JSON (one NoteResponse per line).
+// Notes come from NoteStore.streamNewestFirst, which never materializes the whole
+// vault (keyset pages of 500 on JPA, each read and admitted on its own; an index walk
+// on the log engine), merged with the archive's segments (see NoteArchive), and each
+// one is written as soon as it is read. Memory use is therefore independent of the
+// number of notes.
+@Service
+public class NoteExportService {
+
+  private static final byte NEWLINE = '\n';
+
+  private final NoteArchive noteArchive;
+  private final ObjectWriter noteWriter;
+
+  public NoteExportService(NoteArchive noteArchive, ObjectMapper objectMapper) {
+    this.noteArchive = noteArchive;
+    this.noteWriter = objectMapper.writerFor(NoteResponse.class);
+  }
+
+  // Writes every note to out and returns how many were written.
+  // The caller owns out; it is flushed but not closed.
+  public long exportNdjson(OutputStream out) {
+    long[] written = {0};
+    noteArchive.streamNewestFirst(note -> {
+      try {
+        out.write(noteWriter.writeValueAsBytes(NoteResponse.of(note)));
+        out.write(NEWLINE);
+      } catch (IOException e) {
+        // most likely the client went away; stop reading pages and let the caller log it
+        throw new UncheckedIOException(e);
+      }
+      written[0]++;
+    });
+    try {
+      out.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return written[0];
+  }
+}
@@ -0,0 +1,9 @@
+package com.bluestaq.challenge.notesvault.notes.service;
+
+import java.util.List;
+
+import com.bluestaq.challenge.notesvault.notes.api.dto.NoteResponse;
+
+// One page of notes (newest first) plus the cursor for the next page.
+// nextCursor is null when there are no more notes to read.
+public record NotePage(List<NoteResponse> notes, String nextCursor) {}
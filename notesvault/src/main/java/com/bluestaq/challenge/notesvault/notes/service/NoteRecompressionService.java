@@ -0,0 +1,157 @@
+package com.bluestaq.challenge.notesvault.notes.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+
+import com.bluestaq.challenge.notesvault.config.CompressionProperties;
+import com.bluestaq.challenge.notesvault.notes.entity.NoteContentCodec;
+import com.bluestaq.challenge.notesvault.notes.entity.NoteContentConverter;
+import com.bluestaq.challenge.notesvault.notes.repo.NoteContentRepository;
+import com.bluestaq.challenge.notesvault.notes.repo.NoteContentRepository.StoredContent;
+
+// Brings rows written under earlier compression settings in line with the current ones:
+// compresses large plain notes when compression is on, and stores everything plain
+// again when it is off. New writes always use the current settings, so this is only
+// needed for existing data - and rows read fine either way until it has run.
+//
+// Runs in the background in small chunks, like the search index rebuild: each chunk is
+// read on a reader connection, (de)compressed outside any transaction, and written back
+// in one short write transaction. Started over JMX (notesvault:type=NoteCompression,
+// operation recompress) or at startup with notesvault.compression.recompress-on-startup.
+@Service
+@ConditionalOnProperty(name = "notesvault.store.engine", havingValue = "jpa", matchIfMissing = true)
+@ManagedResource(objectName = "notesvault:type=NoteCompression", description = "Note content compression at rest")
+public class NoteRecompressionService implements DisposableBean {
+
+  private static final Logger log = LoggerFactory.getLogger(NoteRecompressionService.class);
+
+  // rows per write transaction; kept small because large notes make large chunks
+  static final int CHUNK_SIZE = 100;
+
+  private final NoteContentRepository contentRepository;
+  private final NoteContentConverter converter;
+  private final boolean recompressOnStartup;
+  private final ExecutorService recompressExecutor = Executors.newSingleThreadExecutor(
+      Thread.ofPlatform().name("note-recompress").daemon(true).factory());
+  private final AtomicBoolean running = new AtomicBoolean();
+  private volatile long progressRowid;
+  private volatile long rowsRewritten;
+  private volatile long bytesBefore;
+  private volatile long bytesAfter;
+
+  public NoteRecompressionService(NoteContentRepository contentRepository, NoteContentConverter converter,
+      CompressionProperties props) {
+    this.contentRepository = contentRepository;
+    this.converter = converter;
+    this.recompressOnStartup = props.recompressOnStartup();
+  }
+
+  // after startup rather than at bean creation, so the search triggers have been
+  // upgraded to index decoded content before any row is rewritten
+  @EventListener(ApplicationReadyEvent.class)
+  public void onReady() {
+    if (recompressOnStartup) {
+      log.info("recompressing stored note content in the background");
+      recompress();
+    }
+  }
+
+  // Returns false if a pass is already running.
+  @ManagedOperation(description = "Rewrite stored notes under the current compression settings")
+  public boolean recompress() {
+    if (!running.compareAndSet(false, true)) {
+      return false;
+    }
+    recompressExecutor.execute(() -> {
+      try {
+        progressRowid = 0;
+        rowsRewritten = 0;
+        bytesBefore = 0;
+        bytesAfter = 0;
+        long after = 0;
+        while (true) {
+          List<StoredContent> rows = contentRepository.readChunk(after, CHUNK_SIZE);
+          if (rows.isEmpty()) {
+            break;
+          }
+          List<StoredContent> changed = recode(rows);
+          if (!changed.isEmpty()) {
+            rowsRewritten += contentRepository.rewrite(changed);
+          }
+          after = rows.get(rows.size() - 1).rowid();
+          progressRowid = after;
+        }
+        log.info("note content recompressed ({} rows rewritten, {} -> {} bytes)",
+            rowsRewritten, bytesBefore, bytesAfter);
+      } catch (RuntimeException e) {
+        log.error("note content recompression failed", e);
+      } finally {
+        running.set(false);
+      }
+    });
+    return true;
+  }
+
+  // The rows whose stored form differs from what the current settings would write.
+  // Rows already compressed are kept as they are while compression is on.
+  private List<StoredContent> recode(List<StoredContent> rows) {
+    List<StoredContent> changed = new ArrayList<>();
+    for (StoredContent row : rows) {
+      byte[] stored = row.content();
+      if (stored == null || (converter.isCompressing() && NoteContentCodec.isCompressed(stored))) {
+        continue;
+      }
+      byte[] wanted = converter.convertToDatabaseColumn(NoteContentCodec.decode(stored));
+      if (wanted.length != stored.length) {
+        changed.add(new StoredContent(row.rowid(), row.version(), wanted));
+        bytesBefore += stored.length;
+        bytesAfter += wanted.length;
+      }
+    }
+    return changed;
+  }
+
+  @ManagedAttribute(description = "Whether a recompression pass is running")
+  public boolean isRunning() {
+    return running.get();
+  }
+
+  @ManagedAttribute(description = "Highest notes rowid visited by the current or last pass")
+  public long getProgressRowid() {
+    return progressRowid;
+  }
+
+  @ManagedAttribute(description = "Rows rewritten by the current or last pass")
+  public long getRowsRewritten() {
+    return rowsRewritten;
+  }
+
+  @ManagedAttribute(description = "Stored size of the rewritten rows before the current or last pass")
+  public long getBytesBefore() {
+    return bytesBefore;
+  }
+
+  @ManagedAttribute(description = "Stored size of the rewritten rows after the current or last pass")
+  public long getBytesAfter() {
+    return bytesAfter;
+  }
+
+  @Override
+  public void destroy() {
+    recompressExecutor.shutdownNow();
+  }
+}
@@ -0,0 +1,9 @@
+package com.bluestaq.challenge.notesvault.notes.service;
+
+import java.util.List;
+
+import com.bluestaq.challenge.notesvault.notes.api.dto.NoteSearchHit;
+
+// One page of search hits (best match first) plus the cursor for the next page.
+// nextCursor is null when there are no more hits.
+public record NoteSearchPage(List<NoteSearchHit> hits, String nextCursor) {}
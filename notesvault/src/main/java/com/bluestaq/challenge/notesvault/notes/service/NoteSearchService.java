@@ -0,0 +1,175 @@
+package com.bluestaq.challenge.notesvault.notes.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.bluestaq.challenge.notesvault.except.InvalidPageRequestException;
+import com.bluestaq.challenge.notesvault.notes.api.dto.NoteSearchHit;
+import com.bluestaq.challenge.notesvault.notes.repo.NoteSearchRepository;
+import com.bluestaq.challenge.notesvault.notes.store.AdmissionGate;
+
+// Full-text search over note content, backed by the notes_fts FTS5 index.
+// Only available on the JPA (SQLite) storage engine.
+//
+// At startup the index and its sync triggers are created if missing. If the triggers
+// were missing (a database from before search existed, or a recreated notes table),
+// the index is backfilled in the background in small chunks, so the application
+// serves requests - including writes - while it catches up. The same rebuild can be
+// started at any time over JMX (notesvault:type=NoteSearch, operation rebuild).
+@Service
+@ConditionalOnProperty(name = "notesvault.store.engine", havingValue = "jpa", matchIfMissing = true)
+@ManagedResource(objectName = "notesvault:type=NoteSearch", description = "Full-text search index")
+public class NoteSearchService implements SmartInitializingSingleton, DisposableBean {
+
+  private static final Logger log = LoggerFactory.getLogger(NoteSearchService.class);
+
+  public static final int DEFAULT_PAGE_SIZE = 20;
+  public static final int MAX_PAGE_SIZE = 100;
+  // ranked results cannot be keyset-paged, so deep offsets are capped instead
+  static final int MAX_OFFSET = 10_000;
+
+  // notes indexed per write transaction during a rebuild
+  static final int BACKFILL_CHUNK_SIZE = 1000;
+
+  private final NoteSearchRepository searchRepository;
+  private final AdmissionGate admission;
+  private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(
+      Thread.ofPlatform().name("note-search-rebuild").daemon(true).factory());
+  private final AtomicBoolean rebuilding = new AtomicBoolean();
+  private volatile long rebuildProgressRowid;
+
+  public NoteSearchService(NoteSearchRepository searchRepository, AdmissionGate admission) {
+    this.searchRepository = searchRepository;
+    this.admission = admission;
+  }
+
+  // Runs once the schema exists (after Hibernate has started) and before the web server opens.
+  @Override
+  public void afterSingletonsInstantiated() {
+    if (searchRepository.ensureSchema()) {
+      log.info("full-text index triggers were missing; rebuilding notes_fts in the background");
+      rebuild();
+    }
+  }
+
+  @Transactional(readOnly = true)
+  public NoteSearchPage search(String q, int limit, String cursor) {
+    if (q == null || q.isBlank()) {
+      throw new InvalidPageRequestException("q must not be blank");
+    }
+    if (limit < 1 || limit > MAX_PAGE_SIZE) {
+      throw new InvalidPageRequestException("limit must be between 1 and " + MAX_PAGE_SIZE);
+    }
+    int offset = (cursor == null || cursor.isBlank()) ? 0 : decodeOffset(cursor);
+
+    String query = toFtsQuery(q);
+    List<NoteSearchHit> rows = admission.read(() -> searchRepository.search(query, limit + 1, offset));
+    if (rows.size() <= limit || offset + limit >= MAX_OFFSET) {
+      return new NoteSearchPage(rows.size() <= limit ? rows : rows.subList(0, limit), null);
+    }
+    return new NoteSearchPage(rows.subList(0, limit), encodeOffset(offset + limit));
+  }
+
+  // Re-indexes every note without taking the index offline: existing entries keep
+  // answering searches while each chunk is replaced, then entries for deleted notes
+  // are purged. Returns false if a rebuild is already running.
+  @ManagedOperation(description = "Re-index all notes in the background")
+  public boolean rebuild() {
+    if (!rebuilding.compareAndSet(false, true)) {
+      return false;
+    }
+    rebuildExecutor.execute(() -> {
+      try {
+        long chunks = 0;
+        long after = 0;
+        rebuildProgressRowid = 0;
+        while (true) {
+          long upTo = searchRepository.backfillChunk(after, BACKFILL_CHUNK_SIZE);
+          if (upTo < 0) {
+            break;
+          }
+          after = upTo;
+          rebuildProgressRowid = upTo;
+          chunks++;
+        }
+        int purged = searchRepository.purgeOrphans();
+        log.info("full-text index rebuilt ({} chunks, {} stale entries purged)", chunks, purged);
+      } catch (RuntimeException e) {
+        log.error("full-text index rebuild failed", e);
+      } finally {
+        rebuilding.set(false);
+      }
+    });
+    return true;
+  }
+
+  @ManagedAttribute(description = "Whether a rebuild is running")
+  public boolean isRebuilding() {
+    return rebuilding.get();
+  }
+
+  @ManagedAttribute(description = "Highest notes rowid indexed by the current or last rebuild")
+  public long getRebuildProgressRowid() {
+    return rebuildProgressRowid;
+  }
+
+  @Override
+  public void destroy() {
+    rebuildExecutor.shutdownNow();
+  }
+
+  // Turns free text into an FTS5 query: every whitespace-separated word becomes a quoted
+  // term (so punctuation can never be parsed as FTS syntax) and all terms must match.
+  // A trailing * keeps its meaning as a prefix search.
+  static String toFtsQuery(String q) {
+    StringBuilder fts = new StringBuilder();
+    for (String word : q.trim().split("\\s+")) {
+      boolean prefix = word.length() > 1 && word.endsWith("*");
+      String term = prefix ? word.substring(0, word.length() - 1) : word;
+      if (!fts.isEmpty()) {
+        fts.append(' ');
+      }
+      fts.append('"').append(term.replace("\"", "\"\"")).append('"');
+      if (prefix) {
+        fts.append('*');
+      }
+    }
+    return fts.toString();
+  }
+
+  private static String encodeOffset(int offset) {
+    return Base64.getUrlEncoder().withoutPadding()
+        .encodeToString(("o" + offset).getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static int decodeOffset(String cursor) {
+    try {
+      String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+      if (!raw.startsWith("o")) {
+        throw new InvalidPageRequestException("cursor is invalid");
+      }
+      int offset = Integer.parseInt(raw.substring(1));
+      if (offset < 0 || offset > MAX_OFFSET) {
+        throw new InvalidPageRequestException("cursor is invalid");
+      }
+      return offset;
+    } catch (IllegalArgumentException e) {
+      throw new InvalidPageRequestException("cursor is invalid");
+    }
+  }
+}
@@ -1,77 +1,285 @@
 package com.bluestaq.challenge.notesvault.notes.service;
 
 
+import java.util.Collection;
 import java.util.List;
-import java.util.UUID;
+import java.util.Optional;
 import java.time.Instant;
+import java.util.function.Supplier;
 
 import org.springframework.stereotype.Service;
 
 import com.bluestaq.challenge.notesvault.except.InvalidNoteContentException;
+import com.bluestaq.challenge.notesvault.except.InvalidPageRequestException;
 import com.bluestaq.challenge.notesvault.except.NoteNotFoundException;
+import com.bluestaq.challenge.notesvault.except.PreconditionFailedException;
+import com.bluestaq.challenge.notesvault.notes.api.dto.NoteResponse;
+import com.bluestaq.challenge.notesvault.notes.archive.NoteArchive;
+import com.bluestaq.challenge.notesvault.notes.cache.NoteCache;
 import com.bluestaq.challenge.notesvault.notes.entity.NoteEntity;
-import com.bluestaq.challenge.notesvault.notes.repo.NoteRepository;
+import com.bluestaq.challenge.notesvault.notes.entity.NoteIds;
+import com.bluestaq.challenge.notesvault.notes.metrics.NoteMetrics;
+import com.bluestaq.challenge.notesvault.notes.replica.NoteReplica;
+import com.bluestaq.challenge.notesvault.notes.store.NoteStore;
+import com.bluestaq.challenge.notesvault.notes.stream.NoteChangeFeed;
 
 // This class is responsible for the business logic related to notes
-// Interacts with the NoteRepository to perform CRUD operations
+// Interacts with the configured NoteStore to perform CRUD operations
 // Throws exceptions when certain conditions are not met (e.g. note not found, invalid content, etc.)
 @Service
 public class NoteService {
 
-    private final NoteRepository noteRepository;
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int MAX_PAGE_SIZE = 1000;
 
-    public NoteService(NoteRepository noteRepository) {
-        this.noteRepository = noteRepository;
+    // stand-ins for "no bound" so the page query always gets a concrete range
+    private static final Instant OLDEST = Instant.parse("1000-01-01T00:00:00Z");
+    private static final Instant NEWEST = Instant.parse("9999-12-31T23:59:59Z");
+
+    private final NoteStore noteStore;
+    // commits single-note writes, either inline or through the group-commit queue
+    private final NoteWriteExecutor writeExecutor;
+    private final NoteCache noteCache;
+    private final NoteMetrics noteMetrics;
+    // GET /v1/notes/stream; told about each write, which it sends on once committed
+    private final NoteChangeFeed changeFeed;
+    // optional in-memory copy of every note; when serving, reads by id and pages come from it
+    private final NoteReplica noteReplica;
+    // cold tier: notes moved out of the store by age, read when the store misses
+    private final NoteArchive noteArchive;
+
+    public NoteService(NoteStore noteStore, NoteWriteExecutor writeExecutor, NoteCache noteCache,
+            NoteMetrics noteMetrics, NoteChangeFeed changeFeed, NoteReplica noteReplica, NoteArchive noteArchive) {
+        this.noteStore = noteStore;
+        this.writeExecutor = writeExecutor;
+        this.noteCache = noteCache;
+        this.noteMetrics = noteMetrics;
+        this.changeFeed = changeFeed;
+        this.noteReplica = noteReplica;
+        this.noteArchive = noteArchive;
     }
 
     public NoteEntity createNote(String rawContent) {
-        // normalize
-        String content = (rawContent == null) ? "" : rawContent.trim();
-
-        // @NotBlank should catch this in the pipeline, but we will add this here
-        // for Justin Case
-        if (content.isEmpty()) {
-            throw new InvalidNoteContentException("content must not be blank");
-        }
+        return noteMetrics.record("create", () -> {
+            String content = normalizeContent(rawContent);
 
-        NoteEntity note = new NoteEntity(); // use the no-args constructor for JPA
-        note.setContent(content);
+            NoteEntity note = new NoteEntity(); // use the no-args constructor for JPA
+            note.setContent(content);
 
-        // we are going to let the service own these fields
-        note.setId(UUID.randomUUID().toString());
-        note.setCreatedAt(Instant.now());
+            // we are going to let the service own these fields
+            note.setId(newNoteId());
+            note.setCreatedAt(Instant.now());
+            note.setVersion(1);
 
-        // save to db through NoteRepo and return
-        return noteRepository.save(note);
+            // save through the store and return
+            NoteEntity saved = writeExecutor.execute(() -> {
+                NoteEntity inserted = noteStore.insert(note);
+                changeFeed.created(inserted);
+                noteReplica.created(inserted);
+                return inserted;
+            });
+            noteMetrics.recordContentSize("create", content);
+            return saved;
+        });
+    }
 
+    // Read-only projection, straight from the store or the cache (see NoteResponse).
+    public NoteResponse getNoteById(String id) {
+        return noteMetrics.record("get", () -> loadNote(id));
     }
 
-    public NoteEntity getNoteById(String id) {
-        return noteRepository.findById(id)
-            .orElseThrow(() -> new NoteNotFoundException(id));
+    // Changes whenever any note does; the list endpoint serves it as the collection
+    // ETag. Read it before the page so a concurrent write can only make it look stale.
+    // Pages from the replica are paired with its own generation, which moves only once
+    // the replica has the change.
+    public long collectionGeneration() {
+        return noteReplica.isServing() ? noteReplica.generation() : noteStore.generation();
     }
 
     public List<NoteEntity> listNotes() {
-        return noteRepository.findAllByOrderByCreatedAtDesc();
+        return noteMetrics.record("list", noteStore::findAllNewestFirst);
+    }
+
+    // Keyset pagination over (createdAt, id), newest first.
+    // createdAfter/createdBefore are exclusive and optional; cursor is the
+    // opaque token handed out with the previous page (null for the first page).
+    public NotePage listNotes(int limit, String cursor, Instant createdAfter, Instant createdBefore) {
+        return noteMetrics.record("list", () -> loadPage(limit, cursor, createdAfter, createdBefore));
     }
 
+    // One statement: the delete itself reports whether the note existed.
     public void deleteNoteById(String id) {
-        if (!noteRepository.existsById(id)) {
-            throw new NoteNotFoundException(id);
-        }
-        noteRepository.deleteById(id);
+        noteMetrics.record("delete", () -> writeExecutor.execute(() -> {
+            if (!noteStore.deleteIfExists(id) && !afterRestore(id, null, () -> noteStore.deleteIfExists(id), false)) {
+                throw new NoteNotFoundException(id);
+            }
+            noteCache.invalidateAfterCommit(id);
+            changeFeed.deleted(id);
+            noteReplica.deleted(id);
+            return null;
+        }));
     }
 
     public NoteEntity updateNoteById(String id, String rawContent) {
+        return noteMetrics.record("update", () -> {
+            String content = normalizeContent(rawContent);
+
+            // one statement: no load before the write, and a missing note is an empty result
+            NoteEntity saved = writeExecutor.execute(() -> {
+                NoteEntity updated = noteStore.updateContent(id, content)
+                    .or(() -> afterRestore(id, null, () -> noteStore.updateContent(id, content), Optional.empty()))
+                    .orElseThrow(() -> new NoteNotFoundException(id));
+                noteCache.invalidateAfterCommit(id);
+                changeFeed.updated(updated);
+                noteReplica.updated(updated);
+                return updated;
+            });
+            noteMetrics.recordContentSize("update", content);
+            return saved;
+        });
+    }
+
+    // If-Match delete: removes the note only while its version is one of expectedVersions.
+    public void deleteNoteById(String id, Collection<Long> expectedVersions) {
+        noteMetrics.record("delete", () -> writeExecutor.execute(() -> {
+            if (expectedVersions.isEmpty() || (!noteStore.deleteByIdIfVersion(id, expectedVersions)
+                    && !afterRestore(id, expectedVersions, () -> noteStore.deleteByIdIfVersion(id, expectedVersions), false))) {
+                throw preconditionFailedOrNotFound(id);
+            }
+            noteCache.invalidateAfterCommit(id);
+            changeFeed.deleted(id);
+            noteReplica.deleted(id);
+            return null;
+        }));
+    }
+
+    // If-Match update: the version check and the write are one conditional statement,
+    // so there is no read-modify-write window. The note is read back for the response.
+    public NoteEntity updateNoteById(String id, String rawContent, Collection<Long> expectedVersions) {
+        return noteMetrics.record("update", () -> {
+            String content = normalizeContent(rawContent);
+
+            NoteEntity saved = writeExecutor.execute(() -> noteStore.inTransaction(() -> {
+                if (expectedVersions.isEmpty() || (!noteStore.updateContentIfVersion(id, content, expectedVersions)
+                        && !afterRestore(id, expectedVersions,
+                            () -> noteStore.updateContentIfVersion(id, content, expectedVersions), false))) {
+                    throw preconditionFailedOrNotFound(id);
+                }
+                noteCache.invalidateAfterCommit(id);
+                NoteEntity updated = noteStore.findById(id).orElseThrow(() -> new NoteNotFoundException(id));
+                changeFeed.updated(updated);
+                noteReplica.updated(updated);
+                return updated;
+            }));
+            noteMetrics.recordContentSize("update", content);
+            return saved;
+        });
+    }
+
+    // The replica when it is serving; otherwise cache first, then the store, then the archive.
+    private NoteResponse loadNote(String id) {
+        if (noteReplica.isServing()) {
+            return noteReplica.findResponseById(id).orElseThrow(() -> new NoteNotFoundException(id));
+        }
+        NoteResponse cached = noteCache.get(id);
+        if (cached != null) {
+            return cached;
+        }
+
+        // stamp before loading so a write that lands mid-load keeps this copy out of the cache
+        long stamp = noteCache.stamp();
+        NoteResponse note = noteStore.findResponseById(id)
+            .or(() -> noteArchive.findResponseById(id))
+            .orElseThrow(() -> new NoteNotFoundException(id));
+        noteCache.put(note, stamp);
+        return note;
+    }
+
+    private NotePage loadPage(int limit, String cursor, Instant createdAfter, Instant createdBefore) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new InvalidPageRequestException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        if (createdAfter != null && createdBefore != null && !createdAfter.isBefore(createdBefore)) {
+            throw new InvalidPageRequestException("createdAfter must be before createdBefore");
+        }
+
+        Instant lower = (createdAfter == null) ? OLDEST : createdAfter;
+        Instant upper = (createdBefore == null) ? NEWEST : createdBefore;
+        // empty string sorts below every id, so without a cursor the upper bound is exclusive
+        String upperId = "";
+
+        if (cursor != null && !cursor.isBlank()) {
+            NoteCursor position = NoteCursor.decode(cursor);
+            if (position.createdAt().isAfter(upper)) {
+                throw new InvalidPageRequestException("cursor is outside the requested range");
+            }
+            if (position.createdAt().isBefore(upper)) {
+                upper = position.createdAt();
+                upperId = position.id();
+            }
+        }
+
+        // ask for one extra row so we know whether another page exists
+        List<NoteResponse> rows;
+        if (noteReplica.isServing()) {
+            rows = noteReplica.findResponsePageBefore(lower, upper, upperId, limit + 1);
+        } else {
+            rows = noteStore.findResponsePageBefore(lower, upper, upperId, limit + 1);
+            if (noteArchive.isEnabled()) {
+                rows = noteArchive.mergePageBefore(rows, lower, upper, upperId, limit + 1);
+            }
+        }
+        if (rows.size() <= limit) {
+            return new NotePage(rows, null);
+        }
+
+        List<NoteResponse> notes = rows.subList(0, limit);
+        NoteResponse last = notes.get(limit - 1);
+        return new NotePage(notes, new NoteCursor(last.createdAt(), last.id()).encode());
+    }
+
+    // A write that found no note in the store runs again after the note has been
+    // restored from the archive, in one transaction. Notes never archived cost nothing
+    // more. A hidden copy means a concurrent write restored (or deleted) the note after
+    // our miss, so the write just runs again against the store. Restore only moves a
+    // note whose version the write accepts (expectedVersions, null for any), so a
+    // failed conditional write leaves both tiers as they were.
+    private <T> T afterRestore(String id, Collection<Long> expectedVersions, Supplier<T> write, T notFound) {
+        return switch (noteArchive.copyOf(id)) {
+            case NONE -> notFound;
+            case HIDDEN -> write.get();
+            case VISIBLE -> noteStore.inTransaction(() -> {
+                noteArchive.restore(id, expectedVersions);
+                return write.get();
+            });
+        };
+    }
+
+    // Only reached once a conditional write has failed, so the happy path never pays
+    // for this lookup. A missing note is a 404 whatever the precondition said.
+    private RuntimeException preconditionFailedOrNotFound(String id) {
+        if (!noteStore.existsById(id) && noteArchive.copyOf(id) != NoteArchive.Copy.VISIBLE) {
+            return new NoteNotFoundException(id);
+        }
+        return new PreconditionFailedException("note " + id + " has been modified; If-Match does not match its current version");
+    }
+
+    // Trims content and rejects blanks. Shared by every write path so single
+    // and batch writes follow the same rules.
+    static String normalizeContent(String rawContent) {
         String content = (rawContent == null) ? "" : rawContent.trim();
 
+        // @NotBlank should catch this in the pipeline, but we will add this here
+        // for Justin Case
         if (content.isEmpty()) {
             throw new InvalidNoteContentException("content must not be blank");
         }
+        return content;
+    }
 
-        NoteEntity noteToUpdate = this.getNoteById(id);
-        noteToUpdate.setContent(content);
-        return noteRepository.save(noteToUpdate);
+    // time-ordered, so inserts append to the primary-key index (see NoteIds)
+    static String newNoteId() {
+        return NoteIds.newId();
     }
 
-}
+}
\ No newline at end of file
@@ -0,0 +1,195 @@
+package com.bluestaq.challenge.notesvault.notes.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.bluestaq.challenge.notesvault.config.NoteSyncProperties;
+import com.bluestaq.challenge.notesvault.except.InvalidPageRequestException;
+import com.bluestaq.challenge.notesvault.except.SyncTokenExpiredException;
+import com.bluestaq.challenge.notesvault.notes.api.dto.NoteChange;
+import com.bluestaq.challenge.notesvault.notes.api.dto.NoteChangeSet;
+import com.bluestaq.challenge.notesvault.notes.archive.NoteArchive;
+import com.bluestaq.challenge.notesvault.notes.repo.NoteSyncRepository;
+import com.bluestaq.challenge.notesvault.notes.repo.NoteSyncRepository.ChangedNote;
+import com.bluestaq.challenge.notesvault.notes.repo.NoteSyncRepository.Clock;
+import com.bluestaq.challenge.notesvault.notes.repo.NoteSyncRepository.Tombstone;
+import com.bluestaq.challenge.notesvault.notes.store.AdmissionGate;
+
+// Delta sync behind GET /v1/notes/changes: the notes created, updated or deleted since a
+// sync token, oldest change first. Only available on the JPA (SQLite) storage engine.
+//
+// A request reads at most limit + 1 rows from each of two index range scans (notes by
+// change_seq, tombstones by change_seq), so its cost follows the number of changes
+// returned, not the size of the vault. Without a token the client gets a full sync:
+// every live note, paged the same way, and a token that carries on from there. Once a
+// full sync has caught up with the table it goes on to the archived notes (NoteArchive),
+// which delta sync never sees otherwise: archiving and restoring a note leave no change
+// behind.
+//
+// Tombstones older than tombstoneRetention are compacted in the background, in small
+// chunks; a token that still needed one of them is answered with 410 Gone. Stats and a
+// manual compaction over JMX as notesvault:type=NoteSync.
+@Service
+@ConditionalOnProperty(name = "notesvault.store.engine", havingValue = "jpa", matchIfMissing = true)
+@EnableConfigurationProperties(NoteSyncProperties.class)
+@ManagedResource(objectName = "notesvault:type=NoteSync", description = "Delta sync change log")
+public class NoteSyncService implements SmartInitializingSingleton, DisposableBean {
+
+  private static final Logger log = LoggerFactory.getLogger(NoteSyncService.class);
+
+  public static final int DEFAULT_PAGE_SIZE = 500;
+  public static final int MAX_PAGE_SIZE = 1000;
+
+  private final NoteSyncRepository syncRepository;
+  private final AdmissionGate admission;
+  private final NoteArchive noteArchive;
+  private final Duration retention;
+  private final Duration compactionInterval;
+  private final int compactionChunkSize;
+  private final ScheduledExecutorService compactor = Executors.newSingleThreadScheduledExecutor(
+      Thread.ofPlatform().name("note-sync-compactor").daemon(true).factory());
+
+  private volatile long tombstonesCompacted;
+
+  public NoteSyncService(NoteSyncRepository syncRepository, AdmissionGate admission, NoteArchive noteArchive,
+      NoteSyncProperties props) {
+    this.syncRepository = syncRepository;
+    this.admission = admission;
+    this.noteArchive = noteArchive;
+    this.retention = props.tombstoneRetention();
+    this.compactionInterval = props.compactionInterval();
+    this.compactionChunkSize = props.compactionChunkSize();
+  }
+
+  // Runs once the schema exists (after Hibernate has started) and before the web server opens.
+  @Override
+  public void afterSingletonsInstantiated() {
+    if (syncRepository.ensureSchema()) {
+      log.info("delta sync triggers were missing; created them");
+    }
+    long intervalMs = compactionInterval.toMillis();
+    if (intervalMs > 0) {
+      compactor.scheduleWithFixedDelay(this::compactQuietly, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  // since: a token from an earlier response, or null for a full sync.
+  @Transactional(readOnly = true)
+  public NoteChangeSet changes(String since, int limit) {
+    if (limit < 1 || limit > MAX_PAGE_SIZE) {
+      throw new InvalidPageRequestException("limit must be between 1 and " + MAX_PAGE_SIZE);
+    }
+    NoteSyncToken token = (since == null || since.isBlank()) ? null : NoteSyncToken.decode(since);
+    return admission.read(() -> {
+      // one read transaction, so the clock and the rows come from the same snapshot
+      Clock clock = syncRepository.clock();
+      NoteSyncToken from = (token == null)
+          ? new NoteSyncToken(0, clock.lastSeq(), noteArchive.isEnabled() ? 1 : 0, 0)
+          : token;
+      if (from.horizon() < clock.purgedSeq() || from.horizon() > clock.lastSeq()) {
+        throw new SyncTokenExpiredException("sync token has expired; sync again without since");
+      }
+
+      List<ChangedNote> notes = syncRepository.notesChangedAfter(from.seq(), limit + 1);
+      List<Tombstone> tombstones = syncRepository.tombstonesAfter(from.horizon(), limit + 1);
+
+      // merge the two runs in change order
+      List<NoteChange> changes = new ArrayList<>(Math.min(limit, notes.size() + tombstones.size()));
+      long last = from.seq();
+      int n = 0;
+      int t = 0;
+      while (changes.size() < limit && (n < notes.size() || t < tombstones.size())) {
+        if (t == tombstones.size() || (n < notes.size() && notes.get(n).seq() < tombstones.get(t).seq())) {
+          ChangedNote note = notes.get(n++);
+          changes.add(NoteChange.upserted(note.id(), note.version(), note.createdAt(), note.content()));
+          last = note.seq();
+        } else {
+          Tombstone tombstone = tombstones.get(t++);
+          changes.add(NoteChange.deleted(tombstone.id()));
+          last = tombstone.seq();
+        }
+      }
+      boolean hasMore = n < notes.size() || t < tombstones.size();
+      // when caught up, skip ahead to the clock: nothing up to it is left to send
+      NoteSyncToken next = from.advanceTo(hasMore ? last : clock.lastSeq());
+      if (!hasMore && from.archiveSegment() > 0) {
+        // A full sync, caught up with the table: fill the page from the archive. A note
+        // restored since it was archived is hidden here and is sent from the table.
+        NoteArchive.Position position = noteArchive.readVisible(
+            new NoteArchive.Position(from.archiveSegment(), from.archiveEntry()), limit - changes.size(),
+            note -> changes.add(NoteChange.upserted(note.id(), note.version(), note.createdAt(), note.content())));
+        hasMore = position != null;
+        next = hasMore ? next.withArchivePosition(position.segment(), position.entry()) : next.withArchivePosition(0, 0);
+      }
+      return new NoteChangeSet(changes, next.encode(), hasMore);
+    });
+  }
+
+  // Removes tombstones older than the retention, a chunk per write transaction.
+  // Returns the number removed.
+  @ManagedOperation(description = "Remove tombstones older than the retention now")
+  public synchronized long compact() {
+    Instant cutoff = Instant.now().minus(retention);
+    long removed = 0;
+    int chunk;
+    do {
+      chunk = syncRepository.compactChunk(cutoff, compactionChunkSize);
+      removed += chunk;
+    } while (chunk > 0);
+    tombstonesCompacted += removed;
+    return removed;
+  }
+
+  private void compactQuietly() {
+    try {
+      long removed = compact();
+      if (removed > 0) {
+        log.info("compacted {} tombstones older than {}", removed, retention);
+      }
+    } catch (RuntimeException e) {
+      log.warn("tombstone compaction failed", e);
+    }
+  }
+
+  @ManagedAttribute(description = "Sequence number of the latest change")
+  public long getLastSequence() {
+    return admission.read(() -> syncRepository.clock().lastSeq());
+  }
+
+  @ManagedAttribute(description = "Highest tombstone sequence number removed by compaction")
+  public long getPurgedSequence() {
+    return admission.read(() -> syncRepository.clock().purgedSeq());
+  }
+
+  @ManagedAttribute(description = "Tombstones currently kept")
+  public long getTombstones() {
+    return admission.read(syncRepository::tombstoneCount);
+  }
+
+  @ManagedAttribute(description = "Tombstones removed by compaction since startup")
+  public long getTombstonesCompacted() {
+    return tombstonesCompacted;
+  }
+
+  @Override
+  public void destroy() {
+    compactor.shutdownNow();
+  }
+}
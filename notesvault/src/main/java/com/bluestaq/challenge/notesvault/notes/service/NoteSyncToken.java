@@ -0,0 +1,69 @@
+package com.bluestaq.challenge.notesvault.notes.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import com.bluestaq.challenge.notesvault.except.InvalidPageRequestException;
+
+// Where a delta-sync client is: it has every change up to seq.
+//
+// baseline is the clock when the client's full sync began. Notes deleted before then
+// were never sent to it, so their tombstones do not matter to it, and compaction may
+// remove them while the client is still paging through the full sync. Once seq passes
+// baseline, only seq counts.
+//
+// archiveSegment and archiveEntry: a full sync also sends the archived notes (see
+// NoteArchive), once it has caught up with the table, and this is where that pass
+// stands. archiveSegment is 0 when no pass is pending, as for every delta sync.
+// Clients only ever see the encoded form, like NoteCursor.
+public record NoteSyncToken(long seq, long baseline, int archiveSegment, int archiveEntry) {
+
+  private static final char SEPARATOR = '.';
+
+  public NoteSyncToken(long seq, long baseline) {
+    this(seq, baseline, 0, 0);
+  }
+
+  // tombstones up to this number are of no use to the client
+  public long horizon() {
+    return Math.max(seq, baseline);
+  }
+
+  public NoteSyncToken advanceTo(long newSeq) {
+    return new NoteSyncToken(newSeq, baseline, archiveSegment, archiveEntry);
+  }
+
+  public NoteSyncToken withArchivePosition(int segment, int entry) {
+    return new NoteSyncToken(seq, baseline, segment, entry);
+  }
+
+  public String encode() {
+    String raw = "s" + seq + SEPARATOR + baseline;
+    if (archiveSegment > 0) {
+      raw += SEPARATOR + String.valueOf(archiveSegment) + SEPARATOR + archiveEntry;
+    }
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+  }
+
+  public static NoteSyncToken decode(String token) {
+    try {
+      String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+      String[] parts = raw.split("\\" + SEPARATOR, -1);
+      if (!raw.startsWith("s") || (parts.length != 2 && parts.length != 4)) {
+        throw new InvalidPageRequestException("since is not a valid sync token");
+      }
+      long seq = Long.parseLong(parts[0].substring(1));
+      long baseline = Long.parseLong(parts[1]);
+      int archiveSegment = (parts.length == 4) ? Integer.parseInt(parts[2]) : 0;
+      int archiveEntry = (parts.length == 4) ? Integer.parseInt(parts[3]) : 0;
+      if (seq < 0 || baseline < 0 || archiveSegment < 0 || archiveEntry < 0) {
+        throw new InvalidPageRequestException("since is not a valid sync token");
+      }
+      return new NoteSyncToken(seq, baseline, archiveSegment, archiveEntry);
+    } catch (IllegalArgumentException e) {
+      throw new InvalidPageRequestException("since is not a valid sync token");
+    }
+  }
+}
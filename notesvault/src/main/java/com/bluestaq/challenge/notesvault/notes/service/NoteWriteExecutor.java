@@ -0,0 +1,13 @@
+package com.bluestaq.challenge.notesvault.notes.service;
+
+import java.util.function.Supplier;
+
+// Runs a single-note write for NoteService.
+// The default implementation runs the write inline on the calling thread;
+// the group-commit implementation hands it to a dedicated writer thread that
+// commits many writes per transaction. Either way, execute() returns only
+// once the write is durable, and rethrows whatever the write threw.
+public interface NoteWriteExecutor {
+
+  <T> T execute(Supplier<T> write);
+}
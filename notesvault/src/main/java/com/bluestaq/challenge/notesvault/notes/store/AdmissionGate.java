@@ -0,0 +1,118 @@
+package com.bluestaq.challenge.notesvault.notes.store;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import com.bluestaq.challenge.notesvault.config.AdmissionProperties;
+import com.bluestaq.challenge.notesvault.except.ServiceBusyException;
+
+// Bounds how many callers use SQLite at once, separately for reads and writes.
+//
+// With virtual threads there is no request-thread pool to cap concurrency, so thousands
+// of requests can pile onto one writer connection and a handful of readers. Waiting in
+// a fair semaphore keeps them in arrival order and fails the overflow fast with a 503
+// instead of a pool timeout after 30s. It also bounds pinning: sqlite-jdbc calls into
+// native code while holding a monitor, which pins the virtual thread to its carrier for
+// the length of the statement, so only admitted callers can hold a carrier that way.
+//
+// Admission is per thread, per kind and reentrant: a read inside an admitted read and a
+// write inside an admitted write (store calls inside inTransaction) are not gated again.
+// Reads inside an admitted write are not gated either, since they run on the writer
+// connection that write already holds. A write inside an admitted read still waits for a
+// write slot. When disabled every call runs straight through.
+@Component
+@EnableConfigurationProperties(AdmissionProperties.class)
+@ManagedResource(objectName = "notesvault:type=Admission", description = "SQLite admission gate")
+public class AdmissionGate {
+
+  private static final ThreadLocal<Boolean> READ_ADMITTED = new ThreadLocal<>();
+  private static final ThreadLocal<Boolean> WRITE_ADMITTED = new ThreadLocal<>();
+
+  private final boolean enabled;
+  private final Semaphore reads;
+  private final Semaphore writes;
+  private final int maxReads;
+  private final int maxWrites;
+  private final long timeoutNanos;
+
+  private final AtomicLong rejected = new AtomicLong();
+
+  public AdmissionGate(AdmissionProperties props) {
+    this.enabled = props.enabled();
+    this.maxReads = props.maxConcurrentReads();
+    this.maxWrites = props.maxConcurrentWrites();
+    this.reads = new Semaphore(maxReads, true);
+    this.writes = new Semaphore(maxWrites, true);
+    this.timeoutNanos = props.acquireTimeout().toNanos();
+  }
+
+  public <T> T read(Supplier<T> work) {
+    if (WRITE_ADMITTED.get() != null) {
+      return work.get();
+    }
+    return admit(reads, READ_ADMITTED, "read", work);
+  }
+
+  public <T> T write(Supplier<T> work) {
+    return admit(writes, WRITE_ADMITTED, "write", work);
+  }
+
+  private <T> T admit(Semaphore permits, ThreadLocal<Boolean> admitted, String kind, Supplier<T> work) {
+    if (!enabled || admitted.get() != null) {
+      return work.get();
+    }
+    try {
+      if (!permits.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS)) {
+        rejected.incrementAndGet();
+        throw new ServiceBusyException("database is busy; no " + kind + " slot became free in time");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ServiceBusyException("interrupted while waiting for a database " + kind + " slot");
+    }
+    admitted.set(Boolean.TRUE);
+    try {
+      return work.get();
+    } finally {
+      admitted.remove();
+      permits.release();
+    }
+  }
+
+  @ManagedAttribute(description = "Whether the gate is enforced")
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  @ManagedAttribute(description = "Reads currently admitted")
+  public int getActiveReads() {
+    return maxReads - reads.availablePermits();
+  }
+
+  @ManagedAttribute(description = "Writes currently admitted")
+  public int getActiveWrites() {
+    return maxWrites - writes.availablePermits();
+  }
+
+  @ManagedAttribute(description = "Callers waiting for a read slot")
+  public int getQueuedReads() {
+    return reads.getQueueLength();
+  }
+
+  @ManagedAttribute(description = "Callers waiting for a write slot")
+  public int getQueuedWrites() {
+    return writes.getQueueLength();
+  }
+
+  @ManagedAttribute(description = "Callers turned away after waiting acquireTimeout")
+  public long getRejected() {
+    return rejected.get();
+  }
+}
@@ -0,0 +1,21 @@
+package com.bluestaq.challenge.notesvault.notes.store;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Store-wide modification counter behind NoteStore.generation().
+//
+// It lives in memory only, so it starts from the clock (shifted to leave room for
+// about a million changes per millisecond of uptime): a value handed out before a
+// restart is never handed out again after it.
+public final class ChangeCounter {
+
+  private final AtomicLong value = new AtomicLong(System.currentTimeMillis() << 20);
+
+  public long get() {
+    return value.get();
+  }
+
+  public void increment() {
+    value.incrementAndGet();
+  }
+}
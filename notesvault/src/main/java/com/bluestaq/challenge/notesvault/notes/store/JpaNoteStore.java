@@ -0,0 +1,247 @@
+package com.bluestaq.challenge.notesvault.notes.store;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.hibernate.query.NativeQuery;
+import org.hibernate.type.StandardBasicTypes;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.bluestaq.challenge.notesvault.notes.api.dto.NoteResponse;
+import com.bluestaq.challenge.notesvault.notes.entity.NoteContentCodec;
+import com.bluestaq.challenge.notesvault.notes.entity.NoteContentConverter;
+import com.bluestaq.challenge.notesvault.notes.entity.NoteEntity;
+import com.bluestaq.challenge.notesvault.notes.entity.NoteIds;
+import com.bluestaq.challenge.notesvault.notes.repo.NoteRepository;
+
+import jakarta.persistence.EntityManager;
+
+// Default engine: Hibernate/Spring Data on SQLite through NoteRepository.
+// Every call passes the AdmissionGate first: reads for a reader slot, writes and
+// inTransaction for a writer slot.
+@Component
+@ConditionalOnProperty(name = "notesvault.store.engine", havingValue = "jpa", matchIfMissing = true)
+public class JpaNoteStore implements NoteStore {
+
+  // bounds of the export's keyset walk, as in NoteService
+  private static final Instant EXPORT_OLDEST = Instant.parse("1000-01-01T00:00:00Z");
+  private static final Instant EXPORT_NEWEST = Instant.parse("9999-12-31T23:59:59Z");
+
+  private final NoteRepository noteRepository;
+  private final EntityManager entityManager;
+  private final TransactionTemplate writeTx;
+  private final TransactionTemplate readTx;
+  private final AdmissionGate admission;
+  private final NoteContentConverter contentConverter;
+  private final ChangeCounter changes = new ChangeCounter();
+
+  public JpaNoteStore(NoteRepository noteRepository, EntityManager entityManager,
+      PlatformTransactionManager transactionManager, AdmissionGate admission,
+      NoteContentConverter contentConverter) {
+    this.noteRepository = noteRepository;
+    this.entityManager = entityManager;
+    this.admission = admission;
+    this.contentConverter = contentConverter;
+    this.writeTx = new TransactionTemplate(transactionManager);
+    this.readTx = new TransactionTemplate(transactionManager);
+    this.readTx.setReadOnly(true);
+  }
+
+  @Override
+  public Optional<NoteEntity> findById(String id) {
+    return admission.read(() -> noteRepository.findById(id));
+  }
+
+  @Override
+  public List<NoteEntity> findAllById(Collection<String> ids) {
+    return admission.read(() -> noteRepository.findAllById(ids));
+  }
+
+  @Override
+  public boolean existsById(String id) {
+    return admission.read(() -> noteRepository.existsById(id));
+  }
+
+  @Override
+  public List<NoteEntity> findAllNewestFirst() {
+    return admission.read(noteRepository::findAllByOrderByCreatedAtDesc);
+  }
+
+  @Override
+  public List<NoteEntity> findPageBefore(Instant lowerCreatedAt, Instant upperCreatedAt, String upperId, int limit) {
+    return admission.read(() ->
+        noteRepository.findPageBefore(lowerCreatedAt, upperCreatedAt, upperId, PageRequest.of(0, limit)));
+  }
+
+  // Read-only transactions: they go to a reader connection, and Spring sets the
+  // Hibernate session to read-only with flushing off for their duration.
+  @Override
+  public Optional<NoteResponse> findResponseById(String id) {
+    return admission.read(() -> readTx.execute(status -> noteRepository.findResponseById(id)));
+  }
+
+  @Override
+  public List<NoteResponse> findResponsePageBefore(Instant lowerCreatedAt, Instant upperCreatedAt, String upperId,
+      int limit) {
+    return admission.read(() -> readTx.execute(status ->
+        noteRepository.findResponsePageBefore(lowerCreatedAt, upperCreatedAt, upperId, PageRequest.of(0, limit))));
+  }
+
+  // Keyset pages on (createdAt, id), each in its own read-only transaction and admitted
+  // on its own, so a slow client holds a reader slot only while a page is read, never
+  // while the sink writes it out. Entities are detached when each transaction ends. The
+  // export is therefore not one snapshot: a note written between pages may be missed or
+  // show its newer content, but no note is listed twice.
+  @Override
+  public void streamNewestFirst(Consumer<NoteEntity> sink) {
+    Instant upper = EXPORT_NEWEST;
+    String upperId = "";
+    List<NoteEntity> page;
+    do {
+      Instant pageUpper = upper;
+      String pageUpperId = upperId;
+      page = admission.read(() -> readTx.execute(status -> noteRepository.findPageBefore(
+          EXPORT_OLDEST, pageUpper, pageUpperId, PageRequest.of(0, NoteRepository.EXPORT_PAGE_SIZE))));
+      page.forEach(sink);
+      if (!page.isEmpty()) {
+        NoteEntity last = page.get(page.size() - 1);
+        upper = last.getCreatedAt();
+        upperId = last.getId();
+      }
+    } while (page.size() == NoteRepository.EXPORT_PAGE_SIZE);
+  }
+
+  // persist() rather than save(): our ids are assigned, so save() would merge and
+  // SELECT every new note first, which also defeats JDBC batching.
+  @Override
+  public NoteEntity insert(NoteEntity note) {
+    return admission.write(() -> writeTx.execute(status -> {
+      entityManager.persist(note);
+      changedAfterCommit();
+      return note;
+    }));
+  }
+
+  @Override
+  public NoteEntity save(NoteEntity note) {
+    return admission.write(() -> writeTx.execute(status -> {
+      NoteEntity saved = noteRepository.save(note);
+      changedAfterCommit();
+      return saved;
+    }));
+  }
+
+  @Override
+  public void deleteById(String id) {
+    admission.write(() -> writeTx.execute(status -> {
+      noteRepository.deleteById(id);
+      changedAfterCommit();
+      return null;
+    }));
+  }
+
+  // UPDATE ... RETURNING: the write, the existence check and the read-back of the new
+  // version are one statement. Native SQL, so the values are bound in their stored
+  // form; it still goes through the EntityManager so Hibernate statistics count it.
+  @Override
+  public Optional<NoteEntity> updateContent(String id, String content) {
+    return admission.write(() -> writeTx.execute(status -> {
+      entityManager.flush();
+      @SuppressWarnings("unchecked")
+      List<Object[]> rows = entityManager.createNativeQuery("""
+          UPDATE notes SET content = :content, version = version + 1
+          WHERE id = :id
+          RETURNING created_at, version
+          """)
+          .unwrap(NativeQuery.class)
+          .addScalar("created_at", StandardBasicTypes.INSTANT)
+          .addScalar("version", StandardBasicTypes.LONG)
+          .setParameter("content", NoteContentCodec.columnValue(contentConverter.convertToDatabaseColumn(content)))
+          .setParameter("id", NoteIds.toBytes(id))
+          .getResultList();
+      if (rows.isEmpty()) {
+        return Optional.<NoteEntity>empty();
+      }
+      // any copy of the note in this persistence context is now stale
+      entityManager.clear();
+      changedAfterCommit();
+
+      NoteEntity note = new NoteEntity();
+      note.setId(id);
+      note.setCreatedAt((Instant) rows.get(0)[0]);
+      note.setContent(content);
+      note.setVersion((Long) rows.get(0)[1]);
+      return Optional.of(note);
+    }));
+  }
+
+  @Override
+  public boolean deleteIfExists(String id) {
+    return admission.write(() -> writeTx.execute(status -> changedIf(noteRepository.deleteNoteById(id))));
+  }
+
+  @Override
+  public boolean updateContentIfVersion(String id, String content, Collection<Long> expectedVersions) {
+    return admission.write(() ->
+        writeTx.execute(status -> changedIf(noteRepository.updateContentIfVersion(id, content, expectedVersions))));
+  }
+
+  @Override
+  public boolean deleteByIdIfVersion(String id, Collection<Long> expectedVersions) {
+    return admission.write(() ->
+        writeTx.execute(status -> changedIf(noteRepository.deleteByIdIfVersion(id, expectedVersions))));
+  }
+
+  @Override
+  public long generation() {
+    return changes.get();
+  }
+
+  @Override
+  public <T> T inTransaction(Supplier<T> work) {
+    return admission.write(() -> writeTx.execute(status -> work.get()));
+  }
+
+  @Override
+  public void afterCommit(Runnable action) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      action.run();
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        action.run();
+      }
+    });
+  }
+
+  private boolean changedIf(int rows) {
+    if (rows > 0) {
+      changedAfterCommit();
+    }
+    return rows > 0;
+  }
+
+  // The generation moves only once the change is visible to other connections, so a
+  // reader can never pair the new generation with the old rows. Bumping on rollback
+  // too is harmless: it just costs pollers one extra full response.
+  private void changedAfterCommit() {
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCompletion(int status) {
+        changes.increment();
+      }
+    });
+  }
+}
@@ -0,0 +1,85 @@
+package com.bluestaq.challenge.notesvault.notes.store;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import com.bluestaq.challenge.notesvault.notes.api.dto.NoteResponse;
+import com.bluestaq.challenge.notesvault.notes.entity.NoteEntity;
+
+// Storage engine behind NoteService. The engine is chosen with notesvault.store.engine:
+//  - jpa (default): Hibernate on SQLite, see JpaNoteStore
+//  - log: append-only memory-mapped segment log, see LogNoteStore
+//  - sharded: notes spread over several SQLite files by id hash, see ShardedNoteStore
+//
+// Notes handed out are detached copies unless the call happens inside inTransaction(),
+// where an engine may return objects it tracks (JPA managed entities) so that changes
+// made to them are written when the transaction ends.
+public interface NoteStore {
+
+  Optional<NoteEntity> findById(String id);
+
+  List<NoteEntity> findAllById(Collection<String> ids);
+
+  boolean existsById(String id);
+
+  // Every note, newest first. Prefer findPageBefore/streamNewestFirst for large vaults.
+  List<NoteEntity> findAllNewestFirst();
+
+  // Up to limit notes ordered by (createdAt, id) descending with
+  // lowerCreatedAt < createdAt and (createdAt, id) < (upperCreatedAt, upperId).
+  List<NoteEntity> findPageBefore(Instant lowerCreatedAt, Instant upperCreatedAt, String upperId, int limit);
+
+  // Read-only variants of findById/findPageBefore for the read endpoints: they return
+  // the response body directly, without materializing entities.
+  Optional<NoteResponse> findResponseById(String id);
+
+  List<NoteResponse> findResponsePageBefore(Instant lowerCreatedAt, Instant upperCreatedAt, String upperId, int limit);
+
+  // Feeds every note, newest first, to sink without holding them all in memory.
+  void streamNewestFirst(Consumer<NoteEntity> sink);
+
+  // Stores a note whose id is not in use yet.
+  NoteEntity insert(NoteEntity note);
+
+  // Stores a new or changed note.
+  NoteEntity save(NoteEntity note);
+
+  // Removes the note if it exists.
+  void deleteById(String id);
+
+  // Single-statement writes for the plain update/delete endpoints: whether the note
+  // existed comes back with the write itself, so a 404 costs no extra query.
+  // updateContent also bumps the version and returns the note as now stored, or
+  // empty when there is no such note; deleteIfExists returns false in that case.
+  Optional<NoteEntity> updateContent(String id, String content);
+
+  boolean deleteIfExists(String id);
+
+  // Compare-and-set writes for If-Match: a single conditional statement, so nothing
+  // can slip in between the version check and the write. The content update also
+  // bumps the version. Both return false, changing nothing, when the note is missing
+  // or its version is not one of expectedVersions.
+  boolean updateContentIfVersion(String id, String content, Collection<Long> expectedVersions);
+
+  boolean deleteByIdIfVersion(String id, Collection<Long> expectedVersions);
+
+  // Changes after every committed write to any note, and never repeats across
+  // restarts: equal values mean no note changed in between. Read it before reading
+  // the notes it is meant to describe.
+  long generation();
+
+  // Runs work as one atomic, durable unit: its writes become durable together
+  // when the outermost call returns. Nested calls join the outer unit. The sharded
+  // engine is atomic per shard only: if its commit fails part way, the shards
+  // committed so far keep the work's writes (see ShardedNoteStore).
+  <T> T inTransaction(Supplier<T> work);
+
+  // Runs action once the outermost inTransaction call around this one has committed,
+  // or at once when there is none. Dropped if the transaction rolls back. For side
+  // effects that must only follow durable writes: change events, the replica.
+  void afterCommit(Runnable action);
+}
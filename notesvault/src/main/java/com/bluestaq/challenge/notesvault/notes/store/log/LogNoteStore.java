@@ -0,0 +1,599 @@
+package com.bluestaq.challenge.notesvault.notes.store.log;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import com.bluestaq.challenge.notesvault.config.NoteStoreProperties;
+import com.bluestaq.challenge.notesvault.notes.api.dto.NoteResponse;
+import com.bluestaq.challenge.notesvault.notes.entity.NoteEntity;
+import com.bluestaq.challenge.notesvault.notes.store.ChangeCounter;
+import com.bluestaq.challenge.notesvault.notes.store.NoteStore;
+
+// Append-only log engine for write-heavy workloads.
+//
+// Every write appends a PUT or DELETE record to the active memory-mapped segment;
+// nothing is ever updated in place. An in-memory index maps each live note id to the
+// location of its latest PUT, and a sorted set of (createdAt, id) keys serves ordered
+// listing and keyset pages. Reads take no locks: they look up the index and decode
+// straight from the mapping.
+//
+// Recovery: on startup all segments are replayed in order to rebuild the index; the
+// first record with a bad checksum in the last segment is a torn write and everything
+// from there on is discarded.
+//
+// Transactions: the outermost inTransaction call keeps an undo journal (the segment
+// position it started at, and the first pre-image of every index entry and garbage
+// count it touches). If the work throws, the appended bytes are zeroed, segments rolled
+// into are deleted and the index is put back, so nothing of a failed unit survives,
+// in memory or on replay. Readers are not isolated: they may see a write that is
+// later rolled back.
+//
+// Compaction: superseded and deleted records are counted per segment. A background
+// task rewrites sealed segments whose dead fraction passes the configured ratio by
+// re-appending their live records and deleting the file.
+@Component
+@ConditionalOnProperty(name = "notesvault.store.engine", havingValue = "log")
+@EnableConfigurationProperties(NoteStoreProperties.class)
+@ManagedResource(objectName = "notesvault:type=LogNoteStore", description = "Append-only note log")
+public class LogNoteStore implements NoteStore, SmartInitializingSingleton, DisposableBean {
+
+  private static final Logger log = LoggerFactory.getLogger(LogNoteStore.class);
+
+  private record Location(int segment, int offset, int size) {}
+
+  private record OrderKey(Instant createdAt, String id) {}
+
+  private static final Comparator<OrderKey> NEWEST_FIRST =
+      Comparator.comparing(OrderKey::createdAt).thenComparing(OrderKey::id).reversed();
+
+  private final Path directory;
+  private final int segmentSize;
+  private final boolean fsync;
+  private final double compactionGarbageRatio;
+  private final Duration compactionInterval;
+
+  private final ConcurrentHashMap<String, Location> index = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, Instant> createdAtById = new ConcurrentHashMap<>();
+  private final ConcurrentSkipListSet<OrderKey> order = new ConcurrentSkipListSet<>(NEWEST_FIRST);
+  private final ConcurrentSkipListMap<Integer, LogSegment> segments = new ConcurrentSkipListMap<>();
+  private final ChangeCounter changes = new ChangeCounter();
+
+  // single writer; reentrant so nested inTransaction() calls join the outer one
+  private final ReentrantLock writeLock = new ReentrantLock();
+  // guarded by writeLock
+  private LogSegment active;
+  // guarded by writeLock; set while an outermost inTransaction call runs
+  private Undo undo;
+
+  private final ScheduledExecutorService compactor = Executors.newSingleThreadScheduledExecutor(
+      Thread.ofPlatform().name("note-log-compactor").daemon(true).factory());
+
+  public LogNoteStore(NoteStoreProperties props) throws IOException {
+    NoteStoreProperties.Log cfg = props.log();
+    this.directory = cfg.directory();
+    this.segmentSize = Math.toIntExact(cfg.segmentSize().toBytes());
+    this.fsync = cfg.fsync();
+    this.compactionGarbageRatio = cfg.compactionGarbageRatio();
+    this.compactionInterval = cfg.compactionInterval();
+
+    Files.createDirectories(directory);
+    recover();
+  }
+
+  // Starts background compaction once the context is up, not from the constructor.
+  @Override
+  public void afterSingletonsInstantiated() {
+    long intervalMs = compactionInterval.toMillis();
+    compactor.scheduleWithFixedDelay(this::compactQuietly, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+  }
+
+  // --- reads (lock-free) ---
+
+  @Override
+  public Optional<NoteEntity> findById(String id) {
+    while (true) {
+      Location loc = index.get(id);
+      if (loc == null) {
+        return Optional.empty();
+      }
+      LogSegment segment = segments.get(loc.segment());
+      if (segment != null) {
+        return Optional.of(toEntity(LogRecord.decode(segment.buffer, loc.offset())));
+      }
+      // the segment was compacted away after we read the index; look again
+    }
+  }
+
+  @Override
+  public List<NoteEntity> findAllById(Collection<String> ids) {
+    List<NoteEntity> notes = new ArrayList<>(ids.size());
+    for (String id : ids) {
+      findById(id).ifPresent(notes::add);
+    }
+    return notes;
+  }
+
+  @Override
+  public boolean existsById(String id) {
+    return index.containsKey(id);
+  }
+
+  @Override
+  public List<NoteEntity> findAllNewestFirst() {
+    List<NoteEntity> notes = new ArrayList<>(order.size());
+    streamNewestFirst(notes::add);
+    return notes;
+  }
+
+  @Override
+  public List<NoteEntity> findPageBefore(Instant lowerCreatedAt, Instant upperCreatedAt, String upperId, int limit) {
+    // with NEWEST_FIRST ordering, "smaller than the bound" is everything after it
+    NavigableSet<OrderKey> older = order.tailSet(new OrderKey(upperCreatedAt, upperId), false);
+    List<NoteEntity> page = new ArrayList<>(Math.min(limit, 256));
+    for (Iterator<OrderKey> it = older.iterator(); it.hasNext() && page.size() < limit; ) {
+      OrderKey key = it.next();
+      if (!key.createdAt().isAfter(lowerCreatedAt)) {
+        break;
+      }
+      findById(key.id()).ifPresent(page::add);
+    }
+    return page;
+  }
+
+  // Records are decoded per read anyway, so these just reshape the result.
+  @Override
+  public Optional<NoteResponse> findResponseById(String id) {
+    return findById(id).map(NoteResponse::of);
+  }
+
+  @Override
+  public List<NoteResponse> findResponsePageBefore(Instant lowerCreatedAt, Instant upperCreatedAt, String upperId,
+      int limit) {
+    return findPageBefore(lowerCreatedAt, upperCreatedAt, upperId, limit).stream().map(NoteResponse::of).toList();
+  }
+
+  @Override
+  public void streamNewestFirst(Consumer<NoteEntity> sink) {
+    for (OrderKey key : order) {
+      findById(key.id()).ifPresent(sink);
+    }
+  }
+
+  // --- writes (single writer) ---
+
+  @Override
+  public NoteEntity insert(NoteEntity note) {
+    return save(note);
+  }
+
+  @Override
+  public NoteEntity save(NoteEntity note) {
+    return inTransaction(() -> {
+      Instant createdAt = createdAtById.getOrDefault(note.getId(), note.getCreatedAt());
+      LogRecord record = LogRecord.put(note.getId(), createdAt, note.getVersion(), note.getContent());
+      apply(record, append(record.encode()));
+      note.setCreatedAt(createdAt);
+      return note;
+    });
+  }
+
+  @Override
+  public void deleteById(String id) {
+    inTransaction(() -> {
+      if (index.containsKey(id)) {
+        LogRecord record = LogRecord.delete(id);
+        apply(record, append(record.encode()));
+      }
+      return null;
+    });
+  }
+
+  @Override
+  public Optional<NoteEntity> updateContent(String id, String content) {
+    return inTransaction(() -> findById(id).map(note -> {
+      note.setContent(content);
+      note.setVersion(note.getVersion() + 1);
+      return save(note);
+    }));
+  }
+
+  @Override
+  public boolean deleteIfExists(String id) {
+    return inTransaction(() -> {
+      if (!index.containsKey(id)) {
+        return false;
+      }
+      deleteById(id);
+      return true;
+    });
+  }
+
+  // The version check runs under the write lock, so it and the append are atomic.
+  @Override
+  public boolean updateContentIfVersion(String id, String content, Collection<Long> expectedVersions) {
+    return inTransaction(() -> {
+      NoteEntity note = findById(id).orElse(null);
+      if (note == null || !expectedVersions.contains(note.getVersion())) {
+        return false;
+      }
+      note.setContent(content);
+      note.setVersion(note.getVersion() + 1);
+      save(note);
+      return true;
+    });
+  }
+
+  @Override
+  public boolean deleteByIdIfVersion(String id, Collection<Long> expectedVersions) {
+    return inTransaction(() -> {
+      NoteEntity note = findById(id).orElse(null);
+      if (note == null || !expectedVersions.contains(note.getVersion())) {
+        return false;
+      }
+      deleteById(id);
+      return true;
+    });
+  }
+
+  @Override
+  public long generation() {
+    return changes.get();
+  }
+
+  @Override
+  public <T> T inTransaction(Supplier<T> work) {
+    writeLock.lock();
+    try {
+      if (writeLock.getHoldCount() > 1) {
+        return work.get();
+      }
+      undo = new Undo(active);
+      T result;
+      List<Runnable> committed;
+      try {
+        result = work.get();
+        flush();
+        committed = undo.afterCommit;
+      } catch (RuntimeException | Error e) {
+        rollback(undo);
+        throw e;
+      } finally {
+        undo = null;
+      }
+      // still under the write lock, so the actions run in commit order
+      committed.forEach(Runnable::run);
+      return result;
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  @Override
+  public void afterCommit(Runnable action) {
+    if (writeLock.isHeldByCurrentThread() && undo != null) {
+      undo.afterCommit.add(action);
+    } else {
+      action.run();
+    }
+  }
+
+  private Location append(byte[] record) {
+    if (active == null || active.remaining() < record.length) {
+      roll(record.length);
+    }
+    int offset = active.append(record);
+    return new Location(active.id, offset, record.length);
+  }
+
+  // Updates the index (and the garbage counts) for a record appended at loc.
+  // Used both for live writes and while replaying the log.
+  private void apply(LogRecord record, Location loc) {
+    remember(record.id());
+    Location previous = (record.type() == LogRecord.PUT) ? index.put(record.id(), loc) : index.remove(record.id());
+    if (previous != null) {
+      addGarbage(previous.segment(), previous.size());
+    }
+    if (record.type() == LogRecord.PUT) {
+      if (createdAtById.putIfAbsent(record.id(), record.createdAt()) == null) {
+        order.add(new OrderKey(record.createdAt(), record.id()));
+      }
+    } else {
+      Instant createdAt = createdAtById.remove(record.id());
+      if (createdAt != null) {
+        order.remove(new OrderKey(createdAt, record.id()));
+      }
+      // a tombstone only matters while older segments may still hold the note
+      addGarbage(loc.segment(), loc.size());
+    }
+    // after the index so a reader never pairs the new generation with old data
+    changes.increment();
+  }
+
+  private void addGarbage(int segmentId, int bytes) {
+    LogSegment segment = segments.get(segmentId);
+    if (segment != null) {
+      if (undo != null) {
+        undo.garbage.putIfAbsent(segment, segment.garbageBytes);
+      }
+      segment.garbageBytes += bytes;
+    }
+  }
+
+  // --- rollback ---
+
+  // What the running outermost transaction changed; null values are "absent".
+  private static final class Undo {
+    final LogSegment startSegment;
+    final int startPosition;
+    final Map<String, Location> locations = new HashMap<>();
+    final Map<String, Instant> createdAts = new HashMap<>();
+    final Map<LogSegment, Long> garbage = new HashMap<>();
+    // run once the transaction has committed, dropped with it on rollback
+    final List<Runnable> afterCommit = new ArrayList<>();
+
+    Undo(LogSegment active) {
+      this.startSegment = active;
+      this.startPosition = (active == null) ? 0 : active.writePosition;
+    }
+  }
+
+  // Keeps the id's index state from before its first change in this transaction.
+  private void remember(String id) {
+    if (undo != null && !undo.locations.containsKey(id)) {
+      undo.locations.put(id, index.get(id));
+      undo.createdAts.put(id, createdAtById.get(id));
+    }
+  }
+
+  private void rollback(Undo undo) {
+    // the zeroed bytes end the segment for replay, as at a fresh write position
+    int startId = (undo.startSegment == null) ? 0 : undo.startSegment.id;
+    for (LogSegment segment : new ArrayList<>(segments.tailMap(startId, false).values())) {
+      segments.remove(segment.id);
+      segment.truncate(0);
+      try {
+        segment.delete();
+      } catch (IOException e) {
+        log.warn("could not delete rolled back segment {}", segment.path, e);
+      }
+    }
+    if (undo.startSegment != null) {
+      undo.startSegment.truncate(undo.startPosition);
+    }
+    active = undo.startSegment;
+
+    for (Map.Entry<String, Location> entry : undo.locations.entrySet()) {
+      String id = entry.getKey();
+      if (entry.getValue() == null) {
+        index.remove(id);
+      } else {
+        index.put(id, entry.getValue());
+      }
+      Instant before = undo.createdAts.get(id);
+      Instant now = (before == null) ? createdAtById.remove(id) : createdAtById.put(id, before);
+      if (now != null && !now.equals(before)) {
+        order.remove(new OrderKey(now, id));
+      }
+      if (before != null && !before.equals(now)) {
+        order.add(new OrderKey(before, id));
+      }
+    }
+    undo.garbage.forEach((segment, bytes) -> segment.garbageBytes = bytes);
+    // readers may have seen the rolled back writes
+    changes.increment();
+  }
+
+  private void roll(int minCapacity) {
+    try {
+      if (active != null) {
+        active.force();
+      }
+      int nextId = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+      LogSegment next = LogSegment.create(directory, nextId, Math.max(segmentSize, minCapacity));
+      segments.put(nextId, next);
+      active = next;
+    } catch (IOException e) {
+      throw new UncheckedIOException("could not create log segment", e);
+    }
+  }
+
+  private void flush() {
+    if (!fsync) {
+      return;
+    }
+    for (LogSegment segment : segments.values()) {
+      segment.force();
+    }
+  }
+
+  // --- recovery ---
+
+  private void recover() throws IOException {
+    List<Path> files;
+    try (Stream<Path> listing = Files.list(directory)) {
+      files = listing
+          .filter(p -> p.getFileName().toString().matches("segment-\\d{10}\\.log"))
+          .sorted()
+          .toList();
+    }
+
+    for (int i = 0; i < files.size(); i++) {
+      Path path = files.get(i);
+      String name = path.getFileName().toString();
+      int id = Integer.parseInt(name.substring("segment-".length(), name.length() - ".log".length()));
+      LogSegment segment = LogSegment.open(path, id);
+      segments.put(id, segment);
+
+      int offset = 0;
+      int size;
+      while ((size = LogRecord.sizeAt(segment.buffer, offset, segment.capacity)) > 0) {
+        apply(LogRecord.decode(segment.buffer, offset), new Location(id, offset, size));
+        offset += size;
+      }
+      segment.writePosition = offset;
+
+      boolean last = (i == files.size() - 1);
+      if (last && offset + 4 <= segment.capacity && segment.buffer.getInt(offset) != 0) {
+        log.warn("discarding torn write at {} offset {}", name, offset);
+        segment.clearTail();
+      } else if (!last && offset + 4 <= segment.capacity && segment.buffer.getInt(offset) != 0) {
+        log.error("segment {} is corrupt after offset {}; later records in it were skipped", name, offset);
+      }
+    }
+    active = segments.isEmpty() ? null : segments.lastEntry().getValue();
+    log.info("note log recovered: {} notes in {} segments", index.size(), segments.size());
+  }
+
+  // --- compaction ---
+
+  private void compactQuietly() {
+    try {
+      compact();
+    } catch (RuntimeException e) {
+      log.error("note log compaction failed", e);
+    }
+  }
+
+  // Rewrites every sealed segment whose dead fraction has passed the threshold.
+  // Returns the number of segments reclaimed.
+  //
+  // Holds the write lock while relocating so no write can race a relocation; the old
+  // files are only deleted once the relocated records have been forced to disk. That
+  // force happens even with fsync off: skipping it would put notes committed long ago
+  // at risk, not just the latest writes. Sealed segments were forced when they were
+  // rolled, so the records to force are in the segment that was active when the pass
+  // began and in any segment rolled into since.
+  @ManagedOperation(description = "Compact sealed segments now")
+  public int compact() {
+    List<LogSegment> reclaimed = inTransaction(() -> {
+      int firstTarget = (active == null) ? 0 : active.id;
+      List<LogSegment> done = new ArrayList<>();
+      for (LogSegment segment : new ArrayList<>(segments.values())) {
+        if (segment != active && segment.garbageRatio() >= compactionGarbageRatio) {
+          relocateLiveRecords(segment);
+          done.add(segment);
+        }
+      }
+      if (!done.isEmpty()) {
+        for (LogSegment target : segments.tailMap(firstTarget, true).values()) {
+          target.force();
+        }
+      }
+      return done;
+    });
+
+    for (LogSegment segment : reclaimed) {
+      segments.remove(segment.id);
+      try {
+        segment.delete();
+      } catch (IOException e) {
+        log.warn("could not delete compacted segment {}", segment.path, e);
+      }
+    }
+    return reclaimed.size();
+  }
+
+  private void relocateLiveRecords(LogSegment segment) {
+    boolean olderSegmentsExist = segments.firstKey() < segment.id;
+    int offset = 0;
+    while (offset < segment.writePosition) {
+      int size = segment.buffer.getInt(offset) + LogRecord.HEADER_BYTES;
+      LogRecord record = LogRecord.decode(segment.buffer, offset);
+      Location here = new Location(segment.id, offset, size);
+
+      if (record.type() == LogRecord.PUT && here.equals(index.get(record.id()))) {
+        remember(record.id());
+        index.put(record.id(), append(copy(segment, offset, size)));
+      } else if (record.type() == LogRecord.DELETE && olderSegmentsExist && !index.containsKey(record.id())) {
+        // an older segment may still hold a PUT for this id; keep the tombstone
+        Location moved = append(copy(segment, offset, size));
+        addGarbage(moved.segment(), moved.size());
+      }
+      offset += size;
+    }
+  }
+
+  private static byte[] copy(LogSegment segment, int offset, int size) {
+    byte[] bytes = new byte[size];
+    segment.buffer.get(offset, bytes);
+    return bytes;
+  }
+
+  private static NoteEntity toEntity(LogRecord record) {
+    NoteEntity note = new NoteEntity();
+    note.setId(record.id());
+    note.setCreatedAt(record.createdAt());
+    note.setVersion(record.version());
+    note.setContent(record.content());
+    return note;
+  }
+
+  // --- stats / lifecycle ---
+
+  @ManagedAttribute(description = "Live notes in the index")
+  public int getNoteCount() {
+    return index.size();
+  }
+
+  @ManagedAttribute(description = "Segment files on disk")
+  public int getSegmentCount() {
+    return segments.size();
+  }
+
+  @ManagedAttribute(description = "Bytes of superseded or deleted records awaiting compaction")
+  public long getGarbageBytes() {
+    long total = 0;
+    for (Map.Entry<Integer, LogSegment> e : segments.entrySet()) {
+      total += e.getValue().garbageBytes;
+    }
+    return total;
+  }
+
+  @Override
+  public void destroy() throws IOException {
+    compactor.shutdownNow();
+    writeLock.lock();
+    try {
+      for (LogSegment segment : segments.values()) {
+        segment.force();
+        segment.close();
+      }
+    } finally {
+      writeLock.unlock();
+    }
+  }
+}
@@ -0,0 +1,90 @@
+package com.bluestaq.challenge.notesvault.notes.store.log;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.zip.CRC32C;
+
+// On-disk record layout of the note log (big-endian):
+//
+//   int   bodyLength
+//   int   crc32c(body)
+//   body: byte   type (PUT or DELETE)
+//         long   createdAt epoch seconds
+//         int    createdAt nanos
+//         long   note version (0 for DELETE)
+//         short  id length, then id bytes (UTF-8)
+//         int    content length, then content bytes (UTF-8; empty for DELETE)
+//
+// A bodyLength of 0 marks the end of the data in a segment (segments are pre-zeroed).
+// A record whose checksum does not match is treated as a torn write.
+record LogRecord(byte type, String id, Instant createdAt, long version, String content) {
+
+  static final byte PUT = 1;
+  static final byte DELETE = 2;
+
+  static final int HEADER_BYTES = 8;
+
+  static LogRecord put(String id, Instant createdAt, long version, String content) {
+    return new LogRecord(PUT, id, createdAt, version, content);
+  }
+
+  static LogRecord delete(String id) {
+    return new LogRecord(DELETE, id, Instant.EPOCH, 0, "");
+  }
+
+  byte[] encode() {
+    byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+    byte[] contentBytes = content.getBytes(StandardCharsets.UTF_8);
+    int bodyLength = 1 + 8 + 4 + 8 + 2 + idBytes.length + 4 + contentBytes.length;
+
+    ByteBuffer buf = ByteBuffer.allocate(HEADER_BYTES + bodyLength);
+    buf.putInt(bodyLength);
+    buf.putInt(0); // checksum placeholder
+    buf.put(type);
+    buf.putLong(createdAt.getEpochSecond());
+    buf.putInt(createdAt.getNano());
+    buf.putLong(version);
+    buf.putShort((short) idBytes.length);
+    buf.put(idBytes);
+    buf.putInt(contentBytes.length);
+    buf.put(contentBytes);
+
+    CRC32C crc = new CRC32C();
+    crc.update(buf.array(), HEADER_BYTES, bodyLength);
+    buf.putInt(4, (int) crc.getValue());
+    return buf.array();
+  }
+
+  // Total size of the record starting at offset, or -1 if there is no valid record
+  // there (end of data, torn write or corruption).
+  static int sizeAt(ByteBuffer segment, int offset, int limit) {
+    if (offset + HEADER_BYTES > limit) {
+      return -1;
+    }
+    int bodyLength = segment.getInt(offset);
+    if (bodyLength <= 0 || bodyLength > limit - offset - HEADER_BYTES) {
+      return -1;
+    }
+    CRC32C crc = new CRC32C();
+    crc.update(segment.slice(offset + HEADER_BYTES, bodyLength));
+    if ((int) crc.getValue() != segment.getInt(offset + 4)) {
+      return -1;
+    }
+    return HEADER_BYTES + bodyLength;
+  }
+
+  // Decodes a record previously validated with sizeAt (or known to be intact).
+  static LogRecord decode(ByteBuffer segment, int offset) {
+    ByteBuffer body = segment.slice(offset + HEADER_BYTES, segment.getInt(offset));
+    byte type = body.get();
+    Instant createdAt = Instant.ofEpochSecond(body.getLong(), body.getInt());
+    long version = body.getLong();
+    byte[] idBytes = new byte[body.getShort() & 0xFFFF];
+    body.get(idBytes);
+    byte[] contentBytes = new byte[body.getInt()];
+    body.get(contentBytes);
+    return new LogRecord(type, new String(idBytes, StandardCharsets.UTF_8), createdAt, version,
+        new String(contentBytes, StandardCharsets.UTF_8));
+  }
+}
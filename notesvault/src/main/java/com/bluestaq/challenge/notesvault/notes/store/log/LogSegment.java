@@ -0,0 +1,119 @@
+package com.bluestaq.challenge.notesvault.notes.store.log;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// One memory-mapped, pre-allocated segment file of the note log.
+//
+// Only the store's writer (holding its write lock) appends or changes the bookkeeping
+// fields. Readers use absolute reads on the shared mapping, which is safe because a
+// byte range is never rewritten once a record has been published in the index.
+final class LogSegment {
+
+  final int id;
+  final Path path;
+  final int capacity;
+  final MappedByteBuffer buffer;
+  private final FileChannel channel;
+
+  // end of valid data; appends go here
+  int writePosition;
+  // bytes belonging to records that have been superseded or deleted
+  long garbageBytes;
+  // range written since the last force(), or dirtyFrom == -1 when clean
+  int dirtyFrom = -1;
+  int dirtyTo;
+
+  private LogSegment(int id, Path path, FileChannel channel, int capacity) throws IOException {
+    this.id = id;
+    this.path = path;
+    this.channel = channel;
+    this.capacity = capacity;
+    this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+  }
+
+  static Path fileName(Path directory, int id) {
+    return directory.resolve(String.format("segment-%010d.log", id));
+  }
+
+  static LogSegment create(Path directory, int id, int capacity) throws IOException {
+    Path path = fileName(directory, id);
+    FileChannel channel = FileChannel.open(path,
+        StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    // sparse, zero-filled: a zero length field marks the end of the data
+    channel.truncate(0);
+    channel.write(java.nio.ByteBuffer.allocate(1), capacity - 1L);
+    return new LogSegment(id, path, channel, capacity);
+  }
+
+  static LogSegment open(Path path, int id) throws IOException {
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    long size = channel.size();
+    if (size > Integer.MAX_VALUE) {
+      channel.close();
+      throw new IOException("segment larger than 2 GiB: " + path);
+    }
+    return new LogSegment(id, path, channel, (int) size);
+  }
+
+  int remaining() {
+    return capacity - writePosition;
+  }
+
+  // Appends bytes at the write position and returns the offset they were written at.
+  int append(byte[] record) {
+    int offset = writePosition;
+    buffer.put(offset, record);
+    writePosition += record.length;
+    dirtyFrom = (dirtyFrom < 0) ? offset : Math.min(dirtyFrom, offset);
+    dirtyTo = Math.max(dirtyTo, writePosition);
+    return offset;
+  }
+
+  void force() {
+    if (dirtyFrom >= 0) {
+      buffer.force(dirtyFrom, dirtyTo - dirtyFrom);
+      dirtyFrom = -1;
+      dirtyTo = 0;
+    }
+  }
+
+  // Zeroes what was appended after position and moves the write position back there,
+  // undoing appends that must not be replayed.
+  void truncate(int position) {
+    if (writePosition <= position) {
+      return;
+    }
+    for (int i = position; i < writePosition; i++) {
+      buffer.put(i, (byte) 0);
+    }
+    buffer.force(position, writePosition - position);
+    writePosition = position;
+  }
+
+  // Zeroes everything from the write position on, so bytes of a torn write can
+  // never be mistaken for a record after later appends.
+  void clearTail() {
+    for (int i = writePosition; i < capacity; i++) {
+      buffer.put(i, (byte) 0);
+    }
+    buffer.force(writePosition, capacity - writePosition);
+  }
+
+  double garbageRatio() {
+    return (writePosition == 0) ? 0.0 : (double) garbageBytes / writePosition;
+  }
+
+  void close() throws IOException {
+    channel.close();
+  }
+
+  void delete() throws IOException {
+    close();
+    Files.deleteIfExists(path);
+  }
+}
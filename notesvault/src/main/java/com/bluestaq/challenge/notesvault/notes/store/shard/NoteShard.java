@@ -0,0 +1,145 @@
+package com.bluestaq.challenge.notesvault.notes.store.shard;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.sqlite.SQLiteConfig;
+import org.sqlite.SQLiteDataSource;
+
+import com.bluestaq.challenge.notesvault.config.SqliteDataSourceConfig;
+import com.bluestaq.challenge.notesvault.config.SqliteProperties;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+// One shard file of ShardedNoteStore (and of ReshardTool): its own single writer
+// connection, guarded by lock, and a small pool of read-only connections. Like the main
+// database, the writer never shares its connection and readers never block on it (WAL).
+//
+// Every file records which shard of how many it is, so a store opened with a different
+// shard count refuses to start instead of looking for notes in the wrong files.
+final class NoteShard implements AutoCloseable {
+
+  // created_at is epoch nanoseconds, so ordering and keyset bounds are plain integer compares
+  private static final String[] SCHEMA = {
+      """
+      CREATE TABLE IF NOT EXISTS notes (
+        id BLOB NOT NULL PRIMARY KEY,
+        created_at INTEGER NOT NULL,
+        content BLOB NOT NULL,
+        version INTEGER NOT NULL
+      )
+      """,
+      "CREATE INDEX IF NOT EXISTS idx_notes_created_at_id ON notes (created_at, id)",
+      """
+      CREATE TABLE IF NOT EXISTS shard_meta (
+        id INTEGER NOT NULL PRIMARY KEY CHECK (id = 1),
+        shard INTEGER NOT NULL,
+        shard_count INTEGER NOT NULL
+      )
+      """
+  };
+
+  final int index;
+  final Path file;
+  // held by whoever uses the writer: one statement, or a transaction until it ends
+  final ReentrantLock lock = new ReentrantLock();
+  final JdbcTemplate writer;
+  final JdbcTemplate readers;
+  final AtomicLong writes = new AtomicLong();
+
+  private final Connection writerConnection;
+  private final HikariDataSource readerPool;
+
+  NoteShard(Path file, int index, int count, SqliteProperties props, int readerPoolSize) throws SQLException {
+    this.index = index;
+    this.file = file;
+
+    SQLiteConfig writerConfig = SqliteDataSourceConfig.baseConfig(props);
+    writerConfig.setJournalMode(props.journalMode());
+    this.writerConnection = dataSource(file, writerConfig).getConnection();
+    this.writer = new JdbcTemplate(new SingleConnectionDataSource(writerConnection, true));
+    try {
+      for (String ddl : SCHEMA) {
+        writer.execute(ddl);
+      }
+      writer.update("INSERT OR IGNORE INTO shard_meta (id, shard, shard_count) VALUES (1, ?, ?)", index, count);
+      Layout layout = layout();
+      if (layout.index() != index || layout.count() != count) {
+        throw new IllegalStateException(file + " is shard " + layout.index() + " of " + layout.count()
+            + ", but was opened as shard " + index + " of " + count + "; change the shard count with ReshardTool");
+      }
+    } catch (RuntimeException e) {
+      writerConnection.close();
+      throw e;
+    }
+
+    SQLiteConfig readerConfig = SqliteDataSourceConfig.baseConfig(props);
+    readerConfig.setReadOnly(true);
+    HikariConfig pool = new HikariConfig();
+    pool.setPoolName("sqlite-shard-" + index);
+    pool.setDataSource(dataSource(file, readerConfig));
+    pool.setMaximumPoolSize(readerPoolSize);
+    pool.setMinimumIdle(0);
+    pool.setReadOnly(true);
+    pool.setConnectionTimeout(props.connectionTimeoutMs());
+    this.readerPool = new HikariDataSource(pool);
+    this.readers = new JdbcTemplate(readerPool);
+  }
+
+  record Layout(int index, int count) {}
+
+  Layout layout() {
+    return writer.queryForObject("SELECT shard, shard_count FROM shard_meta WHERE id = 1",
+        (rs, row) -> new Layout(rs.getInt(1), rs.getInt(2)));
+  }
+
+  // Starts a transaction on the writer; the caller holds lock until commit or rollback.
+  void begin() throws SQLException {
+    writerConnection.setAutoCommit(false);
+  }
+
+  // On failure the transaction is still open, for rollback().
+  void commit() throws SQLException {
+    writerConnection.commit();
+    writerConnection.setAutoCommit(true);
+  }
+
+  void rollback() throws SQLException {
+    try {
+      writerConnection.rollback();
+    } finally {
+      writerConnection.setAutoCommit(true);
+    }
+  }
+
+  static String fileName(int index) {
+    return "notes-" + index + ".db";
+  }
+
+  static boolean isShardFile(Path path) {
+    return Files.isRegularFile(path) && path.getFileName().toString().matches("notes-\\d+\\.db");
+  }
+
+  private static SQLiteDataSource dataSource(Path file, SQLiteConfig config) {
+    SQLiteDataSource dataSource = new SQLiteDataSource(config);
+    dataSource.setUrl("jdbc:sqlite:" + file);
+    return dataSource;
+  }
+
+  @Override
+  public void close() throws SQLException {
+    readerPool.close();
+    lock.lock();
+    try {
+      writerConnection.close();
+    } finally {
+      lock.unlock();
+    }
+  }
+}
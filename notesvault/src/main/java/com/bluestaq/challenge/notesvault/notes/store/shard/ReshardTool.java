@@ -0,0 +1,184 @@
+package com.bluestaq.challenge.notesvault.notes.store.shard;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.sqlite.SQLiteConfig;
+import org.sqlite.SQLiteConfig.JournalMode;
+import org.sqlite.SQLiteConfig.SynchronousMode;
+
+import com.bluestaq.challenge.notesvault.config.SqliteProperties;
+import com.bluestaq.challenge.notesvault.notes.store.shard.ShardedNoteStore.ShardRow;
+
+// Offline tool that changes the shard count of a sharded store by copying every note
+// from the shard files in one directory into a new layout in another:
+//
+//   ReshardTool <source-dir> <target-dir> <new-count>
+//
+// The source may also be the notes.db of the jpa engine, to move a vault onto the
+// sharded engine. Only its notes table is copied: archived notes, tombstones and the
+// search index stay behind.
+//
+// Run it with the application stopped. The source is only read; the target directory
+// must not hold shard files yet. Rows are copied as stored (content stays compressed or
+// not), in chunks of one transaction per target shard. When the copy is complete and
+// the counts match, point notesvault.store.sharded.directory and .count at the target.
+public final class ReshardTool {
+
+  private static final int CHUNK = 1000;
+
+  private static final SqliteProperties SQLITE = new SqliteProperties(
+      JournalMode.WAL, SynchronousMode.NORMAL, 5000, -16384, 0, 1, 30000);
+
+  private ReshardTool() {
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (args.length != 3) {
+      System.err.println("usage: ReshardTool <source-dir | notes.db> <target-dir> <new-count>");
+      System.exit(2);
+    }
+    long copied = reshard(Path.of(args[0]), Path.of(args[1]), Integer.parseInt(args[2]));
+    System.out.println("copied " + copied + " notes");
+  }
+
+  // Returns the number of notes copied.
+  public static long reshard(Path source, Path target, int newCount) throws IOException, SQLException {
+    boolean fromDatabase = Files.isRegularFile(source);
+    int sourceCount = fromDatabase ? 0 : layoutOf(source);
+    if (hasShardFiles(target)) {
+      throw new IllegalStateException(target + " already holds shard files");
+    }
+
+    NoteShard[] from = fromDatabase ? new NoteShard[0] : ShardedNoteStore.open(source, sourceCount, SQLITE, 1);
+    NoteShard[] to = null;
+    try {
+      to = ShardedNoteStore.open(target, newCount, SQLITE, 1);
+      long copied = fromDatabase ? importDatabase(source, to) : 0;
+      for (NoteShard shard : from) {
+        try (Stream<ShardRow> rows =
+            shard.readers.queryForStream(ShardedNoteStore.ALL_NEWEST_FIRST, ShardedNoteStore.ROW)) {
+          copied += copy(rows, to);
+        }
+      }
+
+      long stored = 0;
+      for (NoteShard shard : to) {
+        Long count = shard.writer.queryForObject("SELECT count(*) FROM notes", Long.class);
+        System.out.println(shard.file + ": " + count + " notes");
+        stored += (count == null) ? 0 : count;
+      }
+      if (stored != copied) {
+        throw new IllegalStateException("copied " + copied + " notes but the target holds " + stored);
+      }
+      return copied;
+    } finally {
+      ShardedNoteStore.closeAll(from);
+      if (to != null) {
+        ShardedNoteStore.closeAll(to);
+      }
+    }
+  }
+
+  // The jpa engine stores ids and content in the same form as the shards; created_at is
+  // whatever Hibernate bound for the Instant, which the driver reads back as a Timestamp.
+  private static long importDatabase(Path database, NoteShard[] targets) throws SQLException {
+    SQLiteConfig config = new SQLiteConfig();
+    config.setReadOnly(true);
+    try (Connection connection = config.createConnection("jdbc:sqlite:" + database)) {
+      JdbcTemplate jdbc = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+      try (Stream<ShardRow> rows = jdbc.queryForStream("SELECT id, created_at, content, version FROM notes",
+          (rs, n) -> new ShardRow(rs.getBytes(1), ShardedNoteStore.nanos(rs.getTimestamp(2).toInstant()),
+              rs.getBytes(3), rs.getLong(4)))) {
+        return copy(rows, targets);
+      }
+    }
+  }
+
+  private static long copy(Stream<ShardRow> rows, NoteShard[] targets) throws SQLException {
+    List<List<ShardRow>> pending = new ArrayList<>(targets.length);
+    for (int i = 0; i < targets.length; i++) {
+      pending.add(new ArrayList<>(CHUNK));
+    }
+    long copied = 0;
+    for (ShardRow row : (Iterable<ShardRow>) rows::iterator) {
+      int shard = ShardedNoteStore.shardOf(row.id(), targets.length);
+      List<ShardRow> chunk = pending.get(shard);
+      chunk.add(row);
+      if (chunk.size() == CHUNK) {
+        insert(targets[shard], chunk);
+        chunk.clear();
+      }
+      copied++;
+    }
+    for (int i = 0; i < targets.length; i++) {
+      insert(targets[i], pending.get(i));
+    }
+    return copied;
+  }
+
+  private static void insert(NoteShard target, List<ShardRow> rows) throws SQLException {
+    if (rows.isEmpty()) {
+      return;
+    }
+    target.begin();
+    try {
+      target.writer.batchUpdate("INSERT INTO notes (id, created_at, content, version) VALUES (?, ?, ?, ?)",
+          rows, rows.size(), (ps, row) -> {
+            ps.setBytes(1, row.id());
+            ps.setLong(2, row.createdAt());
+            ps.setBytes(3, row.content());
+            ps.setLong(4, row.version());
+          });
+      target.commit();
+    } catch (RuntimeException | SQLException e) {
+      target.rollback();
+      throw e;
+    }
+  }
+
+  // The shard count recorded in source's files; they must be complete.
+  private static int layoutOf(Path source) throws IOException, SQLException {
+    List<Path> files;
+    try (Stream<Path> listing = Files.list(source)) {
+      files = listing.filter(NoteShard::isShardFile).toList();
+    }
+    if (files.isEmpty()) {
+      throw new IllegalStateException(source + " holds no shard files");
+    }
+    // every file records the layout; read it from the first
+    Path first = files.get(0);
+    int index = ShardedNoteStore.shardNumber(first);
+    int count;
+    try (Connection probe = DriverManager.getConnection("jdbc:sqlite:" + first);
+        Statement statement = probe.createStatement();
+        ResultSet rs = statement.executeQuery("SELECT shard_count FROM shard_meta WHERE id = 1")) {
+      count = rs.getInt(1);
+    }
+    if (files.size() != count) {
+      throw new IllegalStateException(source + " holds " + files.size() + " shard files; shard " + index
+          + " says there should be " + count);
+    }
+    return count;
+  }
+
+  private static boolean hasShardFiles(Path directory) throws IOException {
+    if (!Files.isDirectory(directory)) {
+      return false;
+    }
+    try (Stream<Path> listing = Files.list(directory)) {
+      return listing.anyMatch(NoteShard::isShardFile);
+    }
+  }
+}
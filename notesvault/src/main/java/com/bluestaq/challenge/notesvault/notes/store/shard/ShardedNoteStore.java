@@ -0,0 +1,565 @@
+package com.bluestaq.challenge.notesvault.notes.store.shard;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import com.bluestaq.challenge.notesvault.config.NoteStoreProperties;
+import com.bluestaq.challenge.notesvault.config.SqliteProperties;
+import com.bluestaq.challenge.notesvault.except.ServiceBusyException;
+import com.bluestaq.challenge.notesvault.notes.api.dto.NoteResponse;
+import com.bluestaq.challenge.notesvault.notes.entity.NoteContentConverter;
+import com.bluestaq.challenge.notesvault.notes.entity.NoteEntity;
+import com.bluestaq.challenge.notesvault.notes.entity.NoteIds;
+import com.bluestaq.challenge.notesvault.notes.store.ChangeCounter;
+import com.bluestaq.challenge.notesvault.notes.store.NoteStore;
+
+// Hash-sharded SQLite engine: notes are spread over count files (notes-0.db ..) by a
+// hash of their id, and every file has its own writer connection. SQLite allows one
+// writer per file, so writes to different shards run in parallel and write throughput
+// grows with the shard count instead of being capped by one file's writer.
+//
+// Single-note reads and writes go straight to the note's shard; a write holds only that
+// shard's writer, for one statement. Listing asks every shard for its first limit rows
+// of the keyset range and merges them newest first (a k-way merge on (createdAt, id));
+// content is decoded only for the rows that make the page. Export merges a cursor per
+// shard the same way.
+//
+// inTransaction: the work runs on the writer connections of the shards it touches,
+// reads included, each joined on first use and held until the end, so every shard sees
+// it as one serializable transaction. Transactions on different shards run in parallel.
+// A transaction waits for shards in ascending order as long as it joins them that way;
+// a shard below one it already holds is waited for only up to busy-timeout-ms, as with a
+// SQLite lock, after which the transaction is rolled back with ServiceBusyException. So
+// two transactions that lock shards in opposite orders cannot wait on each other forever.
+// At the end the shards commit one after another and there is no commit record across
+// them: a failure part way through leaves the shards committed so far committed.
+// Batches, group commit and If-Match writes are atomic per shard only.
+//
+// The shard count is fixed by the files on disk; change it offline with ReshardTool,
+// which also imports the notes.db of the jpa engine.
+// Search, delta sync and the other SQL features of the jpa engine are not available.
+@Component
+@ConditionalOnProperty(name = "notesvault.store.engine", havingValue = "sharded")
+@EnableConfigurationProperties({NoteStoreProperties.class, SqliteProperties.class})
+@ManagedResource(objectName = "notesvault:type=ShardedNoteStore", description = "Hash-sharded SQLite notes")
+public class ShardedNoteStore implements NoteStore, DisposableBean {
+
+  private static final Logger log = LoggerFactory.getLogger(ShardedNoteStore.class);
+
+  // A stored row, content still in its stored (possibly compressed) form.
+  record ShardRow(byte[] id, long createdAt, byte[] content, long version) {}
+
+  static final RowMapper<ShardRow> ROW = (rs, n) -> row(rs);
+
+  static final Comparator<ShardRow> NEWEST_FIRST = Comparator.comparingLong(ShardRow::createdAt)
+      .thenComparing(ShardRow::id, Arrays::compareUnsigned)
+      .reversed();
+
+  private static final String COLUMNS = "SELECT id, created_at, content, version FROM notes";
+
+  static final String ALL_NEWEST_FIRST = COLUMNS + " ORDER BY created_at DESC, id DESC";
+
+  private final NoteShard[] shards;
+  private final NoteContentConverter contentConverter;
+  private final ChangeCounter changes = new ChangeCounter();
+
+  // how long a transaction waits for a shard out of order; see above
+  private final long lockTimeoutNanos;
+  private final ThreadLocal<Transaction> current = new ThreadLocal<>();
+
+  // The shards joined so far by the calling thread's inTransaction().
+  private static final class Transaction {
+    final List<NoteShard> shards = new ArrayList<>();
+    int highest = -1;
+    boolean changed;
+    final List<Runnable> afterCommit = new ArrayList<>();
+  }
+
+  public ShardedNoteStore(NoteStoreProperties props, SqliteProperties sqlite, NoteContentConverter contentConverter)
+      throws IOException, SQLException {
+    NoteStoreProperties.Sharded cfg = props.sharded();
+    this.contentConverter = contentConverter;
+    this.lockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(sqlite.busyTimeoutMs());
+    this.shards = open(cfg.directory(), cfg.count(), sqlite, cfg.readerPoolSize());
+    log.info("sharded note store opened: {} shards in {}", shards.length, cfg.directory());
+    if (Arrays.stream(shards).noneMatch(ShardedNoteStore::holdsNotes)) {
+      log.info("the shards hold no notes; notes kept by the jpa engine are not moved over"
+          + " on their own: import its notes.db with ReshardTool");
+    }
+  }
+
+  private static boolean holdsNotes(NoteShard shard) {
+    return Boolean.TRUE.equals(shard.readers.queryForObject("SELECT EXISTS (SELECT 1 FROM notes)", Boolean.class));
+  }
+
+  // Opens (or creates) the count shard files in directory. Fails if the directory holds
+  // shards of a different layout.
+  static NoteShard[] open(Path directory, int count, SqliteProperties sqlite, int readerPoolSize)
+      throws IOException, SQLException {
+    if (count < 1) {
+      throw new IllegalArgumentException("shard count must be at least 1");
+    }
+    Files.createDirectories(directory);
+    try (Stream<Path> files = Files.list(directory)) {
+      Optional<Path> extra = files.filter(NoteShard::isShardFile)
+          .filter(p -> shardNumber(p) >= count)
+          .findFirst();
+      if (extra.isPresent()) {
+        throw new IllegalStateException(extra.get() + " is outside a layout of " + count
+            + " shards; change the shard count with ReshardTool");
+      }
+    }
+    NoteShard[] opened = new NoteShard[count];
+    try {
+      for (int i = 0; i < count; i++) {
+        opened[i] = new NoteShard(directory.resolve(NoteShard.fileName(i)), i, count, sqlite, readerPoolSize);
+      }
+    } catch (SQLException | RuntimeException e) {
+      closeAll(opened);
+      throw e;
+    }
+    return opened;
+  }
+
+  // The shard a note id belongs to, of count. Hashes the stored id bytes, so ReshardTool
+  // can route rows without decoding them.
+  static int shardOf(byte[] id, int count) {
+    CRC32C crc = new CRC32C();
+    crc.update(id);
+    return (int) (crc.getValue() % count);
+  }
+
+  private NoteShard shardFor(String id) {
+    return shards[shardOf(NoteIds.toBytes(id), shards.length)];
+  }
+
+  // --- reads ---
+
+  @Override
+  public Optional<NoteEntity> findById(String id) {
+    byte[] key = NoteIds.toBytes(id);
+    List<ShardRow> rows = read(shardFor(id), jdbc -> jdbc.query(COLUMNS + " WHERE id = ?", ROW, (Object) key));
+    return rows.stream().findFirst().map(this::toEntity);
+  }
+
+  @Override
+  public List<NoteEntity> findAllById(Collection<String> ids) {
+    List<NoteEntity> notes = new ArrayList<>(ids.size());
+    for (String id : ids) {
+      findById(id).ifPresent(notes::add);
+    }
+    return notes;
+  }
+
+  @Override
+  public boolean existsById(String id) {
+    byte[] key = NoteIds.toBytes(id);
+    return read(shardFor(id), jdbc ->
+        !jdbc.queryForList("SELECT 1 FROM notes WHERE id = ?", Integer.class, (Object) key).isEmpty());
+  }
+
+  @Override
+  public List<NoteEntity> findAllNewestFirst() {
+    List<NoteEntity> notes = new ArrayList<>();
+    streamNewestFirst(notes::add);
+    return notes;
+  }
+
+  @Override
+  public List<NoteEntity> findPageBefore(Instant lowerCreatedAt, Instant upperCreatedAt, String upperId, int limit) {
+    return mergedPage(lowerCreatedAt, upperCreatedAt, upperId, limit).stream().map(this::toEntity).toList();
+  }
+
+  @Override
+  public Optional<NoteResponse> findResponseById(String id) {
+    return findById(id).map(NoteResponse::of);
+  }
+
+  @Override
+  public List<NoteResponse> findResponsePageBefore(Instant lowerCreatedAt, Instant upperCreatedAt, String upperId,
+      int limit) {
+    return mergedPage(lowerCreatedAt, upperCreatedAt, upperId, limit).stream()
+        .map(row -> NoteResponse.of(toEntity(row)))
+        .toList();
+  }
+
+  // Any shard may hold all limit notes of the page, so each is asked for limit rows.
+  private List<ShardRow> mergedPage(Instant lowerCreatedAt, Instant upperCreatedAt, String upperId, int limit) {
+    long lower = nanos(lowerCreatedAt);
+    long upper = nanos(upperCreatedAt);
+    byte[] upperKey = NoteIds.toBytes(upperId);
+    List<Iterator<ShardRow>> runs = new ArrayList<>(shards.length);
+    for (NoteShard shard : shards) {
+      List<ShardRow> rows = read(shard, jdbc -> jdbc.query(COLUMNS
+          + " WHERE created_at > ? AND (created_at, id) < (?, ?)"
+          + " ORDER BY created_at DESC, id DESC LIMIT ?", ROW, lower, upper, upperKey, limit));
+      runs.add(rows.iterator());
+    }
+    List<ShardRow> page = new ArrayList<>(Math.min(limit, 256));
+    merge(runs, limit, page::add);
+    return page;
+  }
+
+  // One forward-only cursor per shard, merged; only the heads of the cursors are in memory.
+  @Override
+  public void streamNewestFirst(Consumer<NoteEntity> sink) {
+    List<Stream<ShardRow>> cursors = new ArrayList<>(shards.length);
+    try {
+      List<Iterator<ShardRow>> runs = new ArrayList<>(shards.length);
+      for (NoteShard shard : shards) {
+        Stream<ShardRow> cursor = read(shard, jdbc -> jdbc.queryForStream(ALL_NEWEST_FIRST, ROW));
+        cursors.add(cursor);
+        runs.add(cursor.iterator());
+      }
+      merge(runs, Integer.MAX_VALUE, row -> sink.accept(toEntity(row)));
+    } finally {
+      cursors.forEach(Stream::close);
+    }
+  }
+
+  // k-way merge of runs that are each sorted newest first.
+  static void merge(List<Iterator<ShardRow>> runs, int limit, Consumer<ShardRow> sink) {
+    record Head(ShardRow row, Iterator<ShardRow> rest) {}
+    PriorityQueue<Head> heads = new PriorityQueue<>(Math.max(1, runs.size()),
+        Comparator.comparing(Head::row, NEWEST_FIRST));
+    for (Iterator<ShardRow> run : runs) {
+      if (run.hasNext()) {
+        heads.add(new Head(run.next(), run));
+      }
+    }
+    for (int taken = 0; taken < limit && !heads.isEmpty(); taken++) {
+      Head head = heads.poll();
+      sink.accept(head.row());
+      if (head.rest().hasNext()) {
+        heads.add(new Head(head.rest().next(), head.rest()));
+      }
+    }
+  }
+
+  // --- writes ---
+
+  @Override
+  public NoteEntity insert(NoteEntity note) {
+    byte[] key = NoteIds.toBytes(note.getId());
+    byte[] content = contentConverter.convertToDatabaseColumn(note.getContent());
+    write(shardFor(note.getId()), jdbc -> jdbc.update(
+        "INSERT INTO notes (id, created_at, content, version) VALUES (?, ?, ?, ?)",
+        key, nanos(note.getCreatedAt()), content, note.getVersion()), rows -> true);
+    return note;
+  }
+
+  // An existing note keeps its createdAt, as with the other engines.
+  @Override
+  public NoteEntity save(NoteEntity note) {
+    byte[] key = NoteIds.toBytes(note.getId());
+    byte[] content = contentConverter.convertToDatabaseColumn(note.getContent());
+    Long createdAt = write(shardFor(note.getId()), jdbc -> jdbc.queryForObject("""
+        INSERT INTO notes (id, created_at, content, version) VALUES (?, ?, ?, ?)
+        ON CONFLICT (id) DO UPDATE SET content = excluded.content, version = excluded.version
+        RETURNING created_at
+        """, Long.class, key, nanos(note.getCreatedAt()), content, note.getVersion()), stored -> true);
+    note.setCreatedAt(instant(createdAt));
+    return note;
+  }
+
+  @Override
+  public void deleteById(String id) {
+    deleteIfExists(id);
+  }
+
+  @Override
+  public Optional<NoteEntity> updateContent(String id, String content) {
+    byte[] key = NoteIds.toBytes(id);
+    byte[] stored = contentConverter.convertToDatabaseColumn(content);
+    List<long[]> rows = write(shardFor(id), jdbc -> jdbc.query(
+        "UPDATE notes SET content = ?, version = version + 1 WHERE id = ? RETURNING created_at, version",
+        (rs, n) -> new long[] {rs.getLong(1), rs.getLong(2)}, stored, key), result -> !result.isEmpty());
+    if (rows.isEmpty()) {
+      return Optional.empty();
+    }
+    NoteEntity note = new NoteEntity();
+    note.setId(id);
+    note.setCreatedAt(instant(rows.get(0)[0]));
+    note.setContent(content);
+    note.setVersion(rows.get(0)[1]);
+    return Optional.of(note);
+  }
+
+  @Override
+  public boolean deleteIfExists(String id) {
+    byte[] key = NoteIds.toBytes(id);
+    return write(shardFor(id), jdbc -> jdbc.update("DELETE FROM notes WHERE id = ?", (Object) key), rows -> rows > 0) > 0;
+  }
+
+  @Override
+  public boolean updateContentIfVersion(String id, String content, Collection<Long> expectedVersions) {
+    if (expectedVersions.isEmpty()) {
+      return false;
+    }
+    List<Object> args = new ArrayList<>(expectedVersions.size() + 2);
+    args.add(contentConverter.convertToDatabaseColumn(content));
+    args.add(NoteIds.toBytes(id));
+    args.addAll(expectedVersions);
+    String sql = "UPDATE notes SET content = ?, version = version + 1 WHERE id = ? AND version IN ("
+        + placeholders(expectedVersions.size()) + ")";
+    return write(shardFor(id), jdbc -> jdbc.update(sql, args.toArray()), rows -> rows > 0) > 0;
+  }
+
+  @Override
+  public boolean deleteByIdIfVersion(String id, Collection<Long> expectedVersions) {
+    if (expectedVersions.isEmpty()) {
+      return false;
+    }
+    List<Object> args = new ArrayList<>(expectedVersions.size() + 1);
+    args.add(NoteIds.toBytes(id));
+    args.addAll(expectedVersions);
+    String sql = "DELETE FROM notes WHERE id = ? AND version IN (" + placeholders(expectedVersions.size()) + ")";
+    return write(shardFor(id), jdbc -> jdbc.update(sql, args.toArray()), rows -> rows > 0) > 0;
+  }
+
+  @Override
+  public long generation() {
+    return changes.get();
+  }
+
+  @Override
+  public <T> T inTransaction(Supplier<T> work) {
+    if (current.get() != null) {
+      return work.get();
+    }
+    Transaction tx = new Transaction();
+    current.set(tx);
+    boolean committed = false;
+    T result;
+    try {
+      result = work.get();
+      commit(tx);
+      committed = true;
+    } finally {
+      current.remove();
+      if (!committed) {
+        rollback(tx.shards);
+      }
+      for (NoteShard shard : tx.shards) {
+        shard.lock.unlock();
+      }
+      if (tx.changed) {
+        changes.increment();
+      }
+    }
+    // only once every shard has committed: a commit that fails part way publishes nothing
+    tx.afterCommit.forEach(Runnable::run);
+    return result;
+  }
+
+  @Override
+  public void afterCommit(Runnable action) {
+    Transaction tx = current.get();
+    if (tx != null) {
+      tx.afterCommit.add(action);
+    } else {
+      action.run();
+    }
+  }
+
+  // Shard by shard; the ones not reached yet are rolled back by inTransaction.
+  private static void commit(Transaction tx) {
+    while (!tx.shards.isEmpty()) {
+      NoteShard shard = tx.shards.get(0);
+      try {
+        shard.commit();
+      } catch (SQLException e) {
+        throw new DataAccessResourceFailureException("commit failed on shard " + shard.index, e);
+      }
+      tx.shards.remove(0);
+      shard.lock.unlock();
+    }
+  }
+
+  private static void rollback(List<NoteShard> shards) {
+    for (NoteShard shard : shards) {
+      try {
+        shard.rollback();
+      } catch (SQLException e) {
+        log.error("rollback failed on shard {}", shard.index, e);
+      }
+    }
+  }
+
+  // Inside inTransaction the shard is joined and its writer used; otherwise a reader.
+  private <T> T read(NoteShard shard, Function<JdbcTemplate, T> query) {
+    Transaction tx = current.get();
+    return (tx == null) ? query.apply(shard.readers) : query.apply(join(tx, shard));
+  }
+
+  // Outside inTransaction a write is one autocommitted statement under the shard's lock,
+  // and the generation moves once it is committed.
+  private <T> T write(NoteShard shard, Function<JdbcTemplate, T> statement, Predicate<T> changed) {
+    Transaction tx = current.get();
+    if (tx != null) {
+      T result = statement.apply(join(tx, shard));
+      if (changed.test(result)) {
+        tx.changed = true;
+        shard.writes.incrementAndGet();
+      }
+      return result;
+    }
+    shard.lock.lock();
+    try {
+      T result = statement.apply(shard.writer);
+      if (changed.test(result)) {
+        shard.writes.incrementAndGet();
+        changes.increment();
+      }
+      return result;
+    } finally {
+      shard.lock.unlock();
+    }
+  }
+
+  private JdbcTemplate join(Transaction tx, NoteShard shard) {
+    if (!tx.shards.contains(shard)) {
+      lock(tx, shard);
+      try {
+        shard.begin();
+      } catch (SQLException e) {
+        shard.lock.unlock();
+        throw new DataAccessResourceFailureException("could not begin a transaction on shard " + shard.index, e);
+      }
+      tx.shards.add(shard);
+      tx.highest = Math.max(tx.highest, shard.index);
+    }
+    return shard.writer;
+  }
+
+  // Every unbounded wait is for a shard above all the waiter holds, so those waits
+  // cannot form a cycle; any cycle includes a bounded wait, which gives up.
+  private void lock(Transaction tx, NoteShard shard) {
+    if (shard.index > tx.highest) {
+      shard.lock.lock();
+      return;
+    }
+    try {
+      if (shard.lock.tryLock(lockTimeoutNanos, TimeUnit.NANOSECONDS)) {
+        return;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    throw new ServiceBusyException("shard " + shard.index + " is held by another transaction; try again");
+  }
+
+  // --- mapping ---
+
+  private NoteEntity toEntity(ShardRow row) {
+    NoteEntity note = new NoteEntity();
+    note.setId(NoteIds.fromBytes(row.id()));
+    note.setCreatedAt(instant(row.createdAt()));
+    note.setContent(contentConverter.convertToEntityAttribute(row.content()));
+    note.setVersion(row.version());
+    return note;
+  }
+
+  private static ShardRow row(ResultSet rs) throws SQLException {
+    return new ShardRow(rs.getBytes(1), rs.getLong(2), rs.getBytes(3), rs.getLong(4));
+  }
+
+  // Epoch nanoseconds cover 1677-2262; the open page bounds NoteService uses lie outside
+  // that and are clamped, which keeps them bounds.
+  static long nanos(Instant instant) {
+    try {
+      return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000_000L), instant.getNano());
+    } catch (ArithmeticException e) {
+      return instant.getEpochSecond() < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+    }
+  }
+
+  static Instant instant(long nanos) {
+    return Instant.ofEpochSecond(0, nanos);
+  }
+
+  private static String placeholders(int count) {
+    return String.join(", ", Collections.nCopies(count, "?"));
+  }
+
+  static int shardNumber(Path file) {
+    String name = file.getFileName().toString();
+    return Integer.parseInt(name.substring("notes-".length(), name.length() - ".db".length()));
+  }
+
+  // --- stats / lifecycle ---
+
+  @ManagedAttribute(description = "Number of shard files")
+  public int getShardCount() {
+    return shards.length;
+  }
+
+  @ManagedAttribute(description = "Live notes per shard (counts every row)")
+  public long[] getNotesPerShard() {
+    long[] counts = new long[shards.length];
+    for (int i = 0; i < shards.length; i++) {
+      Long count = shards[i].readers.queryForObject("SELECT count(*) FROM notes", Long.class);
+      counts[i] = (count == null) ? 0 : count;
+    }
+    return counts;
+  }
+
+  @ManagedAttribute(description = "Writes per shard since startup")
+  public long[] getWritesPerShard() {
+    long[] writes = new long[shards.length];
+    for (int i = 0; i < shards.length; i++) {
+      writes[i] = shards[i].writes.get();
+    }
+    return writes;
+  }
+
+  @Override
+  public void destroy() {
+    closeAll(shards);
+  }
+
+  static void closeAll(NoteShard[] shards) {
+    for (NoteShard shard : shards) {
+      if (shard == null) {
+        continue;
+      }
+      try {
+        shard.close();
+      } catch (SQLException e) {
+        log.warn("could not close {}", shard.file, e);
+      }
+    }
+  }
+}
@@ -0,0 +1,323 @@
+package com.bluestaq.challenge.notesvault.notes.stream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.http.MediaType;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import com.bluestaq.challenge.notesvault.config.NoteStreamProperties;
+import com.bluestaq.challenge.notesvault.except.FeatureUnavailableException;
+import com.bluestaq.challenge.notesvault.except.ServiceBusyException;
+import com.bluestaq.challenge.notesvault.notes.api.dto.NoteChangeEvent;
+import com.bluestaq.challenge.notesvault.notes.entity.NoteEntity;
+import com.bluestaq.challenge.notesvault.notes.store.NoteStore;
+
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.ObjectWriter;
+
+// Server-sent events behind GET /v1/notes/stream: every committed create, update and
+// delete gets the next sequence number and goes out to every subscriber.
+//
+// Each event is encoded once, as a complete SSE frame, into a ring buffer of the last
+// bufferSize events. A subscriber is only its emitter and the sequence number it has
+// been sent up to, so an idle one costs a parked async request - no thread, no queue.
+// New events wake every subscriber's drain on a virtual thread, which copies frames
+// straight from the ring; a slow client blocks nobody but itself. One that falls so far
+// behind that the ring has overwritten its next event is disconnected.
+//
+// A client reconnecting with Last-Event-ID gets every later event the ring still holds.
+// When it no longer reaches back that far (or the id is from before a restart) the
+// client gets a "reset" event instead: reload with GET /v1/notes, then carry on.
+// Sequence numbers start from the clock, like ChangeCounter, so they keep increasing
+// across restarts.
+@Component
+@EnableConfigurationProperties(NoteStreamProperties.class)
+@ManagedResource(objectName = "notesvault:type=NoteStream", description = "Note change stream")
+public class NoteChangeFeed implements DisposableBean {
+
+  private static final MediaType EVENT_STREAM = MediaType.TEXT_EVENT_STREAM;
+  private static final byte[] CONNECTED = ": connected\n\n".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.US_ASCII);
+
+  private record Frame(long seq, byte[] bytes) {}
+
+  // returned by frameAfter when the ring has moved past what the subscriber needs next
+  private static final Frame OVERRUN = new Frame(-1, null);
+
+  private static final class Subscriber {
+    final ResponseBodyEmitter emitter;
+    // the last sequence number sent; only touched by the drain in progress
+    long sent;
+    // drain requests not yet served; the drain runs while this is above zero
+    final AtomicInteger pending = new AtomicInteger();
+    volatile boolean heartbeatDue;
+    volatile boolean closed;
+
+    Subscriber(ResponseBodyEmitter emitter) {
+      this.emitter = emitter;
+    }
+  }
+
+  private final boolean enabled;
+  private final int maxSubscribers;
+  private final long timeoutMillis;
+  private final ObjectWriter eventWriter;
+  private final NoteStore noteStore;
+
+  private final Frame[] ring;
+  // first sequence number of this run
+  private final long first;
+  // guarded by this: the last sequence number handed out
+  private long head;
+
+  private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+  private final ExecutorService senders = Executors.newThreadPerTaskExecutor(
+      Thread.ofVirtual().name("note-stream-", 0).factory());
+  private final ScheduledExecutorService heartbeats = Executors.newSingleThreadScheduledExecutor(
+      Thread.ofPlatform().name("note-stream-heartbeat").daemon(true).factory());
+
+  private final AtomicLong published = new AtomicLong();
+  private final AtomicLong dropped = new AtomicLong();
+  private final AtomicLong resets = new AtomicLong();
+
+  public NoteChangeFeed(NoteStreamProperties props, ObjectMapper objectMapper, NoteStore noteStore) {
+    this.enabled = props.enabled();
+    this.noteStore = noteStore;
+    this.maxSubscribers = props.maxSubscribers();
+    this.timeoutMillis = props.timeout().toMillis();
+    this.eventWriter = objectMapper.writerFor(NoteChangeEvent.class);
+    this.ring = new Frame[props.bufferSize()];
+    this.first = (System.currentTimeMillis() << 20) + 1;
+    this.head = first - 1;
+
+    long heartbeatMs = props.heartbeat().toMillis();
+    if (enabled && heartbeatMs > 0) {
+      heartbeats.scheduleAtFixedRate(this::heartbeat, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  // --- publishing: once the write has committed ---
+
+  public void created(NoteEntity note) {
+    publishAfterCommit("created", NoteChangeEvent.of(note));
+  }
+
+  public void updated(NoteEntity note) {
+    publishAfterCommit("updated", NoteChangeEvent.of(note));
+  }
+
+  public void deleted(String id) {
+    publishAfterCommit("deleted", NoteChangeEvent.deleted(id));
+  }
+
+  // The event is built now, from the note as written; it is numbered and sent only
+  // after a commit, and never for a write that rolls back (NoteStore.afterCommit, so
+  // on every engine: a failed group commit batch publishes only its replayed writes).
+  private void publishAfterCommit(String type, NoteChangeEvent event) {
+    if (!enabled) {
+      return;
+    }
+    noteStore.afterCommit(() -> publish(type, event));
+  }
+
+  private void publish(String type, NoteChangeEvent event) {
+    byte[] data = eventWriter.writeValueAsBytes(event);
+    synchronized (this) {
+      long seq = ++head;
+      ring[(int) (seq % ring.length)] = new Frame(seq, frame(seq, type, data));
+    }
+    published.incrementAndGet();
+    for (Subscriber s : subscribers) {
+      signal(s);
+    }
+  }
+
+  // --- subscribing ---
+
+  // lastEventId: the Last-Event-ID a reconnecting client sent, or null.
+  public ResponseBodyEmitter subscribe(String lastEventId) throws IOException {
+    if (!enabled) {
+      throw new FeatureUnavailableException("the change stream is disabled (notesvault.stream.enabled)");
+    }
+    if (subscribers.size() >= maxSubscribers) {
+      throw new ServiceBusyException("too many change stream subscribers; retry later");
+    }
+    Long resumeAfter = parseEventId(lastEventId);
+
+    Subscriber sub = new Subscriber(new ResponseBodyEmitter(timeoutMillis));
+    boolean reset;
+    synchronized (this) {
+      reset = resumeAfter != null && (resumeAfter < oldest() - 1 || resumeAfter > head);
+      sub.sent = (resumeAfter == null || reset) ? head : resumeAfter;
+    }
+    if (reset) {
+      resets.incrementAndGet();
+      sub.emitter.send(frame(sub.sent, "reset", "{}".getBytes(StandardCharsets.US_ASCII)), EVENT_STREAM);
+    } else {
+      // commits the response headers, so the client sees the stream open at once
+      sub.emitter.send(CONNECTED, EVENT_STREAM);
+    }
+
+    sub.emitter.onCompletion(() -> close(sub));
+    sub.emitter.onError(e -> close(sub));
+    subscribers.add(sub);
+    // events published since sub.sent was read, and the replay for a resume
+    signal(sub);
+    return sub.emitter;
+  }
+
+  private static Long parseEventId(String lastEventId) {
+    if (lastEventId == null || lastEventId.isBlank()) {
+      return null;
+    }
+    try {
+      return Long.parseLong(lastEventId.trim());
+    } catch (NumberFormatException e) {
+      // not one of ours: treated like an id the ring no longer holds
+      return Long.MIN_VALUE;
+    }
+  }
+
+  // --- delivery ---
+
+  private void signal(Subscriber sub) {
+    if (sub.pending.getAndIncrement() == 0) {
+      try {
+        senders.execute(() -> drain(sub));
+      } catch (RejectedExecutionException e) {
+        // shutting down
+      }
+    }
+  }
+
+  private void drain(Subscriber sub) {
+    int missed = 1;
+    do {
+      if (!sub.closed) {
+        sendPending(sub);
+      }
+      missed = sub.pending.addAndGet(-missed);
+    } while (missed != 0);
+  }
+
+  private void sendPending(Subscriber sub) {
+    try {
+      boolean sentAny = false;
+      for (Frame next = frameAfter(sub.sent); next != null; next = frameAfter(sub.sent)) {
+        if (next == OVERRUN) {
+          dropped.incrementAndGet();
+          close(sub);
+          sub.emitter.complete();
+          return;
+        }
+        sub.emitter.send(next.bytes(), EVENT_STREAM);
+        sub.sent = next.seq();
+        sentAny = true;
+      }
+      if (sub.heartbeatDue) {
+        sub.heartbeatDue = false;
+        if (!sentAny) {
+          sub.emitter.send(HEARTBEAT, EVENT_STREAM);
+        }
+      }
+    } catch (IOException | IllegalStateException e) {
+      // the client has gone, or the emitter timed out meanwhile
+      close(sub);
+    }
+  }
+
+  // the frame following seq, null when caught up, OVERRUN when it has been overwritten
+  private synchronized Frame frameAfter(long seq) {
+    if (seq >= head) {
+      return null;
+    }
+    if (seq + 1 < oldest()) {
+      return OVERRUN;
+    }
+    return ring[(int) ((seq + 1) % ring.length)];
+  }
+
+  // guarded by this
+  private long oldest() {
+    return Math.max(first, head - ring.length + 1);
+  }
+
+  private void heartbeat() {
+    for (Subscriber s : subscribers) {
+      s.heartbeatDue = true;
+      signal(s);
+    }
+  }
+
+  private void close(Subscriber sub) {
+    sub.closed = true;
+    subscribers.remove(sub);
+  }
+
+  private static byte[] frame(long seq, String type, byte[] data) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(data.length + 48);
+    out.writeBytes(("id: " + seq + "\nevent: " + type + "\ndata: ").getBytes(StandardCharsets.US_ASCII));
+    // Jackson escapes line breaks inside strings, so the JSON is a single data line
+    out.writeBytes(data);
+    out.writeBytes(new byte[] {'\n', '\n'});
+    return out.toByteArray();
+  }
+
+  @Override
+  public void destroy() {
+    heartbeats.shutdownNow();
+    senders.shutdownNow();
+    for (Subscriber s : subscribers) {
+      close(s);
+      s.emitter.complete();
+    }
+  }
+
+  // --- JMX ---
+
+  @ManagedAttribute(description = "Connected subscribers")
+  public int getSubscribers() {
+    return subscribers.size();
+  }
+
+  @ManagedAttribute(description = "Sequence number of the latest event")
+  public synchronized long getLastSequence() {
+    return head;
+  }
+
+  @ManagedAttribute(description = "Events kept for Last-Event-ID resume")
+  public int getBufferSize() {
+    return ring.length;
+  }
+
+  @ManagedAttribute(description = "Events published since startup")
+  public long getEventsPublished() {
+    return published.get();
+  }
+
+  @ManagedAttribute(description = "Subscribers disconnected for falling behind the buffer")
+  public long getSubscribersDropped() {
+    return dropped.get();
+  }
+
+  @ManagedAttribute(description = "Reconnects whose Last-Event-ID was no longer buffered")
+  public long getResets() {
+    return resets.get();
+  }
+}
@@ -0,0 +1,11 @@
+-- The notes table and its keyset-pagination index, as ddl-auto=update created them
+-- from NoteEntity. IF NOT EXISTS: databases from before migrations already have both.
+CREATE TABLE IF NOT EXISTS notes (
+  id blob NOT NULL,
+  created_at timestamp NOT NULL,
+  content TEXT NOT NULL,
+  version bigint DEFAULT 1 NOT NULL,
+  PRIMARY KEY (id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_notes_created_at_id ON notes (created_at, id);
@@ -0,0 +1,42 @@
+-- Delta sync (GET /v1/notes/changes, see NoteSyncRepository): every note carries the
+-- sequence number of its latest change, every deleted note leaves a tombstone, and
+-- note_sync_clock holds the last number handed out. The triggers that maintain them are
+-- created at startup by NoteSyncRepository (a script here cannot hold a trigger body).
+
+-- As in V1: a test database whose notes table was dropped by ddl-auto=create-drop
+-- still has V1 recorded, so the table may be missing here.
+CREATE TABLE IF NOT EXISTS notes (
+  id blob NOT NULL,
+  created_at timestamp NOT NULL,
+  content TEXT NOT NULL,
+  version bigint DEFAULT 1 NOT NULL,
+  PRIMARY KEY (id)
+);
+
+ALTER TABLE notes ADD COLUMN change_seq bigint DEFAULT 0 NOT NULL;
+
+-- existing notes get distinct numbers in insertion order
+UPDATE notes SET change_seq = rowid;
+
+CREATE INDEX IF NOT EXISTS idx_notes_change_seq ON notes (change_seq);
+
+-- deleted_at is unix epoch milliseconds; tombstones older than the retention are compacted
+CREATE TABLE IF NOT EXISTS note_tombstones (
+  id blob NOT NULL,
+  change_seq bigint NOT NULL,
+  deleted_at bigint NOT NULL,
+  PRIMARY KEY (id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_note_tombstones_change_seq ON note_tombstones (change_seq);
+
+-- one row; purged_seq is the highest tombstone number compaction has removed
+CREATE TABLE IF NOT EXISTS note_sync_clock (
+  id INTEGER NOT NULL CHECK (id = 1),
+  last_seq bigint NOT NULL,
+  purged_seq bigint NOT NULL,
+  PRIMARY KEY (id)
+);
+
+INSERT OR IGNORE INTO note_sync_clock (id, last_seq, purged_seq)
+  SELECT 1, coalesce(max(change_seq), 0), 0 FROM notes;
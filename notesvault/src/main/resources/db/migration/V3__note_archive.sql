@@ -0,0 +1,19 @@
+-- Hot/cold tiering (see NoteArchive): the archive segment files that hold notes moved out
+-- of the notes table, and archived copies that no longer count because the note has
+-- since been restored to the table or deleted.
+
+-- A segment file is only read once its row exists; the row is written in the same
+-- transaction that removes its notes from the table. archived_at is unix epoch millis.
+CREATE TABLE IF NOT EXISTS note_archive_segments (
+  segment INTEGER NOT NULL,
+  notes bigint NOT NULL,
+  archived_at bigint NOT NULL,
+  PRIMARY KEY (segment)
+);
+
+-- Hides the note's copies in every segment up to and including segment.
+CREATE TABLE IF NOT EXISTS note_archive_hidden (
+  id blob NOT NULL,
+  segment INTEGER NOT NULL,
+  PRIMARY KEY (id)
+);
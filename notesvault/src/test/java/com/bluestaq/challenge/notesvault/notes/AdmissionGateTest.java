@@ -0,0 +1,111 @@
+package com.bluestaq.challenge.notesvault.notes;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import com.bluestaq.challenge.notesvault.config.AdmissionProperties;
+import com.bluestaq.challenge.notesvault.except.ServiceBusyException;
+import com.bluestaq.challenge.notesvault.notes.store.AdmissionGate;
+
+class AdmissionGateTest {
+
+  private static AdmissionGate gate(boolean enabled, int reads, int writes) {
+    return new AdmissionGate(new AdmissionProperties(enabled, reads, writes, Duration.ofMillis(50)));
+  }
+
+  private static void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Test
+  void write_whileSlotTaken_rejectsAfterTimeout() throws Exception {
+    AdmissionGate gate = gate(true, 4, 1);
+    CountDownLatch admitted = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+
+    try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+      Future<?> holder = threads.submit(() -> gate.write(() -> {
+        admitted.countDown();
+        awaitQuietly(release);
+        return null;
+      }));
+      admitted.await();
+
+      assertThat(gate.getActiveWrites()).isEqualTo(1);
+      assertThatThrownBy(() -> gate.write(() -> "second"))
+          .isInstanceOf(ServiceBusyException.class);
+      assertThat(gate.getRejected()).isEqualTo(1);
+
+      // reads have their own slots and are not held up by the writer
+      assertThat(gate.read(() -> "read")).isEqualTo("read");
+
+      release.countDown();
+      holder.get();
+    }
+    assertThat(gate.write(() -> "after")).isEqualTo("after");
+    assertThat(gate.getActiveWrites()).isZero();
+  }
+
+  @Test
+  void nestedCalls_doNotWaitForAnotherSlot() {
+    AdmissionGate gate = gate(true, 1, 1);
+
+    // a single write slot would deadlock here if admission were not reentrant
+    String result = gate.write(() -> gate.read(() -> gate.write(() -> "nested")));
+
+    assertThat(result).isEqualTo("nested");
+    assertThat(gate.getActiveReads()).isZero();
+    assertThat(gate.getActiveWrites()).isZero();
+  }
+
+  @Test
+  void writeInsideRead_stillWaitsForAWriteSlot() throws Exception {
+    AdmissionGate gate = gate(true, 4, 1);
+    CountDownLatch admitted = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+
+    assertThat(gate.read(() -> gate.write(() -> gate.getActiveWrites()))).isEqualTo(1);
+
+    try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+      Future<?> holder = threads.submit(() -> gate.write(() -> {
+        admitted.countDown();
+        awaitQuietly(release);
+        return null;
+      }));
+      admitted.await();
+
+      // holding a read slot does not let a write past the writer
+      assertThatThrownBy(() -> gate.read(() -> gate.write(() -> "sneaked")))
+          .isInstanceOf(ServiceBusyException.class);
+      assertThat(gate.getActiveReads()).isZero();
+
+      release.countDown();
+      holder.get();
+    }
+    assertThat(gate.getActiveWrites()).isZero();
+  }
+
+  @Test
+  void disabled_runsEverythingStraightThrough() {
+    AdmissionGate gate = gate(false, 1, 1);
+
+    String result = gate.write(() -> {
+      assertThat(gate.getActiveWrites()).isZero();
+      return "ran";
+    });
+
+    assertThat(result).isEqualTo("ran");
+  }
+}
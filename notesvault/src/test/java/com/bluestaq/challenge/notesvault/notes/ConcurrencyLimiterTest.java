@@ -0,0 +1,121 @@
+package com.bluestaq.challenge.notesvault.notes;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.bluestaq.challenge.notesvault.config.ConcurrencyLimitProperties;
+import com.bluestaq.challenge.notesvault.notes.limit.AdaptiveLimit;
+import com.bluestaq.challenge.notesvault.notes.limit.ConcurrencyLimitFilter;
+import com.bluestaq.challenge.notesvault.notes.limit.ConcurrencyLimiter;
+
+import tools.jackson.databind.json.JsonMapper;
+
+class ConcurrencyLimiterTest {
+
+  private static final long MS = 1_000_000L;
+
+  // window of 10 samples, applied in full (smoothing 1) so each step is visible
+  private static AdaptiveLimit limit(int initial, int min, int max) {
+    return new AdaptiveLimit(initial, min, max, 1.5, 10, 1.0);
+  }
+
+  // one window of requests, up to concurrency at a time, each taking latencyMs
+  private static void window(AdaptiveLimit limit, int concurrency, long latencyMs) {
+    for (int done = 0; done < 10; ) {
+      int batch = Math.min(concurrency, 10 - done);
+      for (int i = 0; i < batch; i++) {
+        assertThat(limit.tryAcquire()).isTrue();
+      }
+      for (int i = 0; i < batch; i++) {
+        limit.release(latencyMs * MS, false);
+      }
+      done += batch;
+    }
+  }
+
+  @Test
+  void tryAcquire_overTheLimit_rejectsWithoutWaiting() {
+    AdaptiveLimit limit = limit(2, 1, 10);
+
+    assertThat(limit.tryAcquire()).isTrue();
+    assertThat(limit.tryAcquire()).isTrue();
+    assertThat(limit.tryAcquire()).isFalse();
+    assertThat(limit.getInFlight()).isEqualTo(2);
+    assertThat(limit.getRejected()).isEqualTo(1);
+
+    limit.release(MS, false);
+    assertThat(limit.tryAcquire()).isTrue();
+  }
+
+  @Test
+  void limit_growsWhileLatencyHolds_andShrinksWhenItRises() {
+    AdaptiveLimit limit = limit(4, 1, 100);
+
+    window(limit, 4, 10);
+    window(limit, 5, 10);
+    int grown = limit.getLimit();
+    assertThat(grown).isGreaterThan(4);
+
+    // requests start queueing: latency triples
+    window(limit, grown, 30);
+    assertThat(limit.getLimit()).isLessThan(grown);
+  }
+
+  @Test
+  void limit_doesNotGrow_whenItIsNotReached() {
+    AdaptiveLimit limit = limit(20, 1, 100);
+
+    for (int i = 0; i < 5; i++) {
+      window(limit, 1, 10);
+    }
+
+    assertThat(limit.getLimit()).isEqualTo(20);
+  }
+
+  @Test
+  void limit_backsOff_whenTheDatabaseRefusesWork() {
+    AdaptiveLimit limit = limit(20, 1, 100);
+
+    for (int i = 0; i < 10; i++) {
+      assertThat(limit.tryAcquire()).isTrue();
+      limit.release(MS, true);
+    }
+
+    assertThat(limit.getLimit()).isEqualTo(18);
+  }
+
+  @Test
+  void filter_overTheLimit_returns503WithRetryAfter_andSeparatesReadsFromWrites() throws Exception {
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter(new ConcurrencyLimitProperties(
+        true, 1, 1, 1, 1, 1, 1, 1.5, 50, 0.2, Duration.ofSeconds(2)));
+    ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(limiter, JsonMapper.builder().build());
+    // a write that is still running
+    assertThat(limiter.writes().tryAcquire()).isTrue();
+
+    MockHttpServletResponse refused = new MockHttpServletResponse();
+    MockFilterChain unreached = new MockFilterChain();
+    filter.doFilter(new MockHttpServletRequest("POST", "/v1/notes"), refused, unreached);
+
+    assertThat(refused.getStatus()).isEqualTo(503);
+    assertThat(refused.getHeader("Retry-After")).isEqualTo("2");
+    assertThat(refused.getContentAsString()).contains("\"error\"");
+    assertThat(unreached.getRequest()).isNull();
+    assertThat(limiter.getWritesRejected()).isEqualTo(1);
+
+    MockHttpServletResponse read = new MockHttpServletResponse();
+    filter.doFilter(new MockHttpServletRequest("GET", "/v1/notes/some-id"), read, new MockFilterChain());
+    assertThat(read.getStatus()).isEqualTo(200);
+    assertThat(limiter.getReadsInFlight()).isZero();
+
+    // the export is not limited
+    MockFilterChain export = new MockFilterChain();
+    filter.doFilter(new MockHttpServletRequest("GET", "/v1/notes/export"), new MockHttpServletResponse(), export);
+    assertThat(export.getRequest()).isNotNull();
+  }
+}
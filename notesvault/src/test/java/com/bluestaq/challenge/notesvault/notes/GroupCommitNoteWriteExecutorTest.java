@@ -0,0 +1,107 @@
+package com.bluestaq.challenge.notesvault.notes;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.bluestaq.challenge.notesvault.config.GroupCommitProperties;
+import com.bluestaq.challenge.notesvault.except.NoteNotFoundException;
+import com.bluestaq.challenge.notesvault.notes.service.GroupCommitNoteWriteExecutor;
+import com.bluestaq.challenge.notesvault.notes.store.NoteStore;
+
+@ExtendWith(MockitoExtension.class)
+class GroupCommitNoteWriteExecutorTest {
+
+  @Mock
+  private NoteStore noteStore;
+
+  private GroupCommitNoteWriteExecutor executor;
+  private ExecutorService callers;
+
+  @BeforeEach
+  void setUp() {
+    // the store just runs the transaction body
+    when(noteStore.inTransaction(any())).thenAnswer(inv -> inv.getArgument(0, Supplier.class).get());
+
+    // long linger so every concurrent caller below lands in the same batch
+    executor = new GroupCommitNoteWriteExecutor(noteStore,
+        new GroupCommitProperties(true, 4, Duration.ofSeconds(2)));
+    executor.start();
+    callers = Executors.newFixedThreadPool(4);
+  }
+
+  @AfterEach
+  void tearDown() {
+    callers.shutdownNow();
+    executor.stop();
+  }
+
+  @Test
+  void concurrentWrites_areCommittedInOneTransaction() throws Exception {
+    CountDownLatch go = new CountDownLatch(1);
+    List<Future<String>> results = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      String value = "write-" + i;
+      results.add(callers.submit(() -> {
+        go.await();
+        return executor.execute(() -> value);
+      }));
+    }
+    go.countDown();
+
+    for (int i = 0; i < 4; i++) {
+      assertThat(results.get(i).get()).isEqualTo("write-" + i);
+    }
+
+    // a full batch (max size 4) commits once, without waiting out the linger
+    verify(noteStore, times(1)).inTransaction(any());
+    assertThat(executor.getBatchesCommitted()).isEqualTo(1);
+    assertThat(executor.getWritesCommitted()).isEqualTo(4);
+    assertThat(executor.getLastBatchSize()).isEqualTo(4);
+  }
+
+  @Test
+  void failingWrite_failsOnlyItsCaller() throws Exception {
+    CountDownLatch go = new CountDownLatch(1);
+    List<Future<String>> results = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      boolean missing = (i == 2);
+      String value = "write-" + i;
+      results.add(callers.submit(() -> {
+        go.await();
+        return executor.execute(() -> {
+          if (missing) {
+            throw new NoteNotFoundException("missing-id");
+          }
+          return value;
+        });
+      }));
+    }
+    go.countDown();
+
+    assertThat(results.get(0).get()).isEqualTo("write-0");
+    assertThat(results.get(1).get()).isEqualTo("write-1");
+    assertThat(results.get(3).get()).isEqualTo("write-3");
+    assertThatThrownBy(() -> results.get(2).get())
+        .hasCauseInstanceOf(NoteNotFoundException.class);
+  }
+}
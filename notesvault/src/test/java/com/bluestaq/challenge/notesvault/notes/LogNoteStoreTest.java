@@ -0,0 +1,217 @@
+package com.bluestaq.challenge.notesvault.notes;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import com.bluestaq.challenge.notesvault.config.NoteStoreProperties;
+import com.bluestaq.challenge.notesvault.config.NoteStreamProperties;
+import com.bluestaq.challenge.notesvault.notes.entity.NoteEntity;
+import com.bluestaq.challenge.notesvault.notes.store.log.LogNoteStore;
+import com.bluestaq.challenge.notesvault.notes.stream.NoteChangeFeed;
+
+import tools.jackson.databind.json.JsonMapper;
+
+class LogNoteStoreTest {
+
+  @TempDir
+  Path dir;
+
+  private LogNoteStore store;
+
+  @AfterEach
+  void tearDown() throws IOException {
+    if (store != null) {
+      store.destroy();
+    }
+  }
+
+  private LogNoteStore open(DataSize segmentSize) throws IOException {
+    if (store != null) {
+      store.destroy();
+    }
+    // compaction is driven by hand in these tests
+    store = new LogNoteStore(new NoteStoreProperties(NoteStoreProperties.Engine.LOG,
+        new NoteStoreProperties.Log(dir, segmentSize, true, Duration.ofHours(1), 0.5),
+        new NoteStoreProperties.Sharded(dir.resolve("shards"), 4, 2)));
+    return store;
+  }
+
+  private static NoteEntity note(String id, String createdAt, String content) {
+    NoteEntity note = new NoteEntity();
+    note.setId(id);
+    note.setCreatedAt(Instant.parse(createdAt));
+    note.setContent(content);
+    return note;
+  }
+
+  @Test
+  void save_thenReopen_replaysLatestVersions() throws IOException {
+    open(DataSize.ofKilobytes(64));
+    store.insert(note("1", "2026-02-21T00:00:01Z", "first"));
+    store.insert(note("2", "2026-02-21T00:00:02Z", "second"));
+    store.save(note("1", "2026-02-21T00:00:01Z", "first, edited"));
+    store.deleteById("2");
+
+    open(DataSize.ofKilobytes(64));
+
+    assertThat(store.findById("1")).get().extracting(NoteEntity::getContent).isEqualTo("first, edited");
+    assertThat(store.findById("2")).isEmpty();
+    assertThat(store.getNoteCount()).isEqualTo(1);
+  }
+
+  @Test
+  void findPageBefore_returnsNewestFirstWithinBounds() throws IOException {
+    open(DataSize.ofKilobytes(64));
+    for (int i = 1; i <= 4; i++) {
+      store.insert(note("n" + i, "2026-02-21T00:00:0" + i + "Z", "note " + i));
+    }
+
+    List<NoteEntity> page = store.findPageBefore(
+        Instant.parse("2026-02-21T00:00:01Z"), Instant.parse("2026-02-21T00:00:04Z"), "", 10);
+
+    assertThat(page).extracting(NoteEntity::getId).containsExactly("n3", "n2");
+  }
+
+  @Test
+  void reopen_afterTornWrite_discardsPartialRecord() throws IOException {
+    open(DataSize.ofKilobytes(64));
+    store.insert(note("1", "2026-02-21T00:00:01Z", "survives"));
+    store.destroy();
+    store = null;
+
+    // simulate a crash halfway through the next append: a length field with no valid body
+    Path segment;
+    try (Stream<Path> files = Files.list(dir)) {
+      segment = files.filter(p -> p.toString().endsWith(".log")).findFirst().orElseThrow();
+    }
+    try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      ByteBuffer header = ByteBuffer.allocate(4);
+      ch.read(header, 0);
+      int firstRecordSize = header.flip().getInt() + 8;
+      ch.write(ByteBuffer.allocate(12).putInt(40).putInt(12345).putInt(7).flip(), firstRecordSize);
+    }
+
+    open(DataSize.ofKilobytes(64));
+    assertThat(store.getNoteCount()).isEqualTo(1);
+
+    // appends after recovery land where the torn record was and survive another restart
+    store.insert(note("2", "2026-02-21T00:00:02Z", "after recovery"));
+    open(DataSize.ofKilobytes(64));
+    assertThat(store.findById("2")).isPresent();
+  }
+
+  @Test
+  void compact_reclaimsSegmentsOfOverwrittenNotes() throws IOException {
+    // tiny segments so overwrites spill into several files
+    open(DataSize.ofBytes(256));
+    for (int i = 0; i < 20; i++) {
+      store.save(note("hot", "2026-02-21T00:00:00Z", "version " + i));
+    }
+    store.insert(note("cold", "2026-02-21T00:00:01Z", "kept"));
+    int before = store.getSegmentCount();
+
+    int reclaimed = store.compact();
+
+    assertThat(reclaimed).isPositive();
+    assertThat(store.getSegmentCount()).isLessThan(before);
+    assertThat(store.findById("hot")).get().extracting(NoteEntity::getContent).isEqualTo("version 19");
+    assertThat(store.findById("cold")).isPresent();
+
+    // the compacted log still replays to the same state
+    open(DataSize.ofBytes(256));
+    assertThat(store.findById("hot")).get().extracting(NoteEntity::getContent).isEqualTo("version 19");
+    assertThat(store.findById("cold")).get().extracting(NoteEntity::getContent).isEqualTo("kept");
+  }
+
+  @Test
+  void updateContentIfVersion_appliesOnlyToCurrentVersion_andVersionSurvivesReplay() throws IOException {
+    open(DataSize.ofKilobytes(64));
+    NoteEntity note = note("1", "2026-02-21T00:00:01Z", "v1");
+    note.setVersion(1);
+    store.insert(note);
+    long generation = store.generation();
+
+    assertThat(store.updateContentIfVersion("1", "v2", List.of(1L))).isTrue();
+    assertThat(store.updateContentIfVersion("1", "lost update", List.of(1L))).isFalse();
+    assertThat(store.deleteByIdIfVersion("1", List.of(1L))).isFalse();
+    assertThat(store.generation()).isGreaterThan(generation);
+
+    open(DataSize.ofKilobytes(64));
+    NoteEntity replayed = store.findById("1").orElseThrow();
+    assertThat(replayed.getContent()).isEqualTo("v2");
+    assertThat(replayed.getVersion()).isEqualTo(2);
+    assertThat(store.deleteByIdIfVersion("1", List.of(2L))).isTrue();
+    assertThat(store.findById("1")).isEmpty();
+  }
+
+  @Test
+  void inTransaction_failingPartway_leavesNothingBehind() throws IOException {
+    // tiny segments so the failed unit also rolls into a new file
+    open(DataSize.ofBytes(256));
+    NoteEntity kept = note("kept", "2026-02-21T00:00:01Z", "before");
+    kept.setVersion(1);
+    store.insert(kept);
+    int segments = store.getSegmentCount();
+
+    assertThatThrownBy(() -> store.inTransaction(() -> {
+      store.updateContent("kept", "changed in the failed batch");
+      store.insert(note("new", "2026-02-21T00:00:02Z", "x".repeat(300)));
+      store.deleteById("kept");
+      throw new IllegalStateException("batch failed");
+    })).hasMessage("batch failed");
+
+    assertThat(store.findById("kept")).get().extracting(NoteEntity::getContent, NoteEntity::getVersion)
+        .containsExactly("before", 1L);
+    assertThat(store.findById("new")).isEmpty();
+    assertThat(store.findPageBefore(Instant.EPOCH, Instant.parse("2026-03-01T00:00:00Z"), "", 10))
+        .extracting(NoteEntity::getId).containsExactly("kept");
+    assertThat(store.getSegmentCount()).isEqualTo(segments);
+
+    // the retry lands once, and replay sees neither the failed unit nor a double write
+    assertThat(store.updateContent("kept", "retried")).get().extracting(NoteEntity::getVersion).isEqualTo(2L);
+    open(DataSize.ofBytes(256));
+    assertThat(store.findById("kept")).get().extracting(NoteEntity::getContent, NoteEntity::getVersion)
+        .containsExactly("retried", 2L);
+    assertThat(store.findById("new")).isEmpty();
+  }
+
+  @Test
+  void changeEvents_areOnlyPublishedOnceTheTransactionCommits() throws IOException {
+    open(DataSize.ofKilobytes(64));
+    NoteChangeFeed feed = new NoteChangeFeed(
+        new NoteStreamProperties(true, 16, 1, Duration.ZERO, Duration.ofMinutes(1)), JsonMapper.builder().build(), store);
+    try {
+      assertThatThrownBy(() -> store.inTransaction(() -> {
+        feed.created(store.insert(note("lost", "2026-02-21T00:00:01Z", "rolled back")));
+        throw new IllegalStateException("write failed");
+      })).hasMessage("write failed");
+      assertThat(store.findById("lost")).isEmpty();
+      assertThat(feed.getEventsPublished()).isZero();
+
+      store.inTransaction(() -> {
+        feed.created(store.insert(note("kept", "2026-02-21T00:00:02Z", "committed")));
+        assertThat(feed.getEventsPublished()).isZero();
+        return null;
+      });
+      assertThat(feed.getEventsPublished()).isEqualTo(1);
+    } finally {
+      feed.destroy();
+    }
+  }
+}
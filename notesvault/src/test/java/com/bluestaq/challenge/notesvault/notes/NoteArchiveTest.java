@@ -0,0 +1,207 @@
+package com.bluestaq.challenge.notesvault.notes;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.bluestaq.challenge.notesvault.notes.archive.NoteArchive;
+import com.bluestaq.challenge.notesvault.notes.cache.NoteCache;
+import com.bluestaq.challenge.notesvault.notes.entity.NoteEntity;
+import com.bluestaq.challenge.notesvault.notes.repo.NoteRepository;
+import com.jayway.jsonpath.JsonPath;
+
+// Hot/cold tiering end to end: notes moved into archive segments are still read, listed
+// and written through the API. Runs on its own database and archive directory, since
+// segments cannot be removed again.
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@DirtiesContext
+class NoteArchiveTest {
+
+  @TempDir
+  static Path dir;
+
+  @DynamicPropertySource
+  static void archiveProperties(DynamicPropertyRegistry registry) {
+    registry.add("spring.datasource.url", () -> "jdbc:sqlite:" + dir.resolve("notes.db"));
+    registry.add("notesvault.archive.enabled", () -> "true");
+    registry.add("notesvault.archive.directory", () -> dir.resolve("archive").toString());
+    registry.add("notesvault.archive.interval", () -> "0s");
+    registry.add("notesvault.archive.notes-per-segment", () -> "2");
+  }
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Autowired
+  private NoteRepository noteRepository;
+
+  @Autowired
+  private NoteCache noteCache;
+
+  @Autowired
+  private NoteArchive noteArchive;
+
+  @AfterEach
+  void tearDown() {
+    noteRepository.deleteAll();
+    noteCache.clear();
+  }
+
+  @Test
+  void archivedNotes_areStillReadAndListed() throws Exception {
+    save("list-1", 60, "first old note");
+    save("list-2", 50, "second old note");
+    save("list-3", 40, "third old note");
+    save("list-4", 0, "new note");
+
+    // list-3 waits in the table until a full segment's worth of notes is old enough
+    assertThat(noteArchive.archiveOldNotes()).isEqualTo(2);
+    assertThat(noteRepository.existsById("list-1")).isFalse();
+    assertThat(noteRepository.existsById("list-2")).isFalse();
+    assertThat(noteRepository.existsById("list-3")).isTrue();
+
+    mockMvc.perform(get("/v1/notes/{id}", "list-1"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.content").value("first old note"))
+      .andExpect(header().string("ETag", "\"1\""));
+
+    assertThat(listedIds("list-")).containsExactly("list-4", "list-3", "list-2", "list-1");
+  }
+
+  @Test
+  void updateOfArchivedNote_restoresItToTheTable() throws Exception {
+    save("upd-1", 60, "archived");
+    save("upd-2", 50, "also archived");
+    assertThat(noteArchive.archiveOldNotes()).isEqualTo(2);
+
+    mockMvc.perform(put("/v1/notes/{id}", "upd-1")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{ \"content\": \"edited\" }"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.content").value("edited"))
+      .andExpect(header().string("ETag", "\"2\""));
+
+    assertThat(noteRepository.findById("upd-1")).get()
+        .extracting(NoteEntity::getContent).isEqualTo("edited");
+    mockMvc.perform(get("/v1/notes/{id}", "upd-1"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.content").value("edited"));
+    // the archived copy no longer counts, so the note is listed once
+    assertThat(listedIds("upd-")).containsExactly("upd-2", "upd-1");
+  }
+
+  @Test
+  void deleteOfArchivedNote_removesIt() throws Exception {
+    save("del-1", 60, "archived");
+    save("del-2", 50, "also archived");
+    assertThat(noteArchive.archiveOldNotes()).isEqualTo(2);
+
+    mockMvc.perform(delete("/v1/notes/{id}", "del-1"))
+      .andExpect(status().isNoContent());
+
+    mockMvc.perform(get("/v1/notes/{id}", "del-1"))
+      .andExpect(status().isNotFound());
+    mockMvc.perform(delete("/v1/notes/{id}", "del-1"))
+      .andExpect(status().isNotFound());
+    mockMvc.perform(get("/v1/notes/{id}", "del-2"))
+      .andExpect(status().isOk());
+    assertThat(listedIds("del-")).containsExactly("del-2");
+  }
+
+  @Test
+  void staleIfMatchOnArchivedNote_isPreconditionFailed_andLeavesItArchived() throws Exception {
+    save("stale-1", 60, "archived");
+    save("stale-2", 50, "also archived");
+    assertThat(noteArchive.archiveOldNotes()).isEqualTo(2);
+
+    mockMvc.perform(put("/v1/notes/{id}", "stale-1")
+        .header("If-Match", "\"7\"")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{ \"content\": \"lost update\" }"))
+      .andExpect(status().isPreconditionFailed());
+    mockMvc.perform(delete("/v1/notes/{id}", "stale-1").header("If-Match", "\"7\""))
+      .andExpect(status().isPreconditionFailed());
+
+    assertThat(noteRepository.existsById("stale-1")).isFalse();
+    assertThat(noteArchive.copyOf("stale-1")).isEqualTo(NoteArchive.Copy.VISIBLE);
+
+    mockMvc.perform(delete("/v1/notes/{id}", "stale-1").header("If-Match", "\"1\""))
+      .andExpect(status().isNoContent());
+    assertThat(noteArchive.copyOf("stale-1")).isEqualTo(NoteArchive.Copy.HIDDEN);
+  }
+
+  @Test
+  void fullSync_sendsArchivedNotes_andDeltaSyncDoesNotSendThemAgain() throws Exception {
+    save("sync-1", 60, "archived");
+    save("sync-2", 50, "also archived");
+    save("sync-3", 0, "in the table");
+    assertThat(noteArchive.archiveOldNotes()).isEqualTo(2);
+
+    // two per page, so the sync pages from the table into the archive and through it
+    List<String> synced = new ArrayList<>();
+    String token = null;
+    boolean hasMore = true;
+    while (hasMore) {
+      String json = mockMvc.perform(token == null
+              ? get("/v1/notes/changes").param("limit", "2")
+              : get("/v1/notes/changes").param("limit", "2").param("since", token))
+          .andExpect(status().isOk())
+          .andReturn().getResponse().getContentAsString();
+      List<String> ids = JsonPath.read(json, "$.changes[*].id");
+      synced.addAll(ids);
+      token = JsonPath.read(json, "$.syncToken");
+      hasMore = JsonPath.read(json, "$.hasMore");
+    }
+    assertThat(synced.stream().filter(id -> id.startsWith("sync-")))
+        .containsExactlyInAnyOrder("sync-1", "sync-2", "sync-3");
+
+    mockMvc.perform(get("/v1/notes/changes").param("since", token))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.changes").isEmpty())
+      .andExpect(jsonPath("$.hasMore").value(false));
+  }
+
+  private void save(String id, int daysOld, String content) {
+    NoteEntity note = new NoteEntity();
+    note.setId(id);
+    note.setCreatedAt(Instant.now().minus(Duration.ofDays(daysOld)));
+    note.setContent(content);
+    note.setVersion(1);
+    noteRepository.save(note);
+  }
+
+  // Ids on the first list page that start with prefix, in page order: segments from
+  // earlier tests stay behind.
+  private List<String> listedIds(String prefix) throws Exception {
+    String json = mockMvc.perform(get("/v1/notes").param("limit", "1000"))
+        .andExpect(status().isOk())
+        .andReturn().getResponse().getContentAsString();
+    List<String> ids = JsonPath.read(json, "$[*].id");
+    return ids.stream().filter(id -> id.startsWith(prefix)).toList();
+  }
+}
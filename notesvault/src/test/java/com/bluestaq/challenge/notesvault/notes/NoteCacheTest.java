@@ -0,0 +1,81 @@
+package com.bluestaq.challenge.notesvault.notes;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import org.junit.jupiter.api.Test;
+
+import com.bluestaq.challenge.notesvault.config.NoteCacheProperties;
+import com.bluestaq.challenge.notesvault.notes.cache.NoteCache;
+import com.bluestaq.challenge.notesvault.notes.api.dto.NoteResponse;
+
+class NoteCacheTest {
+
+  private static NoteResponse note(String id, String content) {
+    return new NoteResponse(id, Instant.parse("2026-02-21T00:00:00Z"), content, 1);
+  }
+
+  @Test
+  void get_afterPut_returnsNote_andCountsHit() {
+    NoteCache cache = new NoteCache(new NoteCacheProperties(true, 10, 1024, Duration.ZERO));
+    NoteResponse note = note("1", "hello");
+    cache.put(note, cache.stamp());
+
+    // entries are immutable, so a hit hands out the cached note itself
+    assertThat(cache.get("1")).isSameAs(note);
+    assertThat(cache.get("1").content()).isEqualTo("hello");
+    assertThat(cache.get("2")).isNull();
+    assertThat(cache.getHits()).isEqualTo(2);
+    assertThat(cache.getMisses()).isEqualTo(1);
+  }
+
+  @Test
+  void put_beyondMaxEntries_evictsLeastRecentlyUsed() {
+    NoteCache cache = new NoteCache(new NoteCacheProperties(true, 2, 1024, Duration.ZERO));
+    cache.put(note("1", "a"), cache.stamp());
+    cache.put(note("2", "b"), cache.stamp());
+    cache.get("1"); // 2 is now the least recently used
+    cache.put(note("3", "c"), cache.stamp());
+
+    assertThat(cache.get("2")).isNull();
+    assertThat(cache.get("1")).isNotNull();
+    assertThat(cache.get("3")).isNotNull();
+    assertThat(cache.getEvictions()).isEqualTo(1);
+  }
+
+  @Test
+  void put_beyondMaxContentBytes_evictsUntilWithinBound() {
+    // 10 chars = 20 bytes each, so only two fit in 40 bytes
+    NoteCache cache = new NoteCache(new NoteCacheProperties(true, 100, 40, Duration.ZERO));
+    cache.put(note("1", "0123456789"), cache.stamp());
+    cache.put(note("2", "0123456789"), cache.stamp());
+    cache.put(note("3", "0123456789"), cache.stamp());
+
+    assertThat(cache.getSize()).isEqualTo(2);
+    assertThat(cache.getContentBytes()).isEqualTo(40);
+    assertThat(cache.get("1")).isNull();
+  }
+
+  @Test
+  void put_withStampOlderThanInvalidation_isDropped() {
+    NoteCache cache = new NoteCache(new NoteCacheProperties(true, 10, 1024, Duration.ZERO));
+    long stamp = cache.stamp();
+    // a writer commits while the reader is still loading
+    cache.invalidate("1");
+    cache.put(note("1", "stale"), stamp);
+
+    assertThat(cache.get("1")).isNull();
+  }
+
+  @Test
+  void get_afterTtl_misses() throws Exception {
+    NoteCache cache = new NoteCache(new NoteCacheProperties(true, 10, 1024, Duration.ofMillis(1)));
+    cache.put(note("1", "short lived"), cache.stamp());
+    Thread.sleep(5);
+
+    assertThat(cache.get("1")).isNull();
+    assertThat(cache.getExpirations()).isEqualTo(1);
+  }
+}
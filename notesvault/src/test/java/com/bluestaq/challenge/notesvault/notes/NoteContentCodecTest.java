@@ -0,0 +1,64 @@
+package com.bluestaq.challenge.notesvault.notes;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import com.bluestaq.challenge.notesvault.notes.entity.NoteContentCodec;
+
+class NoteContentCodecTest {
+
+  private static final String LARGE = "Quarterly planning: revisit the retention policy. ".repeat(200);
+
+  @Test
+  void encode_atOrAboveThreshold_compressesAndRoundTrips() {
+    byte[] stored = NoteContentCodec.encode(LARGE, 4096, 1);
+
+    assertThat(NoteContentCodec.isCompressed(stored)).isTrue();
+    assertThat(stored.length).isLessThan(LARGE.length() / 4);
+    assertThat(NoteContentCodec.decode(stored)).isEqualTo(LARGE);
+  }
+
+  @Test
+  void encode_belowThresholdOrDisabled_storesPlainUtf8() {
+    String small = "ünïcödé note";
+
+    // byte-for-byte what was stored before compression existed
+    assertThat(NoteContentCodec.encode(small, 4096, 1)).isEqualTo(small.getBytes(StandardCharsets.UTF_8));
+    assertThat(NoteContentCodec.isCompressed(NoteContentCodec.encode(LARGE, -1, 1))).isFalse();
+  }
+
+  @Test
+  void columnValue_bindsPlainContentAsTextAndEncodedContentAsBytes() {
+    String small = "ünïcödé note";
+    byte[] compressed = NoteContentCodec.encode(LARGE, 4096, 1);
+    byte[] rawHeader = NoteContentCodec.encode("\u0001control", -1, 1);
+
+    assertThat(NoteContentCodec.columnValue(NoteContentCodec.encode(small, 4096, 1))).isEqualTo(small);
+    assertThat(NoteContentCodec.columnValue(compressed)).isSameAs(compressed);
+    assertThat(NoteContentCodec.columnValue(rawHeader)).isSameAs(rawHeader);
+  }
+
+  @Test
+  void encode_incompressibleContent_staysPlain() {
+    // compression would only add the header
+    String content = "x";
+
+    byte[] stored = NoteContentCodec.encode(content, 0, 9);
+
+    assertThat(NoteContentCodec.isCompressed(stored)).isFalse();
+    assertThat(NoteContentCodec.decode(stored)).isEqualTo(content);
+  }
+
+  @Test
+  void decode_plainContentStartingWithControlCharacter_isNotTakenForACodec() {
+    String content = "\u0001starts with a control character";
+
+    byte[] stored = NoteContentCodec.encode(content, -1, 1);
+
+    assertThat(NoteContentCodec.isCompressed(stored)).isFalse();
+    assertThat(NoteContentCodec.decode(stored)).isEqualTo(content);
+  }
+}
@@ -11,8 +11,12 @@ import org.hamcrest.Matchers;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 
+import com.bluestaq.challenge.notesvault.notes.cache.NoteCache;
 import com.bluestaq.challenge.notesvault.notes.entity.NoteEntity;
+import com.bluestaq.challenge.notesvault.notes.repo.NoteContentRepository;
 import com.bluestaq.challenge.notesvault.notes.repo.NoteRepository;
+import com.bluestaq.challenge.notesvault.notes.repo.NoteSyncRepository;
+import com.bluestaq.challenge.notesvault.notes.service.NoteSyncToken;
 import com.jayway.jsonpath.JsonPath;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -20,9 +24,14 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
 
 @SpringBootTest
 @AutoConfigureMockMvc
@@ -35,9 +44,20 @@ class NoteControllerTest {
   @Autowired
   private NoteRepository noteRepository;
 
+  @Autowired
+  private NoteCache noteCache;
+
+  @Autowired
+  private NoteSyncRepository noteSyncRepository;
+
+  @Autowired
+  private NoteContentRepository noteContentRepository;
+
   @AfterEach
   void tearDown() {
     noteRepository.deleteAll();
+    // deleteAll() bypasses the service, so drop anything it cached
+    noteCache.clear();
   }
 
   @Test 
@@ -162,6 +182,200 @@ class NoteControllerTest {
       .andExpect(jsonPath("$[1].content").value("older"));
   }
 
+  @Test
+  void listNotes_withLimit_pagesThroughCursor() throws Exception {
+    for (int i = 1; i <= 3; i++) {
+      NoteEntity note = new NoteEntity();
+      note.setId("page-" + i);
+      note.setContent("note " + i);
+      note.setCreatedAt(Instant.parse("2026-02-21T00:00:0" + i + "Z"));
+      noteRepository.save(note);
+    }
+
+    MvcResult first = mockMvc.perform(get("/v1/notes").param("limit", "2"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$", Matchers.hasSize(2)))
+      .andExpect(jsonPath("$[0].id").value("page-3"))
+      .andExpect(jsonPath("$[1].id").value("page-2"))
+      .andExpect(header().exists("X-Next-Cursor"))
+      .andReturn();
+
+    String cursor = first.getResponse().getHeader("X-Next-Cursor");
+
+    mockMvc.perform(get("/v1/notes").param("limit", "2").param("cursor", cursor))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$", Matchers.hasSize(1)))
+      .andExpect(jsonPath("$[0].id").value("page-1"))
+      // last page has no next cursor
+      .andExpect(header().doesNotExist("X-Next-Cursor"));
+  }
+
+  @Test
+  void listNotes_withTimeRange_returnsOnlyNotesInside() throws Exception {
+    for (int i = 1; i <= 3; i++) {
+      NoteEntity note = new NoteEntity();
+      note.setId("range-" + i);
+      note.setContent("note " + i);
+      note.setCreatedAt(Instant.parse("2026-02-21T00:00:0" + i + "Z"));
+      noteRepository.save(note);
+    }
+
+    mockMvc.perform(get("/v1/notes")
+        .param("createdAfter", "2026-02-21T00:00:01Z")
+        .param("createdBefore", "2026-02-21T00:00:03Z"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$", Matchers.hasSize(1)))
+      .andExpect(jsonPath("$[0].id").value("range-2"));
+  }
+
+  @Test
+  void listNotes_withInvalidCursor_returns400() throws Exception {
+    mockMvc.perform(get("/v1/notes").param("cursor", "not-a-cursor"))
+      .andExpect(status().isBadRequest())
+      .andExpect(jsonPath("$.error").value(Matchers.containsString("cursor")));
+  }
+
+  @Test
+  void exportNotes_streamsNdjson_newestFirst() throws Exception {
+    NoteEntity older = new NoteEntity();
+    older.setId("export-1");
+    older.setContent("older");
+    older.setCreatedAt(Instant.parse("2026-02-21T00:00:00Z"));
+    noteRepository.save(older);
+
+    NoteEntity newer = new NoteEntity();
+    newer.setId("export-2");
+    newer.setContent("newer");
+    newer.setCreatedAt(Instant.parse("2026-02-21T00:00:10Z"));
+    noteRepository.save(newer);
+
+    // the body is a StreamingResponseBody, so the request goes async first
+    MvcResult started = mockMvc.perform(get("/v1/notes/export"))
+      .andExpect(request().asyncStarted())
+      .andReturn();
+
+    MvcResult rslt = mockMvc.perform(asyncDispatch(started))
+      .andExpect(status().isOk())
+      .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+      .andReturn();
+
+    String[] lines = rslt.getResponse().getContentAsString().split("\n");
+    assertThat(lines).hasSize(2);
+    assertThat((String) JsonPath.read(lines[0], "$.id")).isEqualTo("export-2");
+    assertThat((String) JsonPath.read(lines[1], "$.id")).isEqualTo("export-1");
+  }
+
+  @Test
+  void batch_appliesOperations_andReportsPerItemResults() throws Exception {
+    NoteEntity existing = new NoteEntity();
+    existing.setId("batch-existing");
+    existing.setContent("original");
+    existing.setCreatedAt(Instant.now());
+    noteRepository.save(existing);
+
+    NoteEntity doomed = new NoteEntity();
+    doomed.setId("batch-doomed");
+    doomed.setContent("to be deleted");
+    doomed.setCreatedAt(Instant.now());
+    noteRepository.save(doomed);
+
+    String json = """
+      { "operations": [
+        { "op": "create", "content": "  brand new  " },
+        { "op": "update", "id": "batch-existing", "content": "changed" },
+        { "op": "delete", "id": "batch-doomed" },
+        { "op": "update", "id": "does-not-exist", "content": "nope" },
+        { "op": "create", "content": "   " }
+      ] }
+    """;
+
+    mockMvc.perform(post("/v1/notes/batch")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(json))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$", Matchers.hasSize(5)))
+      .andExpect(jsonPath("$[0].status").value(201))
+      .andExpect(jsonPath("$[0].note.content").value("brand new"))
+      .andExpect(jsonPath("$[1].status").value(200))
+      .andExpect(jsonPath("$[2].status").value(204))
+      .andExpect(jsonPath("$[3].status").value(404))
+      .andExpect(jsonPath("$[4].status").value(400))
+      .andExpect(jsonPath("$[4].error").value(Matchers.containsString("content")));
+
+    assertThat(noteRepository.findById("batch-existing").orElseThrow().getContent()).isEqualTo("changed");
+    assertThat(noteRepository.findById("batch-doomed")).isEmpty();
+    assertThat(noteRepository.count()).isEqualTo(2);
+  }
+
+  @Test
+  void batch_withNoOperations_returns400() throws Exception {
+    mockMvc.perform(post("/v1/notes/batch")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{ \"operations\": [] }"))
+      .andExpect(status().isBadRequest())
+      .andExpect(jsonPath("$.error").value(Matchers.containsString("operations")));
+  }
+
+  @Test
+  void getNoteById_afterUpdate_returnsNewContent() throws Exception {
+    NoteEntity note = new NoteEntity();
+    note.setId("cached-note");
+    note.setContent("before");
+    note.setCreatedAt(Instant.now());
+    noteRepository.save(note);
+
+    // first read populates the cache
+    mockMvc.perform(get("/v1/notes/{id}", "cached-note"))
+      .andExpect(jsonPath("$.content").value("before"));
+
+    mockMvc.perform(put("/v1/notes/{id}", "cached-note")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{ \"content\": \"after\" }"))
+      .andExpect(status().isOk());
+
+    // the update must have invalidated the cached copy
+    mockMvc.perform(get("/v1/notes/{id}", "cached-note"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.content").value("after"));
+  }
+
+  @Test
+  void searchNotes_returnsRankedHitsWithSnippet() throws Exception {
+    NoteEntity fruit = new NoteEntity();
+    fruit.setId("search-fruit");
+    fruit.setContent("remember to buy bananas and apples");
+    fruit.setCreatedAt(Instant.now());
+    noteRepository.save(fruit);
+
+    NoteEntity other = new NoteEntity();
+    other.setId("search-other");
+    other.setContent("call the plumber");
+    other.setCreatedAt(Instant.now());
+    noteRepository.save(other);
+
+    mockMvc.perform(get("/v1/notes/search").param("q", "banana*"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$", Matchers.hasSize(1)))
+      .andExpect(jsonPath("$[0].id").value("search-fruit"))
+      .andExpect(jsonPath("$[0].snippet").value(Matchers.containsString("[bananas]")));
+  }
+
+  @Test
+  void searchNotes_afterDelete_noLongerMatches() throws Exception {
+    NoteEntity note = new NoteEntity();
+    note.setId("search-deleted");
+    note.setContent("ephemeral thought");
+    note.setCreatedAt(Instant.now());
+    noteRepository.save(note);
+
+    mockMvc.perform(delete("/v1/notes/{id}", "search-deleted"))
+      .andExpect(status().isNoContent());
+
+    mockMvc.perform(get("/v1/notes/search").param("q", "ephemeral"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$", Matchers.hasSize(0)));
+  }
+
   @Test
   void deleteNoteById_returns204_andDeletes() throws Exception {
     NoteEntity note = new NoteEntity();
@@ -234,4 +448,335 @@ class NoteControllerTest {
       .andExpect(status().isNotFound());
   }
 
+  @Test
+  void getNoteById_withCurrentEtag_returns304WithoutBody() throws Exception {
+    NoteEntity note = new NoteEntity();
+    note.setId("etag-note");
+    note.setContent("unchanged");
+    note.setCreatedAt(Instant.now());
+    note.setVersion(4);
+    noteRepository.save(note);
+
+    mockMvc.perform(get("/v1/notes/{id}", "etag-note"))
+      .andExpect(status().isOk())
+      .andExpect(header().string("ETag", "\"4\""));
+
+    MvcResult notModified = mockMvc.perform(get("/v1/notes/{id}", "etag-note")
+        .header("If-None-Match", "\"4\""))
+      .andExpect(status().isNotModified())
+      .andExpect(header().string("ETag", "\"4\""))
+      .andReturn();
+    assertThat(notModified.getResponse().getContentAsString()).isEmpty();
+  }
+
+  @Test
+  void updateNoteById_withIfMatch_appliesOnlyToCurrentVersion() throws Exception {
+    NoteEntity note = new NoteEntity();
+    note.setId("if-match-note");
+    note.setContent("v1");
+    note.setCreatedAt(Instant.now());
+    note.setVersion(1);
+    noteRepository.save(note);
+
+    mockMvc.perform(put("/v1/notes/{id}", "if-match-note")
+        .header("If-Match", "\"1\"")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{ \"content\": \"v2\" }"))
+      .andExpect(status().isOk())
+      .andExpect(header().string("ETag", "\"2\""))
+      .andExpect(jsonPath("$.content").value("v2"));
+
+    // a second writer still holding version 1 loses instead of overwriting v2
+    mockMvc.perform(put("/v1/notes/{id}", "if-match-note")
+        .header("If-Match", "\"1\"")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{ \"content\": \"stale\" }"))
+      .andExpect(status().isPreconditionFailed())
+      .andExpect(jsonPath("$.error").value(Matchers.containsString("if-match-note")));
+
+    mockMvc.perform(delete("/v1/notes/{id}", "if-match-note").header("If-Match", "\"1\""))
+      .andExpect(status().isPreconditionFailed());
+
+    assertThat(noteRepository.findById("if-match-note")).get()
+      .extracting(NoteEntity::getContent).isEqualTo("v2");
+
+    mockMvc.perform(delete("/v1/notes/{id}", "if-match-note").header("If-Match", "\"2\""))
+      .andExpect(status().isNoContent());
+  }
+
+  @Test
+  void updateNoteById_withIfMatch_onMissingNote_returns404() throws Exception {
+    mockMvc.perform(put("/v1/notes/{id}", "does-not-exist")
+        .header("If-Match", "\"1\"")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{ \"content\": \"anything\" }"))
+      .andExpect(status().isNotFound());
+  }
+
+  @Test
+  void listNotes_withCurrentEtag_returns304_untilANoteChanges() throws Exception {
+    mockMvc.perform(post("/v1/notes")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{ \"content\": \"first\" }"))
+      .andExpect(status().isCreated());
+
+    String etag = mockMvc.perform(get("/v1/notes"))
+      .andExpect(status().isOk())
+      .andReturn().getResponse().getHeader("ETag");
+    assertThat(etag).isNotBlank();
+
+    mockMvc.perform(get("/v1/notes").header("If-None-Match", etag))
+      .andExpect(status().isNotModified());
+
+    mockMvc.perform(post("/v1/notes")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{ \"content\": \"second\" }"))
+      .andExpect(status().isCreated());
+
+    mockMvc.perform(get("/v1/notes").header("If-None-Match", etag))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$", Matchers.hasSize(2)))
+      .andExpect(header().string("ETag", Matchers.not(etag)));
+  }
+
+  @Test
+  void listNotes_largePage_isGzipped_onlyWhenAccepted() throws Exception {
+    for (int i = 0; i < 10; i++) {
+      mockMvc.perform(post("/v1/notes")
+          .contentType(MediaType.APPLICATION_JSON)
+          .content("{ \"content\": \"" + "a long enough note ".repeat(30) + "\" }"))
+        .andExpect(status().isCreated());
+    }
+
+    MvcResult gzipped = mockMvc.perform(get("/v1/notes").header("Accept-Encoding", "gzip"))
+      .andExpect(status().isOk())
+      .andExpect(header().string("Content-Encoding", "gzip"))
+      .andExpect(header().string("Vary", Matchers.containsString("Accept-Encoding")))
+      .andReturn();
+    byte[] compressed = gzipped.getResponse().getContentAsByteArray();
+    String json;
+    try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+      json = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+    assertThat(JsonPath.<List<?>>read(json, "$")).hasSize(10);
+    assertThat(compressed.length).isLessThan(json.length() / 4);
+
+    mockMvc.perform(get("/v1/notes"))
+      .andExpect(status().isOk())
+      .andExpect(header().doesNotExist("Content-Encoding"))
+      .andExpect(jsonPath("$", Matchers.hasSize(10)));
+
+    // a malformed weight is not consent, and not a server error either
+    for (String malformed : List.of("gzip;q=", "gzip;q=abc", "gzip; q=NaN")) {
+      mockMvc.perform(get("/v1/notes").header("Accept-Encoding", malformed))
+        .andExpect(status().isOk())
+        .andExpect(header().doesNotExist("Content-Encoding"))
+        .andExpect(jsonPath("$", Matchers.hasSize(10)));
+    }
+  }
+
+  @Test
+  void getNoteById_smallResponse_staysPlain_withStrongEtag() throws Exception {
+    String json = mockMvc.perform(post("/v1/notes")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{ \"content\": \"short\" }"))
+      .andExpect(status().isCreated())
+      .andReturn().getResponse().getContentAsString();
+    String id = JsonPath.read(json, "$.id");
+
+    mockMvc.perform(get("/v1/notes/{id}", id).header("Accept-Encoding", "gzip"))
+      .andExpect(status().isOk())
+      .andExpect(header().doesNotExist("Content-Encoding"))
+      .andExpect(header().string("ETag", Matchers.startsWith("\"")))
+      .andExpect(jsonPath("$.content").value("short"));
+  }
+
+  @Test
+  void stream_sendsCommittedChanges_inOrder() throws Exception {
+    MvcResult stream = mockMvc.perform(get("/v1/notes/stream"))
+      .andExpect(request().asyncStarted())
+      .andReturn();
+
+    String json = mockMvc.perform(post("/v1/notes")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{ \"content\": \"streamed\" }"))
+      .andExpect(status().isCreated())
+      .andReturn().getResponse().getContentAsString();
+    String id = JsonPath.read(json, "$.id");
+    mockMvc.perform(put("/v1/notes/{id}", id)
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{ \"content\": \"changed\" }"))
+      .andExpect(status().isOk());
+    mockMvc.perform(delete("/v1/notes/{id}", id))
+      .andExpect(status().isNoContent());
+
+    String events = awaitStream(stream, "event: deleted");
+    assertThat(stream.getResponse().getContentType()).startsWith(MediaType.TEXT_EVENT_STREAM_VALUE);
+    assertThat(events).containsSubsequence(
+        "event: created", "\"content\":\"streamed\"",
+        "event: updated", "\"version\":2", "\"content\":\"changed\"",
+        "event: deleted", "\"id\":\"" + id + "\"");
+    List<Long> sequence = eventIds(events);
+    assertThat(sequence).hasSize(3);
+    assertThat(sequence.get(1)).isEqualTo(sequence.get(0) + 1);
+    assertThat(sequence.get(2)).isEqualTo(sequence.get(1) + 1);
+  }
+
+  @Test
+  void stream_withLastEventId_resumesAfterIt_orResetsWhenTooOld() throws Exception {
+    MvcResult live = mockMvc.perform(get("/v1/notes/stream"))
+      .andExpect(request().asyncStarted())
+      .andReturn();
+    for (String content : List.of("first", "second")) {
+      mockMvc.perform(post("/v1/notes")
+          .contentType(MediaType.APPLICATION_JSON)
+          .content("{ \"content\": \"" + content + "\" }"))
+        .andExpect(status().isCreated());
+    }
+    long firstId = eventIds(awaitStream(live, "\"content\":\"second\"")).get(0);
+
+    MvcResult resumed = mockMvc.perform(get("/v1/notes/stream").header("Last-Event-ID", firstId))
+      .andExpect(request().asyncStarted())
+      .andReturn();
+    String replay = awaitStream(resumed, "\"content\":\"second\"");
+    assertThat(replay).doesNotContain("\"content\":\"first\"");
+    assertThat(eventIds(replay)).containsExactly(firstId + 1);
+
+    MvcResult tooOld = mockMvc.perform(get("/v1/notes/stream").header("Last-Event-ID", "1"))
+      .andExpect(request().asyncStarted())
+      .andReturn();
+    assertThat(awaitStream(tooOld, "event: reset")).contains("id: " + (firstId + 1));
+  }
+
+  @Test
+  void changes_sinceToken_returnsOnlyLaterChanges_inOrder() throws Exception {
+    String token = syncToken(mockMvc.perform(get("/v1/notes/changes"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.hasMore").value(false))
+      .andReturn());
+
+    String kept = createNote("kept");
+    String dropped = createNote("dropped");
+    mockMvc.perform(put("/v1/notes/{id}", kept)
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{ \"content\": \"kept, edited\" }"))
+      .andExpect(status().isOk());
+    mockMvc.perform(delete("/v1/notes/{id}", dropped))
+      .andExpect(status().isNoContent());
+
+    // the edited note once, with its latest state, then the tombstone
+    MvcResult delta = mockMvc.perform(get("/v1/notes/changes").param("since", token))
+      .andExpect(status().isOk())
+      .andExpect(header().string("Cache-Control", "no-store"))
+      .andExpect(jsonPath("$.changes", Matchers.hasSize(2)))
+      .andExpect(jsonPath("$.changes[0].id").value(kept))
+      .andExpect(jsonPath("$.changes[0].deleted").value(false))
+      .andExpect(jsonPath("$.changes[0].version").value(2))
+      .andExpect(jsonPath("$.changes[0].content").value("kept, edited"))
+      .andExpect(jsonPath("$.changes[1].id").value(dropped))
+      .andExpect(jsonPath("$.changes[1].deleted").value(true))
+      .andExpect(jsonPath("$.changes[1].content").doesNotExist())
+      .andExpect(jsonPath("$.hasMore").value(false))
+      .andReturn();
+
+    mockMvc.perform(get("/v1/notes/changes").param("since", syncToken(delta)))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.changes", Matchers.hasSize(0)))
+      .andExpect(jsonPath("$.hasMore").value(false));
+  }
+
+  @Test
+  void changes_withLimit_pagesUntilCaughtUp() throws Exception {
+    String token = syncToken(mockMvc.perform(get("/v1/notes/changes")).andReturn());
+    for (String content : List.of("one", "two", "three")) {
+      createNote(content);
+    }
+
+    MvcResult first = mockMvc.perform(get("/v1/notes/changes").param("since", token).param("limit", "2"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.changes[*].content").value(Matchers.contains("one", "two")))
+      .andExpect(jsonPath("$.hasMore").value(true))
+      .andReturn();
+
+    mockMvc.perform(get("/v1/notes/changes").param("since", syncToken(first)).param("limit", "2"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.changes[*].content").value(Matchers.contains("three")))
+      .andExpect(jsonPath("$.hasMore").value(false));
+  }
+
+  @Test
+  void changes_ignoreRecompression() throws Exception {
+    createNote("stored once, rewritten by recompression");
+    String token = syncToken(mockMvc.perform(get("/v1/notes/changes")).andReturn());
+
+    // the statement NoteRecompressionService writes with: content only, version unchanged
+    List<NoteContentRepository.StoredContent> rows = noteContentRepository.readChunk(0, Integer.MAX_VALUE);
+    assertThat(rows).isNotEmpty();
+    assertThat(noteContentRepository.rewrite(rows)).isEqualTo(rows.size());
+
+    mockMvc.perform(get("/v1/notes/changes").param("since", token))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.changes", Matchers.hasSize(0)));
+  }
+
+  @Test
+  void changes_withTokenOlderThanCompactedTombstones_returns410() throws Exception {
+    String token = syncToken(mockMvc.perform(get("/v1/notes/changes")).andReturn());
+    mockMvc.perform(delete("/v1/notes/{id}", createNote("short-lived")))
+      .andExpect(status().isNoContent());
+
+    // compact every tombstone there is
+    noteSyncRepository.compactChunk(Instant.now().plusSeconds(60), Integer.MAX_VALUE);
+
+    mockMvc.perform(get("/v1/notes/changes").param("since", token))
+      .andExpect(status().isGone())
+      .andExpect(jsonPath("$.error").exists());
+    // a full sync still works and carries on from there
+    mockMvc.perform(get("/v1/notes/changes"))
+      .andExpect(status().isOk());
+  }
+
+  @Test
+  void changes_withUnknownOrInvalidToken_isRejected() throws Exception {
+    mockMvc.perform(get("/v1/notes/changes").param("since", "not-a-token"))
+      .andExpect(status().isBadRequest());
+    // well-formed, but ahead of this database: from another vault
+    mockMvc.perform(get("/v1/notes/changes")
+        .param("since", new NoteSyncToken(Long.MAX_VALUE, Long.MAX_VALUE).encode()))
+      .andExpect(status().isGone());
+    mockMvc.perform(get("/v1/notes/changes").param("limit", "0"))
+      .andExpect(status().isBadRequest());
+  }
+
+  private String createNote(String content) throws Exception {
+    MvcResult created = mockMvc.perform(post("/v1/notes")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{ \"content\": \"" + content + "\" }"))
+      .andExpect(status().isCreated())
+      .andReturn();
+    return JsonPath.read(created.getResponse().getContentAsString(), "$.id");
+  }
+
+  private static String syncToken(MvcResult changes) throws Exception {
+    return JsonPath.read(changes.getResponse().getContentAsString(), "$.syncToken");
+  }
+
+  // the stream's body so far, once it contains expected (events are sent asynchronously)
+  private static String awaitStream(MvcResult stream, String expected) throws Exception {
+    long deadline = System.nanoTime() + 5_000_000_000L;
+    String body = stream.getResponse().getContentAsString();
+    while (!body.contains(expected) && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+      body = stream.getResponse().getContentAsString();
+    }
+    assertThat(body).contains(expected);
+    return body;
+  }
+
+  private static List<Long> eventIds(String events) {
+    return events.lines()
+      .filter(line -> line.startsWith("id: "))
+      .map(line -> Long.parseLong(line.substring(4)))
+      .toList();
+  }
 }
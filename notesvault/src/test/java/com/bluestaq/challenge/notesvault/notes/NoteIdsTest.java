@@ -0,0 +1,46 @@
+package com.bluestaq.challenge.notesvault.notes;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+import com.bluestaq.challenge.notesvault.notes.entity.NoteIds;
+
+class NoteIdsTest {
+
+  @Test
+  void newId_isVersion7_andIncreasing() {
+    String previous = NoteIds.newId();
+    for (int i = 0; i < 10_000; i++) {
+      String next = NoteIds.newId();
+      // the string form sorts like the 16-byte key, so this is also index order
+      assertThat(next).isGreaterThan(previous);
+      previous = next;
+    }
+
+    UUID uuid = UUID.fromString(previous);
+    assertThat(uuid.version()).isEqualTo(7);
+    assertThat(uuid.variant()).isEqualTo(2);
+  }
+
+  @Test
+  void toBytes_storesUuidsIn16Bytes_andRoundTrips() {
+    String id = NoteIds.newId();
+
+    assertThat(NoteIds.toBytes(id)).hasSize(16);
+    assertThat(NoteIds.fromBytes(NoteIds.toBytes(id))).isEqualTo(id);
+  }
+
+  @Test
+  void toBytes_keepsOtherIdsDistinctFromUuids() {
+    // exactly 16 UTF-8 bytes, so it must not come back as a UUID
+    String sixteen = "abcdefghijklmnop";
+
+    assertThat(NoteIds.toBytes(sixteen)).hasSize(17);
+    assertThat(NoteIds.fromBytes(NoteIds.toBytes(sixteen))).isEqualTo(sixteen);
+    assertThat(NoteIds.fromBytes(NoteIds.toBytes("test-note-id"))).isEqualTo("test-note-id");
+    assertThat(NoteIds.toBytes("")).isEmpty();
+  }
+}
@@ -0,0 +1,165 @@
+package com.bluestaq.challenge.notesvault.notes;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import com.bluestaq.challenge.notesvault.config.NoteReplicaProperties;
+import com.bluestaq.challenge.notesvault.config.NoteStoreProperties;
+import com.bluestaq.challenge.notesvault.notes.api.dto.NoteResponse;
+import com.bluestaq.challenge.notesvault.notes.archive.NoteArchive;
+import com.bluestaq.challenge.notesvault.notes.entity.NoteEntity;
+import com.bluestaq.challenge.notesvault.notes.replica.NoteReplica;
+import com.bluestaq.challenge.notesvault.notes.store.NoteStore;
+import com.bluestaq.challenge.notesvault.notes.store.log.LogNoteStore;
+
+class NoteReplicaTest {
+
+  private static final Instant OLDEST = Instant.parse("1000-01-01T00:00:00Z");
+  private static final Instant NEWEST = Instant.parse("9999-12-31T23:59:59Z");
+
+  private static NoteEntity note(String id, String createdAt, String content, long version) {
+    NoteEntity note = new NoteEntity();
+    note.setId(id);
+    note.setCreatedAt(Instant.parse(createdAt));
+    note.setContent(content);
+    note.setVersion(version);
+    return note;
+  }
+
+  // a store with no transaction running: changes are applied as they are reported
+  private static NoteStore outsideTransaction() {
+    NoteStore store = mock(NoteStore.class);
+    doAnswer(call -> {
+      call.<Runnable>getArgument(0).run();
+      return null;
+    }).when(store).afterCommit(any(Runnable.class));
+    return store;
+  }
+
+  private static NoteReplica loaded(DataSize maxSize, NoteEntity... notes) {
+    return loaded(outsideTransaction(), maxSize, notes);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static NoteReplica loaded(NoteStore store, DataSize maxSize, NoteEntity... notes) {
+    NoteArchive archive = mock(NoteArchive.class);
+    doAnswer(call -> {
+      Consumer<NoteEntity> sink = call.getArgument(0);
+      for (NoteEntity note : notes) {
+        sink.accept(note);
+      }
+      return null;
+    }).when(archive).streamNewestFirst(any(Consumer.class));
+    NoteReplica replica = new NoteReplica(new NoteReplicaProperties(true, maxSize), archive, store);
+    replica.afterSingletonsInstantiated();
+    return replica;
+  }
+
+  @Test
+  void load_servesNotesByIdAndInPages() {
+    NoteReplica replica = loaded(DataSize.ofMegabytes(1),
+        note("c", "2026-02-21T00:00:03.000000789Z", "third", 1),
+        note("b", "2026-02-21T00:00:02Z", "zweite Notiz ü", 1),
+        note("a", "2026-02-21T00:00:01Z", "first", 1));
+
+    assertThat(replica.isServing()).isTrue();
+    assertThat(replica.getNotes()).isEqualTo(3);
+    assertThat(replica.getHeapBytes()).isGreaterThan(3 * 100L);
+
+    NoteResponse c = replica.findResponseById("c").orElseThrow();
+    assertThat(c.createdAt()).isEqualTo(Instant.parse("2026-02-21T00:00:03.000000789Z"));
+    assertThat(replica.findResponseById("b")).get().extracting(NoteResponse::content).isEqualTo("zweite Notiz ü");
+
+    List<NoteResponse> first = replica.findResponsePageBefore(OLDEST, NEWEST, "", 2);
+    assertThat(first).extracting(NoteResponse::id).containsExactly("c", "b");
+    NoteResponse last = first.get(1);
+    assertThat(replica.findResponsePageBefore(OLDEST, last.createdAt(), last.id(), 2))
+        .extracting(NoteResponse::id).containsExactly("a");
+  }
+
+  @Test
+  void writeThrough_keepsTheNewestVersion_andDeletesStick() {
+    NoteReplica replica = loaded(DataSize.ofMegabytes(1), note("a", "2026-02-21T00:00:01Z", "v1", 1));
+    long generation = replica.generation();
+
+    replica.updated(note("a", "2026-02-21T00:00:01Z", "v3", 3));
+    // reported late, after a newer commit
+    replica.updated(note("a", "2026-02-21T00:00:01Z", "v2", 2));
+    assertThat(replica.findResponseById("a")).get().extracting(NoteResponse::content).isEqualTo("v3");
+
+    replica.created(note("b", "2026-02-21T00:00:02Z", "new", 1));
+    replica.deleted("a");
+    replica.updated(note("a", "2026-02-21T00:00:01Z", "v4", 4));
+
+    assertThat(replica.findResponseById("a")).isEmpty();
+    assertThat(replica.findResponsePageBefore(OLDEST, NEWEST, "", 10)).extracting(NoteResponse::id)
+        .containsExactly("b");
+    assertThat(replica.getNotes()).isEqualTo(1);
+    assertThat(replica.generation()).isGreaterThan(generation);
+  }
+
+  @Test
+  void writeThrough_waitsForTheCommit_andDropsRolledBackChanges(@TempDir Path dir) throws IOException {
+    LogNoteStore store = new LogNoteStore(new NoteStoreProperties(NoteStoreProperties.Engine.LOG,
+        new NoteStoreProperties.Log(dir, DataSize.ofKilobytes(64), true, Duration.ofHours(1), 0.5),
+        new NoteStoreProperties.Sharded(dir.resolve("shards"), 4, 2)));
+    try {
+      NoteReplica replica = loaded(store, DataSize.ofMegabytes(1), note("a", "2026-02-21T00:00:01Z", "v1", 1));
+
+      assertThatThrownBy(() -> store.inTransaction(() -> {
+        replica.updated(note("a", "2026-02-21T00:00:01Z", "rolled back", 2));
+        replica.created(note("b", "2026-02-21T00:00:02Z", "rolled back", 1));
+        replica.deleted("a");
+        throw new IllegalStateException("write failed");
+      })).hasMessage("write failed");
+      assertThat(replica.findResponseById("a")).get().extracting(NoteResponse::content).isEqualTo("v1");
+      assertThat(replica.findResponseById("b")).isEmpty();
+
+      store.inTransaction(() -> {
+        replica.updated(note("a", "2026-02-21T00:00:01Z", "v2", 2));
+        assertThat(replica.findResponseById("a")).get().extracting(NoteResponse::content).isEqualTo("v1");
+        return null;
+      });
+      assertThat(replica.findResponseById("a")).get().extracting(NoteResponse::content).isEqualTo("v2");
+    } finally {
+      store.destroy();
+    }
+  }
+
+  @Test
+  void passingTheSizeLimit_dropsTheReplica() {
+    NoteReplica replica = loaded(DataSize.ofBytes(1024), note("a", "2026-02-21T00:00:01Z", "small", 1));
+    assertThat(replica.isServing()).isTrue();
+
+    replica.created(note("b", "2026-02-21T00:00:02Z", "x".repeat(2048), 1));
+
+    assertThat(replica.isServing()).isFalse();
+    assertThat(replica.getNotes()).isZero();
+    assertThat(replica.getHeapBytes()).isZero();
+  }
+
+  @Test
+  void disabled_neverServes() {
+    NoteReplica replica = new NoteReplica(new NoteReplicaProperties(false, DataSize.ofMegabytes(1)),
+        mock(NoteArchive.class), outsideTransaction());
+    replica.afterSingletonsInstantiated();
+    replica.created(note("a", "2026-02-21T00:00:01Z", "ignored", 1));
+
+    assertThat(replica.isServing()).isFalse();
+    assertThat(replica.findResponseById("a")).isEmpty();
+  }
+}
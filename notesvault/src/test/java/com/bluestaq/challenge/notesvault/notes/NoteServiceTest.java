@@ -4,6 +4,8 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -13,31 +15,76 @@ import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Supplier;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import com.bluestaq.challenge.notesvault.except.InvalidPageRequestException;
 import com.bluestaq.challenge.notesvault.except.NoteNotFoundException;
+import com.bluestaq.challenge.notesvault.except.PreconditionFailedException;
+import com.bluestaq.challenge.notesvault.notes.api.dto.NoteResponse;
+import com.bluestaq.challenge.notesvault.notes.archive.NoteArchive;
+import com.bluestaq.challenge.notesvault.notes.cache.NoteCache;
 import com.bluestaq.challenge.notesvault.notes.entity.NoteEntity;
-import com.bluestaq.challenge.notesvault.notes.repo.NoteRepository;
+import com.bluestaq.challenge.notesvault.notes.metrics.NoteMetrics;
+import com.bluestaq.challenge.notesvault.notes.replica.NoteReplica;
+import com.bluestaq.challenge.notesvault.notes.service.DirectNoteWriteExecutor;
+import com.bluestaq.challenge.notesvault.notes.service.NotePage;
 import com.bluestaq.challenge.notesvault.notes.service.NoteService;
+import com.bluestaq.challenge.notesvault.notes.service.NoteWriteExecutor;
+import com.bluestaq.challenge.notesvault.notes.store.NoteStore;
+import com.bluestaq.challenge.notesvault.notes.stream.NoteChangeFeed;
 import com.bluestaq.challenge.notesvault.except.InvalidNoteContentException;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
 @ExtendWith(MockitoExtension.class)
 public class NoteServiceTest {
 
     @Mock
-    private NoteRepository noteRepository;
+    private NoteStore noteStore;
+
+    // writes run inline, exactly as in the default (non group-commit) mode
+    @Spy
+    private NoteWriteExecutor writeExecutor = new DirectNoteWriteExecutor();
+
+    // a bare mock always misses, so every read reaches the repository
+    @Mock
+    private NoteCache noteCache;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private NoteMetrics noteMetrics = new NoteMetrics(meterRegistry);
+
+    @Mock
+    private NoteChangeFeed changeFeed;
+
+    // a bare mock is never serving, so reads reach the store
+    @Mock
+    private NoteReplica noteReplica;
+
+    // a bare mock is disabled: nothing is archived, so misses stay misses
+    @Mock
+    private NoteArchive noteArchive;
 
     @InjectMocks
     private NoteService noteService;
 
+    @BeforeEach
+    void setUp() {
+        lenient().when(noteArchive.copyOf(anyString())).thenReturn(NoteArchive.Copy.NONE);
+    }
+
     @Test
-    void createNote_withValidContent_savesNoteToRepo() {
-        when(noteRepository.save(any(NoteEntity.class)))
+    void createNote_withValidContent_savesNoteToStore() {
+        when(noteStore.insert(any(NoteEntity.class)))
             .thenAnswer(inv -> inv.getArgument(0, NoteEntity.class));
 
         NoteEntity saved = noteService.createNote("  hello world  ");
@@ -46,8 +93,9 @@ public class NoteServiceTest {
         assertThat(saved.getCreatedAt()).isNotNull();
         assertThat(saved.getContent()).isEqualTo("hello world");
 
-        verify(noteRepository).save(any(NoteEntity.class));
-        verifyNoMoreInteractions(noteRepository);
+        verify(noteStore).insert(any(NoteEntity.class));
+        verify(changeFeed).created(saved);
+        verifyNoMoreInteractions(noteStore);
     }
 
     @Test
@@ -56,8 +104,8 @@ public class NoteServiceTest {
             .isInstanceOf(InvalidNoteContentException.class)
             .hasMessage("content must not be blank");
 
-        verify(noteRepository, never()).save(any());
-        verifyNoMoreInteractions(noteRepository);
+        verify(noteStore, never()).insert(any());
+        verifyNoMoreInteractions(noteStore);
     }
 
     @Test
@@ -66,40 +114,56 @@ public class NoteServiceTest {
             .isInstanceOf(InvalidNoteContentException.class)
             .hasMessage("content must not be blank");
 
-        verify(noteRepository, never()).save(any());
-        verifyNoMoreInteractions(noteRepository);
+        verify(noteStore, never()).insert(any());
+        verifyNoMoreInteractions(noteStore);
     }
 
     @Test
     void getNoteById_withValidId_returnsNote() {
-        NoteEntity note = new NoteEntity();
-        note.setId("1");
-        note.setCreatedAt(Instant.parse("1991-10-27T00:00:00Z"));
-        note.setContent("hello");
+        NoteResponse note = new NoteResponse("1", Instant.parse("1991-10-27T00:00:00Z"), "hello", 1);
 
-        when(noteRepository.findById("1")).thenReturn(Optional.of(note));
+        when(noteStore.findResponseById("1")).thenReturn(Optional.of(note));
 
-        NoteEntity result = noteService.getNoteById("1");
+        NoteResponse result = noteService.getNoteById("1");
 
-        assertThat(result.getId()).isEqualTo("1");
-        assertThat(result.getCreatedAt()).isEqualTo(Instant.parse("1991-10-27T00:00:00Z"));
-        assertThat(result.getContent()).isEqualTo("hello");
+        assertThat(result.id()).isEqualTo("1");
+        assertThat(result.createdAt()).isEqualTo(Instant.parse("1991-10-27T00:00:00Z"));
+        assertThat(result.content()).isEqualTo("hello");
 
-        verify(noteRepository).findById("1");
-        verifyNoMoreInteractions(noteRepository);
+        // the read goes through the projection, never the entity lookup
+        verify(noteStore).findResponseById("1");
+        verifyNoMoreInteractions(noteStore);
     }
 
     @Test
     void getNoteById_withInvalidId_throwsNoteNotFoundException() {
         String invalidId = "non-existent-id";
-        when(noteRepository.findById(invalidId)).thenReturn(Optional.empty());
+        when(noteStore.findResponseById(invalidId)).thenReturn(Optional.empty());
 
         assertThatThrownBy(() -> noteService.getNoteById(invalidId))
             .isInstanceOf(NoteNotFoundException.class)
             .hasMessageContaining(invalidId);
 
-        verify(noteRepository).findById(invalidId);
-        verifyNoMoreInteractions(noteRepository);
+        verify(noteStore).findResponseById(invalidId);
+        verifyNoMoreInteractions(noteStore);
+    }
+
+    @Test
+    void getNoteById_recordsOutcomeOfEachCall() {
+        NoteResponse note = new NoteResponse("id-1", Instant.now(), "content", 1);
+        when(noteStore.findResponseById("id-1")).thenReturn(Optional.of(note));
+        when(noteStore.findResponseById("missing")).thenReturn(Optional.empty());
+
+        noteService.getNoteById("id-1");
+        assertThatThrownBy(() -> noteService.getNoteById("missing"))
+            .isInstanceOf(NoteNotFoundException.class);
+
+        assertThat(meterRegistry.get(NoteMetrics.OPERATIONS)
+            .tags("operation", "get", "outcome", "success").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get(NoteMetrics.OPERATIONS)
+            .tags("operation", "get", "outcome", "not_found").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get(NoteMetrics.EXCEPTIONS)
+            .tags("operation", "get", "exception", "NoteNotFoundException").counter().count()).isEqualTo(1.0);
     }
 
     @Test
@@ -114,41 +178,68 @@ public class NoteServiceTest {
         newer.setCreatedAt(Instant.parse("1991-10-27T00:00:10Z"));
         newer.setContent("newer");
 
-        when(noteRepository.findAllByOrderByCreatedAtDesc())
+        when(noteStore.findAllNewestFirst())
             .thenReturn(List.of(newer, older));
 
         List<NoteEntity> notes = noteService.listNotes();
 
         assertThat(notes).extracting(NoteEntity::getId).containsExactly("2", "1");
 
-        verify(noteRepository).findAllByOrderByCreatedAtDesc();
-        verifyNoMoreInteractions(noteRepository);
+        verify(noteStore).findAllNewestFirst();
+        verifyNoMoreInteractions(noteStore);
+    }
+
+    @Test
+    void listNotesPage_withMoreRows_returnsCursorForLastNote() {
+        NoteResponse newer = new NoteResponse("2", Instant.parse("1991-10-27T00:00:10Z"), "newer", 1);
+        NoteResponse older = new NoteResponse("1", Instant.parse("1991-10-07T00:00:00Z"), "older", 1);
+
+        // the service asks for limit + 1 rows to detect a following page
+        when(noteStore.findResponsePageBefore(any(Instant.class), any(Instant.class), eq(""), eq(2)))
+            .thenReturn(List.of(newer, older));
+
+        NotePage page = noteService.listNotes(1, null, null, null);
+
+        assertThat(page.notes()).extracting(NoteResponse::id).containsExactly("2");
+        assertThat(page.nextCursor()).isNotNull();
+    }
+
+    @Test
+    void listNotesPage_withLimitOutOfRange_throwsInvalidPageRequestException() {
+        assertThatThrownBy(() -> noteService.listNotes(NoteService.MAX_PAGE_SIZE + 1, null, null, null))
+            .isInstanceOf(InvalidPageRequestException.class)
+            .hasMessageContaining("limit");
+
+        verifyNoMoreInteractions(noteStore);
     }
 
     @Test
     void deleteNoteById_withValidId_deletesNote() {
         String idToDelete = UUID.randomUUID().toString();
-        when(noteRepository.existsById(idToDelete)).thenReturn(true);
+        when(noteStore.deleteIfExists(idToDelete)).thenReturn(true);
 
         noteService.deleteNoteById(idToDelete);
 
-        verify(noteRepository).existsById(idToDelete);
-        verify(noteRepository).deleteById(idToDelete);
-        verifyNoMoreInteractions(noteRepository);
+        // a single conditional delete, no existence check first
+        verify(noteStore).deleteIfExists(idToDelete);
+        verify(noteCache).invalidateAfterCommit(idToDelete);
+        verify(changeFeed).deleted(idToDelete);
+        verifyNoMoreInteractions(noteStore);
     }
 
     @Test
     void deleteNoteById_withInvalidId_throwsNoteNotFoundException() {
         String invalidId = "non-existent-id";
-        when(noteRepository.existsById(invalidId)).thenReturn(false);
+        when(noteStore.deleteIfExists(invalidId)).thenReturn(false);
 
         assertThatThrownBy(() -> noteService.deleteNoteById(invalidId))
             .isInstanceOf(NoteNotFoundException.class)
             .hasMessageContaining(invalidId);
 
-        verify(noteRepository).existsById(invalidId);
-        verify(noteRepository, never()).deleteById(anyString());
-        verifyNoMoreInteractions(noteRepository);
+        verify(noteStore).deleteIfExists(invalidId);
+        verify(noteCache, never()).invalidateAfterCommit(anyString());
+        verify(changeFeed, never()).deleted(anyString());
+        verifyNoMoreInteractions(noteStore);
     }
 
     @Test
@@ -157,13 +248,13 @@ public class NoteServiceTest {
         Instant createdAt = Instant.now();
         String rawContent = "  updated content  ";
 
-        NoteEntity existingNote = new NoteEntity();
-        existingNote.setId(id);
-        existingNote.setCreatedAt(createdAt);
-        existingNote.setContent("original content");
+        NoteEntity updatedNote = new NoteEntity();
+        updatedNote.setId(id);
+        updatedNote.setCreatedAt(createdAt);
+        updatedNote.setContent("updated content");
+        updatedNote.setVersion(2);
 
-        when(noteRepository.findById(id)).thenReturn(Optional.of(existingNote));
-        when(noteRepository.save(any(NoteEntity.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(noteStore.updateContent(id, "updated content")).thenReturn(Optional.of(updatedNote));
 
         NoteEntity result = noteService.updateNoteById(id, rawContent);
 
@@ -173,12 +264,15 @@ public class NoteServiceTest {
         assertThat(result.getCreatedAt()).isEqualTo(createdAt);
         // content should be updated and trimmed
         assertThat(result.getContent()).isEqualTo("updated content");
+        // the version (the ETag) comes back from the store's update
+        assertThat(result.getVersion()).isEqualTo(2);
 
         // after we have asserted that the result is correct, we can also verify that the 
-        // repository methods were called as expected
-        verify(noteRepository).findById(id);
-        verify(noteRepository).save(existingNote);
-        verifyNoMoreInteractions(noteRepository);
+        // repository methods were called as expected: one update, no load first
+        verify(noteStore).updateContent(id, "updated content");
+        verify(noteCache).invalidateAfterCommit(id);
+        verify(changeFeed).updated(updatedNote);
+        verifyNoMoreInteractions(noteStore);
     }
 
     @Test
@@ -191,24 +285,80 @@ public class NoteServiceTest {
 
         // explicitly verify the repository was never called since the validation should fail 
         // before any repository interaction
-        verify(noteRepository, never()).findById(anyString());
-        verify(noteRepository, never()).save(any());
+        verify(noteStore, never()).updateContent(anyString(), anyString());
         // verify that there are no interactions with the repository at all
-        verifyNoMoreInteractions(noteRepository);
+        verifyNoMoreInteractions(noteStore);
     }
 
     @Test
     void updateNoteById_withInvalidId_throwsNoteNotFoundException() {
         String id = "non-existent-id";
-        when(noteRepository.findById(id)).thenReturn(Optional.empty());
+        when(noteStore.updateContent(id, "valid content")).thenReturn(Optional.empty());
 
         assertThatThrownBy(() -> noteService.updateNoteById(id, "valid content"))
             .isInstanceOf(NoteNotFoundException.class)
             .hasMessageContaining(id);
 
-        verify(noteRepository).findById(id);
-        verify(noteRepository, never()).save(any());
-        verifyNoMoreInteractions(noteRepository);
+        verify(noteStore).updateContent(id, "valid content");
+        verify(noteCache, never()).invalidateAfterCommit(anyString());
+        verifyNoMoreInteractions(noteStore);
+    }
+
+    @Test
+    void updateNoteById_withStaleVersion_throwsPreconditionFailedException() {
+        String id = UUID.randomUUID().toString();
+        when(noteStore.inTransaction(any())).thenAnswer(invocation -> ((Supplier<?>) invocation.getArgument(0)).get());
+        when(noteStore.updateContentIfVersion(id, "new content", List.of(3L))).thenReturn(false);
+        when(noteStore.existsById(id)).thenReturn(true);
+
+        assertThatThrownBy(() -> noteService.updateNoteById(id, "new content", List.of(3L)))
+            .isInstanceOf(PreconditionFailedException.class)
+            .hasMessageContaining(id);
+
+        // the conditional statement is the only write attempted
+        verify(noteStore, never()).save(any());
+        verify(noteCache, never()).invalidateAfterCommit(anyString());
     }
 
-}
\ No newline at end of file
+    @Test
+    void deleteNoteById_withVersionOfMissingNote_throwsNoteNotFoundException() {
+        String id = "non-existent-id";
+        when(noteStore.deleteByIdIfVersion(id, List.of(1L))).thenReturn(false);
+        when(noteStore.existsById(id)).thenReturn(false);
+
+        // a missing note is a 404 whatever the precondition said
+        assertThatThrownBy(() -> noteService.deleteNoteById(id, List.of(1L)))
+            .isInstanceOf(NoteNotFoundException.class);
+    }
+
+    @Test
+    void deleteNoteById_ofArchivedNote_restoresAndDeletesInOneTransaction() {
+        String id = "archived-note";
+        when(noteArchive.copyOf(id)).thenReturn(NoteArchive.Copy.VISIBLE);
+        when(noteStore.inTransaction(any())).thenAnswer(invocation -> ((Supplier<?>) invocation.getArgument(0)).get());
+        when(noteStore.deleteIfExists(id)).thenReturn(false, true);
+        when(noteArchive.restore(id, null)).thenReturn(true);
+
+        noteService.deleteNoteById(id);
+
+        verify(noteArchive).restore(id, null);
+        verify(changeFeed).deleted(id);
+    }
+
+    @Test
+    void updateNoteById_withStaleVersionOfArchivedNote_throwsPreconditionFailedWithoutRestoring() {
+        String id = "archived-note";
+        when(noteArchive.copyOf(id)).thenReturn(NoteArchive.Copy.VISIBLE);
+        when(noteStore.inTransaction(any())).thenAnswer(invocation -> ((Supplier<?>) invocation.getArgument(0)).get());
+        when(noteStore.updateContentIfVersion(id, "new content", List.of(3L))).thenReturn(false);
+        // the archived copy is at another version, so restore declines
+        when(noteArchive.restore(id, List.of(3L))).thenReturn(false);
+        when(noteStore.existsById(id)).thenReturn(false);
+
+        assertThatThrownBy(() -> noteService.updateNoteById(id, "new content", List.of(3L)))
+            .isInstanceOf(PreconditionFailedException.class);
+
+        verify(noteStore, never()).insert(any());
+        verify(noteCache, never()).invalidateAfterCommit(anyString());
+    }
+}
@@ -0,0 +1,165 @@
+package com.bluestaq.challenge.notesvault.notes;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.Instant;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultMatcher;
+
+import com.bluestaq.challenge.notesvault.notes.cache.NoteCache;
+import com.bluestaq.challenge.notesvault.notes.entity.NoteEntity;
+import com.bluestaq.challenge.notesvault.notes.repo.NoteRepository;
+
+import jakarta.persistence.EntityManagerFactory;
+
+// Regression guard on the number of SQL statements each NoteControllerV1 endpoint runs,
+// counted with Hibernate statistics (hibernate.generate_statistics). A change that adds
+// a query to a request - an existence check before a write, an entity load inside a
+// delete - fails here. Raise a budget only on purpose.
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class NoteStatementBudgetTest {
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Autowired
+  private NoteRepository noteRepository;
+
+  @Autowired
+  private NoteCache noteCache;
+
+  @Autowired
+  private EntityManagerFactory entityManagerFactory;
+
+  private Statistics statistics;
+
+  @BeforeEach
+  void setUp() {
+    statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    assertThat(statistics.isStatisticsEnabled()).isTrue();
+
+    NoteEntity note = new NoteEntity();
+    note.setId("budget-note");
+    note.setContent("statement budget note");
+    note.setCreatedAt(Instant.now());
+    note.setVersion(1);
+    noteRepository.save(note);
+  }
+
+  @AfterEach
+  void tearDown() {
+    noteRepository.deleteAll();
+    noteCache.clear();
+  }
+
+  @Test
+  void create_runsOneStatement() throws Exception {
+    assertBudget(1, status().isCreated(), post("/v1/notes")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{ \"content\": \"new note\" }"));
+  }
+
+  @Test
+  void getById_runsOneStatement() throws Exception {
+    assertBudget(1, status().isOk(), get("/v1/notes/{id}", "budget-note"));
+    assertBudget(1, status().isNotFound(), get("/v1/notes/{id}", "missing"));
+  }
+
+  @Test
+  void list_runsOneStatement() throws Exception {
+    assertBudget(1, status().isOk(), get("/v1/notes"));
+  }
+
+  @Test
+  void search_runsOneStatement() throws Exception {
+    assertBudget(1, status().isOk(), get("/v1/notes/search").param("q", "budget"));
+  }
+
+  @Test
+  void export_runsOneStatement() throws Exception {
+    statistics.clear();
+    MvcResult started = mockMvc.perform(get("/v1/notes/export"))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+    mockMvc.perform(asyncDispatch(started)).andExpect(status().isOk());
+    assertThat(statistics.getPrepareStatementCount()).as("statements for export").isLessThanOrEqualTo(1);
+  }
+
+  @Test
+  void update_runsOneStatement() throws Exception {
+    assertBudget(1, status().isOk(), put("/v1/notes/{id}", "budget-note")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{ \"content\": \"changed\" }"));
+    assertBudget(1, status().isNotFound(), put("/v1/notes/{id}", "missing")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{ \"content\": \"changed\" }"));
+  }
+
+  @Test
+  void conditionalUpdate_runsUpdateAndReadBack() throws Exception {
+    assertBudget(2, status().isOk(), put("/v1/notes/{id}", "budget-note")
+        .header("If-Match", "\"1\"")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{ \"content\": \"changed\" }"));
+  }
+
+  @Test
+  void delete_runsOneStatement() throws Exception {
+    assertBudget(1, status().isNoContent(), delete("/v1/notes/{id}", "budget-note"));
+    assertBudget(1, status().isNotFound(), delete("/v1/notes/{id}", "budget-note"));
+  }
+
+  @Test
+  void conditionalDelete_runsOneStatement() throws Exception {
+    assertBudget(1, status().isNoContent(), delete("/v1/notes/{id}", "budget-note").header("If-Match", "\"1\""));
+  }
+
+  @Test
+  void batch_loadsTargetsOnce_thenOneStatementPerWrite() throws Exception {
+    String json = """
+      { "operations": [
+        { "op": "create", "content": "batch created" },
+        { "op": "update", "id": "budget-note", "content": "batch changed" },
+        { "op": "delete", "id": "missing" }
+      ] }
+    """;
+
+    // findAllById, then the insert and the update
+    assertBudget(3, status().isOk(), post("/v1/notes/batch")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(json));
+  }
+
+  private void assertBudget(long budget, ResultMatcher expectedStatus, RequestBuilder request) throws Exception {
+    noteCache.clear();
+    statistics.clear();
+
+    mockMvc.perform(request).andExpect(expectedStatus);
+
+    assertThat(statistics.getPrepareStatementCount())
+        .as("SQL statements")
+        .isLessThanOrEqualTo(budget);
+  }
+}
@@ -0,0 +1,98 @@
+package com.bluestaq.challenge.notesvault.notes;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sqlite.SQLiteDataSource;
+
+import com.bluestaq.challenge.notesvault.notes.repo.SchemaMigrations;
+
+class SchemaMigrationsTest {
+
+  @TempDir
+  Path dir;
+
+  private SQLiteDataSource dataSource;
+
+  @BeforeEach
+  void setUp() {
+    dataSource = new SQLiteDataSource();
+    dataSource.setUrl("jdbc:sqlite:" + dir.resolve("notes.db"));
+  }
+
+  @Test
+  void newDatabase_getsNotesTableAndIndex_andRecordsVersion() throws Exception {
+    new SchemaMigrations(dataSource).afterPropertiesSet();
+
+    assertThat(query("SELECT count(*) FROM sqlite_master WHERE name IN ('notes', 'idx_notes_created_at_id')")).isEqualTo(2);
+    assertThat(query("SELECT count(*) FROM sqlite_master WHERE name IN ('idx_notes_change_seq', 'note_tombstones', 'note_sync_clock')"))
+        .isEqualTo(3);
+    assertThat(query("SELECT count(*) FROM sqlite_master WHERE name IN ('note_archive_segments', 'note_archive_hidden')"))
+        .isEqualTo(2);
+    assertThat(query("SELECT max(version) FROM schema_version")).isEqualTo(3);
+  }
+
+  @Test
+  void secondRun_appliesNothing() throws Exception {
+    new SchemaMigrations(dataSource).afterPropertiesSet();
+    execute("INSERT INTO notes (id, created_at, content) VALUES (x'01', '2026-01-01', 'kept')");
+
+    new SchemaMigrations(dataSource).afterPropertiesSet();
+
+    assertThat(query("SELECT count(*) FROM schema_version")).isEqualTo(3);
+    assertThat(query("SELECT count(*) FROM notes")).isEqualTo(1);
+  }
+
+  @Test
+  void databaseFromBeforeMigrations_isTakenOverWithItsRows() throws Exception {
+    // what ddl-auto=update left behind for the first NoteEntity: string ids, no version
+    execute("create table notes (created_at timestamp not null, content TEXT not null, "
+        + "id varchar(36) not null, primary key (id))");
+    execute("INSERT INTO notes (id, created_at, content) "
+        + "VALUES ('0d5e4a1c-3f5b-4a7e-9c1d-2b8f6e4a9c10', '2026-01-01', 'old note')");
+
+    new SchemaMigrations(dataSource).afterPropertiesSet();
+
+    assertThat(query("SELECT count(*) FROM notes")).isEqualTo(1);
+    // the column prod's ddl-auto=validate expects, with the old note at version 1
+    assertThat(query("SELECT version FROM notes")).isEqualTo(1);
+    assertThat(query("SELECT max(version) FROM schema_version")).isEqualTo(3);
+    // existing notes are numbered for delta sync, and the clock starts after them
+    assertThat(query("SELECT change_seq FROM notes")).isEqualTo(1);
+    assertThat(query("SELECT last_seq FROM note_sync_clock")).isEqualTo(1);
+  }
+
+  @Test
+  void editedMigration_stopsStartup() throws Exception {
+    new SchemaMigrations(dataSource).afterPropertiesSet();
+    execute("UPDATE schema_version SET checksum = checksum + 1 WHERE version = 1");
+
+    assertThatThrownBy(() -> new SchemaMigrations(dataSource).afterPropertiesSet())
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining("V1");
+  }
+
+  private long query(String sql) throws SQLException {
+    try (Connection conn = dataSource.getConnection();
+        Statement st = conn.createStatement();
+        ResultSet rs = st.executeQuery(sql)) {
+      rs.next();
+      return rs.getLong(1);
+    }
+  }
+
+  private void execute(String sql) throws SQLException {
+    try (Connection conn = dataSource.getConnection(); Statement st = conn.createStatement()) {
+      st.execute(sql);
+    }
+  }
+}
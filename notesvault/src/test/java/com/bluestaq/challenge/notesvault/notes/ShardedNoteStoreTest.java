@@ -0,0 +1,259 @@
+package com.bluestaq.challenge.notesvault.notes;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sqlite.SQLiteConfig.JournalMode;
+import org.sqlite.SQLiteConfig.SynchronousMode;
+import org.springframework.util.unit.DataSize;
+
+import com.bluestaq.challenge.notesvault.config.NoteStoreProperties;
+import com.bluestaq.challenge.notesvault.config.SqliteProperties;
+import com.bluestaq.challenge.notesvault.except.ServiceBusyException;
+import com.bluestaq.challenge.notesvault.notes.entity.NoteContentConverter;
+import com.bluestaq.challenge.notesvault.notes.entity.NoteEntity;
+import com.bluestaq.challenge.notesvault.notes.entity.NoteIds;
+import com.bluestaq.challenge.notesvault.notes.store.shard.ReshardTool;
+import com.bluestaq.challenge.notesvault.notes.store.shard.ShardedNoteStore;
+
+class ShardedNoteStoreTest {
+
+  private static final Instant OLDEST = Instant.parse("1000-01-01T00:00:00Z");
+  private static final Instant NEWEST = Instant.parse("9999-12-31T23:59:59Z");
+
+  @TempDir
+  Path dir;
+
+  private ShardedNoteStore store;
+
+  private static void awaitQuietly(CyclicBarrier barrier) {
+    try {
+      barrier.await();
+    } catch (InterruptedException | BrokenBarrierException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @AfterEach
+  void tearDown() {
+    if (store != null) {
+      store.destroy();
+    }
+  }
+
+  private ShardedNoteStore open(Path directory, int count) throws IOException, SQLException {
+    if (store != null) {
+      store.destroy();
+      store = null;
+    }
+    store = new ShardedNoteStore(
+        new NoteStoreProperties(NoteStoreProperties.Engine.SHARDED,
+            new NoteStoreProperties.Log(directory.resolve("log"), DataSize.ofMegabytes(1), true, Duration.ofHours(1), 0.5),
+            new NoteStoreProperties.Sharded(directory, count, 2)),
+        new SqliteProperties(JournalMode.WAL, SynchronousMode.NORMAL, 5000, -2000, 0, 2, 30000),
+        new NoteContentConverter());
+    return store;
+  }
+
+  private static NoteEntity note(String id, String createdAt, String content) {
+    NoteEntity note = new NoteEntity();
+    note.setId(id);
+    note.setCreatedAt(Instant.parse(createdAt));
+    note.setContent(content);
+    note.setVersion(1);
+    return note;
+  }
+
+  private List<String> allIds() {
+    List<String> ids = new ArrayList<>();
+    store.streamNewestFirst(note -> ids.add(note.getId()));
+    return ids;
+  }
+
+  @Test
+  void findPageBefore_mergesShardsNewestFirst() throws Exception {
+    open(dir, 3);
+    for (int i = 10; i <= 29; i++) {
+      store.insert(note("n" + i, "2026-02-21T00:00:" + i + "Z", "note " + i));
+    }
+    assertThat(store.getNotesPerShard()).doesNotContain(0L);
+
+    List<NoteEntity> first = store.findPageBefore(OLDEST, NEWEST, "", 5);
+    assertThat(first).extracting(NoteEntity::getId).containsExactly("n29", "n28", "n27", "n26", "n25");
+
+    NoteEntity last = first.get(4);
+    List<NoteEntity> next = store.findPageBefore(
+        Instant.parse("2026-02-21T00:00:21Z"), last.getCreatedAt(), last.getId(), 10);
+    assertThat(next).extracting(NoteEntity::getId).containsExactly("n24", "n23", "n22");
+
+    assertThat(allIds()).hasSize(20).first().isEqualTo("n29");
+  }
+
+  @Test
+  void writes_routeToTheNotesShard_andSurviveReopen() throws Exception {
+    open(dir, 4);
+    store.insert(note("a", "2026-02-21T00:00:01.000000123Z", "first"));
+    store.insert(note("b", "2026-02-21T00:00:02Z", "second"));
+    assertThat(store.updateContent("a", "first, edited")).get().extracting(NoteEntity::getVersion).isEqualTo(2L);
+    assertThat(store.updateContentIfVersion("a", "lost update", List.of(1L))).isFalse();
+    assertThat(store.deleteIfExists("b")).isTrue();
+    assertThat(store.deleteIfExists("b")).isFalse();
+
+    open(dir, 4);
+
+    NoteEntity a = store.findById("a").orElseThrow();
+    assertThat(a.getContent()).isEqualTo("first, edited");
+    assertThat(a.getCreatedAt()).isEqualTo(Instant.parse("2026-02-21T00:00:01.000000123Z"));
+    assertThat(store.existsById("b")).isFalse();
+  }
+
+  @Test
+  void inTransaction_rollsBackEveryShardItTouched() throws Exception {
+    open(dir, 4);
+    for (int i = 0; i < 8; i++) {
+      store.insert(note("n" + i, "2026-02-21T00:00:0" + i + "Z", "note " + i));
+    }
+    long generation = store.generation();
+
+    assertThatThrownBy(() -> store.inTransaction(() -> {
+      for (int i = 0; i < 8; i++) {
+        store.deleteById("n" + i);
+      }
+      throw new IllegalStateException("abort");
+    })).isInstanceOf(IllegalStateException.class);
+
+    assertThat(allIds()).hasSize(8);
+
+    store.inTransaction(() -> {
+      store.deleteById("n0");
+      store.insert(note("n8", "2026-02-21T00:00:08Z", "note 8"));
+      return null;
+    });
+    assertThat(allIds()).hasSize(8).contains("n8").doesNotContain("n0");
+    assertThat(store.generation()).isGreaterThan(generation);
+  }
+
+  @Test
+  void inTransaction_lockingShardsInOppositeOrders_backsOffInsteadOfDeadlocking() throws Exception {
+    open(dir, 2);
+    String first = null;
+    String second = null;
+    for (int i = 0; first == null || second == null; i++) {
+      String id = "n" + i;
+      store.insert(note(id, "2026-02-21T00:00:00Z", "note " + i));
+      if (store.getNotesPerShard()[0] > 0 && first == null) {
+        first = id;
+      } else if (store.getNotesPerShard()[1] > 0 && second == null) {
+        second = id;
+      }
+    }
+    String low = first;
+    String high = second;
+    CyclicBarrier bothLocked = new CyclicBarrier(2);
+
+    try (ExecutorService threads = Executors.newFixedThreadPool(2)) {
+      Future<Object> upward = threads.submit(() -> store.inTransaction(() -> {
+        store.updateContent(low, "upward");
+        awaitQuietly(bothLocked);
+        return store.updateContent(high, "upward");
+      }));
+      Future<Object> downward = threads.submit(() -> store.inTransaction(() -> {
+        store.updateContent(high, "downward");
+        awaitQuietly(bothLocked);
+        return store.updateContent(low, "downward");
+      }));
+
+      // the transaction that went against shard order gives up and is rolled back
+      assertThat(upward.get(30, TimeUnit.SECONDS)).isNotNull();
+      assertThatThrownBy(() -> downward.get(30, TimeUnit.SECONDS))
+          .hasCauseInstanceOf(ServiceBusyException.class);
+    }
+    assertThat(store.findById(low).orElseThrow().getContent()).isEqualTo("upward");
+    assertThat(store.findById(high).orElseThrow().getContent()).isEqualTo("upward");
+  }
+
+  @Test
+  void open_withAnotherShardCount_isRefused() throws Exception {
+    open(dir, 3);
+    store.insert(note("a", "2026-02-21T00:00:01Z", "first"));
+    store.destroy();
+    store = null;
+
+    assertThatThrownBy(() -> open(dir, 2)).isInstanceOf(IllegalStateException.class);
+    assertThatThrownBy(() -> open(dir, 4)).isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  void reshard_copiesEveryNoteIntoTheNewLayout() throws Exception {
+    Path source = dir.resolve("three");
+    Path target = dir.resolve("five");
+    open(source, 3);
+    for (int i = 10; i < 50; i++) {
+      store.insert(note("n" + i, "2026-02-21T00:00:" + i + "Z", "note " + i));
+    }
+    store.updateContent("n10", "edited");
+    List<String> before = allIds();
+    store.destroy();
+    store = null;
+
+    assertThat(ReshardTool.reshard(source, target, 5)).isEqualTo(40);
+
+    open(target, 5);
+    assertThat(allIds()).isEqualTo(before);
+    NoteEntity edited = store.findById("n10").orElseThrow();
+    assertThat(edited.getContent()).isEqualTo("edited");
+    assertThat(edited.getVersion()).isEqualTo(2);
+  }
+
+  @Test
+  void reshard_importsTheNotesDbOfTheJpaEngine() throws Exception {
+    Path database = dir.resolve("notes.db");
+    NoteContentConverter converter = new NoteContentConverter();
+    // the columns as Hibernate lays them out; created_at is bound as a Timestamp
+    try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + database)) {
+      connection.createStatement().execute("""
+          CREATE TABLE notes (id BLOB NOT NULL PRIMARY KEY, created_at TIMESTAMP NOT NULL,
+            content TEXT NOT NULL, version BIGINT DEFAULT 1 NOT NULL, change_seq BIGINT DEFAULT 0 NOT NULL)
+          """);
+      PreparedStatement insert = connection.prepareStatement(
+          "INSERT INTO notes (id, created_at, content, version) VALUES (?, ?, ?, ?)");
+      for (int i = 0; i < 10; i++) {
+        insert.setBytes(1, NoteIds.toBytes("n" + i));
+        insert.setTimestamp(2, Timestamp.from(Instant.parse("2026-02-21T00:00:0" + i + ".123Z")));
+        insert.setBytes(3, converter.convertToDatabaseColumn("note " + i));
+        insert.setLong(4, i + 1);
+        insert.executeUpdate();
+      }
+    }
+
+    assertThat(ReshardTool.reshard(database, dir.resolve("shards"), 3)).isEqualTo(10);
+
+    open(dir.resolve("shards"), 3);
+    assertThat(allIds()).containsExactly("n9", "n8", "n7", "n6", "n5", "n4", "n3", "n2", "n1", "n0");
+    NoteEntity imported = store.findById("n4").orElseThrow();
+    assertThat(imported.getCreatedAt()).isEqualTo(Instant.parse("2026-02-21T00:00:04.123Z"));
+    assertThat(imported.getContent()).isEqualTo("note 4");
+    assertThat(imported.getVersion()).isEqualTo(5);
+  }
+}